@@ -0,0 +1,146 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.benchmarking;
+
+import com.textocat.textokit.commons.DocumentMetadata;
+import com.textocat.textokit.commons.io.BinaryCasUtils;
+import com.textocat.textokit.commons.util.DocumentUtils;
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.XMLSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+/**
+ * Compares XMI with the compressed binary CAS form of {@link BinaryCasUtils}
+ * on tokenized and sentence-split ruwiki texts from the 'test-data' directory of this module.
+ * Serialized sizes are logged on the setup.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CasSerializationBenchmark {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Param({"ruwiki1.txt", "ruwiki2.txt"})
+    private String textFile;
+    @Param({"xmi", "binary", "binary-deflate"})
+    private String format;
+
+    private CAS srcCas;
+    private CAS dstCas;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException, UIMAException, SAXException {
+        TypeSystemDescription tsd = createTypeSystemDescription(
+                TokenizerAPI.TYPESYSTEM_TOKENIZER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES,
+                DocumentUtils.TYPESYSTEM_COMMONS);
+        JCas jCas = JCasFactory.createJCas(tsd);
+        jCas.setDocumentText(FileUtils.readFileToString(new File("test-data", textFile), "utf-8"));
+        DocumentMetadata meta = new DocumentMetadata(jCas);
+        meta.setSourceUri(textFile);
+        meta.addToIndexes();
+        AnalysisEngine ae = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), PostTokenizer.createDescription(),
+                SentenceSplitter.createDescription()));
+        ae.process(jCas);
+        ae.destroy();
+        srcCas = jCas.getCas();
+        dstCas = JCasFactory.createJCas(tsd).getCas();
+        serialized = serialize().toByteArray();
+        log.info("{} in {}: {} bytes", textFile, format, serialized.length);
+    }
+
+    @Benchmark
+    public int write() throws IOException, SAXException {
+        return serialize().size();
+    }
+
+    @Benchmark
+    public int read() throws IOException, SAXException {
+        dstCas.reset();
+        ByteArrayInputStream in = new ByteArrayInputStream(serialized);
+        switch (format) {
+            case "xmi":
+                XmiCasDeserializer.deserialize(in, dstCas);
+                break;
+            default:
+                BinaryCasUtils.deserialize(in, dstCas);
+        }
+        return dstCas.getDocumentText().length();
+    }
+
+    private ByteArrayOutputStream serialize() throws IOException, SAXException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+        switch (format) {
+            case "xmi":
+                // the same as XmiWriterBase with formatting off
+                XmiCasSerializer ser = new XmiCasSerializer(srcCas.getTypeSystem());
+                ser.serialize(srcCas, new XMLSerializer(out, false).getContentHandler());
+                break;
+            case "binary":
+                BinaryCasUtils.serialize(srcCas, out, false);
+                break;
+            case "binary-deflate":
+                BinaryCasUtils.serialize(srcCas, out, true);
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unknown format: %s", format));
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CasSerializationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.benchmarking;
+
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+/**
+ * Compares the table-driven and the original state-based implementations of {@link InitialTokenizer}
+ * on ruwiki texts from the 'test-data' directory of this module.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class InitialTokenizerBenchmark {
+
+    @Param({"ruwiki1.txt", "ruwiki2.txt"})
+    private String textFile;
+    @Param({"true", "false"})
+    private boolean useStateTable;
+
+    private String text;
+    private AnalysisEngine tokenizer;
+    private JCas jCas;
+
+    @Setup
+    public void setUp() throws IOException, UIMAException {
+        text = FileUtils.readFileToString(new File("test-data", textFile), "utf-8");
+        tokenizer = createEngine(InitialTokenizer.class, TokenizerAPI.getTypeSystemDescription(),
+                InitialTokenizer.PARAM_USE_STATE_TABLE, useStateTable);
+        jCas = JCasFactory.createJCas(TokenizerAPI.getTypeSystemDescription());
+    }
+
+    @TearDown
+    public void tearDown() {
+        tokenizer.destroy();
+    }
+
+    @Benchmark
+    public int tokenize() throws UIMAException {
+        jCas.reset();
+        jCas.setDocumentText(text);
+        tokenizer.process(jCas);
+        return jCas.getAnnotationIndex().size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InitialTokenizerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.benchmarking;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.commons.util.CachedResourceTuple;
+import com.textocat.textokit.morph.dictionary.WordUtils;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.lemmatizer.LemmaFinder;
+import com.textocat.textokit.morph.model.Wordform;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.fstype.W;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.textocat.textokit.morph.dictionary.MorphDictionaryAPIFactory.getMorphDictionaryAPI;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+/**
+ * Compares lemma scoring of the dictionary-based lemmatizer: Jaccard over sets of grammeme
+ * strings vs. popcounts over grammeme masks, with and without the memoization cache.
+ * Words are taken from ruwiki texts in the 'test-data' directory of this module,
+ * and full tags of their dictionary entries are used as target grammemes.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LemmatizerBenchmark {
+
+    @Param({"ruwiki1.txt", "ruwiki2.txt"})
+    private String textFile;
+
+    private CachedResourceTuple<MorphDictionary> dictTuple;
+    private MorphDictionary dict;
+    private String[] words;
+    private String[][] targets;
+    private LemmaFinder uncachedFinder;
+    private LemmaFinder cachedFinder;
+
+    @Setup
+    public void setUp() throws Exception {
+        dictTuple = getMorphDictionaryAPI().getCachedInstance();
+        dict = dictTuple.getResource();
+        GramModel gm = dict.getGramModel();
+        List<String> wordList = Lists.newArrayList();
+        List<String[]> targetList = Lists.newArrayList();
+        for (String word : readWords(new File("test-data", textFile))) {
+            for (Wordform wf : dict.getEntries(word)) {
+                List<String> grams = gm.toGramSet(Wordform.getAllGramBits(wf, dict));
+                wordList.add(word);
+                targetList.add(grams.toArray(new String[grams.size()]));
+            }
+        }
+        words = wordList.toArray(new String[wordList.size()]);
+        targets = targetList.toArray(new String[targetList.size()][]);
+        uncachedFinder = new LemmaFinder(dict, 0);
+        cachedFinder = new LemmaFinder(dict, 100000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dictTuple.close();
+    }
+
+    private static List<String> readWords(File textFile)
+            throws IOException, UIMAException {
+        JCas jCas = JCasFactory.createJCas(createTypeSystemDescription(TokenizerAPI.TYPESYSTEM_TOKENIZER));
+        jCas.setDocumentText(FileUtils.readFileToString(textFile, "utf-8"));
+        AnalysisEngine tokenizer = createTokenizer();
+        try {
+            tokenizer.process(jCas);
+        } finally {
+            tokenizer.destroy();
+        }
+        List<String> result = Lists.newArrayList();
+        for (W w : JCasUtil.select(jCas, W.class)) {
+            result.add(WordUtils.normalizeToDictionaryForm(w.getCoveredText()));
+        }
+        return result;
+    }
+
+    private static AnalysisEngine createTokenizer() throws ResourceInitializationException {
+        return createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), PostTokenizer.createDescription()));
+    }
+
+    @Benchmark
+    public void setJaccard(Blackhole bh) {
+        for (int i = 0; i < words.length; i++) {
+            bh.consume(LemmaFinder.findLemmaBySets(dict, words[i], targets[i]));
+        }
+    }
+
+    @Benchmark
+    public void maskJaccard(Blackhole bh) {
+        for (int i = 0; i < words.length; i++) {
+            bh.consume(uncachedFinder.findLemma(words[i], targets[i]));
+        }
+    }
+
+    @Benchmark
+    public void maskJaccardCached(Blackhole bh) {
+        for (int i = 0; i < words.length; i++) {
+            bh.consume(cachedFinder.findLemma(words[i], targets[i]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LemmatizerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.benchmarking;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.commons.cas.AnnotationUtils;
+import com.textocat.textokit.commons.cas.ArrayOverlapIndex;
+import com.textocat.textokit.commons.cas.OverlapIndex;
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.fstype.Sentence;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.fstype.Token;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+/**
+ * Compares {@link ArrayOverlapIndex} with the interval tree index of
+ * {@link AnnotationUtils#createTreeOverlapIndex(java.util.Iterator)}. Tokens of a ruwiki text
+ * from the 'test-data' directory of this module are indexed, and every token and sentence
+ * is a query, like gold annotations in the evaluation.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OverlapIndexBenchmark {
+
+    @Param({"ruwiki1.txt", "ruwiki2.txt"})
+    private String textFile;
+
+    private List<AnnotationFS> tokens;
+    private List<AnnotationFS> queries;
+    private OverlapIndex<AnnotationFS> treeIdx;
+    private ArrayOverlapIndex<AnnotationFS> arrayIdx;
+    private List<AnnotationFS> buffer;
+    private int[] hitOffsets;
+
+    @Setup
+    public void setUp() throws IOException, UIMAException {
+        JCas jCas = JCasFactory.createJCas(createTypeSystemDescription(
+                TokenizerAPI.TYPESYSTEM_TOKENIZER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES));
+        jCas.setDocumentText(FileUtils.readFileToString(new File("test-data", textFile), "utf-8"));
+        AnalysisEngine ae = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), PostTokenizer.createDescription(),
+                SentenceSplitter.createDescription()));
+        ae.process(jCas);
+        ae.destroy();
+        tokens = Lists.<AnnotationFS>newArrayList(JCasUtil.select(jCas, Token.class));
+        // the annotation index order is sorted by begin
+        queries = Lists.<AnnotationFS>newArrayList(JCasUtil.select(jCas, Annotation.class));
+        treeIdx = AnnotationUtils.createTreeOverlapIndex(tokens.iterator());
+        arrayIdx = ArrayOverlapIndex.create(tokens.iterator());
+        buffer = Lists.newArrayListWithCapacity(tokens.size() * 4);
+        hitOffsets = new int[queries.size() + 1];
+    }
+
+    @Benchmark
+    public int buildTree() {
+        return AnnotationUtils.createTreeOverlapIndex(tokens.iterator()).getOverlapping(0, 1).size();
+    }
+
+    @Benchmark
+    public int buildArray() {
+        return ArrayOverlapIndex.create(tokens.iterator()).size();
+    }
+
+    @Benchmark
+    public int queryTree() {
+        int hits = 0;
+        for (AnnotationFS q : queries) {
+            hits += treeIdx.getOverlapping(q.getBegin(), q.getEnd()).size();
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int queryArraySet() {
+        int hits = 0;
+        for (AnnotationFS q : queries) {
+            hits += arrayIdx.getOverlapping(q.getBegin(), q.getEnd()).size();
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int queryArrayBuffer() {
+        int hits = 0;
+        for (AnnotationFS q : queries) {
+            buffer.clear();
+            hits += arrayIdx.collectOverlapping(q.getBegin(), q.getEnd(), buffer);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int queryArrayBatch() {
+        buffer.clear();
+        arrayIdx.collectOverlapping(queries, buffer, hitOffsets);
+        return buffer.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OverlapIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.benchmarking;
+
+import com.google.common.io.Files;
+import com.textocat.textokit.commons.consumer.XmiFileWriter;
+import com.textocat.textokit.commons.cpe.FileDirectoryCollectionReader;
+import com.textocat.textokit.commons.cpe.ParallelCpeLauncher;
+import com.textocat.textokit.commons.cpe.StagedPipelineRunner;
+import com.textocat.textokit.commons.cpe.ThroughputReport;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+
+/**
+ * Compares {@link StagedPipelineRunner} with the classic CPE run by {@link ParallelCpeLauncher}.
+ * An invocation reads the texts from the 'test-data' directory of this module, tokenizes them,
+ * splits them into sentences and writes XMI files.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PipelineRunnerBenchmark {
+
+    @Param({"cpe", "staged"})
+    private String runner;
+    @Param({"1", "4"})
+    private int threads;
+
+    private File outputDir;
+    private CollectionReaderDescription readerDesc;
+    private AnalysisEngineDescription aeDesc;
+    private AnalysisEngineDescription writerDesc;
+    private ParallelCpeLauncher cpeLauncher;
+    private StagedPipelineRunner stagedRunner;
+
+    @Setup
+    public void setUp() throws UIMAException, IOException {
+        outputDir = Files.createTempDir();
+        readerDesc = FileDirectoryCollectionReader.createDescription(new File("test-data"));
+        aeDesc = createEngineDescription(
+                InitialTokenizer.createDescription(),
+                PostTokenizer.createDescription(),
+                SentenceSplitter.createDescription());
+        writerDesc = XmiFileWriter.createDescription(outputDir);
+        switch (runner) {
+            case "cpe":
+                cpeLauncher = new ParallelCpeLauncher();
+                cpeLauncher.setReaderDescription(readerDesc);
+                cpeLauncher.setAnalysisEngineDescription(createEngineDescription(aeDesc, writerDesc));
+                cpeLauncher.setThreadCount(threads);
+                break;
+            case "staged":
+                stagedRunner = new StagedPipelineRunner();
+                stagedRunner.setReaderDescription(readerDesc);
+                stagedRunner.setAnalysisEngineDescription(aeDesc);
+                stagedRunner.setConsumerDescription(writerDesc);
+                stagedRunner.setAnalysisThreadCount(threads);
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unknown runner: %s", runner));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+    @Benchmark
+    public long run() throws Exception {
+        ThroughputReport report = cpeLauncher != null ? cpeLauncher.run() : stagedRunner.run();
+        return report.getDocumentCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PipelineRunnerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
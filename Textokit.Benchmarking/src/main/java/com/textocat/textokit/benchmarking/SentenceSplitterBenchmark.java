@@ -0,0 +1,97 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.benchmarking;
+
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.fstype.Sentence;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+/**
+ * Compares the one-pass and the candidate-set modes of {@link SentenceSplitter}
+ * on tokenized ruwiki texts from the 'test-data' directory of this module.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SentenceSplitterBenchmark {
+
+    @Param({"ruwiki1.txt", "ruwiki2.txt"})
+    private String textFile;
+    @Param({"true", "false"})
+    private boolean onePass;
+
+    private AnalysisEngine splitter;
+    private JCas jCas;
+
+    @Setup
+    public void setUp() throws IOException, UIMAException {
+        jCas = JCasFactory.createJCas(createTypeSystemDescription(
+                TokenizerAPI.TYPESYSTEM_TOKENIZER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES));
+        jCas.setDocumentText(FileUtils.readFileToString(new File("test-data", textFile), "utf-8"));
+        AnalysisEngine tokenizer = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), PostTokenizer.createDescription()));
+        tokenizer.process(jCas);
+        tokenizer.destroy();
+        splitter = createEngine(SentenceSplitter.class, SentenceSplitterAPI.getTypeSystemDescription(),
+                SentenceSplitter.PARAM_ONE_PASS, onePass);
+    }
+
+    @TearDown
+    public void tearDown() {
+        splitter.destroy();
+    }
+
+    @Benchmark
+    public int split() throws UIMAException {
+        jCas.removeAllIncludingSubtypes(Sentence.type);
+        splitter.process(jCas);
+        return JCasUtil.select(jCas, Sentence.class).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SentenceSplitterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.benchmarking;
+
+import com.textocat.textokit.morph.dictionary.DictionaryFormBuffer;
+import com.textocat.textokit.morph.dictionary.WordUtils;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.fstype.Token;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+/**
+ * Measures the dictionary form normalization and the Cyrillic word detection of
+ * {@link WordUtils} over tokens of a ruwiki text from the 'test-data' directory of this module.
+ * The regex-based variants reproduce the former implementation.
+ *
+ * @author Rinat Gareev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class WordNormalizationBenchmark {
+
+    private static final Pattern unicodeMarksPattern = Pattern.compile("[\\p{Mc}\\p{Me}\\p{Mn}]");
+
+    @Param({"ruwiki1.txt", "ruwiki2.txt"})
+    private String textFile;
+
+    private String text;
+    private int[] begins;
+    private int[] ends;
+    private String[] tokenStrings;
+    private DictionaryFormBuffer buffer = new DictionaryFormBuffer();
+
+    @Setup
+    public void setUp() throws IOException, UIMAException {
+        JCas jCas = JCasFactory.createJCas(createTypeSystemDescription(TokenizerAPI.TYPESYSTEM_TOKENIZER));
+        jCas.setDocumentText(FileUtils.readFileToString(new File("test-data", textFile), "utf-8"));
+        AnalysisEngine ae = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), PostTokenizer.createDescription()));
+        ae.process(jCas);
+        ae.destroy();
+        text = jCas.getDocumentText();
+        Collection<Token> tokens = JCasUtil.select(jCas, Token.class);
+        begins = new int[tokens.size()];
+        ends = new int[tokens.size()];
+        tokenStrings = new String[tokens.size()];
+        int i = 0;
+        for (Token t : tokens) {
+            begins[i] = t.getBegin();
+            ends[i] = t.getEnd();
+            tokenStrings[i] = t.getCoveredText();
+            i++;
+        }
+    }
+
+    @Benchmark
+    public void normalizeByRegex(Blackhole bh) {
+        for (String str : tokenStrings) {
+            bh.consume(unicodeMarksPattern.matcher(str).replaceAll("").trim().toLowerCase());
+        }
+    }
+
+    @Benchmark
+    public void normalizeString(Blackhole bh) {
+        for (String str : tokenStrings) {
+            bh.consume(WordUtils.normalizeToDictionaryForm(str));
+        }
+    }
+
+    @Benchmark
+    public int normalizeIntoBuffer() {
+        int len = 0;
+        for (int i = 0; i < begins.length; i++) {
+            len += buffer.normalize(text, begins[i], ends[i]).length();
+        }
+        return len;
+    }
+
+    @Benchmark
+    public int isRussianWordByUnicodeBlock() {
+        int count = 0;
+        for (String str : tokenStrings) {
+            Character lastLetter = null;
+            for (int i = str.length() - 1; i >= 0; i--) {
+                char ch = str.charAt(i);
+                if (Character.isLetter(ch)) {
+                    lastLetter = ch;
+                    break;
+                }
+            }
+            if (lastLetter != null
+                    && Character.UnicodeBlock.of(lastLetter).equals(Character.UnicodeBlock.CYRILLIC)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int isRussianWord() {
+        int count = 0;
+        for (int i = 0; i < begins.length; i++) {
+            if (WordUtils.isRussianWord(text, begins[i], ends[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WordNormalizationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
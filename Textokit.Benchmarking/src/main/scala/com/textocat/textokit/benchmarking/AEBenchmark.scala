@@ -20,42 +20,46 @@ import java.io.File
 
 import com.github.tototoshi.csv.CSVWriter
 import com.textocat.textokit.benchmarking.AEBenchmark._
-import com.textocat.textokit.commons.cpe.StatusCallbackListenerAdapter
+import com.textocat.textokit.commons.cpe.{ParallelCpeLauncher, StatusCallbackListenerAdapter}
 import com.textocat.textokit.commons.util.{DocumentUtils, PipelineDescriptorUtils}
 import com.typesafe.scalalogging.StrictLogging
 import org.apache.uima.analysis_engine.AnalysisEngineDescription
 import org.apache.uima.cas.CAS
 import org.apache.uima.collection.{CollectionReaderDescription, EntityProcessStatus}
-import org.apache.uima.fit.cpe.CpeBuilder
 import org.apache.uima.fit.factory.ResourceCreationSpecifierFactory
 import org.apache.uima.resource.metadata.impl.Import_impl
 import org.apache.uima.util.{ProcessTrace, ProcessTraceEvent}
 import scopt.OptionParser
 
 import scala.collection.JavaConversions._
-import scala.concurrent.duration.Duration
-import scala.concurrent.{Await, promise}
 
 /**
  * @author Rinat Gareev
  *
  */
 class AEBenchmark(args: ArgConfig) extends StrictLogging {
-  private val cpeRunPromise = promise[Boolean]
   private val outLock = new AnyRef()
   private val csvWriter = CSVWriter.open(args.outputFile)
+  @volatile private var curThreadCount = 0
   writeHeader()
 
   def run() {
-    val cpeBuilder = new CpeBuilder()
-    cpeBuilder.setMaxProcessingUnitThreadCount(1)
-    cpeBuilder.setReader(args.dataDesc)
-    cpeBuilder.setAnalysisEngine(args.aeDesc)
-    val cpe = cpeBuilder.createCpe(recordingStatusCallbackListener)
-    // run
-    cpe.process()
-    //
-    Await.ready(cpeRunPromise.future, Duration.Inf)
+    // the launcher keeps its resource manager so resources are loaded only once for all thread counts
+    val launcher = new ParallelCpeLauncher()
+    launcher.setReaderDescription(args.dataDesc)
+    launcher.setAnalysisEngineDescription(args.aeDesc)
+    launcher.addStatusCallbackListener(recordingStatusCallbackListener)
+    try {
+      for (threadCount <- args.threadCounts) {
+        curThreadCount = threadCount
+        launcher.setThreadCount(threadCount)
+        // the launcher logs the throughput report
+        launcher.run()
+      }
+    } finally {
+      csvWriter.close()
+    }
+    logger.info("Finished.")
   }
 
   private val recordingStatusCallbackListener = new StatusCallbackListenerAdapter {
@@ -69,17 +73,6 @@ class AEBenchmark(args: ArgConfig) extends StrictLogging {
       }
     }
 
-    override def collectionProcessComplete() {
-      csvWriter.close()
-      logger.info("Finished.")
-      cpeRunPromise.success(true)
-    }
-
-    override def aborted() {
-      logger.info("Aborted.")
-      cpeRunPromise.success(false)
-    }
-
     private def entityProcessComplete(cas: CAS, trace: ProcessTrace) {
       def processEvent(ev: ProcessTraceEvent) {
         logger.debug("ProcessTraceEvent with type {}", ev.getType())
@@ -97,6 +90,7 @@ class AEBenchmark(args: ArgConfig) extends StrictLogging {
 
     private def writeEvent(cas: CAS, pte: ProcessTraceEvent) {
       write(AnalysisRecord(
+        threadCount = curThreadCount,
         docURI = DocumentUtils.getDocumentUri(cas),
         docSize = cas.getDocumentText().length(),
         analyzerName = pte.getComponentName(),
@@ -107,15 +101,16 @@ class AEBenchmark(args: ArgConfig) extends StrictLogging {
 
   private def write(rec: AnalysisRecord) = outLock.synchronized {
     import rec._
-    csvWriter.writeRow(List(docURI, docSize, analyzerName, durationMS, casSizeKb))
+    csvWriter.writeRow(List(threadCount, docURI, docSize, analyzerName, durationMS, casSizeKb))
   }
 
   private def writeHeader() = outLock.synchronized {
-    csvWriter.writeRow(List("DocURI", "DocSize", "Analyzer", "DurationMs", "CasSizeKb"))
+    csvWriter.writeRow(List("Threads", "DocURI", "DocSize", "Analyzer", "DurationMs", "CasSizeKb"))
   }
 }
 
 private[benchmarking] case class AnalysisRecord(
+                                                 threadCount: Int,
                                                  docURI: String, docSize: Int,
                                                  analyzerName: String, durationMS: Int, casSizeKb: Int)
 
@@ -123,7 +118,8 @@ object AEBenchmark {
 
   case class ArgConfig(aeDesc: AnalysisEngineDescription = null,
                        dataDesc: CollectionReaderDescription = null,
-                       outputFile: File = null)
+                       outputFile: File = null,
+                       threadCounts: Seq[Int] = Seq(1))
 
   private val RootAEName = "RootAE";
 
@@ -140,6 +136,12 @@ object AEBenchmark {
     opt[File]('o', "out") required() valueName ("<output-file>") action {
       (outFile, cfg) => cfg.copy(outputFile = outFile)
     }
+    opt[String]("threads") valueName ("<n1>,<n2>...") validate {
+      counts => if (counts.matches("[1-9]\\d*(,[1-9]\\d*)*")) success
+      else failure("thread counts must be a comma-separated list of positive numbers")
+    } action {
+      (counts, cfg) => cfg.copy(threadCounts = counts.split(',').map(_.toInt))
+    }
   }
 
   def main(args: Array[String]) {
@@ -28,7 +28,8 @@ class AEBenchmarkSpec extends FlatSpecLike {
     AEBenchmark.main(Array(
       "--ae-name", "com.textocat.textokit.tokenizer.tokenizer-ae",
       "--data", "test-data/col-reader-desc.xml",
-      "-o", "target/ae-benchmark-test-output.csv"))
+      "-o", "target/ae-benchmark-test-output.csv",
+      "--threads", "1,2"))
   }
 
 }
\ No newline at end of file
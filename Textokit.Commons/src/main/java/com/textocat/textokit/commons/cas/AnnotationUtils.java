@@ -269,6 +269,14 @@ public class AnnotationUtils {
     }
 
     public static <A extends AnnotationFS> OverlapIndex<A> createOverlapIndex(Iterator<A> srcIter) {
+        return ArrayOverlapIndex.create(srcIter);
+    }
+
+    /**
+     * @return an index over an interval tree of node objects. It was the default implementation
+     * before {@link ArrayOverlapIndex}, and results of both are the same.
+     */
+    public static <A extends AnnotationFS> OverlapIndex<A> createTreeOverlapIndex(Iterator<A> srcIter) {
         return new AITOverlapIndex<>(srcIter);
     }
 
@@ -0,0 +1,204 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cas;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.uima.cas.text.AnnotationFS;
+
+import java.util.*;
+
+/**
+ * {@link OverlapIndex} over annotations sorted by {@link AnnotationOffsetComparator}
+ * and stored in parallel arrays of begins, ends and values. Ends are augmented with
+ * a complete binary tree of max-ends laid out in an array, so the next overlapping
+ * annotation is found iteratively in O(log n).
+ * <p>
+ * Besides {@link #getOverlapping(int, int)} that has to allocate a result set, it provides
+ * allocation-free methods to collect results into a reusable buffer, to iterate
+ * them by indexes, and to process a batch of queries sorted by begin.
+ * Instances are immutable and thus thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public final class ArrayOverlapIndex<A extends AnnotationFS> implements OverlapIndex<A> {
+
+    public static <A extends AnnotationFS> ArrayOverlapIndex<A> create(Iterator<A> srcIter) {
+        return new ArrayOverlapIndex<>(srcIter);
+    }
+
+    private final Object[] values;
+    private final int[] begins;
+    private final int[] ends;
+    // prefixMaxEnds[i] = max(ends[0..i])
+    private final int[] prefixMaxEnds;
+    // leaves start at leafOffset, node i has kids 2i and 2i+1, the root is 1
+    private final int[] maxEnds;
+    private final int leafOffset;
+
+    private ArrayOverlapIndex(Iterator<A> srcIter) {
+        List<A> srcList = Lists.newArrayList(srcIter);
+        // stable sort preserves the source ordering of annotations with the same offsets
+        Collections.sort(srcList, AnnotationOffsetComparator.instance(AnnotationFS.class));
+        int size = srcList.size();
+        values = new Object[size];
+        begins = new int[size];
+        ends = new int[size];
+        prefixMaxEnds = new int[size];
+        int prefixMax = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            A anno = srcList.get(i);
+            values[i] = anno;
+            begins[i] = anno.getBegin();
+            ends[i] = anno.getEnd();
+            prefixMax = Math.max(prefixMax, ends[i]);
+            prefixMaxEnds[i] = prefixMax;
+        }
+        int leaves = 1;
+        while (leaves < size) {
+            leaves <<= 1;
+        }
+        leafOffset = leaves;
+        maxEnds = new int[2 * leaves];
+        Arrays.fill(maxEnds, Integer.MIN_VALUE);
+        System.arraycopy(ends, 0, maxEnds, leaves, size);
+        for (int i = leaves - 1; i > 0; i--) {
+            maxEnds[i] = Math.max(maxEnds[2 * i], maxEnds[2 * i + 1]);
+        }
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param i an index in [0, {@link #size()})
+     * @return the i-th annotation in the offset order
+     */
+    @SuppressWarnings("unchecked")
+    public A get(int i) {
+        return (A) values[i];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<A> getOverlapping(int begin, int end) {
+        Set<A> result = Sets.newLinkedHashSet();
+        collectOverlapping(begin, end, result);
+        return result;
+    }
+
+    /**
+     * Add annotations that overlap with the given offsets into the given collection in the
+     * same order as {@link #getOverlapping(int, int)} does.
+     *
+     * @return the number of added annotations
+     */
+    public int collectOverlapping(int begin, int end, Collection<? super A> buffer) {
+        return collectOverlapping(0, begin, end, buffer);
+    }
+
+    private int collectOverlapping(int from, int begin, int end, Collection<? super A> buffer) {
+        int count = 0;
+        for (int i = nextOverlapping(from, begin, end); i >= 0; i = nextOverlapping(i + 1, begin, end)) {
+            buffer.add(get(i));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Process a batch of queries sorted by begin, e.g., gold annotations from the annotation index.
+     * Intervals that end before the current query are skipped once for all subsequent queries.
+     *
+     * @param queries    annotations sorted by begin
+     * @param buffer     a collection to add results of all queries into, one after another
+     * @param hitOffsets an array of size queries.size() + 1. After the call, results of
+     *                   the i-th query are the elements from hitOffsets[i] (inclusive)
+     *                   to hitOffsets[i+1] (exclusive) of the added ones.
+     */
+    public void collectOverlapping(List<? extends AnnotationFS> queries,
+                                   Collection<? super A> buffer, int[] hitOffsets) {
+        if (hitOffsets.length < queries.size() + 1) {
+            throw new IllegalArgumentException(String.format(
+                    "hitOffsets length %s is less than %s", hitOffsets.length, queries.size() + 1));
+        }
+        int from = 0;
+        int prevBegin = Integer.MIN_VALUE;
+        hitOffsets[0] = 0;
+        for (int q = 0; q < queries.size(); q++) {
+            AnnotationFS query = queries.get(q);
+            int qBegin = query.getBegin();
+            if (qBegin < prevBegin) {
+                throw new IllegalArgumentException("Queries are not sorted by begin");
+            }
+            prevBegin = qBegin;
+            // all intervals before 'from' end at or before qBegin
+            while (from < prefixMaxEnds.length && prefixMaxEnds[from] <= qBegin) {
+                from++;
+            }
+            hitOffsets[q + 1] = hitOffsets[q] + collectOverlapping(from, qBegin, query.getEnd(), buffer);
+        }
+    }
+
+    /**
+     * Allocation-free iteration over overlapping annotations:
+     * <pre>
+     * for (int i = idx.nextOverlapping(0, b, e); i &gt;= 0; i = idx.nextOverlapping(i + 1, b, e)) {
+     *     A anno = idx.get(i);
+     * }
+     * </pre>
+     *
+     * @return the index of the first annotation at or after 'from' that overlaps with the given
+     * offsets, or -1 if there is no such annotation
+     */
+    public int nextOverlapping(int from, int begin, int end) {
+        if (from >= values.length) {
+            return -1;
+        }
+        // an overlapping interval has begins[i] < end && ends[i] > begin
+        int p = from + leafOffset;
+        while (true) {
+            if (maxEnds[p] > begin) {
+                // descend to the leftmost leaf with end > begin
+                while (p < leafOffset) {
+                    p = 2 * p;
+                    if (maxEnds[p] <= begin) {
+                        p++;
+                    }
+                }
+                int i = p - leafOffset;
+                if (begins[i] >= end) {
+                    // intervals are sorted by begin, so the rest begin after the query too
+                    return -1;
+                }
+                return i;
+            }
+            // go to the next subtree to the right
+            while ((p & 1) == 1) {
+                p >>= 1;
+            }
+            if (p == 0) {
+                return -1;
+            }
+            p++;
+        }
+    }
+}
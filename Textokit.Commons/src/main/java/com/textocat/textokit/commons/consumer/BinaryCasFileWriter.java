@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.consumer;
+
+import com.google.common.base.Function;
+import com.textocat.textokit.commons.DocumentMetadata;
+import com.textocat.textokit.commons.io.BinaryCasUtils;
+import com.textocat.textokit.commons.io.IoUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.descriptor.OperationalProperties;
+import org.apache.uima.fit.descriptor.TypeCapability;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.initializable.InitializableFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A faster and more compact alternative to {@link XmiFileWriter} for intermediate corpora.
+ * Writes each CAS in the compressed binary form (see {@link BinaryCasUtils}) into a separate file
+ * which name is determined by the same function as in {@link XmiFileWriter}.
+ * Files can be read by {@link com.textocat.textokit.commons.cpe.BinaryCasCollectionReader}.
+ *
+ * @author Rinat Gareev
+ */
+@TypeCapability(inputs = "com.textocat.textokit.commons.DocumentMetadata")
+@OperationalProperties(modifiesCas = false)
+public class BinaryCasFileWriter extends JCasAnnotator_ImplBase {
+
+    public static final String PARAM_OUTPUT_BASE_PATH = "outputBasePath";
+    public static final String PARAM_OUTPUT_PATH_FUNCTION = "outputPathFunction";
+    public static final String PARAM_DEFLATE = "deflate";
+    // config fields
+    @ConfigurationParameter(name = PARAM_OUTPUT_BASE_PATH, mandatory = true)
+    private String outBasePathStr;
+    @ConfigurationParameter(name = PARAM_OUTPUT_PATH_FUNCTION, mandatory = false,
+            defaultValue = "com.textocat.textokit.commons.consumer.DefaultSourceURI2OutputFilePathFunction")
+    private Class<? extends Function> outPathFuncClass;
+    /**
+     * whether to wrap each file content into a Deflate stream. Form 6 is compressed already,
+     * so on tokenized texts the wrapper saves less than 1% of the size.
+     */
+    @ConfigurationParameter(name = PARAM_DEFLATE, defaultValue = "false", mandatory = false)
+    private boolean deflate;
+    // state fields
+    private Path outBasePath;
+    private Function<DocumentMetadata, Path> outPathFunc;
+
+    public static AnalysisEngineDescription createDescription(File outputDir)
+            throws ResourceInitializationException {
+        return AnalysisEngineFactory.createEngineDescription(BinaryCasFileWriter.class,
+                PARAM_OUTPUT_BASE_PATH, outputDir.getPath());
+    }
+
+    @Override
+    public void initialize(UimaContext ctx) throws ResourceInitializationException {
+        super.initialize(ctx);
+        //
+        outBasePath = Paths.get(outBasePathStr);
+        //noinspection unchecked
+        outPathFunc = InitializableFactory.create(ctx, outPathFuncClass);
+    }
+
+    @Override
+    public void process(JCas jCas) throws AnalysisEngineProcessException {
+        DocumentMetadata meta = JCasUtil.selectSingle(jCas, DocumentMetadata.class);
+        Path resultPath = outBasePath.resolve(outPathFunc.apply(meta));
+        resultPath = IoUtils.addExtension(resultPath, BinaryCasUtils.BINARY_CAS_FILE_EXTENSION);
+        OutputStream out = null;
+        try {
+            out = FileUtils.openOutputStream(resultPath.toFile());
+            BinaryCasUtils.serialize(jCas.getCas(), out, deflate);
+        } catch (IOException e) {
+            throw new AnalysisEngineProcessException(e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.commons.io.BinaryCasUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UimaContext;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.component.CasCollectionReader_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.resource.ResourceConfigurationException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.apache.commons.io.filefilter.FileFilterUtils.suffixFileFilter;
+import static org.apache.commons.io.filefilter.FileFilterUtils.trueFileFilter;
+
+/**
+ * Reads CASes written by {@link com.textocat.textokit.commons.consumer.BinaryCasFileWriter}
+ * from a directory and its subdirectories in the filesystem.
+ * The type system of the reader must be the same as the one of the written CASes.
+ *
+ * @author Rinat Gareev
+ */
+public class BinaryCasCollectionReader extends CasCollectionReader_ImplBase {
+
+    public static final String PARAM_INPUTDIR = "InputDirectory";
+    @ConfigurationParameter(name = PARAM_INPUTDIR, mandatory = true)
+    private File inputDir;
+    // derived
+    private List<File> files;
+    // state
+    private int filesRead;
+
+    public static CollectionReaderDescription createDescription(
+            File inputDir, TypeSystemDescription inputTSD) throws ResourceInitializationException {
+        return CollectionReaderFactory.createReaderDescription(BinaryCasCollectionReader.class,
+                inputTSD,
+                PARAM_INPUTDIR, inputDir);
+    }
+
+    @Override
+    public void initialize(UimaContext ctx) throws ResourceInitializationException {
+        super.initialize(ctx);
+        if (!inputDir.isDirectory()) {
+            throw new ResourceInitializationException(
+                    ResourceConfigurationException.DIRECTORY_NOT_FOUND,
+                    new Object[]{PARAM_INPUTDIR, this.getMetaData().getName(),
+                            inputDir.getPath()});
+        }
+        files = Lists.newArrayList(FileUtils.listFiles(inputDir,
+                suffixFileFilter("." + BinaryCasUtils.BINARY_CAS_FILE_EXTENSION), trueFileFilter()));
+        filesRead = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return filesRead < files.size();
+    }
+
+    @Override
+    public void getNext(CAS aCAS) throws IOException, CollectionException {
+        if (!hasNext()) {
+            throw new CollectionException(new NoSuchElementException());
+        }
+        File file = files.get(filesRead);
+        filesRead++;
+        BinaryCasUtils.deserialize(file, aCAS);
+    }
+
+    @Override
+    public Progress[] getProgress() {
+        return new Progress[]{new ProgressImpl(filesRead, files.size(), Progress.ENTITIES)};
+    }
+}
@@ -19,7 +19,8 @@
 package com.textocat.textokit.commons.cpe;
 
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.textocat.textokit.commons.util.AnnotatorUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.uima.UimaContext;
@@ -36,14 +37,37 @@ import com.textocat.textokit.commons.DocumentMetadata;
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.*;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.NoSuchElementException;
-
-import static com.google.common.collect.Lists.newLinkedList;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * Reads documents from a database table batch by batch.
+ * <p>
+ * By default batches are queried by OFFSET/LIMIT parameters of {@link #PARAM_QUERY}, see
+ * {@link #PARAM_OFFSET_PARAM_INDEX} and {@link #PARAM_LIMIT_PARAM_INDEX}. The cost of such query
+ * grows with the offset, so for large tables set {@link #PARAM_KEY_COLUMN} to use keyset
+ * pagination, e.g.:
+ * <pre>
+ * SELECT id, url, txt FROM doc WHERE id &gt; ? ORDER BY id LIMIT ?
+ * </pre>
+ * Here the first parameter ({@link #PARAM_KEY_PARAM_INDEX}) is bound to the key of the last
+ * row of the previous batch. The key column must be an integer column that is unique and
+ * ordered ascending by the query.
+ * </p>
+ * <p>
+ * In keyset mode a reader can be restricted to a key range with {@link #PARAM_MIN_KEY} and
+ * {@link #PARAM_MAX_KEY}, so several readers can process disjoint partitions of a table in
+ * parallel. The max key requires one more query parameter, e.g.:
+ * <pre>
+ * SELECT id, url, txt FROM doc WHERE id &gt; ? AND id &lt;= ? ORDER BY id LIMIT ?
+ * </pre>
+ * </p>
+ * <p>
+ * Unless {@link #PARAM_PREFETCH_BATCHES} is 0, batches are fetched by a background thread
+ * into a bounded queue, so the database latency overlaps with the processing of CASes.
+ * </p>
+ *
  * @author Rinat Gareev
  */
 public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
@@ -63,6 +87,14 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 
     public static final String PARAM_COUNT_QUERY = "countQuery";
 
+    public static final String PARAM_KEY_COLUMN = "keyColumn";
+    public static final String PARAM_KEY_PARAM_INDEX = "keyParamIndex";
+    public static final String PARAM_MIN_KEY = "minKey";
+    public static final String PARAM_MAX_KEY = "maxKey";
+    public static final String PARAM_MAX_KEY_PARAM_INDEX = "maxKeyParamIndex";
+    public static final String PARAM_FETCH_SIZE = "fetchSize";
+    public static final String PARAM_PREFETCH_BATCHES = "prefetchBatches";
+
     @ConfigurationParameter(name = PARAM_DATABASE_URL, mandatory = true)
     private String dbUrl;
     @ConfigurationParameter(name = PARAM_USERNAME, mandatory = true)
@@ -77,7 +109,10 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
     private String countQuery;
     @ConfigurationParameter(name = PARAM_LIMIT_PARAM_INDEX, mandatory = true)
     private Integer limitParamIndex;
-    @ConfigurationParameter(name = PARAM_OFFSET_PARAM_INDEX, mandatory = true)
+    /**
+     * required unless {@link #PARAM_KEY_COLUMN} is set
+     */
+    @ConfigurationParameter(name = PARAM_OFFSET_PARAM_INDEX, mandatory = false)
     private Integer offsetParamIndex;
     @ConfigurationParameter(name = PARAM_DOCUMENT_URL_COLUMN, mandatory = false)
     private String documentUrlColumn;
@@ -85,48 +120,65 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
     private String textColumn;
     @ConfigurationParameter(name = PARAM_BATCH_SIZE, defaultValue = "20", mandatory = false)
     private Integer batchSize;
+    /**
+     * enables keyset pagination
+     */
+    @ConfigurationParameter(name = PARAM_KEY_COLUMN, mandatory = false)
+    private String keyColumn;
+    @ConfigurationParameter(name = PARAM_KEY_PARAM_INDEX, mandatory = false)
+    private Integer keyParamIndex;
+    /**
+     * exclusive lower bound of keys, as a decimal string since long parameters are not supported
+     */
+    @ConfigurationParameter(name = PARAM_MIN_KEY, mandatory = false)
+    private String minKeyStr;
+    /**
+     * inclusive upper bound of keys, requires {@link #PARAM_MAX_KEY_PARAM_INDEX}
+     */
+    @ConfigurationParameter(name = PARAM_MAX_KEY, mandatory = false)
+    private String maxKeyStr;
+    @ConfigurationParameter(name = PARAM_MAX_KEY_PARAM_INDEX, mandatory = false)
+    private Integer maxKeyParamIndex;
+    /**
+     * JDBC fetch size hint, 0 means the driver default
+     */
+    @ConfigurationParameter(name = PARAM_FETCH_SIZE, defaultValue = "0", mandatory = false)
+    private Integer fetchSize;
+    /**
+     * the capacity of the queue of prefetched batches, 0 disables the background fetching
+     */
+    @ConfigurationParameter(name = PARAM_PREFETCH_BATCHES, defaultValue = "2", mandatory = false)
+    private Integer prefetchBatches;
 
     // state fields
     private Connection dbConnection;
     private PreparedStatement queryStatement;
+    private long lastKey;
+    private int curOffset;
+    // null if batches are fetched in the reader thread
+    private BlockingQueue<Batch> prefetchQueue;
+    private Thread prefetchThread;
 
     private Integer expectedTotalCount;
     private int consumedCount = 0;
     private Iterator<DbTuple> dbIterator = new AbstractIterator<DbTuple>() {
-        private int curOffset;
         private boolean lastBatchFetched = false;
-        private Iterator<DbTuple> batchIterator;
+        private Iterator<DbTuple> batchIterator = Iterators.emptyIterator();
 
         @Override
         protected DbTuple computeNext() {
-            if (batchIterator == null) {
-                makeNextBatchIterator();
-            }
-            if (batchIterator.hasNext()) {
-                return batchIterator.next();
-            } else if (lastBatchFetched) {
-                return endOfData();
-            } else {
-                makeNextBatchIterator();
-                return computeNext();
-            }
-        }
-
-        private void makeNextBatchIterator() {
-            try {
-                List<DbTuple> batchList = queryBatch(curOffset, batchSize);
-                curOffset += batchSize;
-                if (batchList.isEmpty()) {
+            while (!batchIterator.hasNext()) {
+                if (lastBatchFetched) {
+                    return endOfData();
+                }
+                List<DbTuple> batchList = nextBatch();
+                // a short batch is the last one
+                if (batchList.size() < batchSize) {
                     lastBatchFetched = true;
                 }
                 batchIterator = batchList.iterator();
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            }
-            // assertions
-            if (batchIterator == null) {
-                throw new IllegalStateException();
             }
+            return batchIterator.next();
         }
     };
 
@@ -144,26 +196,77 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
         super.initialize(ctx);
         // check parameters
         AnnotatorUtils.requireParam(batchSize > 0, PARAM_BATCH_SIZE, batchSize);
-        AnnotatorUtils.requireParams(limitParamIndex != offsetParamIndex
-                        && limitParamIndex > 0 && limitParamIndex < 3
-                        && offsetParamIndex > 0 && offsetParamIndex < 3,
-                new String[]{PARAM_LIMIT_PARAM_INDEX, PARAM_OFFSET_PARAM_INDEX},
-                new Object[]{limitParamIndex, offsetParamIndex});
+        AnnotatorUtils.requireParam(fetchSize >= 0, PARAM_FETCH_SIZE, fetchSize);
+        AnnotatorUtils.requireParam(prefetchBatches >= 0, PARAM_PREFETCH_BATCHES, prefetchBatches);
+        if (keyColumn == null) {
+            AnnotatorUtils.requireParams(areQueryParamIndexes(limitParamIndex, offsetParamIndex),
+                    new String[]{PARAM_LIMIT_PARAM_INDEX, PARAM_OFFSET_PARAM_INDEX},
+                    new Object[]{limitParamIndex, offsetParamIndex});
+        } else if (maxKeyStr == null) {
+            AnnotatorUtils.requireParams(areQueryParamIndexes(limitParamIndex, keyParamIndex),
+                    new String[]{PARAM_LIMIT_PARAM_INDEX, PARAM_KEY_PARAM_INDEX},
+                    new Object[]{limitParamIndex, keyParamIndex});
+        } else {
+            AnnotatorUtils.requireParams(
+                    areQueryParamIndexes(limitParamIndex, keyParamIndex, maxKeyParamIndex),
+                    new String[]{PARAM_LIMIT_PARAM_INDEX, PARAM_KEY_PARAM_INDEX,
+                            PARAM_MAX_KEY_PARAM_INDEX},
+                    new Object[]{limitParamIndex, keyParamIndex, maxKeyParamIndex});
+        }
+        try {
+            lastKey = minKeyStr == null ? Long.MIN_VALUE : Long.parseLong(minKeyStr);
+            if (maxKeyStr != null) {
+                Long.parseLong(maxKeyStr);
+            }
+        } catch (NumberFormatException e) {
+            throw new ResourceInitializationException(e);
+        }
 
         // initialize db connection && prepare statement
         try {
             Class.forName(dbDriverClassName);
             dbConnection = DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
             queryStatement = dbConnection.prepareStatement(query);
+            if (fetchSize > 0) {
+                queryStatement.setFetchSize(fetchSize);
+            }
+            if (maxKeyStr != null) {
+                queryStatement.setLong(maxKeyParamIndex, Long.parseLong(maxKeyStr));
+            }
             initTotalCount();
         } catch (Exception e) {
             closeQuietly(dbConnection);
             throw new ResourceInitializationException(e);
         }
+        if (prefetchBatches > 0) {
+            startPrefetching();
+        }
+    }
+
+    /**
+     * @return true if the given indexes are a permutation of 1..n
+     */
+    private static boolean areQueryParamIndexes(Integer... indexes) {
+        BitSet seen = new BitSet();
+        for (Integer i : indexes) {
+            if (i == null || i < 1 || i > indexes.length || seen.get(i)) {
+                return false;
+            }
+            seen.set(i);
+        }
+        return true;
     }
 
     @Override
     public void close() throws IOException {
+        if (prefetchThread != null) {
+            prefetchThread.interrupt();
+            try {
+                prefetchThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         try {
             queryStatement.close();
         } catch (SQLException e) {
@@ -173,16 +276,88 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
         super.close();
     }
 
+    private void startPrefetching() {
+        prefetchQueue = new ArrayBlockingQueue<>(prefetchBatches);
+        prefetchThread = new ThreadFactoryBuilder()
+                .setNameFormat("jdbc-reader-prefetch-%d").setDaemon(true).build()
+                .newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            List<DbTuple> batchList;
+                            do {
+                                Batch batch;
+                                try {
+                                    batchList = fetchBatch();
+                                    batch = new Batch(batchList, null);
+                                } catch (SQLException | IOException | RuntimeException e) {
+                                    batchList = Collections.emptyList();
+                                    batch = new Batch(null, e);
+                                }
+                                prefetchQueue.put(batch);
+                            } while (batchList.size() == batchSize);
+                        } catch (InterruptedException e) {
+                            // the reader is closed
+                        }
+                    }
+                });
+        prefetchThread.start();
+    }
+
+    private List<DbTuple> nextBatch() {
+        if (prefetchQueue == null) {
+            try {
+                return fetchBatch();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        Batch batch;
+        try {
+            batch = prefetchQueue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (batch.error != null) {
+            throw new IllegalStateException(batch.error);
+        }
+        return batch.tuples;
+    }
+
+    private List<DbTuple> fetchBatch() throws SQLException, IOException {
+        if (keyColumn == null) {
+            List<DbTuple> result = queryBatch(curOffset, batchSize);
+            curOffset += batchSize;
+            return result;
+        } else {
+            return queryBatchAfter(lastKey, batchSize);
+        }
+    }
+
     private List<DbTuple> queryBatch(int offset, int limit) throws SQLException, IOException {
         queryStatement.setInt(offsetParamIndex, offset);
         queryStatement.setInt(limitParamIndex, limit);
+        return executeQuery(limit);
+    }
+
+    private List<DbTuple> queryBatchAfter(long key, int limit) throws SQLException, IOException {
+        queryStatement.setLong(keyParamIndex, key);
+        queryStatement.setInt(limitParamIndex, limit);
+        return executeQuery(limit);
+    }
+
+    private List<DbTuple> executeQuery(int limit) throws SQLException, IOException {
         ResultSet rs = queryStatement.executeQuery();
         try {
-            LinkedList<DbTuple> result = newLinkedList();
+            List<DbTuple> result = new ArrayList<>(limit);
             while (rs.next()) {
                 result.add(toTuple(rs));
+                if (keyColumn != null) {
+                    lastKey = rs.getLong(keyColumn);
+                }
             }
-            return ImmutableList.copyOf(result);
+            return result;
         } finally {
             rs.close();
         }
@@ -248,15 +423,29 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
             return;
         }
         PreparedStatement countStmt = dbConnection.prepareStatement(countQuery);
-        ResultSet rs = countStmt.executeQuery();
-        if (rs.next()) {
-            expectedTotalCount = rs.getInt(1);
-        } else {
-            getLogger().warn("Count query returned empty result set");
+        try {
+            ResultSet rs = countStmt.executeQuery();
+            if (rs.next()) {
+                expectedTotalCount = rs.getInt(1);
+            } else {
+                getLogger().warn("Count query returned empty result set");
+            }
+        } finally {
+            countStmt.close();
+        }
+    }
+
+    private static class Batch {
+        private final List<DbTuple> tuples;
+        private final Exception error;
+
+        Batch(List<DbTuple> tuples, Exception error) {
+            this.tuples = tuples;
+            this.error = error;
         }
     }
 
-    private class DbTuple {
+    private static class DbTuple {
         private final String url;
         private final String text;
         DbTuple(String url, String text) {
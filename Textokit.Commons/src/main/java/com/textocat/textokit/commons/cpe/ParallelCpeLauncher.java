@@ -0,0 +1,205 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.google.common.collect.Lists;
+import org.apache.uima.UIMAException;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.collection.CollectionProcessingEngine;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.collection.StatusCallbackListener;
+import org.apache.uima.collection.metadata.CpeDescription;
+import org.apache.uima.collection.metadata.CpeDescriptorException;
+import org.apache.uima.fit.cpe.CpeBuilder;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.util.XMLInputSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs a collection reader and an analysis engine (usually an aggregate) in a multi-threaded CPE.
+ * <p>
+ * The analysis engine is replicated into each processing unit thread. All replicas are
+ * produced with the same {@link ResourceManager} so heavyweight external resources, e.g.,
+ * a morphological dictionary holder or a PoS-model holder, are loaded once and shared by
+ * threads. The resource manager is also kept between {@link #run()} invocations, e.g., to
+ * sweep thread counts without re-loading resources. Note that the analysis engine
+ * must allow multiple deployment.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class ParallelCpeLauncher {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    // config fields
+    private CollectionReaderDescription readerDescription;
+    private AnalysisEngineDescription aeDescription;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int casPoolSize = -1;
+    private ResourceManager resourceManager;
+    private final List<StatusCallbackListener> listeners = Lists.newArrayList();
+
+    public CollectionReaderDescription getReaderDescription() {
+        return readerDescription;
+    }
+
+    public void setReaderDescription(CollectionReaderDescription readerDescription) {
+        this.readerDescription = readerDescription;
+    }
+
+    public AnalysisEngineDescription getAnalysisEngineDescription() {
+        return aeDescription;
+    }
+
+    public void setAnalysisEngineDescription(AnalysisEngineDescription aeDescription) {
+        this.aeDescription = aeDescription;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount number of processing unit threads, the number of available
+     *                    processors by default
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal thread count: %s", threadCount));
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return the CAS pool size. By default it exceeds the thread count by 2
+     * so the reader can fill CASes while all threads are busy.
+     */
+    public int getCasPoolSize() {
+        return casPoolSize > 0 ? casPoolSize : threadCount + 2;
+    }
+
+    public void setCasPoolSize(int casPoolSize) {
+        this.casPoolSize = casPoolSize;
+    }
+
+    public ResourceManager getResourceManager() {
+        if (resourceManager == null) {
+            resourceManager = UIMAFramework.newDefaultResourceManager();
+        }
+        return resourceManager;
+    }
+
+    public void setResourceManager(ResourceManager resourceManager) {
+        this.resourceManager = resourceManager;
+    }
+
+    public void addStatusCallbackListener(StatusCallbackListener listener) {
+        listeners.add(listener);
+    }
+
+    public CollectionProcessingEngine createCpe(StatusCallbackListener... extraListeners)
+            throws UIMAException, IOException {
+        if (readerDescription == null) {
+            throw new IllegalStateException("Reader description is not set");
+        }
+        if (aeDescription == null) {
+            throw new IllegalStateException("Analysis engine description is not set");
+        }
+        if (getCasPoolSize() < threadCount) {
+            throw new IllegalStateException(String.format(
+                    "CAS pool size %s is less than the thread count %s",
+                    getCasPoolSize(), threadCount));
+        }
+        CpeDescription cpeDesc;
+        try {
+            CpeBuilder cpeBuilder = new CpeBuilder();
+            cpeBuilder.setReader(readerDescription);
+            cpeBuilder.setAnalysisEngine(aeDescription);
+            cpeDesc = cpeBuilder.getCpeDescription();
+            cpeDesc.setProcessingUnitThreadCount(threadCount);
+            cpeDesc.getCpeCasProcessors().setPoolSize(getCasPoolSize());
+        } catch (SAXException | CpeDescriptorException e) {
+            throw new IllegalStateException(e);
+        }
+        CollectionProcessingEngine cpe = UIMAFramework.produceCollectionProcessingEngine(
+                cpeDesc, getResourceManager(), null);
+        for (StatusCallbackListener l : listeners) {
+            cpe.addStatusCallbackListener(l);
+        }
+        for (StatusCallbackListener l : extraListeners) {
+            cpe.addStatusCallbackListener(l);
+        }
+        return cpe;
+    }
+
+    /**
+     * Process the collection and block until the processing is completed.
+     *
+     * @return throughput figures of the run
+     */
+    public ThroughputReport run() throws UIMAException, IOException, InterruptedException {
+        ThroughputReportingListener reportingListener = new ThroughputReportingListener(threadCount);
+        CollectionProcessingEngine cpe = createCpe(reportingListener);
+        log.info("Starting CPE with {} thread(s) and CAS pool of size {}",
+                threadCount, getCasPoolSize());
+        cpe.process();
+        if (!reportingListener.awaitCompletion()) {
+            throw new IllegalStateException("CPE has been aborted");
+        }
+        ThroughputReport report = reportingListener.getReport();
+        log.info("CPE has finished:\n{}", report);
+        return report;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Cli cli = new Cli();
+        new JCommander(cli, args);
+        ParallelCpeLauncher launcher = new ParallelCpeLauncher();
+        launcher.setReaderDescription(UIMAFramework.getXMLParser().parseCollectionReaderDescription(
+                new XMLInputSource(cli.readerDescFile)));
+        launcher.setAnalysisEngineDescription(UIMAFramework.getXMLParser()
+                .parseAnalysisEngineDescription(new XMLInputSource(cli.aeDescFile)));
+        if (cli.threadCount != null) {
+            launcher.setThreadCount(cli.threadCount);
+        }
+        if (cli.casPoolSize != null) {
+            launcher.setCasPoolSize(cli.casPoolSize);
+        }
+        launcher.run();
+    }
+
+    private static class Cli {
+        @Parameter(names = "--reader", required = true)
+        private File readerDescFile;
+        @Parameter(names = "--ae", required = true)
+        private File aeDescFile;
+        @Parameter(names = {"-t", "--threads"})
+        private Integer threadCount;
+        @Parameter(names = "--cas-pool-size")
+        private Integer casPoolSize;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.textocat.textokit.commons.DocumentMetadata;
+import com.textocat.textokit.commons.util.AnnotatorUtils;
+import org.apache.uima.UimaContext;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.component.CasCollectionReader_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+/**
+ * An alternative to {@link FileDirectoryCollectionReader} for large corpora.
+ * <ul>
+ * <li>The directory tree is walked lazily by a background thread, so the reading starts
+ * without listing all files. Entries of each directory are visited in the order of their names.
+ * </li>
+ * <li>Files are read ahead and decoded by a pool of threads. Files larger than
+ * {@link #MAPPING_THRESHOLD} are decoded directly from memory-mapped buffers.</li>
+ * <li>A corpus can be split into {@link #PARAM_SHARD_COUNT} shards of similar total size.
+ * Readers with the same parameters but different {@link #PARAM_SHARD_INDEX}
+ * (in one or several JVMs) read disjoint sets of files that cover the corpus.</li>
+ * </ul>
+ * Sharding follows the idea of {@link com.textocat.textokit.commons.util.CorpusUtils#partitionCorpusByFileSize}:
+ * each file is put into the least bucket. Since the files are not sorted by size before,
+ * every reader walks the whole tree (reading only file attributes out of its shard) to
+ * reproduce the same assignment.
+ *
+ * @author Rinat Gareev
+ */
+public class ParallelDirectoryCollectionReader extends CasCollectionReader_ImplBase {
+
+    public static final String PARAM_DIRECTORY_PATH = "directoryPath";
+    public static final String PARAM_FILE_EXTENSION = "fileExtension";
+    public static final String PARAM_ENCODING = "encoding";
+    public static final String PARAM_SET_RELATIVE_URI = "setRelativeURI";
+    public static final String PARAM_SHARD_COUNT = "shardCount";
+    public static final String PARAM_SHARD_INDEX = "shardIndex";
+    public static final String PARAM_READ_AHEAD_THREADS = "readAheadThreads";
+    public static final String PARAM_READ_AHEAD_SIZE = "readAheadSize";
+
+    /**
+     * files of this size in bytes and larger are memory-mapped
+     */
+    public static final long MAPPING_THRESHOLD = 64 * 1024;
+
+    // config
+    @ConfigurationParameter(name = PARAM_DIRECTORY_PATH, mandatory = true)
+    private File directory;
+    @ConfigurationParameter(name = PARAM_FILE_EXTENSION, defaultValue = "txt", mandatory = false)
+    private String fileExtension;
+    @ConfigurationParameter(name = PARAM_ENCODING, defaultValue = "utf-8", mandatory = false)
+    private String encoding;
+    @ConfigurationParameter(name = PARAM_SET_RELATIVE_URI, defaultValue = "true", mandatory = false)
+    private boolean setRelativeURI;
+    @ConfigurationParameter(name = PARAM_SHARD_COUNT, defaultValue = "1", mandatory = false)
+    private int shardCount;
+    @ConfigurationParameter(name = PARAM_SHARD_INDEX, defaultValue = "0", mandatory = false)
+    private int shardIndex;
+    @ConfigurationParameter(name = PARAM_READ_AHEAD_THREADS, defaultValue = "2", mandatory = false)
+    private int readAheadThreads;
+    /**
+     * max number of documents that are read ahead
+     */
+    @ConfigurationParameter(name = PARAM_READ_AHEAD_SIZE, defaultValue = "16", mandatory = false)
+    private int readAheadSize;
+    // derived
+    private Charset charset;
+    private ExecutorService decodingExecutor;
+    private Thread walkerThread;
+    // futures of documents in the walking order, the END future terminates the queue
+    private BlockingQueue<Future<Document>> readAheadQueue;
+    // state
+    private Document nextDoc;
+    private int readCount;
+
+    private static final Document END = new Document(null, null);
+
+    public static CollectionReaderDescription createDescription(File inputDir)
+            throws ResourceInitializationException {
+        TypeSystemDescription inputTSD = createTypeSystemDescription(
+                "com.textocat.textokit.commons.Commons-TypeSystem");
+        return CollectionReaderFactory.createReaderDescription(
+                ParallelDirectoryCollectionReader.class,
+                inputTSD,
+                PARAM_DIRECTORY_PATH, inputDir);
+    }
+
+    @Override
+    public void initialize(UimaContext ctx) throws ResourceInitializationException {
+        super.initialize(ctx);
+        if (!directory.isDirectory()) {
+            throw new IllegalStateException(String.format(
+                    "%s is not existing file directory", directory));
+        }
+        AnnotatorUtils.requireParam(shardCount > 0, PARAM_SHARD_COUNT, shardCount);
+        AnnotatorUtils.requireParam(shardIndex >= 0 && shardIndex < shardCount,
+                PARAM_SHARD_INDEX, shardIndex);
+        AnnotatorUtils.requireParam(readAheadThreads > 0, PARAM_READ_AHEAD_THREADS, readAheadThreads);
+        AnnotatorUtils.requireParam(readAheadSize > 0, PARAM_READ_AHEAD_SIZE, readAheadSize);
+        charset = Charset.forName(encoding);
+        readAheadQueue = new ArrayBlockingQueue<>(readAheadSize);
+        decodingExecutor = Executors.newFixedThreadPool(readAheadThreads, new ThreadFactoryBuilder()
+                .setNameFormat("directory-reader-decoder-%d").setDaemon(true).build());
+        walkerThread = new ThreadFactoryBuilder()
+                .setNameFormat("directory-reader-walker-%d").setDaemon(true).build()
+                .newThread(new Walker());
+        walkerThread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException, CollectionException {
+        if (nextDoc == null) {
+            nextDoc = takeNext();
+        }
+        return nextDoc != END;
+    }
+
+    private Document takeNext() throws IOException, CollectionException {
+        try {
+            Future<Document> docFuture = readAheadQueue.take();
+            if (docFuture.get() == END) {
+                // keep END for subsequent calls
+                readAheadQueue.add(docFuture);
+            }
+            return docFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new CollectionException(e.getCause());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getNext(CAS aCAS) throws IOException, CollectionException {
+        if (!hasNext()) {
+            throw new CollectionException(new NoSuchElementException());
+        }
+        Document doc = nextDoc;
+        nextDoc = null;
+        readCount++;
+        aCAS.setDocumentText(doc.text);
+        try {
+            DocumentMetadata docMeta = new DocumentMetadata(aCAS.getJCas());
+            docMeta.setSourceUri(getURIForMetadata(doc.file).toString());
+            docMeta.addToIndexes();
+        } catch (CASException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI getURIForMetadata(Path p) {
+        // File URIs are compatible with FileDirectoryCollectionReader
+        URI fURI = p.toFile().toURI();
+        if (setRelativeURI) {
+            URI dirURI = directory.toURI();
+            return dirURI.relativize(fURI);
+        } else {
+            return fURI;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Progress[] getProgress() {
+        // the total is unknown until the walk is over
+        return new Progress[]{
+                new ProgressImpl(readCount, -1, Progress.ENTITIES)
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        walkerThread.interrupt();
+        decodingExecutor.shutdownNow();
+        super.close();
+    }
+
+    private String decode(Path file, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large", file));
+        }
+        ByteBuffer bytes;
+        if (size < MAPPING_THRESHOLD) {
+            bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        } else {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                bytes = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+        }
+        // the same policy as String constructors use
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes).toString();
+    }
+
+    private class Walker implements Runnable {
+        // total sizes of shards files assigned so far
+        private final long[] shardSizes = new long[shardCount];
+        private final String suffix = fileExtension;
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    walk(directory.toPath());
+                } catch (IOException | RuntimeException e) {
+                    readAheadQueue.put(Futures.<Document>immediateFailedFuture(e));
+                }
+                readAheadQueue.put(Futures.immediateFuture(END));
+            } catch (InterruptedException e) {
+                // the reader is closed
+            }
+        }
+
+        private void walk(Path dir) throws IOException, InterruptedException {
+            List<Path> entries = Lists.newArrayList();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    entries.add(p);
+                }
+            }
+            // make the order and thus the sharding reproducible
+            Collections.sort(entries);
+            for (final Path p : entries) {
+                final BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                if (attrs.isDirectory()) {
+                    walk(p);
+                } else if (attrs.isRegularFile() && p.getFileName().toString().endsWith(suffix)
+                        && assignShard(attrs.size()) == shardIndex) {
+                    readAheadQueue.put(decodingExecutor.submit(new Callable<Document>() {
+                        @Override
+                        public Document call() throws Exception {
+                            return new Document(p, decode(p, attrs.size()));
+                        }
+                    }));
+                }
+            }
+        }
+
+        private int assignShard(long size) {
+            int least = 0;
+            for (int i = 1; i < shardSizes.length; i++) {
+                if (shardSizes[i] < shardSizes[least]) {
+                    least = i;
+                }
+            }
+            shardSizes[least] += size;
+            return least;
+        }
+    }
+
+    private static class Document {
+        private final Path file;
+        private final String text;
+
+        Document(Path file, String text) {
+            this.file = file;
+            this.text = text;
+        }
+    }
+}
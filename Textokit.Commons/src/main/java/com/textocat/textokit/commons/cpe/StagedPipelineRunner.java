@@ -0,0 +1,345 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.uima.UIMAException;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.util.CasPool;
+import org.apache.uima.util.ProcessTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs a collection reader, an analysis engine and an optional consumer as three
+ * overlapping stages, so blocking I/O of readers and writers, e.g.,
+ * {@link JdbcCollectionReader}, {@link FileDirectoryCollectionReader} or
+ * {@link com.textocat.textokit.commons.consumer.XmiFileWriter}, does not leave analysis threads idle.
+ * <ul>
+ * <li>The reader stage runs in the thread that invoked {@link #run()}.</li>
+ * <li>The analysis stage runs in a pool of threads, each document is processed by one of
+ * pre-initialized analysis engine replicas.</li>
+ * <li>The consumer stage runs in its own pool of threads with consumer replicas.</li>
+ * </ul>
+ * All CASes come from a fixed-size pool. The reader blocks when every CAS is in progress,
+ * so the pool size bounds the memory and provides back-pressure. All replicas are produced
+ * with the same {@link ResourceManager} to share external resources.
+ * <p>
+ * Stage threads are created by a configurable {@link ThreadFactory}. When running on a JVM
+ * that provides lightweight (virtual) threads, a factory of such threads can be set to run
+ * many I/O-bound consumer replicas cheaply.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class StagedPipelineRunner {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    // config fields
+    private CollectionReaderDescription readerDescription;
+    private AnalysisEngineDescription aeDescription;
+    private AnalysisEngineDescription consumerDescription;
+    private int analysisThreadCount = Runtime.getRuntime().availableProcessors();
+    private int consumerThreadCount = 1;
+    private int casPoolSize = -1;
+    private ResourceManager resourceManager;
+    private ThreadFactory threadFactory;
+
+    public CollectionReaderDescription getReaderDescription() {
+        return readerDescription;
+    }
+
+    public void setReaderDescription(CollectionReaderDescription readerDescription) {
+        this.readerDescription = readerDescription;
+    }
+
+    public AnalysisEngineDescription getAnalysisEngineDescription() {
+        return aeDescription;
+    }
+
+    public void setAnalysisEngineDescription(AnalysisEngineDescription aeDescription) {
+        this.aeDescription = aeDescription;
+    }
+
+    public AnalysisEngineDescription getConsumerDescription() {
+        return consumerDescription;
+    }
+
+    /**
+     * @param consumerDescription an analysis engine that writes results, may be null
+     */
+    public void setConsumerDescription(AnalysisEngineDescription consumerDescription) {
+        this.consumerDescription = consumerDescription;
+    }
+
+    public int getAnalysisThreadCount() {
+        return analysisThreadCount;
+    }
+
+    /**
+     * @param analysisThreadCount number of analysis engine replicas and threads,
+     *                            the number of available processors by default
+     */
+    public void setAnalysisThreadCount(int analysisThreadCount) {
+        checkThreadCount(analysisThreadCount);
+        this.analysisThreadCount = analysisThreadCount;
+    }
+
+    public int getConsumerThreadCount() {
+        return consumerThreadCount;
+    }
+
+    /**
+     * @param consumerThreadCount number of consumer replicas and threads, 1 by default.
+     *                            Note that consumers must tolerate concurrent replicas
+     *                            if the value is greater than 1.
+     */
+    public void setConsumerThreadCount(int consumerThreadCount) {
+        checkThreadCount(consumerThreadCount);
+        this.consumerThreadCount = consumerThreadCount;
+    }
+
+    /**
+     * @return the CAS pool size. By default it is twice the analysis thread count
+     * plus the consumer thread count.
+     */
+    public int getCasPoolSize() {
+        if (casPoolSize > 0) {
+            return casPoolSize;
+        }
+        return analysisThreadCount * 2 + (consumerDescription == null ? 0 : consumerThreadCount);
+    }
+
+    public void setCasPoolSize(int casPoolSize) {
+        this.casPoolSize = casPoolSize;
+    }
+
+    public ResourceManager getResourceManager() {
+        if (resourceManager == null) {
+            resourceManager = UIMAFramework.newDefaultResourceManager();
+        }
+        return resourceManager;
+    }
+
+    public void setResourceManager(ResourceManager resourceManager) {
+        this.resourceManager = resourceManager;
+    }
+
+    public ThreadFactory getThreadFactory() {
+        if (threadFactory == null) {
+            threadFactory = new ThreadFactoryBuilder()
+                    .setNameFormat("pipeline-stage-%d").setDaemon(true).build();
+        }
+        return threadFactory;
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    private static void checkThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal thread count: %s", threadCount));
+        }
+    }
+
+    /**
+     * Process the collection and block until all documents are processed.
+     *
+     * @return throughput figures of the run
+     */
+    public ThroughputReport run() throws UIMAException, IOException {
+        if (readerDescription == null) {
+            throw new IllegalStateException("Reader description is not set");
+        }
+        if (aeDescription == null) {
+            throw new IllegalStateException("Analysis engine description is not set");
+        }
+        ThroughputReportingListener stats = new ThroughputReportingListener(analysisThreadCount);
+        ResourceManager rm = getResourceManager();
+        CollectionReader reader = UIMAFramework.produceCollectionReader(readerDescription, rm, null);
+        BlockingQueue<AnalysisEngine> engines = produceReplicas(aeDescription, analysisThreadCount);
+        BlockingQueue<AnalysisEngine> consumers = consumerDescription == null ? null
+                : produceReplicas(consumerDescription, consumerThreadCount);
+        List<ProcessingResourceMetaData> metadata = Lists.newArrayList();
+        metadata.add(reader.getProcessingResourceMetaData());
+        metadata.add(engines.peek().getProcessingResourceMetaData());
+        if (consumers != null) {
+            metadata.add(consumers.peek().getProcessingResourceMetaData());
+        }
+        int poolSize = getCasPoolSize();
+        CasPool casPool = new CasPool(poolSize, metadata, null, rm);
+        ExecutorService analysisExecutor = Executors.newFixedThreadPool(
+                analysisThreadCount, getThreadFactory());
+        ExecutorService consumerExecutor = consumers == null ? null
+                : Executors.newFixedThreadPool(consumerThreadCount, getThreadFactory());
+        try {
+            CAS cas = casPool.getCas(0);
+            try {
+                reader.typeSystemInit(cas.getTypeSystem());
+            } finally {
+                casPool.releaseCas(cas);
+            }
+            stats.initializationComplete();
+            log.info("Starting pipeline with {} analysis thread(s), {} consumer thread(s) " +
+                            "and CAS pool of size {}", analysisThreadCount,
+                    consumers == null ? 0 : consumerThreadCount, poolSize);
+            try {
+                while (reader.hasNext()) {
+                    // blocks while all CASes are in progress
+                    cas = casPool.getCas(0);
+                    try {
+                        reader.getNext(cas);
+                    } catch (UIMAException | IOException | RuntimeException e) {
+                        casPool.releaseCas(cas);
+                        throw e;
+                    }
+                    analysisExecutor.execute(new AnalysisTask(cas, casPool, engines,
+                            consumerExecutor, consumers, stats));
+                }
+            } finally {
+                // wait for documents in progress
+                List<CAS> allCases = Lists.newArrayListWithExpectedSize(poolSize);
+                for (int i = 0; i < poolSize; i++) {
+                    allCases.add(casPool.getCas(0));
+                }
+                for (CAS c : allCases) {
+                    casPool.releaseCas(c);
+                }
+            }
+            stats.collectionProcessComplete();
+        } finally {
+            analysisExecutor.shutdownNow();
+            if (consumerExecutor != null) {
+                consumerExecutor.shutdownNow();
+            }
+            // analysis engines may also write end-of-collection output, e.g., statistics
+            collectionProcessComplete(engines);
+            destroy(engines);
+            if (consumers != null) {
+                collectionProcessComplete(consumers);
+                destroy(consumers);
+            }
+            reader.close();
+            reader.destroy();
+        }
+        ThroughputReport report = stats.getReport();
+        log.info("Pipeline has finished:\n{}", report);
+        return report;
+    }
+
+    private BlockingQueue<AnalysisEngine> produceReplicas(AnalysisEngineDescription desc, int count)
+            throws UIMAException {
+        BlockingQueue<AnalysisEngine> result = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(UIMAFramework.produceAnalysisEngine(desc, getResourceManager(), null));
+        }
+        return result;
+    }
+
+    private void collectionProcessComplete(Iterable<AnalysisEngine> replicas) {
+        for (AnalysisEngine ae : replicas) {
+            try {
+                ae.collectionProcessComplete();
+            } catch (Exception e) {
+                log.error(String.format("collectionProcessComplete of %s has failed",
+                        ae.getMetaData().getName()), e);
+            }
+        }
+    }
+
+    private static void destroy(Iterable<AnalysisEngine> replicas) {
+        for (AnalysisEngine ae : replicas) {
+            ae.destroy();
+        }
+    }
+
+    private static class AnalysisTask implements Runnable {
+        private final CAS cas;
+        private final CasPool casPool;
+        private final BlockingQueue<AnalysisEngine> engines;
+        private final ExecutorService consumerExecutor;
+        private final BlockingQueue<AnalysisEngine> consumers;
+        private final ThroughputReportingListener stats;
+
+        AnalysisTask(CAS cas, CasPool casPool, BlockingQueue<AnalysisEngine> engines,
+                     ExecutorService consumerExecutor, BlockingQueue<AnalysisEngine> consumers,
+                     ThroughputReportingListener stats) {
+            this.cas = cas;
+            this.casPool = casPool;
+            this.engines = engines;
+            this.consumerExecutor = consumerExecutor;
+            this.consumers = consumers;
+            this.stats = stats;
+        }
+
+        @Override
+        public void run() {
+            boolean passed = false;
+            try {
+                final ProcessTrace analysisTrace = process(engines, cas);
+                if (consumers == null) {
+                    stats.documentProcessed(cas, analysisTrace);
+                } else {
+                    consumerExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                stats.documentProcessed(cas, analysisTrace, process(consumers, cas));
+                            } catch (Exception e) {
+                                stats.documentFailed(cas, e);
+                            } finally {
+                                casPool.releaseCas(cas);
+                            }
+                        }
+                    });
+                    passed = true;
+                }
+            } catch (Exception e) {
+                stats.documentFailed(cas, e);
+            } finally {
+                if (!passed) {
+                    casPool.releaseCas(cas);
+                }
+            }
+        }
+
+        private static ProcessTrace process(BlockingQueue<AnalysisEngine> replicas, CAS cas)
+                throws Exception {
+            // there are as many replicas as threads so this never blocks
+            AnalysisEngine ae = replicas.take();
+            try {
+                return ae.process(cas);
+            } finally {
+                replicas.add(ae);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * Throughput figures of a collection processing run.
+ *
+ * @author Rinat Gareev
+ */
+public class ThroughputReport {
+
+    private final int threadCount;
+    private final long documentCount;
+    private final long charCount;
+    private final long failedDocumentCount;
+    private final long initTimeMs;
+    private final long processingTimeMs;
+    private final Map<String, Long> annotatorTimesMs;
+
+    public ThroughputReport(int threadCount, long documentCount, long charCount,
+                            long failedDocumentCount, long initTimeMs, long processingTimeMs,
+                            Map<String, Long> annotatorTimesMs) {
+        this.threadCount = threadCount;
+        this.documentCount = documentCount;
+        this.charCount = charCount;
+        this.failedDocumentCount = failedDocumentCount;
+        this.initTimeMs = initTimeMs;
+        this.processingTimeMs = processingTimeMs;
+        this.annotatorTimesMs = ImmutableMap.copyOf(annotatorTimesMs);
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    public long getCharCount() {
+        return charCount;
+    }
+
+    public long getFailedDocumentCount() {
+        return failedDocumentCount;
+    }
+
+    public long getInitTimeMs() {
+        return initTimeMs;
+    }
+
+    /**
+     * @return wall time of the processing excluding the initialization
+     */
+    public long getProcessingTimeMs() {
+        return processingTimeMs;
+    }
+
+    public double getDocsPerSecond() {
+        return perSecond(documentCount);
+    }
+
+    public double getCharsPerSecond() {
+        return perSecond(charCount);
+    }
+
+    /**
+     * @return analysis time summed over all documents and threads for each component name
+     * in the order components have been met. Times of an aggregate include times of its delegates.
+     */
+    public Map<String, Long> getAnnotatorTimesMs() {
+        return annotatorTimesMs;
+    }
+
+    private double perSecond(long count) {
+        return processingTimeMs == 0 ? 0 : count * 1000.0 / processingTimeMs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Threads: %s%n", threadCount));
+        sb.append(String.format("Documents: %s (failed: %s), characters: %s%n",
+                documentCount, failedDocumentCount, charCount));
+        sb.append(String.format("Initialization time: %s ms, processing time: %s ms%n",
+                initTimeMs, processingTimeMs));
+        sb.append(String.format("Throughput: %.2f docs/sec, %.0f chars/sec%n",
+                getDocsPerSecond(), getCharsPerSecond()));
+        for (Map.Entry<String, Long> e : annotatorTimesMs.entrySet()) {
+            sb.append(String.format("  %s: %s ms%n", e.getKey(), e.getValue()));
+        }
+        return sb.toString();
+    }
+}
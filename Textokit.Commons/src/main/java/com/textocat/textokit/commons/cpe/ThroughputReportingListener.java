@@ -0,0 +1,140 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.Maps;
+import com.textocat.textokit.commons.util.DocumentUtils;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.EntityProcessStatus;
+import org.apache.uima.util.ProcessTrace;
+import org.apache.uima.util.ProcessTraceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Collects throughput figures of a CPE run. Unlike {@link ReportingStatusCallbackListener}
+ * it is safe to use with several processing unit threads. It is also used by
+ * {@link StagedPipelineRunner} that does not run a CPE.
+ *
+ * @author Rinat Gareev
+ */
+public class ThroughputReportingListener extends StatusCallbackListenerAdapter {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final int threadCount;
+    private final CountDownLatch completion = new CountDownLatch(1);
+    private final long startTime = System.currentTimeMillis();
+    private volatile long initCompleteTime;
+    private volatile long completeTime;
+    private volatile boolean aborted;
+    // guarded by this
+    private long documentCount;
+    private long charCount;
+    private long failedDocumentCount;
+    private final Map<String, Long> annotatorTimes = Maps.newLinkedHashMap();
+
+    /**
+     * @param threadCount number of processing unit threads of the CPE, used in the report only
+     */
+    public ThroughputReportingListener(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    @Override
+    public void initializationComplete() {
+        initCompleteTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void entityProcessComplete(CAS aCas, EntityProcessStatus aStatus) {
+        if (aStatus.isException()) {
+            documentFailed(aCas, aStatus.getExceptions());
+        } else {
+            documentProcessed(aCas, aStatus.getProcessTrace());
+        }
+    }
+
+    void documentFailed(CAS aCas, Object cause) {
+        log.error("During the processing of {}: {}", DocumentUtils.getDocumentUri(aCas), cause);
+        synchronized (this) {
+            failedDocumentCount++;
+        }
+    }
+
+    void documentProcessed(CAS aCas, ProcessTrace... traces) {
+        String docText = aCas.getDocumentText();
+        synchronized (this) {
+            documentCount++;
+            if (docText != null) {
+                charCount += docText.length();
+            }
+            for (ProcessTrace trace : traces) {
+                if (trace != null) {
+                    for (ProcessTraceEvent ev : trace.getEvents()) {
+                        addAnalysisTimes(ev);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addAnalysisTimes(ProcessTraceEvent ev) {
+        // the CPM reports CAS processor events of type 'Analysis',
+        // aggregates created by uimaFIT may have no name
+        if (ProcessTraceEvent.ANALYSIS.equalsIgnoreCase(ev.getType())
+                && ev.getComponentName() != null) {
+            Long time = annotatorTimes.get(ev.getComponentName());
+            annotatorTimes.put(ev.getComponentName(), (time == null ? 0 : time) + ev.getDuration());
+        }
+        for (ProcessTraceEvent subEv : ev.getSubEvents()) {
+            addAnalysisTimes(subEv);
+        }
+    }
+
+    @Override
+    public void collectionProcessComplete() {
+        completeTime = System.currentTimeMillis();
+        completion.countDown();
+    }
+
+    @Override
+    public void aborted() {
+        aborted = true;
+        completeTime = System.currentTimeMillis();
+        completion.countDown();
+    }
+
+    /**
+     * Block until the CPE completes or aborts.
+     *
+     * @return false if the CPE has been aborted
+     */
+    public boolean awaitCompletion() throws InterruptedException {
+        completion.await();
+        return !aborted;
+    }
+
+    public synchronized ThroughputReport getReport() {
+        long initEnd = initCompleteTime == 0 ? startTime : initCompleteTime;
+        long end = completeTime == 0 ? System.currentTimeMillis() : completeTime;
+        return new ThroughputReport(threadCount, documentCount, charCount, failedDocumentCount,
+                initEnd - startTime, end - initEnd, annotatorTimes);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.io;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes CASes in the compressed binary form of UIMA (form 6).
+ * Compared with XMI it is several times smaller and faster to read and write,
+ * but a CAS can be read only into a CAS with the same type system. The type system is not
+ * written into the output, so a reader must obtain it in the same way as the writer did,
+ * e.g., from the same type system descriptors.
+ * <p>
+ * The form 6 output can be additionally wrapped into a Deflate stream.
+ * {@link #deserialize(InputStream, CAS)} detects whether an input is deflated.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class BinaryCasUtils {
+
+    public static final String BINARY_CAS_FILE_EXTENSION = "bcas";
+
+    // a binary CAS starts with these bytes in any byte order
+    private static final byte[] UIMA_HEADER = {'U', 'I', 'M', 'A'};
+    private static final byte[] UIMA_HEADER_REVERSED = {'A', 'M', 'I', 'U'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BinaryCasUtils() {
+    }
+
+    /**
+     * @param cas     a CAS to write
+     * @param out     a stream to write into, it is not closed by this method
+     * @param deflate whether to wrap the output into a Deflate stream
+     */
+    public static void serialize(CAS cas, OutputStream out, boolean deflate) throws IOException {
+        if (deflate) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+                serializeForm6(cas, dos);
+                dos.finish();
+            } finally {
+                deflater.end();
+            }
+        } else {
+            OutputStream bos = new BufferedOutputStream(out, BUFFER_SIZE);
+            serializeForm6(cas, bos);
+            bos.flush();
+        }
+        out.flush();
+    }
+
+    /**
+     * @param in  a stream in the format written by {@link #serialize(CAS, OutputStream, boolean)},
+     *            it is not closed by this method
+     * @param cas a CAS to fill, it must have the type system of the serialized CAS.
+     *            Types and features are decoded by their codes, so the result is
+     *            undefined if the type systems differ.
+     */
+    public static void deserialize(InputStream in, CAS cas) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(in, BUFFER_SIZE);
+        InputStream casIn = bis;
+        if (!startsWithUimaHeader(bis)) {
+            casIn = new BufferedInputStream(new InflaterInputStream(bis), BUFFER_SIZE);
+        }
+        Serialization.deserializeCAS(cas, casIn);
+    }
+
+    public static void serialize(CAS cas, File outFile, boolean deflate) throws IOException {
+        try (OutputStream out = new FileOutputStream(outFile)) {
+            serialize(cas, out, deflate);
+        }
+    }
+
+    public static void deserialize(File inFile, CAS cas) throws IOException {
+        try (InputStream in = new FileInputStream(inFile)) {
+            deserialize(in, cas);
+        }
+    }
+
+    // The 2-arg serializeWithCompression writes form 4, the target type system argument selects form 6.
+    // It is the type system of the CAS itself, so no types or features are filtered out.
+    private static void serializeForm6(CAS cas, OutputStream out) throws IOException {
+        try {
+            Serialization.serializeWithCompression(cas, out, cas.getTypeSystem());
+        } catch (ResourceInitializationException e) {
+            // is thrown on type system incompatibility that is not possible here
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean startsWithUimaHeader(BufferedInputStream in) throws IOException {
+        in.mark(UIMA_HEADER.length);
+        try {
+            byte[] header = new byte[UIMA_HEADER.length];
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+            return Arrays.equals(header, UIMA_HEADER)
+                    || Arrays.equals(header, UIMA_HEADER_REVERSED);
+        } finally {
+            in.reset();
+        }
+    }
+}
@@ -18,10 +18,16 @@
 
 package com.textocat.textokit.commons.util;
 
+import java.io.Closeable;
+
 /**
+ * A resource with the {@link CacheKey} that retains it in a cache. The key must be kept reachable
+ * as long as the resource is used. If the key is a {@link ResourceTicket}, {@link #close()}
+ * releases the resource explicitly.
+ *
  * @author Rinat Gareev
  */
-public class CachedResourceTuple<R> {
+public class CachedResourceTuple<R> implements Closeable {
 
     private final CacheKey cacheKey;
     private final R resource;
@@ -38,4 +44,15 @@ public class CachedResourceTuple<R> {
     public R getResource() {
         return resource;
     }
+
+    /**
+     * Close the cache key if it is a {@link ResourceTicket}, otherwise do nothing.
+     * The resource must not be used after this.
+     */
+    @Override
+    public void close() {
+        if (cacheKey instanceof ResourceTicket) {
+            ((ResourceTicket) cacheKey).close();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,450 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * A JVM-wide registry of heavy read-only resources, e.g., dictionaries and models, that are shared
+ * by pipelines and threads.
+ * <p>
+ * A resource is identified by a key compared by {@code equals}. The first
+ * {@link #acquire(Object, Loader)} of a key loads the resource in the calling thread, concurrent
+ * acquisitions of the same key wait for this load instead of starting their own. A failed load is
+ * not remembered, so the next acquisition tries again.
+ * </p>
+ * <p>
+ * Each acquisition returns a {@link Ticket}. A resource is strongly held by the registry until all
+ * its tickets are closed. A ticket that becomes unreachable without being closed is released after
+ * the garbage collector clears it. Thus a holder that lacks a lifecycle callback, like
+ * {@link org.apache.uima.resource.SharedResourceObject}, may just keep its ticket in a field.
+ * Such a holder should mark the ticket by {@link Ticket#releaseOnGc()}, otherwise its release
+ * is reported as a leak.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class SharedResourceRegistry {
+
+    private static final SharedResourceRegistry instance = new SharedResourceRegistry();
+
+    public static SharedResourceRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Loads a resource on the first acquisition of its key.
+     *
+     * @param <R> resource type
+     */
+    public static abstract class Loader<R> {
+
+        public abstract R load() throws Exception;
+
+        /**
+         * @param resource the loaded resource
+         * @return the number of bytes retained by the resource, or -1 to estimate it by the growth of
+         * used heap during {@link #load()}. The estimate is rough, especially when several resources
+         * are loaded concurrently.
+         */
+        public long getRetainedSize(R resource) {
+            return -1;
+        }
+
+        /**
+         * It is called concurrently with {@link #load()}.
+         *
+         * @return the loaded fraction of the resource from 0 to 1, or -1 if it is not tracked
+         */
+        public double getProgress() {
+            return -1;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    // guarded by itself
+    private final Map<Object, Entry> entries = Maps.newHashMap();
+    // guarded by entries
+    private final Set<TicketRef> liveTickets = Sets.newHashSet();
+    private final ReferenceQueue<Ticket<?>> staleTickets = new ReferenceQueue<Ticket<?>>();
+    // metrics
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong leakedTicketCount = new AtomicLong();
+
+    SharedResourceRegistry() {
+    }
+
+    /**
+     * Get the resource with the given key, loading it if the registry does not hold it yet.
+     *
+     * @param key    resource key. It must identify the resource type as well, as a resource is returned
+     *               to all acquirers of the key.
+     * @param loader used only if the resource must be loaded
+     * @param <R>    resource type
+     * @return a new ticket of the resource
+     * @throws Exception thrown by the loader, in this or in a concurrent acquisition of the same key
+     */
+    public <R> Ticket<R> acquire(Object key, Loader<R> loader) throws Exception {
+        Preconditions.checkNotNull(key, "key");
+        Preconditions.checkNotNull(loader, "loader");
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            expungeStaleTickets();
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, loader);
+                entries.put(key, entry);
+                owner = true;
+            }
+            entry.refCount++;
+        }
+        if (owner) {
+            entry.loadTask.run();
+        }
+        Object resource;
+        try {
+            resource = entry.loadTask.get();
+        } catch (ExecutionException e) {
+            synchronized (entries) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+                entry.refCount--;
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        } catch (InterruptedException e) {
+            release(entry);
+            throw e;
+        }
+        if (!owner) {
+            reuseCount.incrementAndGet();
+            log.info("Reusing {}", key);
+        }
+        @SuppressWarnings("unchecked")
+        R result = (R) resource;
+        return newTicket(entry, result);
+    }
+
+    /**
+     * @return metrics of resources held by this registry
+     */
+    public List<ResourceStats> getStats() {
+        ImmutableList.Builder<ResourceStats> result = ImmutableList.builder();
+        synchronized (entries) {
+            expungeStaleTickets();
+            for (Entry entry : entries.values()) {
+                result.add(new ResourceStats(entry.key, entry.refCount, entry.loadTimeMillis,
+                        entry.retainedBytes, entry.getProgress()));
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * @return the number of successful loads performed by this registry
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * @return the number of acquisitions that got an already loaded (or loading) resource
+     */
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    /**
+     * @return the number of failed loads
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return the number of tickets released by the garbage collector instead of {@link Ticket#close()},
+     * except the ones marked by {@link Ticket#releaseOnGc()}
+     */
+    public long getLeakedTicketCount() {
+        return leakedTicketCount.get();
+    }
+
+    private <R> Ticket<R> newTicket(Entry entry, R resource) {
+        Ticket<R> ticket = new Ticket<R>(entry, resource);
+        synchronized (entries) {
+            liveTickets.add(ticket.ref);
+        }
+        return ticket;
+    }
+
+    // must be called under entries lock
+    private void expungeStaleTickets() {
+        TicketRef ref;
+        while ((ref = (TicketRef) staleTickets.poll()) != null) {
+            if (liveTickets.remove(ref)) {
+                if (ref.releaseOnGc) {
+                    log.info("A ticket of {} has been released by the garbage collector",
+                            ref.entry.key);
+                } else {
+                    leakedTicketCount.incrementAndGet();
+                    log.warn("A ticket of {} has not been closed before it became unreachable",
+                            ref.entry.key);
+                }
+                decrementRefCount(ref.entry);
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        synchronized (entries) {
+            decrementRefCount(entry);
+        }
+    }
+
+    // must be called under entries lock
+    private void decrementRefCount(Entry entry) {
+        entry.refCount--;
+        if (entry.refCount == 0 && entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            log.info("{} has been released", entry.key);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static final long MB = 1024 * 1024;
+
+    private class Entry {
+        private final Object key;
+        private final FutureTask<Object> loadTask;
+        // guarded by entries
+        private int refCount;
+        // written by the loading thread before loadTask completes
+        private volatile long loadTimeMillis = -1;
+        private volatile long retainedBytes = -1;
+        // cleared when loading is finished
+        private volatile Loader<?> loader;
+
+        private <R> Entry(final Object key, final Loader<R> loader) {
+            this.key = key;
+            this.loader = loader;
+            this.loadTask = new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    log.info("About to load {}...", key);
+                    long usedHeapBefore = usedHeap();
+                    long timeBefore = currentTimeMillis();
+                    R resource;
+                    try {
+                        resource = loader.load();
+                        if (resource == null) {
+                            throw new IllegalStateException(String.format(
+                                    "%s returned null for %s", loader.getClass().getName(), key));
+                        }
+                    } catch (Exception | Error e) {
+                        failureCount.incrementAndGet();
+                        Entry.this.loader = null;
+                        throw e;
+                    }
+                    loadTimeMillis = currentTimeMillis() - timeBefore;
+                    long size = loader.getRetainedSize(resource);
+                    retainedBytes = size >= 0 ? size : Math.max(0, usedHeap() - usedHeapBefore);
+                    Entry.this.loader = null;
+                    loadCount.incrementAndGet();
+                    log.info("Loaded {} in {} ms, it retains ~{} MB",
+                            key, loadTimeMillis, retainedBytes / MB);
+                    return resource;
+                }
+            });
+        }
+
+        private double getProgress() {
+            if (loadTimeMillis >= 0) {
+                return 1;
+            }
+            Loader<?> loader = this.loader;
+            return loader == null ? -1 : loader.getProgress();
+        }
+    }
+
+    private class TicketRef extends WeakReference<Ticket<?>> {
+        private final Entry entry;
+        private volatile boolean releaseOnGc;
+
+        private TicketRef(Ticket<?> ticket, Entry entry) {
+            super(ticket, staleTickets);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * A handle of an acquired resource. The resource must not be used after the ticket is closed.
+     * A ticket also serves as a {@link CacheKey} of the resource.
+     *
+     * @param <R> resource type
+     */
+    public final class Ticket<R> implements ResourceTicket, ResourceTicketProducer, CacheKey {
+        private final R resource;
+        private final TicketRef ref;
+        private volatile boolean closed;
+
+        private Ticket(Entry entry, R resource) {
+            this.resource = resource;
+            this.ref = new TicketRef(this, entry);
+        }
+
+        public R getResource() {
+            return resource;
+        }
+
+        /**
+         * Declare that this ticket is intended to be released by the garbage collector, e.g.,
+         * because its holder has no lifecycle callback to close it. Such a release is not
+         * counted as a leak.
+         *
+         * @return this ticket
+         */
+        public Ticket<R> releaseOnGc() {
+            ref.releaseOnGc = true;
+            return this;
+        }
+
+        /**
+         * @return a new ticket of the same resource that does not depend on this one
+         */
+        @Override
+        public Ticket<R> acquire() {
+            synchronized (entries) {
+                if (closed) {
+                    throw new IllegalStateException(String.format(
+                            "The ticket of %s is closed", ref.entry.key));
+                }
+                ref.entry.refCount++;
+            }
+            return newTicket(ref.entry, resource);
+        }
+
+        @Override
+        public void close() {
+            synchronized (entries) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (liveTickets.remove(ref)) {
+                    ref.clear();
+                    decrementRefCount(ref.entry);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Ticket[%s%s]", ref.entry.key, closed ? ", closed" : "");
+        }
+    }
+
+    /**
+     * A snapshot of metrics of a registered resource.
+     */
+    public static class ResourceStats {
+        private final Object key;
+        private final int refCount;
+        private final long loadTimeMillis;
+        private final long retainedBytes;
+        private final double progress;
+
+        ResourceStats(Object key, int refCount, long loadTimeMillis, long retainedBytes,
+                      double progress) {
+            this.key = key;
+            this.refCount = refCount;
+            this.loadTimeMillis = loadTimeMillis;
+            this.retainedBytes = retainedBytes;
+            this.progress = progress;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        /**
+         * @return the number of tickets that are not closed yet, including pending acquisitions
+         */
+        public int getRefCount() {
+            return refCount;
+        }
+
+        /**
+         * @return load duration, or -1 if the resource is still being loaded
+         */
+        public long getLoadTimeMillis() {
+            return loadTimeMillis;
+        }
+
+        /**
+         * @return see {@link Loader#getRetainedSize(Object)}, or -1 if the resource is still being
+         * loaded
+         */
+        public long getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        /**
+         * @return 1 for a loaded resource, otherwise see {@link Loader#getProgress()}
+         */
+        public double getProgress() {
+            return progress;
+        }
+
+        public boolean isLoaded() {
+            return loadTimeMillis >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: refs=%s, progress=%.2f, loadTime=%s ms, retained=%s bytes",
+                    key, refCount, progress, loadTimeMillis, retainedBytes);
+        }
+    }
+}
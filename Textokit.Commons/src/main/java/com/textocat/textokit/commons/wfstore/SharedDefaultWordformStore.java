@@ -18,15 +18,20 @@
 
 package com.textocat.textokit.commons.wfstore;
 
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.uima.resource.DataResource;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.SharedResourceObject;
 
 import java.io.BufferedInputStream;
-import java.io.IOException;
+import java.io.InputStream;
 
 /**
+ * A wordform store deserialized from a UIMA data resource. Stores with the same URL share their maps
+ * through {@link SharedResourceRegistry}.
+ *
  * @author Rinat Gareev
  */
 public class SharedDefaultWordformStore<TagType> extends DefaultWordformStore<TagType> implements
@@ -34,16 +39,27 @@ public class SharedDefaultWordformStore<TagType> extends DefaultWordformStore<Ta
 
     private static final long serialVersionUID = 7266695078951639418L;
 
+    // keeps the shared store in the registry while this instance is alive
+    private transient Ticket<DefaultWordformStore<?>> storeTicket;
+
     @SuppressWarnings("unchecked")
     @Override
-    public void load(DataResource dr) throws ResourceInitializationException {
-        DefaultWordformStore<TagType> ws;
+    public void load(final DataResource dr) throws ResourceInitializationException {
         try {
-            ws = (DefaultWordformStore<TagType>) SerializationUtils.deserialize(
-                    new BufferedInputStream(dr.getInputStream()));
-        } catch (IOException e) {
+            storeTicket = SharedResourceRegistry.getInstance().acquire(
+                    "DefaultWordformStore from " + dr.getUrl().toExternalForm(),
+                    new SharedResourceRegistry.Loader<DefaultWordformStore<?>>() {
+                        @Override
+                        public DefaultWordformStore<?> load() throws Exception {
+                            try (InputStream in = new BufferedInputStream(dr.getInputStream())) {
+                                return (DefaultWordformStore<?>) SerializationUtils.deserialize(in);
+                            }
+                        }
+                    }).releaseOnGc();
+        } catch (Exception e) {
             throw new ResourceInitializationException(e);
         }
+        DefaultWordformStore<TagType> ws = (DefaultWordformStore<TagType>) storeTicket.getResource();
         this.strKeyMap = ws.strKeyMap;
         this.metadataMap = ws.metadataMap;
     }
@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cas;
+
+import com.google.common.collect.Lists;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Rinat Gareev
+ */
+public class ArrayOverlapIndexTest {
+
+    @Test
+    public void testSameAsTreeIndex() throws Exception {
+        JCas jCas = JCasFactory.createJCas();
+        Random rnd = new Random(42);
+        for (int size : new int[]{0, 1, 2, 3, 17, 500}) {
+            List<AnnotationFS> annos = Lists.newArrayList();
+            for (int i = 0; i < size; i++) {
+                int begin = rnd.nextInt(1000);
+                // a few empty and long annotations
+                annos.add(new Annotation(jCas, begin, begin + rnd.nextInt(i % 10 == 0 ? 200 : 10)));
+            }
+            ArrayOverlapIndex<AnnotationFS> arrayIdx = ArrayOverlapIndex.create(annos.iterator());
+            OverlapIndex<AnnotationFS> treeIdx = AnnotationUtils.createTreeOverlapIndex(annos.iterator());
+            assertEquals(size, arrayIdx.size());
+            List<AnnotationFS> queries = Lists.newArrayList();
+            for (int q = 0; q < 300; q++) {
+                int begin = rnd.nextInt(1100) - 50;
+                queries.add(new Annotation(jCas, begin, begin + rnd.nextInt(q % 5 == 0 ? 100 : 8)));
+            }
+            List<AnnotationFS> buffer = Lists.newArrayList();
+            for (AnnotationFS query : queries) {
+                List<AnnotationFS> expected = newArrayList(
+                        treeIdx.getOverlapping(query.getBegin(), query.getEnd()));
+                assertEquals(expected, newArrayList(
+                        arrayIdx.getOverlapping(query.getBegin(), query.getEnd())));
+                buffer.clear();
+                assertEquals(expected.size(),
+                        arrayIdx.collectOverlapping(query.getBegin(), query.getEnd(), buffer));
+                assertEquals(expected, buffer);
+            }
+            // batched queries
+            Collections.sort(queries, AnnotationOffsetComparator.instance(AnnotationFS.class));
+            buffer.clear();
+            int[] hitOffsets = new int[queries.size() + 1];
+            arrayIdx.collectOverlapping(queries, buffer, hitOffsets);
+            for (int q = 0; q < queries.size(); q++) {
+                AnnotationFS query = queries.get(q);
+                assertEquals(newArrayList(treeIdx.getOverlapping(query.getBegin(), query.getEnd())),
+                        buffer.subList(hitOffsets[q], hitOffsets[q + 1]));
+            }
+        }
+    }
+
+    @Test
+    public void testOnTokensLikeSeq() throws Exception {
+        JCas jCas = JCasFactory.createJCas();
+        List<AnnotationFS> tokens = newArrayList();
+        for (int[] offsets : new int[][]{{1, 3}, {4, 5}, {6, 10}, {11, 20}, {20, 25}, {26, 30}}) {
+            tokens.add(new Annotation(jCas, offsets[0], offsets[1]));
+        }
+        ArrayOverlapIndex<AnnotationFS> idx = ArrayOverlapIndex.create(tokens.iterator());
+        assertEquals(newArrayList(tokens.get(1), tokens.get(2)), newArrayList(idx.getOverlapping(4, 10)));
+        assertEquals(newArrayList(tokens.get(3)), newArrayList(idx.getOverlapping(10, 20)));
+        assertEquals(newArrayList(), newArrayList(idx.getOverlapping(30, 40)));
+        assertEquals(3, idx.nextOverlapping(0, 19, 21));
+        assertEquals(4, idx.nextOverlapping(4, 19, 21));
+        assertEquals(-1, idx.nextOverlapping(5, 19, 21));
+    }
+}
@@ -19,11 +19,15 @@
 package com.textocat.textokit.commons.cpe;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.textocat.textokit.commons.util.DocumentUtils;
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.pipeline.JCasIterable;
 import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -42,6 +46,7 @@ import java.util.Random;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReaderDescription;
 import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.assertEquals;
 
 /**
  * @author Rinat Gareev
@@ -95,11 +100,29 @@ public class JdbcCollectionReaderTest {
             insert.execute();
 
             insert.close();
+
+            createTable = con.createStatement();
+            createTable.execute("CREATE TABLE doc_keyed (" +
+                    "id BIGINT PRIMARY KEY, " +
+                    "url VARCHAR(256) UNIQUE NOT NULL, " +
+                    "txt CLOB)");
+            createTable.close();
+            insert = con.prepareStatement("INSERT INTO doc_keyed(id, url, txt) VALUES (?,?,?)");
+            // ids with gaps
+            for (int i = 1; i <= KEYED_DOC_COUNT; i++) {
+                insert.setLong(1, i * 3);
+                insert.setString(2, "http://example.com/keyed/" + i);
+                insert.setClob(3, new StringReader(generateString(50)));
+                insert.execute();
+            }
+            insert.close();
         } finally {
             con.close();
         }
     }
 
+    private static final int KEYED_DOC_COUNT = 47;
+
     private static String generateString(int length) {
         StringBuilder result = new StringBuilder(length);
         Random r = new Random();
@@ -129,4 +152,67 @@ public class JdbcCollectionReaderTest {
         AnalysisEngineDescription aeDesc = createEngineDescription(AnnotationLogger.class);
         SimplePipeline.runPipeline(readerDesc, aeDesc);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testKeysetPagination() throws UIMAException {
+        List<String> expectedUrls = Lists.newArrayList();
+        for (int i = 1; i <= KEYED_DOC_COUNT; i++) {
+            expectedUrls.add("http://example.com/keyed/" + i);
+        }
+        // offset pagination without prefetching
+        assertEquals(expectedUrls, readUrls(
+                JdbcCollectionReader.PARAM_QUERY, "SELECT url, txt FROM doc_keyed ORDER BY id OFFSET ? LIMIT ?",
+                JdbcCollectionReader.PARAM_OFFSET_PARAM_INDEX, 1,
+                JdbcCollectionReader.PARAM_LIMIT_PARAM_INDEX, 2,
+                JdbcCollectionReader.PARAM_PREFETCH_BATCHES, 0));
+        // keyset pagination
+        assertEquals(expectedUrls, readUrls(
+                JdbcCollectionReader.PARAM_QUERY,
+                "SELECT id, url, txt FROM doc_keyed WHERE id > ? ORDER BY id LIMIT ?",
+                JdbcCollectionReader.PARAM_KEY_COLUMN, "id",
+                JdbcCollectionReader.PARAM_KEY_PARAM_INDEX, 1,
+                JdbcCollectionReader.PARAM_LIMIT_PARAM_INDEX, 2,
+                JdbcCollectionReader.PARAM_FETCH_SIZE, 5));
+        // two partitions by id range
+        String partitionQuery = "SELECT id, url, txt FROM doc_keyed WHERE id > ? AND id <= ? ORDER BY id LIMIT ?";
+        List<String> actualUrls = Lists.newArrayList();
+        actualUrls.addAll(readUrls(
+                JdbcCollectionReader.PARAM_QUERY, partitionQuery,
+                JdbcCollectionReader.PARAM_KEY_COLUMN, "id",
+                JdbcCollectionReader.PARAM_KEY_PARAM_INDEX, 1,
+                JdbcCollectionReader.PARAM_MAX_KEY_PARAM_INDEX, 2,
+                JdbcCollectionReader.PARAM_LIMIT_PARAM_INDEX, 3,
+                JdbcCollectionReader.PARAM_MAX_KEY, "60"));
+        assertEquals(20, actualUrls.size());
+        actualUrls.addAll(readUrls(
+                JdbcCollectionReader.PARAM_QUERY, partitionQuery,
+                JdbcCollectionReader.PARAM_KEY_COLUMN, "id",
+                JdbcCollectionReader.PARAM_KEY_PARAM_INDEX, 1,
+                JdbcCollectionReader.PARAM_MAX_KEY_PARAM_INDEX, 2,
+                JdbcCollectionReader.PARAM_LIMIT_PARAM_INDEX, 3,
+                JdbcCollectionReader.PARAM_MIN_KEY, "60",
+                JdbcCollectionReader.PARAM_MAX_KEY, "1000"));
+        assertEquals(expectedUrls, actualUrls);
+    }
+
+    private static List<String> readUrls(Object... queryParams) throws UIMAException {
+        TypeSystemDescription tsDesc = createTypeSystemDescription("com.textocat.textokit.commons.Commons-TypeSystem");
+        List<Object> params = Lists.newArrayList(queryParams);
+        params.addAll(ImmutableList.<Object>of(
+                JdbcCollectionReader.PARAM_DATABASE_URL,
+                "jdbc:hsqldb:mem:jdbc-collection-reader-test;ifexists=true",
+                JdbcCollectionReader.PARAM_USERNAME, "SA",
+                JdbcCollectionReader.PARAM_PASSWORD, "",
+                JdbcCollectionReader.PARAM_DRIVER_CLASS, "org.hsqldb.jdbc.JDBCDriver",
+                JdbcCollectionReader.PARAM_DOCUMENT_URL_COLUMN, "url",
+                JdbcCollectionReader.PARAM_TEXT_COLUMN, "txt",
+                JdbcCollectionReader.PARAM_BATCH_SIZE, 4));
+        CollectionReaderDescription readerDesc = CollectionReaderFactory.createReaderDescription(
+                JdbcCollectionReader.class, tsDesc, params.toArray());
+        List<String> result = Lists.newArrayList();
+        for (JCas jCas : new JCasIterable(readerDesc)) {
+            result.add(DocumentUtils.getDocumentUri(jCas.getCas()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.resource.ResourceManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.CollectionReaderFactory.createReaderDescription;
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class ParallelCpeLauncherTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testRun() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        long charCount = 0;
+        for (int i = 0; i < 50; i++) {
+            String line = "Document number " + i;
+            lines.add(line);
+            charCount += line.length();
+        }
+        File inputFile = tempFolder.newFile("input.txt");
+        FileUtils.writeLines(inputFile, "utf-8", lines);
+
+        ParallelCpeLauncher launcher = new ParallelCpeLauncher();
+        launcher.setAnalysisEngineDescription(createEngineDescription(NoOpAnnotator.class));
+        for (int threads : new int[]{3, 1}) {
+            launcher.setReaderDescription(createReaderDescription(LinesCollectionReader.class,
+                    "inputFile", inputFile));
+            launcher.setThreadCount(threads);
+            ResourceManager rm = launcher.getResourceManager();
+            ThroughputReport report = launcher.run();
+            // the resource manager is shared among runs
+            assertSame(rm, launcher.getResourceManager());
+            assertEquals(threads, report.getThreadCount());
+            assertEquals(lines.size(), report.getDocumentCount());
+            assertEquals(charCount, report.getCharCount());
+            assertEquals(0, report.getFailedDocumentCount());
+            assertFalse(report.getAnnotatorTimesMs().isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooSmallCasPool() throws Exception {
+        ParallelCpeLauncher launcher = new ParallelCpeLauncher();
+        launcher.setReaderDescription(createReaderDescription(LinesCollectionReader.class,
+                "inputFile", tempFolder.newFile("input.txt")));
+        launcher.setAnalysisEngineDescription(createEngineDescription(NoOpAnnotator.class));
+        launcher.setThreadCount(4);
+        launcher.setCasPoolSize(2);
+        launcher.createCpe();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.textocat.textokit.commons.util.DocumentUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.pipeline.JCasIterable;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class ParallelDirectoryCollectionReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File corpusDir;
+    // relative URI -> text
+    private Map<String, String> expectedDocs = Maps.newHashMap();
+
+    @Before
+    public void setUp() throws Exception {
+        corpusDir = tempFolder.newFolder("corpus");
+        for (int i = 0; i < 30; i++) {
+            String relPath = (i % 3 == 0 ? "" : "sub" + (i % 3) + "/") + "doc" + i + ".txt";
+            // a few files exceed the mapping threshold
+            String text = Strings.repeat("Документ " + i + ". ", i % 10 == 0 ? 10000 : i + 1);
+            FileUtils.writeStringToFile(new File(corpusDir, relPath), text, "utf-8");
+            expectedDocs.put(relPath, text);
+        }
+        FileUtils.writeStringToFile(new File(corpusDir, "sub1/ignored.xml"), "<doc/>", "utf-8");
+    }
+
+    @Test
+    public void testReadAll() throws Exception {
+        CollectionReaderDescription readerDesc =
+                ParallelDirectoryCollectionReader.createDescription(corpusDir);
+        assertEquals(expectedDocs, read(readerDesc));
+        // the same as the classic reader
+        assertEquals(expectedDocs, read(FileDirectoryCollectionReader.createDescription(corpusDir)));
+    }
+
+    @Test
+    public void testSharding() throws Exception {
+        int shardCount = 3;
+        Map<String, String> actualDocs = Maps.newHashMap();
+        long[] shardSizes = new long[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            CollectionReaderDescription readerDesc =
+                    ParallelDirectoryCollectionReader.createDescription(corpusDir);
+            readerDesc.getCollectionReaderMetaData().getConfigurationParameterSettings()
+                    .setParameterValue(ParallelDirectoryCollectionReader.PARAM_SHARD_COUNT, shardCount);
+            readerDesc.getCollectionReaderMetaData().getConfigurationParameterSettings()
+                    .setParameterValue(ParallelDirectoryCollectionReader.PARAM_SHARD_INDEX, shard);
+            Map<String, String> shardDocs = read(readerDesc);
+            assertFalse(shardDocs.isEmpty());
+            for (Map.Entry<String, String> e : shardDocs.entrySet()) {
+                assertNull("Shards overlap", actualDocs.put(e.getKey(), e.getValue()));
+                shardSizes[shard] += e.getValue().length();
+            }
+        }
+        assertEquals(expectedDocs, actualDocs);
+        // three large documents go to different shards
+        for (long size : shardSizes) {
+            assertTrue(size > 100000);
+        }
+    }
+
+    private static Map<String, String> read(CollectionReaderDescription readerDesc) throws Exception {
+        Map<String, String> result = Maps.newHashMap();
+        for (JCas jCas : new JCasIterable(readerDesc)) {
+            result.put(DocumentUtils.getDocumentUri(jCas.getCas()), jCas.getDocumentText());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.cpe;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.jcas.JCas;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.CollectionReaderFactory.createReaderDescription;
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class StagedPipelineRunnerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final Set<String> consumed = Collections.synchronizedSet(Sets.<String>newHashSet());
+
+    public static class CollectingConsumer extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas jCas) throws AnalysisEngineProcessException {
+            consumed.add(jCas.getDocumentText());
+        }
+    }
+
+    private static final List<String> completed = Collections.synchronizedList(Lists.<String>newArrayList());
+
+    public static class CompletionRecordingAnnotator extends JCasAnnotator_ImplBase {
+        public static final String PARAM_NAME = "name";
+
+        @ConfigurationParameter(name = PARAM_NAME)
+        private String name;
+
+        @Override
+        public void process(JCas jCas) throws AnalysisEngineProcessException {
+        }
+
+        @Override
+        public void collectionProcessComplete() throws AnalysisEngineProcessException {
+            completed.add(name);
+        }
+    }
+
+    public static class FailingAnnotator extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas jCas) throws AnalysisEngineProcessException {
+            if (jCas.getDocumentText().endsWith("7")) {
+                throw new AnalysisEngineProcessException(new IllegalStateException("Test failure"));
+            }
+        }
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        long charCount = 0;
+        for (int i = 0; i < 50; i++) {
+            String line = "Document number " + i;
+            lines.add(line);
+            charCount += line.length();
+        }
+        File inputFile = tempFolder.newFile("input.txt");
+        FileUtils.writeLines(inputFile, "utf-8", lines);
+
+        StagedPipelineRunner runner = new StagedPipelineRunner();
+        runner.setAnalysisEngineDescription(createEngineDescription(NoOpAnnotator.class));
+        runner.setConsumerDescription(createEngineDescription(CollectingConsumer.class));
+        for (int threads : new int[]{3, 1}) {
+            consumed.clear();
+            runner.setReaderDescription(createReaderDescription(LinesCollectionReader.class,
+                    "inputFile", inputFile));
+            runner.setAnalysisThreadCount(threads);
+            runner.setConsumerThreadCount(2);
+            ThroughputReport report = runner.run();
+            assertEquals(threads, report.getThreadCount());
+            assertEquals(lines.size(), report.getDocumentCount());
+            assertEquals(charCount, report.getCharCount());
+            assertEquals(0, report.getFailedDocumentCount());
+            assertFalse(report.getAnnotatorTimesMs().isEmpty());
+            assertEquals(Sets.newHashSet(lines), consumed);
+        }
+    }
+
+    @Test
+    public void testFailedDocuments() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        for (int i = 0; i < 30; i++) {
+            lines.add("Document number " + i);
+        }
+        File inputFile = tempFolder.newFile("input.txt");
+        FileUtils.writeLines(inputFile, "utf-8", lines);
+
+        consumed.clear();
+        StagedPipelineRunner runner = new StagedPipelineRunner();
+        runner.setReaderDescription(createReaderDescription(LinesCollectionReader.class,
+                "inputFile", inputFile));
+        runner.setAnalysisEngineDescription(createEngineDescription(FailingAnnotator.class));
+        runner.setConsumerDescription(createEngineDescription(CollectingConsumer.class));
+        runner.setAnalysisThreadCount(2);
+        runner.setCasPoolSize(2);
+        ThroughputReport report = runner.run();
+        // documents 7, 17 and 27 fail and are not passed to the consumer
+        assertEquals(27, report.getDocumentCount());
+        assertEquals(3, report.getFailedDocumentCount());
+        assertEquals(27, consumed.size());
+    }
+
+    @Test
+    public void testCollectionProcessComplete() throws Exception {
+        File inputFile = tempFolder.newFile("input.txt");
+        FileUtils.writeLines(inputFile, "utf-8", Lists.newArrayList("First", "Second", "Third"));
+
+        completed.clear();
+        StagedPipelineRunner runner = new StagedPipelineRunner();
+        runner.setReaderDescription(createReaderDescription(LinesCollectionReader.class,
+                "inputFile", inputFile));
+        runner.setAnalysisEngineDescription(createEngineDescription(
+                createEngineDescription(NoOpAnnotator.class),
+                createEngineDescription(CompletionRecordingAnnotator.class,
+                        CompletionRecordingAnnotator.PARAM_NAME, "analysis")));
+        runner.setConsumerDescription(createEngineDescription(CompletionRecordingAnnotator.class,
+                CompletionRecordingAnnotator.PARAM_NAME, "consumer"));
+        runner.setAnalysisThreadCount(3);
+        runner.setConsumerThreadCount(2);
+        runner.run();
+        // each replica is notified once, analysis engines before consumers
+        assertEquals(Lists.newArrayList("analysis", "analysis", "analysis", "consumer", "consumer"),
+                completed);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.commons.io;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.textocat.textokit.commons.DocumentMetadata;
+import com.textocat.textokit.commons.consumer.BinaryCasFileWriter;
+import com.textocat.textokit.commons.cpe.BinaryCasCollectionReader;
+import com.textocat.textokit.commons.util.DocumentUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.pipeline.JCasIterable;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Map;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class BinaryCasUtilsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final TypeSystemDescription tsd = createTypeSystemDescription(
+            "com.textocat.textokit.commons.Commons-TypeSystem");
+
+    private JCas createDocument(String uri, String text) throws Exception {
+        JCas jCas = JCasFactory.createJCas(tsd);
+        jCas.setDocumentText(text);
+        DocumentMetadata meta = new DocumentMetadata(jCas);
+        meta.setSourceUri(uri);
+        meta.setDocumentSize(text.length());
+        meta.addToIndexes();
+        return jCas;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        JCas src = createDocument("file:/corpus/doc1.txt", Strings.repeat("Текст документа. ", 1000));
+        int plainSize = 0;
+        for (boolean deflate : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryCasUtils.serialize(src.getCas(), out, deflate);
+            if (deflate) {
+                assertTrue(out.size() < plainSize);
+            } else {
+                plainSize = out.size();
+            }
+            JCas dst = JCasFactory.createJCas(tsd);
+            BinaryCasUtils.deserialize(new ByteArrayInputStream(out.toByteArray()), dst.getCas());
+            assertEquals(src.getDocumentText(), dst.getDocumentText());
+            DocumentMetadata meta = JCasUtil.selectSingle(dst, DocumentMetadata.class);
+            assertEquals("file:/corpus/doc1.txt", meta.getSourceUri());
+            assertEquals(src.getDocumentText().length(), meta.getDocumentSize());
+        }
+    }
+
+    @Test
+    public void testForm6Header() throws Exception {
+        JCas src = createDocument("file:/corpus/doc1.txt", "Текст документа.");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCasUtils.serialize(src.getCas(), out, false);
+        JCas dst = JCasFactory.createJCas(tsd);
+        // the format is recognized by the header
+        assertEquals(SerialFormat.COMPRESSED_FILTERED, Serialization.deserializeCAS(
+                dst.getCas(), new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(src.getDocumentText(), dst.getDocumentText());
+    }
+
+    @Test
+    public void testWriterAndReader() throws Exception {
+        File outDir = tempFolder.newFolder("out");
+        Map<String, String> expected = Maps.newHashMap();
+        for (boolean deflate : new boolean[]{false, true}) {
+            AnalysisEngine writer = createEngine(BinaryCasFileWriter.class,
+                    BinaryCasFileWriter.PARAM_OUTPUT_BASE_PATH, outDir.getPath(),
+                    BinaryCasFileWriter.PARAM_DEFLATE, deflate);
+            for (int i = 0; i < 3; i++) {
+                String uri = String.format("corpus/%s/doc%s.txt", deflate ? "z" : "plain", i);
+                String text = Strings.repeat("Документ " + i + ". ", i + 1);
+                writer.process(createDocument(uri, text));
+                expected.put(uri, text);
+            }
+            writer.collectionProcessComplete();
+            writer.destroy();
+        }
+        assertTrue(new File(outDir, "corpus/z/doc2.txt.bcas").isFile());
+        Map<String, String> actual = Maps.newHashMap();
+        for (JCas jCas : new JCasIterable(BinaryCasCollectionReader.createDescription(outDir, tsd))) {
+            actual.put(DocumentUtils.getDocumentUri(jCas.getCas()), jCas.getDocumentText());
+        }
+        assertEquals(expected, actual);
+    }
+}
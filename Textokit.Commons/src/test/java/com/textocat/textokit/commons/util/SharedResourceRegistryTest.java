@@ -0,0 +1,208 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.commons.util;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Loader;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.ResourceStats;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class SharedResourceRegistryTest {
+
+    private SharedResourceRegistry registry;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        registry = new SharedResourceRegistry();
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testReferenceCounting() throws Exception {
+        Ticket<StringBuilder> t1 = registry.acquire("res", new CountingLoader());
+        Ticket<StringBuilder> t2 = registry.acquire("res", new CountingLoader());
+        assertSame(t1.getResource(), t2.getResource());
+        Ticket<StringBuilder> t3 = t2.acquire();
+        assertSame(t1.getResource(), t3.getResource());
+        assertEquals(1, loads.get());
+        assertEquals(1, registry.getLoadCount());
+        assertEquals(1, registry.getReuseCount());
+        ResourceStats stats = registry.getStats().get(0);
+        assertEquals("res", stats.getKey());
+        assertEquals(3, stats.getRefCount());
+        assertTrue(stats.getLoadTimeMillis() >= 0);
+        assertEquals(42, stats.getRetainedBytes());
+
+        t1.close();
+        t1.close();
+        t2.close();
+        assertEquals(1, registry.getStats().get(0).getRefCount());
+        try {
+            t2.acquire();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        t3.close();
+        assertTrue(registry.getStats().isEmpty());
+        // a released resource is loaded again
+        Ticket<StringBuilder> t4 = registry.acquire("res", new CountingLoader());
+        assertNotSame(t1.getResource(), t4.getResource());
+        assertEquals(2, loads.get());
+        t4.close();
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final int threads = 8;
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadAllowed = new CountDownLatch(1);
+        final Loader<StringBuilder> slowLoader = new CountingLoader() {
+            @Override
+            public StringBuilder load() throws Exception {
+                loadStarted.countDown();
+                loadAllowed.await();
+                return super.load();
+            }
+
+            @Override
+            public double getProgress() {
+                return 0.25;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Ticket<StringBuilder>>> futures = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Ticket<StringBuilder>>() {
+                    @Override
+                    public Ticket<StringBuilder> call() throws Exception {
+                        return registry.acquire("res", slowLoader);
+                    }
+                }));
+            }
+            loadStarted.await();
+            ResourceStats loadingStats = registry.getStats().get(0);
+            assertFalse(loadingStats.isLoaded());
+            assertEquals(-1, loadingStats.getLoadTimeMillis());
+            assertEquals(0.25, loadingStats.getProgress(), 0);
+            loadAllowed.countDown();
+            StringBuilder resource = futures.get(0).get().getResource();
+            for (Future<Ticket<StringBuilder>> f : futures) {
+                assertSame(resource, f.get().getResource());
+            }
+            assertEquals(1, loads.get());
+            ResourceStats loadedStats = registry.getStats().get(0);
+            assertTrue(loadedStats.isLoaded());
+            assertEquals(1, loadedStats.getProgress(), 0);
+            assertEquals(threads, loadedStats.getRefCount());
+            for (Future<Ticket<StringBuilder>> f : futures) {
+                f.get().close();
+            }
+            assertTrue(registry.getStats().isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        try {
+            registry.acquire("res", new Loader<StringBuilder>() {
+                @Override
+                public StringBuilder load() throws Exception {
+                    throw new IOException("Can't read");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Can't read", e.getMessage());
+        }
+        assertEquals(1, registry.getFailureCount());
+        assertTrue(registry.getStats().isEmpty());
+        Ticket<StringBuilder> ticket = registry.acquire("res", new CountingLoader());
+        assertNotNull(ticket.getResource());
+        ticket.close();
+    }
+
+    @Test
+    public void testUnreachableTicketIsReleased() throws Exception {
+        registry.acquire("res", new CountingLoader());
+        Ticket<StringBuilder> other = registry.acquire("other", new CountingLoader());
+        for (int i = 0; i < 50 && registry.getStats().size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        List<ResourceStats> stats = registry.getStats();
+        assertEquals(1, stats.size());
+        assertEquals("other", stats.get(0).getKey());
+        assertEquals(1, registry.getLeakedTicketCount());
+        other.close();
+    }
+
+    @Test
+    public void testCachedResourceTupleClosesTicket() throws Exception {
+        Ticket<StringBuilder> ticket = registry.acquire("res", new CountingLoader());
+        CachedResourceTuple<StringBuilder> tuple = new CachedResourceTuple<>(ticket, ticket.getResource());
+        assertEquals(1, registry.getStats().size());
+        tuple.close();
+        assertTrue(registry.getStats().isEmpty());
+        assertEquals(0, registry.getLeakedTicketCount());
+    }
+
+    @Test
+    public void testTicketReleasedOnGcIsNotLeaked() throws Exception {
+        registry.acquire("res", new CountingLoader()).releaseOnGc();
+        for (int i = 0; i < 50 && !registry.getStats().isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(registry.getStats().isEmpty());
+        assertEquals(0, registry.getLeakedTicketCount());
+    }
+
+    private class CountingLoader extends Loader<StringBuilder> {
+        @Override
+        public StringBuilder load() throws Exception {
+            loads.incrementAndGet();
+            return new StringBuilder("resource");
+        }
+
+        @Override
+        public long getRetainedSize(StringBuilder resource) {
+            return 42;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.dell.mensa.impl.generic.AhoCorasickMachine;
 import com.google.common.collect.Sets;
 import com.textocat.textokit.chunk.Chunk;
 import com.textocat.textokit.chunk.ChunkBean;
+import com.textocat.textokit.chunk.ChunkSink;
 import com.textocat.textokit.chunk.Chunker;
 
 import java.io.IOException;
@@ -43,24 +44,43 @@ public class MensaChunker<V> implements Chunker<V> {
 
     @Override
     public Set<Chunk<V>> chunks(Iterable<String> tokens) {
-        IteratorTextSource textSrc = null;
+        final Set<Chunk<V>> res = Sets.newHashSet();
+        match(new IteratorTextSource(tokens.iterator()), new ChunkSink<V>() {
+            @Override
+            public void chunk(int start, int end, V metadata) {
+                res.add(new ChunkBean<>(start, end, metadata));
+            }
+        });
+        return res;
+    }
+
+    @Override
+    public int chunks(String[] tokens, int length, ChunkSink<? super V> sink) {
+        if (length > tokens.length) {
+            throw new IllegalArgumentException(String.format(
+                    "length %s > token array length %s", length, tokens.length));
+        }
+        return match(new ArrayTextSource(tokens, length), sink);
+    }
+
+    private int match(AbstractTextSource<String> textSrc, ChunkSink<? super V> sink) {
+        int count = 0;
         try {
-            textSrc = new IteratorTextSource(tokens.iterator());
             textSrc.open();
             Iterator<IMatch<String>> matchIter = machine.matchIterator(textSrc);
-            Set<Chunk<V>> res = Sets.newHashSet();
             while (matchIter.hasNext()) {
                 IMatch<String> m = matchIter.next();
-                res.add(new ChunkBean<>((int) m.getStart(), (int) m.getEnd() - 1, (V) m.getKeyword().getUserData()));
+                @SuppressWarnings("unchecked")
+                V meta = (V) m.getKeyword().getUserData();
+                sink.chunk((int) m.getStart(), (int) m.getEnd() - 1, meta);
+                count++;
             }
-            return res;
+            return count;
         } catch (IOException e) {
             throw new IllegalStateException(e);
         } finally {
             try {
-                if (textSrc != null) {
-                    textSrc.close();
-                }
+                textSrc.close();
             } catch (IOException e) {
             }
         }
@@ -92,4 +112,34 @@ public class MensaChunker<V> implements Chunker<V> {
             }
         }
     }
+
+    private class ArrayTextSource extends AbstractTextSource<String> {
+        private final String[] tokens;
+        private final int length;
+        private int pos;
+
+        public ArrayTextSource(String[] tokens, int length) {
+            this.tokens = tokens;
+            this.length = length;
+        }
+
+        @Override
+        protected void closeImpl() throws IOException {
+        }
+
+        @Override
+        protected void openImpl() throws IOException {
+        }
+
+        @Override
+        protected String readImpl(ITailBuffer<String> buffer_) throws IOException {
+            if (pos < length) {
+                String nextToken = tokens[pos++];
+                buffer_.add(nextToken);
+                return nextToken;
+            } else {
+                return null;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.dictmatcher.mensa;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.textocat.textokit.chunk.Chunk;
+import com.textocat.textokit.chunk.ChunkBean;
+import com.textocat.textokit.chunk.ChunkSink;
+import com.textocat.textokit.chunk.Chunker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MensaChunkerTest {
+
+    private Chunker<String> chunker;
+
+    @Before
+    public void setUp() {
+        MensaChunkerBuilder<String> builder = new MensaChunkerBuilder<>();
+        builder.addEntry(ImmutableList.of("new", "york"), "city");
+        builder.addEntry(ImmutableList.of("new", "york", "times"), "newspaper");
+        builder.addEntry(ImmutableList.of("york"), "city");
+        chunker = builder.build();
+    }
+
+    @Test
+    public void testSameChunksAsIterable() {
+        List<String> tokens = ImmutableList.of("the", "new", "york", "times", "in", "york");
+        CollectingSink sink = new CollectingSink();
+        int count = chunker.chunks(tokens.toArray(new String[tokens.size()]), tokens.size(), sink);
+        assertEquals(chunker.chunks(tokens), Sets.newHashSet(sink.chunks));
+        assertEquals(4, count);
+        assertEquals(count, sink.chunks.size());
+    }
+
+    @Test
+    public void testReusedBuffer() {
+        String[] buf = new String[8];
+        CollectingSink sink = new CollectingSink();
+        buf[0] = "new";
+        buf[1] = "york";
+        buf[2] = "times";
+        assertEquals(3, chunker.chunks(buf, 3, sink));
+        // the stale tail of the buffer must not be matched
+        sink.chunks.clear();
+        buf[0] = "new";
+        buf[1] = "york";
+        assertEquals(2, chunker.chunks(buf, 2, sink));
+        assertEquals(Sets.newHashSet(
+                new ChunkBean<>(0, 1, "city"), new ChunkBean<>(1, 1, "city")),
+                Sets.newHashSet(sink.chunks));
+        sink.chunks.clear();
+        assertEquals(0, chunker.chunks(buf, 0, sink));
+        assertEquals(Arrays.asList(), sink.chunks);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthExceedsArray() {
+        chunker.chunks(new String[]{"york"}, 2, new CollectingSink());
+    }
+
+    private static class CollectingSink implements ChunkSink<String> {
+        private final List<Chunk<String>> chunks = Lists.newArrayList();
+
+        @Override
+        public void chunk(int start, int end, String metadata) {
+            chunks.add(new ChunkBean<>(start, end, metadata));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.chunk;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A base class for chunkers that implement only {@link #chunks(Iterable)}.
+ * It provides {@link #chunks(String[], int, ChunkSink)} on top of it, so implementations written
+ * before the sink-based method was added to {@link Chunker} can extend this class instead of
+ * implementing the interface directly. Subclasses that can match a token array without allocation
+ * should override the method.
+ *
+ * @param <V> a type of metadata carried by chunks
+ * @author Rinat Gareev
+ */
+public abstract class AbstractChunker<V> implements Chunker<V> {
+
+    @Override
+    public int chunks(String[] tokens, int length, ChunkSink<? super V> sink) {
+        if (length > tokens.length) {
+            throw new IllegalArgumentException(String.format(
+                    "length %s > token array length %s", length, tokens.length));
+        }
+        Set<Chunk<V>> chunks = chunks(Arrays.asList(tokens).subList(0, length));
+        for (Chunk<V> c : chunks) {
+            sink.chunk(c.start(), c.end(), c.metadata());
+        }
+        return chunks.size();
+    }
+}
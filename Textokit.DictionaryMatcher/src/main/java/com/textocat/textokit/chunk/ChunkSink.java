@@ -0,0 +1,34 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.chunk;
+
+/**
+ * A callback that receives chunks matched by {@link Chunker#chunks(String[], int, ChunkSink)}.
+ * It allows a caller to avoid allocation of {@link Chunk} instances and a result collection.
+ *
+ * @param <V> a type of metadata carried by chunks
+ * @author Rinat Gareev
+ */
+public interface ChunkSink<V> {
+    /**
+     * @param start    the first token index of a matched chunk
+     * @param end      the last token index of a matched chunk
+     * @param metadata a metadata associated with the matched dictionary item
+     */
+    void chunk(int start, int end, V metadata);
+}
@@ -19,6 +19,8 @@ package com.textocat.textokit.chunk;
 import java.util.Set;
 
 /**
+ * Implementations that provide only {@link #chunks(Iterable)} can extend {@link AbstractChunker}.
+ *
  * @param <V> a type of metadata carried by chunks
  * @author Nikita Zhiltsov
  */
@@ -30,4 +32,18 @@ public interface Chunker<V> {
      * @return chunks matched in the given input
      */
     Set<Chunk<V>> chunks(Iterable<String> tokens);
+
+    /**
+     * Match chunks in the first {@code length} elements of the given token array and pass them
+     * to the sink. Unlike {@link #chunks(Iterable)} it is intended for callers that reuse
+     * the token array and the sink between invocations. The method has been added to
+     * the interface after {@link #chunks(Iterable)}, see {@link AbstractChunker}
+     * for the implementation in terms of the latter.
+     *
+     * @param tokens an input sequence buffer
+     * @param length the number of tokens in the buffer
+     * @param sink   receives matched chunks
+     * @return the number of matched chunks
+     */
+    int chunks(String[] tokens, int length, ChunkSink<? super V> sink);
 }
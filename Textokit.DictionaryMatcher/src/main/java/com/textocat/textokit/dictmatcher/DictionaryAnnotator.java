@@ -18,7 +18,6 @@ package com.textocat.textokit.dictmatcher;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
-import com.textocat.textokit.chunk.Chunk;
 import com.textocat.textokit.chunk.Chunker;
 import com.textocat.textokit.commons.cas.FSTypeUtils;
 import com.textocat.textokit.commons.cas.FSUtils;
@@ -35,9 +34,9 @@ import org.apache.uima.fit.factory.initializable.InitializableFactory;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.RandomAccess;
-import java.util.Set;
 
 /**
  * @param <V> a type of dictionary metadata ({@link com.textocat.textokit.chunk.Chunk}) metadata.
@@ -88,6 +87,9 @@ public class DictionaryAnnotator<V> extends CasAnnotator_ImplBase {
     private ChunkAnnotationAdapter<V> chunkAnnotationAdapter;
     // per-CAS state
     private Function<AnnotationFS, String> normFunction;
+    // per-span buffers
+    private String[] tokenNorms = new String[64];
+    private final MatchBuffer<V> matchSink = new MatchBuffer<>();
 
     @Override
     public void initialize(UimaContext ctx) throws ResourceInitializationException {
@@ -122,13 +124,19 @@ public class DictionaryAnnotator<V> extends CasAnnotator_ImplBase {
         if (!(tokens instanceof RandomAccess)) {
             tokens = Lists.newArrayList(tokens);
         }
-        List<String> tokenNorms = Lists.transform(tokens, normFunction);
-        Set<Chunk<V>> matches = dictMatcher.chunks(tokenNorms);
-        if (matches == null) return;
-        for (Chunk<V> m : matches) {
-            AnnotationFS mFirstToken = tokens.get(m.start());
-            AnnotationFS mLastToken = tokens.get(m.end());
-            makeResultAnnotation(mFirstToken, mLastToken, m.metadata());
+        if (tokenNorms.length < tokens.size()) {
+            tokenNorms = new String[Math.max(tokens.size(), tokenNorms.length * 2)];
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            tokenNorms[i] = normFunction.apply(tokens.get(i));
+        }
+        matchSink.clear();
+        dictMatcher.chunks(tokenNorms, tokens.size(), matchSink);
+        Arrays.fill(tokenNorms, 0, tokens.size(), null);
+        for (int i = 0; i < matchSink.size(); i++) {
+            AnnotationFS mFirstToken = tokens.get(matchSink.start(i));
+            AnnotationFS mLastToken = tokens.get(matchSink.end(i));
+            makeResultAnnotation(mFirstToken, mLastToken, matchSink.metadata(i));
         }
     }
 
@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.dictmatcher;
+
+import com.textocat.textokit.chunk.Chunk;
+import com.textocat.textokit.chunk.ChunkSink;
+import com.textocat.textokit.chunk.Chunker;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Collects matches of a span skipping duplicates, as the set returned by
+ * {@link Chunker#chunks(Iterable)} does. Matches are kept in the order they are reported.
+ * <p>
+ * The buffer is intended to be reused: a match is stored in parallel arrays and deduplicated
+ * by an open-addressing table of indexes, so no object is allocated per match
+ * once the arrays have grown enough.
+ * </p>
+ *
+ * @param <V> a type of chunk metadata
+ * @author Rinat Gareev
+ */
+class MatchBuffer<V> implements ChunkSink<V> {
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private Object[] metadata = new Object[16];
+    // table slot of each match, to clear the table in O(size)
+    private int[] slots = new int[16];
+    // match index + 1, 0 means an empty slot. Its length is a power of two and at least twice the size
+    private int[] table = new int[32];
+    private int size;
+
+    @Override
+    public void chunk(int start, int end, V meta) {
+        int mask = table.length - 1;
+        int slot = hash(start, end, meta) & mask;
+        while (table[slot] != 0) {
+            int i = table[slot] - 1;
+            if (starts[i] == start && ends[i] == end && Objects.equals(metadata[i], meta)) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == starts.length) {
+            int newCapacity = size * 2;
+            starts = Arrays.copyOf(starts, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+            metadata = Arrays.copyOf(metadata, newCapacity);
+            slots = Arrays.copyOf(slots, newCapacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        metadata[size] = meta;
+        slots[size] = slot;
+        size++;
+        table[slot] = size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the first token index of the i-th match
+     */
+    int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     * @return the last token index of the i-th match
+     */
+    int end(int i) {
+        return ends[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    V metadata(int i) {
+        return (V) metadata[i];
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            table[slots[i]] = 0;
+        }
+        Arrays.fill(metadata, 0, size, null);
+        size = 0;
+    }
+
+    private void rehash(int tableLength) {
+        table = new int[tableLength];
+        int mask = tableLength - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(starts[i], ends[i], metadata[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+            slots[i] = slot;
+        }
+    }
+
+    private static int hash(int start, int end, Object meta) {
+        int h = 31 * (31 * start + end) + Objects.hashCode(meta);
+        // spread higher bits as the table index is taken from the lower ones
+        return h ^ (h >>> 16);
+    }
+}
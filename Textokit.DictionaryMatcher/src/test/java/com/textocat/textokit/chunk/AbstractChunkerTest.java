@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.chunk;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class AbstractChunkerTest {
+
+    @Test
+    public void testArrayPrefix() {
+        Chunker<String> chunker = new PairChunker();
+        String[] buf = {"a", "b", "a", "b", "b", "a"};
+        CollectingSink sink = new CollectingSink();
+        assertEquals(2, chunker.chunks(buf, 4, sink));
+        assertEquals(Sets.newHashSet(
+                new ChunkBean<>(0, 1, "ab"), new ChunkBean<>(2, 3, "ab")),
+                Sets.newHashSet(sink.chunks));
+        // the buffer is reused with a shorter input, the stale tail is ignored
+        buf[0] = "b";
+        buf[1] = "a";
+        sink.chunks.clear();
+        assertEquals(0, chunker.chunks(buf, 2, sink));
+        assertEquals(ImmutableList.of(), sink.chunks);
+        assertEquals(0, chunker.chunks(buf, 0, sink));
+    }
+
+    @Test
+    public void testSameChunksAsIterable() {
+        Chunker<String> chunker = new PairChunker();
+        List<String> tokens = ImmutableList.of("b", "a", "b", "a", "a", "b");
+        CollectingSink sink = new CollectingSink();
+        int count = chunker.chunks(tokens.toArray(new String[tokens.size()]), tokens.size(), sink);
+        assertEquals(chunker.chunks(tokens), Sets.newHashSet(sink.chunks));
+        assertEquals(count, sink.chunks.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthExceedsArray() {
+        new PairChunker().chunks(new String[]{"a"}, 2, new CollectingSink());
+    }
+
+    // matches "a b" pairs
+    private static class PairChunker extends AbstractChunker<String> {
+        @Override
+        public Set<Chunk<String>> chunks(Iterable<String> tokens) {
+            List<String> list = Lists.newArrayList(tokens);
+            Set<Chunk<String>> result = Sets.newHashSet();
+            for (int i = 0; i + 1 < list.size(); i++) {
+                if (list.get(i).equals("a") && list.get(i + 1).equals("b")) {
+                    result.add(new ChunkBean<>(i, i + 1, "ab"));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class CollectingSink implements ChunkSink<String> {
+        private final List<Chunk<String>> chunks = Lists.newArrayList();
+
+        @Override
+        public void chunk(int start, int end, String metadata) {
+            chunks.add(new ChunkBean<>(start, end, metadata));
+        }
+    }
+}
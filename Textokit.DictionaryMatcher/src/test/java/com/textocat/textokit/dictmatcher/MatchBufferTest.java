@@ -0,0 +1,72 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.dictmatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MatchBufferTest {
+
+    @Test
+    public void testDuplicatesAreSkipped() {
+        MatchBuffer<String> buf = new MatchBuffer<>();
+        buf.chunk(0, 1, "city");
+        buf.chunk(1, 1, "city");
+        buf.chunk(0, 1, "city");
+        buf.chunk(0, 1, "river");
+        buf.chunk(0, 1, null);
+        buf.chunk(0, 1, null);
+        buf.chunk(1, 1, "city");
+        assertEquals(4, buf.size());
+        assertMatch(buf, 0, 0, 1, "city");
+        assertMatch(buf, 1, 1, 1, "city");
+        assertMatch(buf, 2, 0, 1, "river");
+        assertMatch(buf, 3, 0, 1, null);
+    }
+
+    @Test
+    public void testGrowthAndReuse() {
+        MatchBuffer<String> buf = new MatchBuffer<>();
+        for (int round = 0; round < 3; round++) {
+            buf.clear();
+            assertEquals(0, buf.size());
+            int n = 100 * (round + 1);
+            for (int rep = 0; rep < 2; rep++) {
+                for (int i = 0; i < n; i++) {
+                    buf.chunk(i, i + round, "m" + (i % 7));
+                }
+            }
+            assertEquals(n, buf.size());
+            for (int i = 0; i < n; i++) {
+                assertMatch(buf, i, i, i + round, "m" + (i % 7));
+            }
+        }
+        buf.clear();
+        buf.chunk(5, 6, null);
+        assertEquals(1, buf.size());
+        assertNull(buf.metadata(0));
+    }
+
+    private static void assertMatch(MatchBuffer<String> buf, int i, int start, int end, String meta) {
+        assertEquals(start, buf.start(i));
+        assertEquals(end, buf.end(i));
+        assertEquals(meta, buf.metadata(i));
+    }
+}
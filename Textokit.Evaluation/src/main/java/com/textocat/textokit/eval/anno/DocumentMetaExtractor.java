@@ -64,4 +64,12 @@ public class DocumentMetaExtractor {
         return uri;
     }
 
+    public Type getDocumentMetaType() {
+        return docMetaType;
+    }
+
+    public Feature getDocumentUriFeature() {
+        return docUriFeature;
+    }
+
 }
\ No newline at end of file
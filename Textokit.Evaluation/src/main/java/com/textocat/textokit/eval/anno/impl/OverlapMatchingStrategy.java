@@ -17,15 +17,14 @@
 
 package com.textocat.textokit.eval.anno.impl;
 
-import com.textocat.textokit.commons.cas.AnnotationUtils;
-import com.textocat.textokit.commons.cas.OverlapIndex;
+import com.google.common.collect.Sets;
+import com.textocat.textokit.commons.cas.ArrayOverlapIndex;
 import com.textocat.textokit.eval.anno.AnnotationExtractor;
 import com.textocat.textokit.eval.anno.MatchingStrategy;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -41,7 +40,7 @@ public abstract class OverlapMatchingStrategy implements MatchingStrategy {
     private AnnotationExtractor annotationExtractor;
     // state fields
     private CAS sysCas;
-    private OverlapIndex<AnnotationFS> sysOverlapIdx;
+    private ArrayOverlapIndex<AnnotationFS> sysOverlapIdx;
 
     @Override
     public void changeCas(CAS newSysCas) {
@@ -49,19 +48,20 @@ public abstract class OverlapMatchingStrategy implements MatchingStrategy {
         // reset state related to previous CAS
         sysOverlapIdx = null;
         if (sysCas != null) {
-            sysOverlapIdx = AnnotationUtils.createOverlapIndex(annotationExtractor.extract(sysCas));
+            sysOverlapIdx = ArrayOverlapIndex.create(annotationExtractor.extract(sysCas));
         }
     }
 
     @Override
     public Set<AnnotationFS> searchCandidates(AnnotationFS goldAnno) {
-        Set<AnnotationFS> result = sysOverlapIdx.getOverlapping(
-                goldAnno.getBegin(),
-                goldAnno.getEnd());
-        Iterator<AnnotationFS> resultIter = result.iterator();
-        while (resultIter.hasNext()) {
-            if (!isCandidate(goldAnno, resultIter.next())) {
-                resultIter.remove();
+        int begin = goldAnno.getBegin();
+        int end = goldAnno.getEnd();
+        Set<AnnotationFS> result = Sets.newLinkedHashSet();
+        for (int i = sysOverlapIdx.nextOverlapping(0, begin, end); i >= 0;
+             i = sysOverlapIdx.nextOverlapping(i + 1, begin, end)) {
+            AnnotationFS sysAnno = sysOverlapIdx.get(i);
+            if (isCandidate(goldAnno, sysAnno)) {
+                result.add(sysAnno);
             }
         }
         return result;
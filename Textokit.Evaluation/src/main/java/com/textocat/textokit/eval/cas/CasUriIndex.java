@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.eval.cas;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * A persistent map 'file path relative to a directory' => 'document URI' stored in a sidecar
+ * file of the directory. An entry is valid while the modification time of its file is the same.
+ * A whole index is invalidated by changing its header, e.g., when a document metadata type is
+ * changed in the configuration.
+ *
+ * @author Rinat Gareev
+ */
+class CasUriIndex {
+
+    static final String SIDECAR_FILENAME = ".cas-uri-index";
+
+    private static final Logger log = LoggerFactory.getLogger(CasUriIndex.class);
+
+    private final File baseDir;
+    private final File sidecarFile;
+    private final String header;
+    // relative path => entry
+    private final Map<String, Entry> entries = Maps.newHashMap();
+    private boolean modified;
+
+    CasUriIndex(File baseDir, String header) {
+        this.baseDir = baseDir;
+        this.sidecarFile = new File(baseDir, SIDECAR_FILENAME);
+        this.header = header;
+    }
+
+    /**
+     * @return a URI from the index or null if there is no valid entry for the given file
+     */
+    synchronized String get(File file) {
+        Entry e = entries.get(relativePath(file));
+        if (e == null || e.lastModified != file.lastModified()) {
+            return null;
+        }
+        return e.uri;
+    }
+
+    synchronized void put(File file, String uri) {
+        entries.put(relativePath(file), new Entry(file.lastModified(), uri));
+        modified = true;
+    }
+
+    void load() {
+        if (!sidecarFile.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(sidecarFile), "utf-8"))) {
+            if (!header.equals(reader.readLine())) {
+                log.info("URI index {} is outdated", sidecarFile);
+                modified = true;
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length != 3) {
+                    throw new IllegalStateException(String.format(
+                            "Malformed line in %s:\n%s", sidecarFile, line));
+                }
+                entries.put(fields[0], new Entry(Long.parseLong(fields[1]), fields[2]));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can't read URI index {}, it will be rebuilt: {}", sidecarFile, e);
+            entries.clear();
+            modified = true;
+        }
+    }
+
+    /**
+     * Write the index into the sidecar file if it has been modified.
+     * Entries of files that no longer exist are dropped.
+     */
+    synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        File tempFile = new File(baseDir, SIDECAR_FILENAME + ".tmp");
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tempFile), "utf-8")))) {
+            out.println(header);
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (new File(baseDir, e.getKey()).isFile()) {
+                    out.print(e.getKey());
+                    out.print('\t');
+                    out.print(e.getValue().lastModified);
+                    out.print('\t');
+                    out.println(e.getValue().uri);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Can't write URI index {}: {}", sidecarFile, e);
+            return;
+        }
+        if (!(sidecarFile.delete() || !sidecarFile.exists()) || !tempFile.renameTo(sidecarFile)) {
+            log.warn("Can't replace URI index {}", sidecarFile);
+            tempFile.delete();
+            return;
+        }
+        modified = false;
+    }
+
+    private String relativePath(File file) {
+        return baseDir.toURI().relativize(file.toURI()).getPath();
+    }
+
+    private static class Entry {
+        private final long lastModified;
+        private final String uri;
+
+        Entry(long lastModified, String uri) {
+            this.lastModified = lastModified;
+            this.uri = uri;
+        }
+    }
+}
@@ -16,15 +16,18 @@
 
 package com.textocat.textokit.eval.cas;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Iterators;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.textocat.textokit.commons.io.BinaryCasUtils;
 import com.textocat.textokit.eval.anno.DocumentMetaExtractor;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
 import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.impl.XmiCasDeserializer;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -34,18 +37,37 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.*;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
+import static org.apache.commons.io.filefilter.FileFilterUtils.or;
 import static org.apache.commons.io.filefilter.FileFilterUtils.suffixFileFilter;
 import static org.apache.commons.io.filefilter.FileFilterUtils.trueFileFilter;
 
 /**
+ * Reads CASes from XMI files or from binary CAS files written by
+ * {@link com.textocat.textokit.commons.consumer.BinaryCasFileWriter}.
+ * The latter must be written with the same type system.
+ * <p>
+ * Document URIs of files are kept in an index that is persisted into a sidecar file
+ * of the directory (see {@link CasUriIndex}), so only new and modified files are scanned
+ * on subsequent runs. Files are scanned in parallel, and only the document metadata element
+ * of the initial view is read from an XMI file. Other files are deserialized completely into
+ * a CAS that is reused by a scanning thread. CASes returned by {@link #iterator()} are also deserialized
+ * ahead in parallel. The number of threads is set by the '&lt;bean name&gt;.threads' property
+ * and is the number of available processors by default.
+ * </p>
+ *
  * @author Rinat Gareev
  */
 public class FSCasDirectory implements CasDirectory, BeanNameAware {
@@ -58,13 +80,34 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
     protected Environment env;
     @Autowired
     protected DocumentMetaExtractor docMetaExtractor;
+    protected int threadCount = Runtime.getRuntime().availableProcessors();
     private final Logger log = LoggerFactory.getLogger(getClass());
+    private ExecutorService executor;
+    // a working CAS of a scanning thread, it is reset after each file
+    private final ThreadLocal<CAS> scanCas = new ThreadLocal<CAS>() {
+        @Override
+        protected CAS initialValue() {
+            try {
+                return createCas();
+            } catch (ResourceInitializationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
 
     @Override
     public void setTypeSystem(TypeSystem ts) {
         this.ts = ts;
     }
 
+    public void setThreads(Integer threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal thread count: %s", threadCount));
+        }
+        this.threadCount = threadCount;
+    }
+
     public void setDir(File dir) {
         this.dir = dir;
         if (!dir.isDirectory()) {
@@ -85,6 +128,26 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
             throw new IllegalStateException(String.format(
                     "'dir' value is not specified for %s", beanName));
         }
+        Integer threadsProp = env.getProperty(beanName + ".threads", Integer.class);
+        if (threadsProp != null) {
+            setThreads(threadsProp);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+                    .setNameFormat("cas-directory-%d").setDaemon(true).build());
+        }
+        return executor;
     }
 
     /**
@@ -109,8 +172,37 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
      */
     @Override
     public Iterator<CAS> iterator() {
-        Iterator<File> xmiFileIter = getXmiFiles().iterator();
-        return Iterators.transform(xmiFileIter, deserializeFunc());
+        final Iterator<File> xmiFileIter = getXmiFiles().iterator();
+        final ExecutorService executor = getExecutor();
+        // keep every thread busy while the head CAS is consumed
+        final int readAheadSize = threadCount * 2;
+        return new AbstractIterator<CAS>() {
+            private final Deque<Future<CAS>> readAhead = new ArrayDeque<>(readAheadSize);
+
+            @Override
+            protected CAS computeNext() {
+                while (readAhead.size() < readAheadSize && xmiFileIter.hasNext()) {
+                    final File xmiFile = xmiFileIter.next();
+                    readAhead.add(executor.submit(new Callable<CAS>() {
+                        @Override
+                        public CAS call() throws Exception {
+                            return deserialize(xmiFile);
+                        }
+                    }));
+                }
+                if (readAhead.isEmpty()) {
+                    return endOfData();
+                }
+                try {
+                    return readAhead.poll().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        };
     }
 
     /**
@@ -137,7 +229,8 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
      * @return file filter for source files in the base dir
      */
     protected IOFileFilter getSourceFileFilter() {
-        return suffixFileFilter(".xmi");
+        return or(suffixFileFilter(".xmi"),
+                suffixFileFilter("." + BinaryCasUtils.BINARY_CAS_FILE_EXTENSION));
     }
 
     private Collection<File> xmiFiles;
@@ -155,37 +248,150 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
     private Map<String, File> getUriToXmiFileMap()
             throws ResourceInitializationException, IOException, SAXException {
         if (uriToXmiFileMap == null) {
+            Type docMetaType = docMetaExtractor.getDocumentMetaType();
+            String uriFeatureName = docMetaExtractor.getDocumentUriFeature().getShortName();
+            CasUriIndex index = new CasUriIndex(dir, docMetaType.getName() + '\t' + uriFeatureName);
+            index.load();
+            // scan files that are not in the index
+            Collection<File> files = getXmiFiles();
+            List<Future<?>> scanFutures = Lists.newArrayList();
             log.info("Scanning {} XMIs for document URIs...", dir);
-            uriToXmiFileMap = Maps.newHashMap();
-            CAS wrkCas = createCas();
-            for (final File xmiFile : getXmiFiles()) {
-                deserialize(xmiFile, wrkCas);
-                String docURI = docMetaExtractor.getDocumentUri(wrkCas);
+            for (File xmiFile : files) {
+                if (index.get(xmiFile) == null) {
+                    scanFutures.add(getExecutor().submit(
+                            new ScanTask(xmiFile, index, docMetaType, uriFeatureName)));
+                }
+            }
+            try {
+                for (Future<?> f : scanFutures) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            log.info("Scanning {} XMIs for document URIs is finished, {} of {} files have been scanned",
+                    dir, scanFutures.size(), files.size());
+            index.save();
+            // check uniqueness
+            Map<String, File> result = Maps.newHashMapWithExpectedSize(files.size());
+            for (File xmiFile : files) {
+                String docURI = index.get(xmiFile);
                 final File prevFile;
-                if ((prevFile = uriToXmiFileMap.put(docURI, xmiFile)) != null) {
+                if ((prevFile = result.put(docURI, xmiFile)) != null) {
                     throw new IllegalStateException(
                             String.format(
                                     "There are at least 2 files which metadata has the same URI '%s':\n%s\n%s",
                                     docURI, prevFile, xmiFile));
                 }
-                wrkCas.reset();
             }
-            log.info("Scanning {} XMIs for document URIs is finished", dir);
+            uriToXmiFileMap = result;
         }
         return uriToXmiFileMap;
     }
 
-    private Function<File, CAS> deserializeFunc() {
-        return new Function<File, CAS>() {
-            @Override
-            public CAS apply(File input) {
+    private class ScanTask implements Callable<Void> {
+        private final File xmiFile;
+        private final CasUriIndex index;
+        private final Type docMetaType;
+        private final String uriFeatureName;
+
+        ScanTask(File xmiFile, CasUriIndex index, Type docMetaType, String uriFeatureName) {
+            this.xmiFile = xmiFile;
+            this.index = index;
+            this.docMetaType = docMetaType;
+            this.uriFeatureName = uriFeatureName;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            String docURI = null;
+            if (!xmiFile.getName().endsWith("." + BinaryCasUtils.BINARY_CAS_FILE_EXTENSION)) {
+                docURI = scanXmiForDocumentUri(xmiFile, docMetaType, uriFeatureName);
+            }
+            if (docURI == null) {
+                // binary CAS, document metadata of a subtype or of an unknown view
+                CAS wrkCas = scanCas.get();
                 try {
-                    return deserialize(input);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                    deserialize(xmiFile, wrkCas);
+                    docURI = docMetaExtractor.getDocumentUri(wrkCas);
+                } finally {
+                    wrkCas.reset();
                 }
             }
-        };
+            index.put(xmiFile, docURI);
+            return null;
+        }
+    }
+
+    private static final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+
+    static {
+        saxParserFactory.setNamespaceAware(true);
+    }
+
+    private static final String XMI_NAMESPACE = "http://www.omg.org/XMI";
+    private static final String CAS_NAMESPACE = "http:///uima/cas.ecore";
+
+    /**
+     * Read the XMI until the element of the document metadata in the initial view,
+     * as {@link DocumentMetaExtractor} reads it from the initial view.
+     * Elements of other views are skipped.
+     *
+     * @return the document URI or null if there is no element of the given type in the initial view
+     * or the view of the element can not be determined because the initial view sofa
+     * has not been read before it
+     */
+    static String scanXmiForDocumentUri(File xmiFile, Type docMetaType, String uriFeatureName)
+            throws IOException, SAXException {
+        // see XmiCasSerializer for the mapping of type names to XML names
+        String typeName = docMetaType.getName();
+        int lastDot = typeName.lastIndexOf('.');
+        final String elemNamespace = "http:///" + typeName.substring(0, Math.max(lastDot, 0)).replace('.', '/')
+                + ".ecore";
+        final String elemLocalName = typeName.substring(lastDot + 1);
+        final String attrName = uriFeatureName;
+        final String[] result = new String[1];
+        final String[] initialSofaId = new String[1];
+        SAXParser parser;
+        try {
+            synchronized (saxParserFactory) {
+                parser = saxParserFactory.newSAXParser();
+            }
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream is = openStream(xmiFile)) {
+            parser.parse(is, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes)
+                        throws SAXException {
+                    if ("Sofa".equals(localName) && CAS_NAMESPACE.equals(uri)) {
+                        if (CAS.NAME_DEFAULT_SOFA.equals(attributes.getValue("sofaID"))) {
+                            initialSofaId[0] = attributes.getValue(XMI_NAMESPACE, "id");
+                        }
+                    } else if (elemLocalName.equals(localName) && elemNamespace.equals(uri)) {
+                        if (initialSofaId[0] == null) {
+                            // can't tell the view of the element
+                            throw new ScanCompleteException();
+                        }
+                        if (initialSofaId[0].equals(attributes.getValue("sofa"))) {
+                            result[0] = attributes.getValue(attrName);
+                            throw new ScanCompleteException();
+                        }
+                        // the element of another view
+                    }
+                }
+            });
+        } catch (ScanCompleteException e) {
+            // the metadata element has been read
+        }
+        return result[0];
+    }
+
+    private static class ScanCompleteException extends SAXException {
     }
 
     private CAS deserialize(File xmiFile) throws UIMAException, SAXException, IOException {
@@ -196,6 +402,10 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
     }
 
     private void deserialize(File xmiFile, CAS cas) throws IOException, SAXException {
+        if (xmiFile.getName().endsWith("." + BinaryCasUtils.BINARY_CAS_FILE_EXTENSION)) {
+            BinaryCasUtils.deserialize(xmiFile, cas);
+            return;
+        }
         InputStream is = openStream(xmiFile);
         try {
             XmiCasDeserializer.deserialize(is, cas);
@@ -208,7 +418,7 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
         return CasCreationUtils.createCas(ts, null, null, null);
     }
 
-    private InputStream openStream(File file) throws IOException {
+    private static InputStream openStream(File file) throws IOException {
         FileInputStream fis = new FileInputStream(file);
         return new BufferedInputStream(fis);
     }
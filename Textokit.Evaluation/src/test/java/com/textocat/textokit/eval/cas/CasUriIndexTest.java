@@ -0,0 +1,101 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.eval.cas;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class CasUriIndexTest {
+
+    private static final String HEADER = "test.DocumentMetadata\tsourceUri";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File dir;
+    private File file1;
+    private File file2;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = tempFolder.newFolder("cas-dir");
+        file1 = new File(dir, "doc1.xmi");
+        file1.createNewFile();
+        new File(dir, "sub").mkdir();
+        file2 = new File(dir, "sub/doc2.xmi.bcas");
+        file2.createNewFile();
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        CasUriIndex index = new CasUriIndex(dir, HEADER);
+        index.load();
+        assertNull(index.get(file1));
+        index.put(file1, "doc:1");
+        index.put(file2, "doc:2");
+        assertEquals("doc:1", index.get(file1));
+        index.save();
+        assertTrue(new File(dir, CasUriIndex.SIDECAR_FILENAME).isFile());
+
+        CasUriIndex loaded = new CasUriIndex(dir, HEADER);
+        loaded.load();
+        assertEquals("doc:1", loaded.get(file1));
+        assertEquals("doc:2", loaded.get(file2));
+    }
+
+    @Test
+    public void testModifiedFileIsInvalidated() {
+        CasUriIndex index = new CasUriIndex(dir, HEADER);
+        index.put(file1, "doc:1");
+        index.save();
+        assertTrue(file1.setLastModified(file1.lastModified() - 10000));
+        CasUriIndex loaded = new CasUriIndex(dir, HEADER);
+        loaded.load();
+        assertNull(loaded.get(file1));
+    }
+
+    @Test
+    public void testOtherHeaderInvalidatesIndex() {
+        CasUriIndex index = new CasUriIndex(dir, HEADER);
+        index.put(file1, "doc:1");
+        index.save();
+        CasUriIndex loaded = new CasUriIndex(dir, "test.OtherMetadata\turi");
+        loaded.load();
+        assertNull(loaded.get(file1));
+    }
+
+    @Test
+    public void testDeletedFilesAreDropped() throws Exception {
+        CasUriIndex index = new CasUriIndex(dir, HEADER);
+        index.put(file1, "doc:1");
+        index.put(file2, "doc:2");
+        assertTrue(file2.delete());
+        index.save();
+        assertTrue(file2.createNewFile());
+        CasUriIndex loaded = new CasUriIndex(dir, HEADER);
+        loaded.load();
+        assertEquals("doc:1", loaded.get(file1));
+        assertNull(loaded.get(file2));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.eval.cas;
+
+import com.google.common.collect.Sets;
+import com.textocat.textokit.commons.io.BinaryCasUtils;
+import com.textocat.textokit.commons.cas.AnnotationUtils;
+import com.textocat.textokit.eval.anno.DocumentMetaExtractor;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FSCasDirectoryTest {
+
+    private static final String DOC_META_TYPE = "com.textocat.textokit.commons.DocumentMetadata";
+    private static final String SUB_META_TYPE = "test.SubDocumentMetadata";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private TypeSystemDescription tsd;
+    private Type docMetaType;
+    private Feature uriFeature;
+    private File dir;
+    private FSCasDirectory casDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tsd = createTypeSystemDescription("com.textocat.textokit.commons.Commons-TypeSystem");
+        tsd.addType(SUB_META_TYPE, "", DOC_META_TYPE);
+        CAS cas = CasCreationUtils.createCas(tsd, null, null);
+        docMetaType = cas.getTypeSystem().getType(DOC_META_TYPE);
+        uriFeature = docMetaType.getFeatureByBaseName("sourceUri");
+        dir = tempFolder.newFolder("cas-dir");
+        casDir = newCasDirectory(cas);
+    }
+
+    @After
+    public void tearDown() {
+        casDir.close();
+    }
+
+    private FSCasDirectory newCasDirectory(CAS cas) {
+        DocumentMetaExtractor docMetaExtractor = mock(DocumentMetaExtractor.class);
+        when(docMetaExtractor.getDocumentMetaType()).thenReturn(docMetaType);
+        when(docMetaExtractor.getDocumentUriFeature()).thenReturn(uriFeature);
+        when(docMetaExtractor.getDocumentUri(any(CAS.class))).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                CAS cas = (CAS) invocation.getArguments()[0];
+                return AnnotationUtils.getStringValue(cas, docMetaType, uriFeature);
+            }
+        });
+        FSCasDirectory result = new FSCasDirectory();
+        result.setTypeSystem(cas.getTypeSystem());
+        result.setDir(dir);
+        result.setThreads(2);
+        result.docMetaExtractor = docMetaExtractor;
+        return result;
+    }
+
+    @Test
+    public void testXmiIndexing() throws Exception {
+        writeXmi("a/doc1.xmi", "doc:1", "Первый документ.", DOC_META_TYPE);
+        writeXmi("doc2.xmi", "doc:2", "Второй документ.", DOC_META_TYPE);
+        assertEquals(2, casDir.size());
+        assertEquals("Первый документ.", casDir.getCas("doc:1").getDocumentText());
+        assertEquals("Второй документ.", casDir.getCas("doc:2").getDocumentText());
+        File sidecar = new File(dir, CasUriIndex.SIDECAR_FILENAME);
+        assertTrue(sidecar.isFile());
+        // the index is used by the next instance
+        CasUriIndex index = new CasUriIndex(dir, DOC_META_TYPE + "\tsourceUri");
+        index.load();
+        assertEquals("doc:1", index.get(new File(dir, "a/doc1.xmi")));
+        assertEquals("doc:2", index.get(new File(dir, "doc2.xmi")));
+    }
+
+    @Test
+    public void testBinaryCasIndexing() throws Exception {
+        writeBinaryCas("doc1.xmi.bcas", "doc:1", "Первый документ.", false);
+        writeBinaryCas("doc2.xmi.bcas", "doc:2", "Второй документ.", true);
+        writeXmi("doc3.xmi", "doc:3", "Третий документ.", DOC_META_TYPE);
+        assertEquals("Первый документ.", casDir.getCas("doc:1").getDocumentText());
+        assertEquals("Второй документ.", casDir.getCas("doc:2").getDocumentText());
+        assertEquals("Третий документ.", casDir.getCas("doc:3").getDocumentText());
+        Set<String> texts = Sets.newHashSet();
+        Iterator<CAS> casIter = casDir.iterator();
+        while (casIter.hasNext()) {
+            texts.add(casIter.next().getDocumentText());
+        }
+        assertEquals(Sets.newHashSet("Первый документ.", "Второй документ.", "Третий документ."), texts);
+    }
+
+    @Test
+    public void testFallbackToDeserialization() throws Exception {
+        // metadata of a subtype are not recognized by the XMI scan
+        for (int i = 0; i < 5; i++) {
+            writeXmi("doc" + i + ".xmi", "doc:" + i, "Документ " + i, SUB_META_TYPE);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Документ " + i, casDir.getCas("doc:" + i).getDocumentText());
+        }
+    }
+
+    @Test
+    public void testMetadataOfAnotherView() throws Exception {
+        CAS cas = CasCreationUtils.createCas(tsd, null, null);
+        CAS goldView = cas.createView("gold");
+        goldView.setDocumentText("Другой вид.");
+        addDocumentMetadata(goldView, "gold:1", DOC_META_TYPE);
+        cas.setDocumentText("Документ.");
+        addDocumentMetadata(cas, "doc:1", DOC_META_TYPE);
+        writeXmi("doc1.xmi", cas);
+        assertEquals("Документ.", casDir.getCas("doc:1").getDocumentText());
+        try {
+            casDir.getCas("gold:1");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // the URI of a non-initial view is not indexed
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDuplicateUris() throws Exception {
+        writeXmi("doc1.xmi", "doc:1", "Первый документ.", DOC_META_TYPE);
+        writeBinaryCas("doc1.xmi.bcas", "doc:1", "Первый документ.", false);
+        casDir.getCas("doc:1");
+    }
+
+    private void writeXmi(String path, String uri, String text, String metaTypeName) throws Exception {
+        CAS cas = CasCreationUtils.createCas(tsd, null, null);
+        cas.setDocumentText(text);
+        addDocumentMetadata(cas, uri, metaTypeName);
+        writeXmi(path, cas);
+    }
+
+    private void writeXmi(String path, CAS cas) throws Exception {
+        File file = new File(dir, path);
+        FileUtils.forceMkdir(file.getParentFile());
+        try (OutputStream out = new FileOutputStream(file)) {
+            XmiCasSerializer.serialize(cas, out);
+        }
+    }
+
+    private void writeBinaryCas(String path, String uri, String text, boolean deflate) throws Exception {
+        CAS cas = CasCreationUtils.createCas(tsd, null, null);
+        cas.setDocumentText(text);
+        addDocumentMetadata(cas, uri, DOC_META_TYPE);
+        BinaryCasUtils.serialize(cas, new File(dir, path), deflate);
+    }
+
+    private void addDocumentMetadata(CAS cas, String uri, String metaTypeName) {
+        Type metaType = cas.getTypeSystem().getType(metaTypeName);
+        AnnotationFS meta = cas.createAnnotation(metaType, 0, 0);
+        meta.setStringValue(metaType.getFeatureByBaseName("sourceUri"), uri);
+        cas.addFsToIndexes(meta);
+    }
+}
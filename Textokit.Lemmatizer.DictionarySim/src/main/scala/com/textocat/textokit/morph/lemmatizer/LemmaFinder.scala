@@ -0,0 +1,150 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.lemmatizer
+
+import java.util.{Arrays, HashSet => JHashSet, Set => JSet}
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import com.textocat.textokit.morph.dictionary.resource.{MorphDictionary, WordformVisitor}
+import com.textocat.textokit.morph.model.{Wordform => DictWordform}
+
+import scala.collection.JavaConversions._
+
+/**
+ * Chooses the lemma of a dictionary entry which grammemes are the most similar
+ * (by Jaccard coefficient) to target grammemes.
+ *
+ * Target grammemes are converted to a mask once, entries are scored by popcounts over
+ * the precomputed masks of the dictionary tag table, and results are memoized in a bounded cache.
+ *
+ * @param dict      a dictionary
+ * @param cacheSize maximum number of memoized (wordform, target grammemes) pairs, 0 disables the cache
+ */
+class LemmaFinder(dict: MorphDictionary, cacheSize: Int) {
+
+  private val gramModel = dict.getGramModel
+  private val tagTable = dict.getTagTable
+  private val cache: Cache[TargetTag, Option[String]] =
+    if (cacheSize > 0) CacheBuilder.newBuilder().maximumSize(cacheSize).build[TargetTag, Option[String]]()
+    else null
+
+  /**
+   * @param wordText       a wordform normalized to the dictionary form
+   * @param targetGrammems grammemes of the wordform
+   * @return a lemma or None if the wordform is not in the dictionary
+   */
+  def findLemma(wordText: String, targetGrammems: Array[String]): Option[String] = {
+    if (targetGrammems == null) {
+      return None
+    }
+    val target = toTargetTag(wordText, targetGrammems)
+    if (cache == null) {
+      return computeLemma(target)
+    }
+    var result = cache.getIfPresent(target)
+    if (result == null) {
+      result = computeLemma(target)
+      cache.put(target, result)
+    }
+    result
+  }
+
+  private def computeLemma(target: TargetTag): Option[String] = {
+    val visitor = new BestEntryVisitor(target)
+    dict.visitEntries(target.wordText, visitor)
+    if (visitor.bestLemmaId >= 0) Some(dict.getLemma(visitor.bestLemmaId).getString) else None
+  }
+
+  private def toTargetTag(wordText: String, targetGrammems: Array[String]): TargetTag = {
+    val mask = new Array[Long](tagTable.getMaskLength)
+    var unknown: JSet[String] = null
+    for (gr <- targetGrammems) {
+      val grammeme = gramModel.getGrammem(gr)
+      if (grammeme == null) {
+        // unknown grammemes never intersect with the dictionary ones but do count in unions
+        if (unknown == null) unknown = new JHashSet[String]()
+        unknown.add(gr)
+      } else {
+        val numId = grammeme.getNumId
+        mask(numId >>> 6) |= 1L << numId
+      }
+    }
+    new TargetTag(wordText, mask, if (unknown == null) 0 else unknown.size)
+  }
+
+  private class BestEntryVisitor(target: TargetTag) extends WordformVisitor {
+    var bestLemmaId = -1
+    private var bestScore = 0.0
+
+    override def visit(lemmaId: Int, wordformTagId: Int, fullTagId: Int) {
+      val score = jaccardCoef(target, tagTable.getMask(wordformTagId))
+      // keep the first of equally scored entries as maxBy does
+      if (bestLemmaId < 0 || score > bestScore) {
+        bestLemmaId = lemmaId
+        bestScore = score
+      }
+    }
+  }
+
+  private def jaccardCoef(target: TargetTag, mask: Array[Long]): Double = {
+    val targetMask = target.mask
+    var intersection = 0
+    var union = target.unknownGrams
+    var i = 0
+    while (i < targetMask.length) {
+      intersection += java.lang.Long.bitCount(targetMask(i) & mask(i))
+      union += java.lang.Long.bitCount(targetMask(i) | mask(i))
+      i += 1
+    }
+    intersection.toDouble / union
+  }
+}
+
+object LemmaFinder {
+
+  /**
+   * The original implementation that computes Jaccard coefficient over sets of grammeme strings.
+   */
+  def findLemmaBySets(dict: MorphDictionary, wordText: String, targetGrammems: Array[String]): Option[String] = {
+    val entries = dict.getEntries(wordText)
+    if (entries.size > 0 && targetGrammems != null) {
+      val lemmaId = entries.maxBy((dictWf: DictWordform) => {
+        val wfGrammems: Set[String] = dict.getGramModel().toGramSet(dictWf.getGrammems).toSet
+        jaccardCoef(targetGrammems.toSet, wfGrammems)
+      }).getLemmaId
+      Some(dict.getLemma(lemmaId).getString)
+    } else {
+      None
+    }
+  }
+
+  def jaccardCoef(first: Set[String], second: Set[String]) = {
+    (first & second).size.toDouble / (first | second).size
+  }
+}
+
+private[lemmatizer] class TargetTag(val wordText: String, val mask: Array[Long], val unknownGrams: Int) {
+
+  override def hashCode(): Int =
+    (wordText.hashCode * 31 + Arrays.hashCode(mask)) * 31 + unknownGrams
+
+  override def equals(obj: Any): Boolean = obj match {
+    case that: TargetTag => wordText == that.wordText &&
+      Arrays.equals(mask, that.mask) && unknownGrams == that.unknownGrams
+    case _ => false
+  }
+}
@@ -20,10 +20,10 @@ package com.textocat.textokit.morph.lemmatizer
 import com.textocat.textokit.morph.dictionary.WordUtils
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryHolder
 import com.textocat.textokit.morph.fs.{Word, Wordform}
-import com.textocat.textokit.morph.model.{Wordform => DictWordform}
+import org.apache.uima.UimaContext
 import org.apache.uima.cas.FeatureStructure
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase
-import org.apache.uima.fit.descriptor.ExternalResource
+import org.apache.uima.fit.descriptor.{ConfigurationParameter, ExternalResource}
 import org.apache.uima.fit.factory.AnalysisEngineFactory
 import org.apache.uima.fit.util.JCasUtil.select
 import org.apache.uima.jcas.JCas
@@ -37,25 +37,28 @@ class Lemmatizer extends JCasAnnotator_ImplBase {
   // TODO how to assign a scala val to a Java annotation attribute?
   @ExternalResource(key = "morphDictionary", mandatory = true)
   private var dictHolder: MorphDictionaryHolder = null
+  // if true, score entries by Jaccard coefficient over Scala sets of grammeme strings
+  @ConfigurationParameter(name = "legacyScoring", defaultValue = Array("false"), mandatory = false)
+  private var legacyScoring: Boolean = false
+  @ConfigurationParameter(name = "lemmaCacheSize", defaultValue = Array("100000"), mandatory = false)
+  private var lemmaCacheSize: Int = 100000
+  //
+  private var lemmaFinder: LemmaFinder = null
 
-  def jaccardCoef(first: Set[String], second: Set[String]) = {
-    (first & second).size.toDouble / (first | second).size
+  override def initialize(ctx: UimaContext) {
+    super.initialize(ctx)
+    lemmaFinder = new LemmaFinder(dictHolder.getDictionary, lemmaCacheSize)
   }
 
+  def jaccardCoef(first: Set[String], second: Set[String]) = LemmaFinder.jaccardCoef(first, second)
+
   def findLemma(wordform: Wordform): Option[String] = {
-    val dict = dictHolder.getDictionary
     val wordText = WordUtils.normalizeToDictionaryForm(wordform.getWord.getCoveredText)
-    val entries = dict.getEntries(wordText)
-    val targetGrammems = wordform.getGrammems
-
-    if (entries.size > 0 && targetGrammems != null) {
-      val lemmaId = dict.getEntries(wordText).maxBy((dictWf: DictWordform) => {
-        val wfGrammems: Set[String] = dict.getGramModel().toGramSet(dictWf.getGrammems).toSet
-        jaccardCoef(targetGrammems.toArray.toSet, wfGrammems)
-      }).getLemmaId
-      Some(dictHolder.getDictionary.getLemma(lemmaId).getString)
+    val targetGrammems = if (wordform.getGrammems == null) null else wordform.getGrammems.toArray
+    if (legacyScoring) {
+      LemmaFinder.findLemmaBySets(dictHolder.getDictionary, wordText, targetGrammems)
     } else {
-      None
+      lemmaFinder.findLemma(wordText, targetGrammems)
     }
   }
 
@@ -74,6 +77,8 @@ class Lemmatizer extends JCasAnnotator_ImplBase {
 
 object Lemmatizer {
   val ResourceKeyDictionary = "morphDictionary"
+  val ParamLegacyScoring = "legacyScoring"
+  val ParamLemmaCacheSize = "lemmaCacheSize"
 
   def createDescription() = AnalysisEngineFactory.createEngineDescription(classOf[Lemmatizer],
     LemmatizerAPI.getTypeSystemDescription)
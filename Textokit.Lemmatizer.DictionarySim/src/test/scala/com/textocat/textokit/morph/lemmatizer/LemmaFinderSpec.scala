@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.lemmatizer
+
+import java.io.File
+
+import com.textocat.textokit.morph.model.Wordform
+import com.textocat.textokit.morph.opencorpora.resource.XmlDictionaryParser
+import org.apache.commons.io.FileUtils
+import org.scalatest._
+
+import scala.collection.JavaConversions._
+
+class LemmaFinderSpec extends FlatSpec with Matchers {
+
+  private val dictFile = new File("test-data/dict.lemmatizer.test.xml")
+
+  "LemmaFinder" should "choose the same lemmas as Jaccard over grammeme string sets" in {
+    val in = FileUtils.openInputStream(dictFile)
+    val dict = try {
+      XmlDictionaryParser.parse(in)
+    } finally {
+      in.close()
+    }
+    val gm = dict.getGramModel
+    val forms = "<f t=\"([^\"]+)\"".r.findAllMatchIn(FileUtils.readFileToString(dictFile, "utf-8"))
+      .map(_.group(1)).toSet
+    val uncached = new LemmaFinder(dict, 0)
+    val cached = new LemmaFinder(dict, 16)
+    var checked = 0
+    for (form <- forms) {
+      val entries = dict.getEntries(form)
+      entries should not be empty
+      // target grammemes derived from every entry of the form and their variations
+      val targets = entries.flatMap((wf: Wordform) => {
+        val wfGrams = gm.toGramSet(wf.getGrammems).toList
+        val allGrams = gm.toGramSet(Wordform.getAllGramBits(wf, dict)).toList
+        wfGrams :: allGrams :: wfGrams.drop(1) :: ("XXX" :: wfGrams) :: (wfGrams ++ wfGrams) :: Nil
+      }) :+ Nil
+      for (target <- targets.map(_.toArray)) {
+        val expected = LemmaFinder.findLemmaBySets(dict, form, target)
+        expected should be('defined)
+        uncached.findLemma(form, target) should be(expected)
+        cached.findLemma(form, target) should be(expected)
+        cached.findLemma(form, target) should be(expected)
+        checked += 1
+      }
+    }
+    checked should be > 100
+    uncached.findLemma("село", null) should be(None)
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary;
+
+/**
+ * A reusable char buffer that holds the dictionary form of a word, see
+ * {@link WordUtils#normalizeToDictionaryForm(String)}.
+ * It allows to normalize a token directly from a document text without allocation of
+ * intermediate strings.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public final class DictionaryFormBuffer implements CharSequence {
+
+    private char[] chars;
+    private int length;
+
+    public DictionaryFormBuffer() {
+        this(32);
+    }
+
+    public DictionaryFormBuffer(int initialCapacity) {
+        chars = new char[initialCapacity];
+    }
+
+    public DictionaryFormBuffer normalize(CharSequence text) {
+        return normalize(text, 0, text.length());
+    }
+
+    /**
+     * Replaces the buffer content by the dictionary form of the given range of text.
+     *
+     * @return this instance
+     */
+    public DictionaryFormBuffer normalize(CharSequence text, int begin, int end) {
+        ensureCapacity(end - begin);
+        length = WordUtils.normalizeToDictionaryForm(text, begin, end, chars);
+        if (length < 0) {
+            // the slow path, the result might be longer than the source
+            String str = WordUtils.normalizeToDictionaryForm(text.subSequence(begin, end).toString());
+            ensureCapacity(str.length());
+            str.getChars(0, str.length(), chars, 0);
+            length = str.length();
+        }
+        return this;
+    }
+
+    /**
+     * @return the backing array, only the first {@link #length()} chars of it are valid.
+     * The array is replaced when the buffer grows.
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("[%s, %s)", start, end));
+        }
+        return new String(chars, start, end - start);
+    }
+
+    public boolean contentEquals(CharSequence cs) {
+        if (cs.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != cs.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (chars.length < capacity) {
+            chars = new char[Math.max(capacity, chars.length * 2)];
+        }
+    }
+}
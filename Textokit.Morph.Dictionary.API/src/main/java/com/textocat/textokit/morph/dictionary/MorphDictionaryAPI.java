@@ -70,7 +70,9 @@ public interface MorphDictionaryAPI {
      * @return tuple (cacheKey, dictionary instance). The purpose of cache keys:
      * if all cache keys produces by this API are collected by JVM
      * Garbage Collector, the cached {@link MorphDictionary} instance
-     * will also be collected.
+     * will also be collected. So the tuple or its cache key must be kept reachable
+     * as long as the dictionary is used, otherwise a later invocation may load another copy.
+     * Closing the tuple releases the dictionary without waiting for the Garbage Collector.
      * @throws Exception
      */
     public CachedResourceTuple<MorphDictionary> getCachedInstance() throws Exception;
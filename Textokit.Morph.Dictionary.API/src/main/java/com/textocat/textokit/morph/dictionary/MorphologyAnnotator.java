@@ -127,13 +127,15 @@ public class MorphologyAnnotator extends CasAnnotator_ImplBase {
 
     private void process(JCas cas) throws AnalysisEngineProcessException {
         AnnotationIndex<Annotation> tokenIdx = cas.getAnnotationIndex(tokenType);
+        String text = cas.getDocumentText();
         for (Annotation token : tokenIdx) {
-            String tokenStr = token.getCoveredText();
-            if (proceed(tokenStr)) {
+            int begin = token.getBegin();
+            int end = token.getEnd();
+            if (proceed(text, begin, end)) {
                 // TODO configuration point
                 // tokenizer should care about normalization
-                tokenStr = WordUtils.normalizeToDictionaryForm(tokenStr);
-                List<Wordform> wfDictEntries = dict.getEntries(tokenStr);
+                // the dictionary normalizes the token range itself
+                List<Wordform> wfDictEntries = dict.getEntries(text, begin, end);
                 if (wfDictEntries != null && !wfDictEntries.isEmpty()) {
                     // invoke adapter
                     annoAdapter.apply(cas, token, wfDictEntries);
@@ -143,7 +145,7 @@ public class MorphologyAnnotator extends CasAnnotator_ImplBase {
     }
 
     // TODO configuration point
-    private boolean proceed(String tokenStr) {
-        return WordUtils.isRussianWord(tokenStr);
+    private boolean proceed(String text, int begin, int end) {
+        return WordUtils.isRussianWord(text, begin, end);
     }
 }
\ No newline at end of file
@@ -1,4 +1,3 @@
-
 /*
  *    Copyright 2015 Textocat
  *
@@ -17,7 +16,7 @@
 
 package com.textocat.textokit.morph.dictionary;
 
-import java.lang.Character.UnicodeBlock;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 /**
@@ -27,26 +26,105 @@ import java.util.regex.Pattern;
 public class WordUtils {
 
     public static boolean isRussianWord(String token) {
-        if (token.isEmpty()) {
-            return false;
-        }
-        Character lastLetter = null;
+        return isRussianWord(token, 0, token.length());
+    }
+
+    /**
+     * @return true if the last letter of the given range of text is from the Cyrillic block
+     */
+    public static boolean isRussianWord(CharSequence text, int begin, int end) {
         // find last letter
-        for (int i = token.length() - 1; i >= 0; i--) {
-            char ch = token.charAt(i);
-            if (Character.isLetter(ch)) {
-                lastLetter = ch;
-                break;
+        for (int i = end - 1; i >= begin; i--) {
+            byte letterClass = letterClasses[text.charAt(i)];
+            if (letterClass != NOT_LETTER) {
+                // check is it cyrillic
+                return letterClass == CYRILLIC_LETTER;
             }
         }
-        if (lastLetter == null) {
-            return false;
-        }
-        // check is it cyrillic
-        return UnicodeBlock.of(lastLetter).equals(UnicodeBlock.CYRILLIC);
+        return false;
     }
 
+    /**
+     * Removes Unicode marks (Mc, Me, Mn), trims and lower-cases the given string using the default
+     * locale.
+     *
+     * @return the normalized string, or the given instance if it is already normalized
+     */
     public static String normalizeToDictionaryForm(String str) {
+        CharTable table = getCharTable();
+        int len = str.length();
+        if (len == 0) {
+            return str;
+        }
+        // check whether there is something to change
+        if (str.charAt(0) > ' ' && str.charAt(len - 1) > ' ') {
+            byte[] classes = table.classes;
+            int i = 0;
+            while (i < len && classes[str.charAt(i)] == CH_KEEP) {
+                i++;
+            }
+            if (i == len) {
+                return str;
+            }
+        }
+        char[] dest = new char[len];
+        int destLen = normalizeToDictionaryForm(table, str, 0, len, dest);
+        if (destLen < 0) {
+            return normalizeByRegex(str);
+        }
+        return new String(dest, 0, destLen);
+    }
+
+    /**
+     * Writes the dictionary form of the given range of text into the given array.
+     * See {@link #normalizeToDictionaryForm(String)}.
+     *
+     * @param dest an array of length not less than {@code end - begin}
+     * @return the length of the result, or -1 if the range contains chars that can not be
+     * normalized char-by-char (e.g., surrogates or a capital sigma). The content of dest is
+     * undefined in this case.
+     */
+    static int normalizeToDictionaryForm(CharSequence src, int begin, int end, char[] dest) {
+        return normalizeToDictionaryForm(getCharTable(), src, begin, end, dest);
+    }
+
+    private static int normalizeToDictionaryForm(CharTable table, CharSequence src, int begin, int end,
+                                                 char[] dest) {
+        byte[] classes = table.classes;
+        char[] lowerCase = table.lowerCase;
+        // length of written chars and length of them without trailing whitespace
+        int destLen = 0;
+        int trimmedLen = 0;
+        for (int i = begin; i < end; i++) {
+            char ch = src.charAt(i);
+            switch (classes[ch]) {
+                case CH_KEEP:
+                    if (ch <= ' ') {
+                        if (destLen == 0) {
+                            // leading whitespace
+                            continue;
+                        }
+                        dest[destLen++] = ch;
+                        continue;
+                    }
+                    dest[destLen++] = ch;
+                    trimmedLen = destLen;
+                    break;
+                case CH_LOWER:
+                    dest[destLen++] = lowerCase[ch];
+                    trimmedLen = destLen;
+                    break;
+                case CH_MARK:
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return trimmedLen;
+    }
+
+    // the former implementation, it handles inputs that the char table does not cover
+    private static String normalizeByRegex(String str) {
         str = unicodeMarksPattern.matcher(str).replaceAll("");
         str = str.trim().toLowerCase();
         // str = StringUtils.replaceChars(str, "ёЁ", "еЕ");
@@ -55,6 +133,75 @@ public class WordUtils {
 
     private static Pattern unicodeMarksPattern = Pattern.compile("[\\p{Mc}\\p{Me}\\p{Mn}]");
 
+    // char classes of the normalization table
+    private static final byte CH_KEEP = 0;
+    private static final byte CH_LOWER = 1;
+    private static final byte CH_MARK = 2;
+    private static final byte CH_SPECIAL = 3;
+
+    private static final class CharTable {
+        private final Locale locale;
+        private final byte[] classes = new byte[Character.MAX_VALUE + 1];
+        private final char[] lowerCase = new char[Character.MAX_VALUE + 1];
+
+        private CharTable(Locale locale) {
+            this.locale = locale;
+            for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+                classes[ch] = classify((char) ch);
+            }
+        }
+
+        private byte classify(char ch) {
+            if (Character.isSurrogate(ch) || ch == 'Σ') {
+                // need the context: a supplementary code point or a final sigma
+                return CH_SPECIAL;
+            }
+            switch (Character.getType(ch)) {
+                case Character.NON_SPACING_MARK:
+                case Character.ENCLOSING_MARK:
+                case Character.COMBINING_SPACING_MARK:
+                    return CH_MARK;
+            }
+            String lower = String.valueOf(ch).toLowerCase(locale);
+            if (lower.length() != 1) {
+                return CH_SPECIAL;
+            }
+            if (lower.charAt(0) == ch) {
+                return CH_KEEP;
+            }
+            lowerCase[ch] = lower.charAt(0);
+            return CH_LOWER;
+        }
+    }
+
+    private static volatile CharTable charTable;
+
+    private static CharTable getCharTable() {
+        CharTable result = charTable;
+        Locale locale = Locale.getDefault();
+        if (result == null || !result.locale.equals(locale)) {
+            // lower-casing depends on the default locale that might have been changed
+            result = new CharTable(locale);
+            charTable = result;
+        }
+        return result;
+    }
+
+    // letter classes for the Cyrillic word detection
+    private static final byte NOT_LETTER = 0;
+    private static final byte LETTER = 1;
+    private static final byte CYRILLIC_LETTER = 2;
+    private static final byte[] letterClasses = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            if (Character.isLetter(ch)) {
+                letterClasses[ch] = Character.UnicodeBlock.of(ch) == Character.UnicodeBlock.CYRILLIC
+                        ? CYRILLIC_LETTER : LETTER;
+            }
+        }
+    }
+
     private WordUtils() {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,390 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary.resource;
+
+import com.google.common.collect.ImmutableList;
+import com.textocat.textokit.morph.dictionary.DictionaryFormBuffer;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.LemmaLinkType;
+import com.textocat.textokit.morph.model.Wordform;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link MorphDictionary} decorator that caches results of {@link #getEntries(String)} and
+ * {@link #visitEntries(String, WordformVisitor)}.
+ * <p>
+ * Lookups go through a small LRU cache of the calling thread first, then through a bounded
+ * LRU cache shared by all threads. The shared cache is split into stripes with their own locks.
+ * Repeated strings skip the dictionary lookup including a {@link #getEntries(String)} call
+ * of a wordform predictor for an unknown string.
+ * </p>
+ * <p>
+ * Lists returned by {@link #getEntries(String)} are immutable. Other methods are delegated as is.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class CachingMorphDictionary implements MorphDictionary {
+
+    public static final int DEFAULT_SHARED_CAPACITY = 65536;
+    public static final int DEFAULT_STRIPE_COUNT = 16;
+    public static final int DEFAULT_THREAD_LOCAL_CAPACITY = 512;
+
+    private final MorphDictionary delegate;
+    private final Stripe[] stripes;
+    private final int threadLocalCapacity;
+    private final ThreadLocal<FrontCache> frontCache = new ThreadLocal<FrontCache>() {
+        @Override
+        protected FrontCache initialValue() {
+            int cell = nextHitCell.getAndIncrement() & (stripes.length - 1);
+            return new FrontCache(threadLocalCapacity, cell * HIT_CELL_STRIDE);
+        }
+    };
+    private final ThreadLocal<DictionaryFormBuffer> formBuffer = new ThreadLocal<DictionaryFormBuffer>() {
+        @Override
+        protected DictionaryFormBuffer initialValue() {
+            return new DictionaryFormBuffer();
+        }
+    };
+    // Thread-local hits are counted in cells, one per stripe, that are assigned to threads round-robin.
+    // So nothing refers to the caches of finished threads, and threads rarely share a counter.
+    private static final int HIT_CELL_STRIDE = 8;
+    private final AtomicLongArray threadLocalHitCells;
+    private final AtomicInteger nextHitCell = new AtomicInteger();
+
+    public CachingMorphDictionary(MorphDictionary delegate) {
+        this(delegate, DEFAULT_SHARED_CAPACITY, DEFAULT_STRIPE_COUNT, DEFAULT_THREAD_LOCAL_CAPACITY);
+    }
+
+    /**
+     * @param delegate            a dictionary to cache lookups of
+     * @param sharedCapacity      max number of strings in the shared cache
+     * @param stripeCount         number of independently locked parts of the shared cache.
+     *                            It is rounded up to a power of two.
+     * @param threadLocalCapacity max number of strings in the cache of each thread,
+     *                            0 disables thread-local caches
+     */
+    public CachingMorphDictionary(MorphDictionary delegate, int sharedCapacity, int stripeCount,
+                                  int threadLocalCapacity) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate");
+        }
+        if (sharedCapacity <= 0 || stripeCount <= 0 || threadLocalCapacity < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal cache sizes: shared %s, stripes %s, thread-local %s",
+                    sharedCapacity, stripeCount, threadLocalCapacity));
+        }
+        this.delegate = delegate;
+        this.threadLocalCapacity = threadLocalCapacity;
+        int stripeNum = Integer.highestOneBit(stripeCount);
+        if (stripeNum < stripeCount) {
+            stripeNum <<= 1;
+        }
+        stripes = new Stripe[stripeNum];
+        int stripeCapacity = Math.max(1, sharedCapacity / stripeNum);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        // cells are spread over cache lines
+        threadLocalHitCells = new AtomicLongArray(stripeNum * HIT_CELL_STRIDE);
+    }
+
+    public MorphDictionary getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<Wordform> getEntries(String str) {
+        Entries entries = lookup(str);
+        List<Wordform> result = entries.wordforms;
+        if (result == null) {
+            result = ImmutableList.copyOf(delegate.getEntries(str));
+            entries.wordforms = result;
+        }
+        return result;
+    }
+
+    @Override
+    public int visitEntries(String str, WordformVisitor visitor) {
+        Entries entries = lookup(str);
+        int[] ids = entries.ids;
+        if (ids == null) {
+            IdCollector collector = new IdCollector();
+            delegate.visitEntries(str, collector);
+            ids = collector.toArray();
+            entries.ids = ids;
+        }
+        for (int i = 0; i < ids.length; i += 3) {
+            visitor.visit(ids[i], ids[i + 1], ids[i + 2]);
+        }
+        return ids.length / 3;
+    }
+
+    /**
+     * The range is normalized into a buffer of the calling thread, and the cache is queried
+     * by the string of the normalized form. Thus the covered text of a token is not created.
+     */
+    @Override
+    public List<Wordform> getEntries(CharSequence text, int begin, int end) {
+        return getEntries(formBuffer.get().normalize(text, begin, end).toString());
+    }
+
+    @Override
+    public int visitEntries(CharSequence text, int begin, int end, WordformVisitor visitor) {
+        return visitEntries(formBuffer.get().normalize(text, begin, end).toString(), visitor);
+    }
+
+    private Entries lookup(String str) {
+        FrontCache front = threadLocalCapacity > 0 ? frontCache.get() : null;
+        Entries result;
+        if (front != null) {
+            result = front.get(str);
+            if (result != null) {
+                threadLocalHitCells.incrementAndGet(front.hitCell);
+                return result;
+            }
+        }
+        int h = str.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+        synchronized (stripe) {
+            result = stripe.get(str);
+            if (result != null) {
+                stripe.hits++;
+            } else {
+                stripe.misses++;
+                result = new Entries();
+                stripe.put(str, result);
+            }
+        }
+        if (front != null) {
+            front.put(str, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return a snapshot of cache counters
+     */
+    public Stats getStats() {
+        long threadLocalHits = 0;
+        for (int i = 0; i < threadLocalHitCells.length(); i += HIT_CELL_STRIDE) {
+            threadLocalHits += threadLocalHitCells.get(i);
+        }
+        long sharedHits = 0;
+        long misses = 0;
+        long evictions = 0;
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                sharedHits += stripe.hits;
+                misses += stripe.misses;
+                evictions += stripe.evictions;
+                size += stripe.size();
+            }
+        }
+        return new Stats(threadLocalHits, sharedHits, misses, evictions, size);
+    }
+
+    @Override
+    public String getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public String getRevision() {
+        return delegate.getRevision();
+    }
+
+    @Override
+    public GramModel getGramModel() {
+        return delegate.getGramModel();
+    }
+
+    @Override
+    public TagTable getTagTable() {
+        return delegate.getTagTable();
+    }
+
+    @Override
+    public LemmaLinkType getLemmaLinkType(short id) {
+        return delegate.getLemmaLinkType(id);
+    }
+
+    @Override
+    public Lemma getLemma(int lemmaId) {
+        return delegate.getLemma(lemmaId);
+    }
+
+    @Override
+    public void addLemma(Lemma lemma) {
+        delegate.addLemma(lemma);
+    }
+
+    @Override
+    public int getLemmaMaxId() {
+        return delegate.getLemmaMaxId();
+    }
+
+    @Override
+    public Map<Integer, LemmaLinkType> getLemmaOutlinks(int lemmaId) {
+        return delegate.getLemmaOutlinks(lemmaId);
+    }
+
+    @Override
+    public Map<Integer, LemmaLinkType> getLemmaInlinks(int lemmaId) {
+        return delegate.getLemmaInlinks(lemmaId);
+    }
+
+    @Override
+    public boolean containsGramSet(BitSet tag) {
+        return delegate.containsGramSet(tag);
+    }
+
+    public static class Stats {
+        private final long threadLocalHits;
+        private final long sharedHits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long threadLocalHits, long sharedHits, long misses, long evictions, int size) {
+            this.threadLocalHits = threadLocalHits;
+            this.sharedHits = sharedHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getThreadLocalHits() {
+            return threadLocalHits;
+        }
+
+        public long getSharedHits() {
+            return sharedHits;
+        }
+
+        public long getHits() {
+            return threadLocalHits + sharedHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return number of strings evicted from the shared cache
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return current number of strings in the shared cache
+         */
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %s (thread-local: %s), misses: %s, evictions: %s, size: %s",
+                    getHits(), threadLocalHits, misses, evictions, size);
+        }
+    }
+
+    /**
+     * Results of both lookup methods for a string, each is computed on the first request.
+     * A race between threads results in the same value computed twice.
+     */
+    private static class Entries {
+        private volatile List<Wordform> wordforms;
+        // triples of <lemmaId, wordformTagId, fullTagId>
+        private volatile int[] ids;
+    }
+
+    private static class Stripe extends LinkedHashMap<String, Entries> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        // guarded by this
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entries> eldest) {
+            if (size() > capacity) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class FrontCache extends LinkedHashMap<String, Entries> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        // index in threadLocalHitCells
+        private final int hitCell;
+
+        private FrontCache(int capacity, int hitCell) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.hitCell = hitCell;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entries> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static class IdCollector implements WordformVisitor {
+        private int[] ids = new int[12];
+        private int size;
+
+        @Override
+        public void visit(int lemmaId, int wordformTagId, int fullTagId) {
+            if (size + 3 > ids.length) {
+                int[] temp = ids;
+                ids = new int[temp.length * 2];
+                System.arraycopy(temp, 0, ids, 0, size);
+            }
+            ids[size++] = lemmaId;
+            ids[size++] = wordformTagId;
+            ids[size++] = fullTagId;
+        }
+
+        private int[] toArray() {
+            int[] result = new int[size];
+            System.arraycopy(ids, 0, result, 0, size);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary.resource;
+
+import org.apache.uima.fit.component.Resource_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.descriptor.ExternalResource;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.textocat.textokit.commons.util.ExternalResourceFactory2.bindExternalResource;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.createExternalResourceDescription;
+
+/**
+ * {@link MorphDictionaryHolder} that wraps a dictionary of another holder resource
+ * into {@link CachingMorphDictionary}. The wrapped holder is bound
+ * on key {@value #RESOURCE_KEY_DICTIONARY}.
+ *
+ * @author Rinat Gareev
+ */
+public class CachingMorphDictionaryResource extends Resource_ImplBase
+        implements MorphDictionaryHolder, GramModelHolder {
+
+    /**
+     * @param dictDesc description of a {@link MorphDictionaryHolder} resource
+     * @return description of a caching resource with default cache sizes that wraps the given one
+     */
+    public static ExternalResourceDescription createDescription(ExternalResourceDescription dictDesc) {
+        ExternalResourceDescription result = createExternalResourceDescription(
+                CachingMorphDictionaryResource.class);
+        bindExternalResource(result, RESOURCE_KEY_DICTIONARY, dictDesc);
+        return result;
+    }
+
+    public static final String RESOURCE_KEY_DICTIONARY = "dictionary";
+    public static final String PARAM_SHARED_CAPACITY = "sharedCapacity";
+    public static final String PARAM_STRIPE_COUNT = "stripeCount";
+    public static final String PARAM_THREAD_LOCAL_CAPACITY = "threadLocalCapacity";
+
+    private static final Logger log = LoggerFactory.getLogger(CachingMorphDictionaryResource.class);
+
+    // config fields
+    @ExternalResource(key = RESOURCE_KEY_DICTIONARY, mandatory = true)
+    private MorphDictionaryHolder dictHolder;
+    @ConfigurationParameter(name = PARAM_SHARED_CAPACITY, mandatory = false,
+            defaultValue = "" + CachingMorphDictionary.DEFAULT_SHARED_CAPACITY)
+    private int sharedCapacity;
+    @ConfigurationParameter(name = PARAM_STRIPE_COUNT, mandatory = false,
+            defaultValue = "" + CachingMorphDictionary.DEFAULT_STRIPE_COUNT)
+    private int stripeCount;
+    @ConfigurationParameter(name = PARAM_THREAD_LOCAL_CAPACITY, mandatory = false,
+            defaultValue = "" + CachingMorphDictionary.DEFAULT_THREAD_LOCAL_CAPACITY)
+    private int threadLocalCapacity;
+    // state fields
+    private volatile CachingMorphDictionary dict;
+
+    @Override
+    public void afterResourcesInitialized() throws ResourceInitializationException {
+        MorphDictionary delegate = dictHolder.getDictionary();
+        if (delegate == null) {
+            throw new ResourceInitializationException(
+                    new IllegalStateException("The wrapped dictionary holder returned null"));
+        }
+        dict = new CachingMorphDictionary(delegate, sharedCapacity, stripeCount, threadLocalCapacity);
+        log.info("Dictionary lookups are cached: shared capacity {}, stripes {}, thread-local capacity {}",
+                sharedCapacity, stripeCount, threadLocalCapacity);
+    }
+
+    @Override
+    public CachingMorphDictionary getDictionary() {
+        return dict;
+    }
+
+    @Override
+    public GramModel getGramModel() {
+        return dict.getGramModel();
+    }
+
+    @Override
+    public void destroy() {
+        if (dict != null) {
+            log.info("Dictionary lookup cache stats: {}", dict.getStats());
+        }
+        super.destroy();
+    }
+}
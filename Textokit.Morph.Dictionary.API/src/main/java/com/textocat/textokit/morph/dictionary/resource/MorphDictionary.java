@@ -16,6 +16,7 @@
 
 package com.textocat.textokit.morph.dictionary.resource;
 
+import com.textocat.textokit.morph.dictionary.WordUtils;
 import com.textocat.textokit.morph.model.Lemma;
 import com.textocat.textokit.morph.model.LemmaLinkType;
 import com.textocat.textokit.morph.model.Wordform;
@@ -37,6 +38,40 @@ public interface MorphDictionary {
 
     List<Wordform> getEntries(String str);
 
+    /**
+     * Passes the same entries as {@link #getEntries(String)} does to the given visitor.
+     * Entries of a string found in the dictionary are visited without allocation of wordform
+     * objects or grammem bitsets.
+     *
+     * @param str     a string in the dictionary normal form
+     * @param visitor receiver of the entries
+     * @return the number of visited entries
+     */
+    int visitEntries(String str, WordformVisitor visitor);
+
+    /**
+     * Returns the same entries as {@link #getEntries(String)} does for the dictionary form
+     * (see {@link WordUtils#normalizeToDictionaryForm(String)}) of the given range of text.
+     * The range is normalized into a reusable buffer, so a token can be looked up directly
+     * against a document text without creation of its covered text and normalized strings.
+     *
+     * @param text  a text, e.g., a document text
+     * @param begin the begin offset of a word in text
+     * @param end   the end offset of a word in text
+     */
+    List<Wordform> getEntries(CharSequence text, int begin, int end);
+
+    /**
+     * Range counterpart of {@link #visitEntries(String, WordformVisitor)}, see
+     * {@link #getEntries(CharSequence, int, int)}.
+     */
+    int visitEntries(CharSequence text, int begin, int end, WordformVisitor visitor);
+
+    /**
+     * @return the table that resolves tag ids passed to a {@link WordformVisitor}
+     */
+    TagTable getTagTable();
+
     LemmaLinkType getLemmaLinkType(short id);
 
     /**
@@ -43,6 +43,22 @@ public class MorphDictionaryUtils {
         return result;
     }
 
+    /**
+     * @param gm   a grammatical model
+     * @param bits grammem bits
+     * @return the given bits as a mask of {@link TagTable#getMaskLength(GramModel)} words
+     */
+    public static long[] toGramMask(GramModel gm, BitSet bits) {
+        long[] words = bits.toLongArray();
+        long[] result = new long[TagTable.getMaskLength(gm)];
+        if (words.length > result.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Grammem set %s exceeds the grammatical model", bits));
+        }
+        System.arraycopy(words, 0, result, 0, words.length);
+        return result;
+    }
+
     /**
      * @param surface        a wordform
      * @param linkTypeFilter a predicate to ignore certain link types
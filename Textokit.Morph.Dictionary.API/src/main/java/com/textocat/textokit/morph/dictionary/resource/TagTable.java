@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary.resource;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns dense int ids to the tags (grammem bitsets) of a dictionary and keeps
+ * a precomputed {@code long[]} mask of each tag. All masks of a table have the same length
+ * that is defined by the grammatical model.
+ * <p>
+ * Lookups by id and by tag do not allocate. Tags can be registered at any time,
+ * e.g., tags of predicted wordforms. Instances are thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class TagTable {
+
+    private final int maskLength;
+    private final ConcurrentMap<BitSet, Integer> idMap = Maps.newConcurrentMap();
+    // written under the lock before a new id is published via idMap
+    private volatile BitSet[] tags = new BitSet[64];
+    private volatile long[][] masks = new long[64][];
+    private int size;
+
+    public TagTable(GramModel gm) {
+        this.maskLength = getMaskLength(gm);
+    }
+
+    /**
+     * @param gm a grammatical model
+     * @return the number of long words that are enough to keep any grammem set of the given model
+     */
+    public static int getMaskLength(GramModel gm) {
+        return gm.getGrammemMaxNumId() / 64 + 1;
+    }
+
+    /**
+     * @param tag a grammem bitset
+     * @return id of the tag or -1 if the tag is not registered in this table
+     */
+    public int getId(BitSet tag) {
+        Integer id = idMap.get(tag);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param tag a grammem bitset. It is copied if it is not registered yet.
+     * @return id of the tag, a new one if the tag has not been registered before
+     */
+    public int intern(BitSet tag) {
+        Integer id = idMap.get(tag);
+        if (id != null) {
+            return id;
+        }
+        return register(tag);
+    }
+
+    private synchronized int register(BitSet tag) {
+        Integer id = idMap.get(tag);
+        if (id != null) {
+            return id;
+        }
+        long[] words = tag.toLongArray();
+        if (words.length > maskLength) {
+            throw new IllegalArgumentException(String.format(
+                    "Tag %s exceeds the grammatical model", tag));
+        }
+        long[] mask = new long[maskLength];
+        System.arraycopy(words, 0, mask, 0, words.length);
+        BitSet[] curTags = tags;
+        long[][] curMasks = masks;
+        if (size == curTags.length) {
+            curTags = Arrays.copyOf(curTags, size * 2);
+            curMasks = Arrays.copyOf(curMasks, size * 2);
+        }
+        curTags[size] = (BitSet) tag.clone();
+        curMasks[size] = mask;
+        // volatile writes publish the new elements to readers that obtain the id
+        tags = curTags;
+        masks = curMasks;
+        idMap.put(curTags[size], size);
+        return size++;
+    }
+
+    /**
+     * @param id a tag id
+     * @return a copy of the tag with the given id
+     */
+    public BitSet getTag(int id) {
+        return (BitSet) tags[id].clone();
+    }
+
+    /**
+     * @param id a tag id
+     * @return the mask of the tag with the given id. It is shared and must not be modified.
+     */
+    public long[] getMask(int id) {
+        return masks[id];
+    }
+
+    public int getMaskLength() {
+        return maskLength;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
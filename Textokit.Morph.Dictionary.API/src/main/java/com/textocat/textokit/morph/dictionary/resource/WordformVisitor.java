@@ -0,0 +1,34 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary.resource;
+
+/**
+ * Receives dictionary entries of a string from
+ * {@link MorphDictionary#visitEntries(String, WordformVisitor)}.
+ * Tag ids refer to {@link MorphDictionary#getTagTable()}.
+ *
+ * @author Rinat Gareev
+ */
+public interface WordformVisitor {
+
+    /**
+     * @param lemmaId       id of the entry lemma
+     * @param wordformTagId id of the wordform grammems without the lemma ones
+     * @param fullTagId     id of the complete tag, i.e., the lemma and the wordform grammems
+     */
+    void visit(int lemmaId, int wordformTagId, int fullTagId);
+}
@@ -43,6 +43,22 @@ public class Grammeme implements Serializable {
         this.description = description;
     }
 
+    /**
+     * Creates a grammeme with the given numerical id, e.g., when a dictionary is read from a file.
+     */
+    public Grammeme(String id, String parentId, String alias, String description, int numId) {
+        this.id = id;
+        this.parentId = parentId;
+        this.numId = numId;
+        // keep ids of grammemes created by the other constructor unique
+        if (idCounter <= numId) {
+            idCounter = numId + 1;
+        }
+
+        this.alias = alias;
+        this.description = description;
+    }
+
     public String getId() {
         return id;
     }
@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class WordUtilsTest {
+
+    private static final Pattern MARKS = Pattern.compile("[\\p{Mc}\\p{Me}\\p{Mn}]");
+
+    private static String expectedDictionaryForm(String str) {
+        return MARKS.matcher(str).replaceAll("").trim().toLowerCase();
+    }
+
+    private static boolean expectedRussianWord(String str) {
+        for (int i = str.length() - 1; i >= 0; i--) {
+            char ch = str.charAt(i);
+            if (Character.isLetter(ch)) {
+                return Character.UnicodeBlock.of(ch) == Character.UnicodeBlock.CYRILLIC;
+            }
+        }
+        return false;
+    }
+
+    private static void assertNormalized(String str, DictionaryFormBuffer buf) {
+        String expected = expectedDictionaryForm(str);
+        assertEquals(str, expected, WordUtils.normalizeToDictionaryForm(str));
+        String text = "<" + str + ">";
+        assertEquals(str, expected, buf.normalize(text, 1, text.length() - 1).toString());
+        assertTrue(str, buf.contentEquals(expected));
+    }
+
+    @Test
+    public void testNormalizeToDictionaryFormOverBMP() {
+        DictionaryFormBuffer buf = new DictionaryFormBuffer(4);
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            String c = String.valueOf((char) ch);
+            assertNormalized(c, buf);
+            assertNormalized(" " + c + "\t", buf);
+            assertNormalized("ПрИ" + c + "вЕт", buf);
+            assertNormalized(c + "Ёж" + c, buf);
+            assertNormalized("\u0301 " + c + "Z\u0308 ", buf);
+        }
+    }
+
+    @Test
+    public void testNormalizeToDictionaryFormSpecialCases() {
+        DictionaryFormBuffer buf = new DictionaryFormBuffer(1);
+        String[] inputs = {
+                "", " ", "\u0301", " \u0301 ", "ОДИН", "Ё\u0308лка",
+                // final sigma
+                "ΟΔΟΣ", "ΣΑ", "Σ",
+                // a lower-case form that is longer than the upper-case one
+                "İSTANBUL",
+                // supplementary code points: a Deseret capital letter and a combining mark
+                "\uD801\uDC00a", "a\uD834\uDD65b", "\uD801", "a\uDC00"
+        };
+        for (String str : inputs) {
+            assertNormalized(str, buf);
+        }
+    }
+
+    @Test
+    public void testNormalizeToDictionaryFormReturnsSameInstance() {
+        String str = "ёжик";
+        assertSame(str, WordUtils.normalizeToDictionaryForm(str));
+        str = "ёж ик";
+        assertSame(str, WordUtils.normalizeToDictionaryForm(str));
+        assertNotSame("Ёжик", WordUtils.normalizeToDictionaryForm("Ёжик"));
+    }
+
+    @Test
+    public void testIsRussianWordOverBMP() {
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            String c = String.valueOf((char) ch);
+            for (String str : new String[]{c, "ж" + c, "z" + c + "-1"}) {
+                assertEquals(str, expectedRussianWord(str), WordUtils.isRussianWord(str));
+            }
+        }
+        assertFalse(WordUtils.isRussianWord(""));
+        assertTrue(WordUtils.isRussianWord("слово"));
+        assertTrue(WordUtils.isRussianWord("word-слово"));
+        assertFalse(WordUtils.isRussianWord("слово-word"));
+        assertTrue(WordUtils.isRussianWord("[слово]", 1, 6));
+        assertFalse(WordUtils.isRussianWord("слово", 0, 0));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.dictionary.resource;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.textocat.textokit.morph.model.Wordform;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.component.Resource_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.createExternalResourceDescription;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CachingMorphDictionaryTest {
+
+    private static MorphDictionary testDict;
+
+    private MorphDictionary delegate;
+
+    @Before
+    public void setUp() {
+        delegate = mock(MorphDictionary.class);
+        when(delegate.getEntries(anyString())).thenReturn(ImmutableList.<Wordform>of());
+        BitSet grammems = new BitSet();
+        grammems.set(3);
+        when(delegate.getEntries("ёж")).thenReturn(ImmutableList.of(new Wordform(1, grammems)));
+        when(delegate.visitEntries(eq("ёж"), any(WordformVisitor.class))).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        WordformVisitor visitor = (WordformVisitor) invocation.getArguments()[1];
+                        visitor.visit(1, 10, 11);
+                        visitor.visit(2, 20, 21);
+                        return 2;
+                    }
+                });
+    }
+
+    @Test
+    public void testGetEntries() {
+        CachingMorphDictionary dict = new CachingMorphDictionary(delegate, 16, 4, 2);
+        List<Wordform> first = dict.getEntries("ёж");
+        assertEquals(delegate.getEntries("ёж"), first);
+        reset(delegate);
+        assertSame(first, dict.getEntries("ёж"));
+        assertSame(first, dict.getEntries(new String("ёж")));
+        verify(delegate, never()).getEntries(anyString());
+        CachingMorphDictionary.Stats stats = dict.getStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getThreadLocalHits());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testVisitEntries() {
+        CachingMorphDictionary dict = new CachingMorphDictionary(delegate, 16, 4, 0);
+        for (int i = 0; i < 3; i++) {
+            WordformVisitor visitor = mock(WordformVisitor.class);
+            assertEquals(2, dict.visitEntries("ёж", visitor));
+            verify(visitor).visit(1, 10, 11);
+            verify(visitor).visit(2, 20, 21);
+            verifyNoMoreInteractions(visitor);
+        }
+        verify(delegate, times(1)).visitEntries(eq("ёж"), any(WordformVisitor.class));
+        assertEquals(0, dict.visitEntries("уж", mock(WordformVisitor.class)));
+        CachingMorphDictionary.Stats stats = dict.getStats();
+        assertEquals(2, stats.getSharedHits());
+        assertEquals(0, stats.getThreadLocalHits());
+        assertEquals(2, stats.getMisses());
+    }
+
+    @Test
+    public void testRangeLookups() {
+        CachingMorphDictionary dict = new CachingMorphDictionary(delegate, 16, 4, 2);
+        String text = "Вот ЁЖ, а вот ёж.";
+        List<Wordform> first = dict.getEntries(text, 4, 6);
+        assertEquals(1, first.size());
+        assertSame(first, dict.getEntries(text, 14, 16));
+        assertSame(first, dict.getEntries("ёж"));
+        verify(delegate, times(1)).getEntries("ёж");
+        WordformVisitor visitor = mock(WordformVisitor.class);
+        assertEquals(2, dict.visitEntries(text, 4, 6, visitor));
+        verify(visitor).visit(1, 10, 11);
+        verify(visitor).visit(2, 20, 21);
+        assertEquals(0, dict.visitEntries(text, 0, 3, mock(WordformVisitor.class)));
+    }
+
+    @Test
+    public void testEviction() {
+        CachingMorphDictionary dict = new CachingMorphDictionary(delegate, 4, 1, 0);
+        for (int i = 0; i < 10; i++) {
+            dict.getEntries("w" + i);
+        }
+        // w6..w9 are cached
+        dict.getEntries("w9");
+        dict.getEntries("w0");
+        CachingMorphDictionary.Stats stats = dict.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(11, stats.getMisses());
+        assertEquals(7, stats.getEvictions());
+        assertEquals(4, stats.getSize());
+        verify(delegate, times(2)).getEntries("w0");
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final CachingMorphDictionary dict = new CachingMorphDictionary(delegate, 64, 4, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = Lists.newArrayList();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < 1000; i++) {
+                            if (dict.getEntries("ёж").size() != 1 || !dict.getEntries("w" + i % 100).isEmpty()) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> r : results) {
+                assertTrue(r.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        CachingMorphDictionary.Stats stats = dict.getStats();
+        assertEquals(16000, stats.getHits() + stats.getMisses());
+    }
+
+    @Test
+    public void testShortLivedThreads() throws Exception {
+        final CachingMorphDictionary dict = new CachingMorphDictionary(delegate, 64, 4, 8);
+        for (int t = 0; t < 100; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    dict.getEntries("ёж");
+                    dict.getEntries("ёж");
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        // hits of finished threads are kept
+        CachingMorphDictionary.Stats stats = dict.getStats();
+        assertEquals(100, stats.getThreadLocalHits());
+        assertEquals(99, stats.getSharedHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    public void testResource() throws Exception {
+        testDict = delegate;
+        AnalysisEngine ae = createEngine(TestAnnotator.class,
+                TestAnnotator.RESOURCE_KEY_DICTIONARY, CachingMorphDictionaryResource.createDescription(
+                        createExternalResourceDescription(TestDictionaryHolder.class)));
+        ae.process(ae.newJCas());
+        verify(delegate, times(1)).getEntries("ёж");
+    }
+
+    public static class TestDictionaryHolder extends Resource_ImplBase implements MorphDictionaryHolder {
+        @Override
+        public MorphDictionary getDictionary() {
+            return testDict;
+        }
+    }
+
+    public static class TestAnnotator extends JCasAnnotator_ImplBase {
+        static final String RESOURCE_KEY_DICTIONARY = "dict";
+
+        @ExternalResource(key = RESOURCE_KEY_DICTIONARY)
+        private MorphDictionaryHolder dictHolder;
+
+        @Override
+        public void process(JCas jCas) {
+            MorphDictionary dict = dictHolder.getDictionary();
+            assertTrue(dict instanceof CachingMorphDictionary);
+            dict.getEntries("ёж");
+            dict.getEntries("ёж");
+        }
+    }
+}
@@ -64,7 +64,8 @@ public class OpencorporaMorphDictionaryAPI implements MorphDictionaryAPI {
         ClassPathResource cpRes = locateDictionaryClasspathResource();
         CachedDictionaryDeserializer.GetDictionaryResult gdr = CachedDictionaryDeserializer.getInstance().getDictionary(
                 cpRes.getURL(), cpRes.getInputStream());
-        return new CachedResourceTuple<>(gdr.cacheKey, gdr.dictionary);
+        // a caller that does not close the tuple releases the dictionary by dropping it
+        return new CachedResourceTuple<>(gdr.ticket.releaseOnGc(), gdr.dictionary);
     }
 
     @Override
@@ -0,0 +1,325 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Sets;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.model.Grammeme;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.LemmaLinkType;
+import com.textocat.textokit.morph.model.Wordform;
+import com.textocat.textokit.morph.opencorpora.resource.WordformTST.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Set;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Reads a {@link MorphDictionaryImpl} written by {@link BinaryDictionaryWriter}.
+ * <p>
+ * Unlike Java serialization the format is read by bulk primitive reads, and the wordform trie
+ * is restored node by node without re-inserting wordform strings.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class BinaryDictionaryReader {
+
+    // "TKDB"
+    static final int MAGIC = 0x544B4442;
+    static final int FORMAT_VERSION = 1;
+    static final int KID_LO = 1;
+    static final int KID_EQ = 2;
+    static final int KID_HI = 4;
+    static final int CHUNK_SIZE = 65536;
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryDictionaryReader.class);
+
+    /**
+     * @param in a stream that supports mark/reset
+     * @return true if the stream content starts with the magic number of this format.
+     * The stream position is not changed.
+     */
+    public static boolean isBinaryDictionary(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    return false;
+                }
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            in.reset();
+        }
+    }
+
+    public static MorphDictionaryImpl read(InputStream in, String srcLabel) throws IOException {
+        log.info("About to read MorphDictionary in binary format from {}...", srcLabel);
+        long usedHeapBefore = usedHeap();
+        long timeBefore = currentTimeMillis();
+        MorphDictionaryImpl dict = new BinaryDictionaryReader(in).read();
+        log.info("Reading of MorphDictionary finished in {} ms", currentTimeMillis() - timeBefore);
+        log.info("Heap in use after reading: {} MB (before: {} MB)",
+                usedHeap() / MB, usedHeapBefore / MB);
+        return dict;
+    }
+
+    /**
+     * Read only the header of a dictionary in binary format: its version, revision and gram model.
+     *
+     * @return the gram model of the dictionary
+     */
+    public static GramModel readGramModel(InputStream in) throws IOException {
+        BinaryDictionaryReader reader = new BinaryDictionaryReader(in);
+        reader.readHeader(new MorphDictionaryImpl());
+        return reader.readGramModel();
+    }
+
+    private static final long MB = 1024 * 1024;
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private final DataInputStream in;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+    private BitSet[] gramSets;
+    // stack of trie kid slots to fill: a parent node and a kid flag
+    private Node[] slotParents = new Node[16];
+    private int[] slotKids = new int[16];
+    private int slotCount;
+
+    private BinaryDictionaryReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    private MorphDictionaryImpl read() throws IOException {
+        MorphDictionaryImpl dict = new MorphDictionaryImpl();
+        readHeader(dict);
+        dict.setGramModel(readGramModel());
+        readGramSets();
+        readLemmas(dict);
+        readLemmaLinks(dict);
+        int[] tagGramSetIds = readInts();
+        Set<BitSet> tagset = Sets.newHashSetWithExpectedSize(tagGramSetIds.length);
+        for (int gsId : tagGramSetIds) {
+            tagset.add(gramSets[gsId]);
+        }
+        readWordforms(dict, tagset);
+        dict.complete();
+        return dict;
+    }
+
+    private void readHeader(MorphDictionaryImpl dict) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IllegalStateException("Input is not a dictionary in binary format");
+        }
+        int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalStateException(String.format(
+                    "Unsupported dictionary format version %s", formatVersion));
+        }
+        dict.setVersion(readNullableUTF());
+        dict.setRevision(readNullableUTF());
+    }
+
+    private ImmutableGramModel readGramModel() throws IOException {
+        ImmutableGramModel.Builder gmBuilder = ImmutableGramModel.builder();
+        int grammemeCount = in.readInt();
+        for (int i = 0; i < grammemeCount; i++) {
+            int numId = in.readInt();
+            String id = in.readUTF();
+            String parentId = readNullableUTF();
+            String alias = readNullableUTF();
+            String description = readNullableUTF();
+            gmBuilder.addGrammeme(new Grammeme(id, parentId, alias, description, numId));
+        }
+        return gmBuilder.build();
+    }
+
+    private void readGramSets() throws IOException {
+        int gramWords = in.readInt();
+        long[] allWords = readLongs();
+        gramSets = new BitSet[allWords.length / gramWords];
+        long[] words = new long[gramWords];
+        for (int i = 0; i < gramSets.length; i++) {
+            System.arraycopy(allWords, i * gramWords, words, 0, gramWords);
+            gramSets[i] = BitSet.valueOf(words);
+        }
+    }
+
+    private void readLemmas(MorphDictionaryImpl dict) throws IOException {
+        int[] ids = readInts();
+        int[] gramSetIds = readInts();
+        int[] stringOffsets = readInts();
+        char[] chars = readChars();
+        for (int i = 0; i < ids.length; i++) {
+            Lemma lemma = new Lemma(
+                    new String(chars, stringOffsets[i], stringOffsets[i + 1] - stringOffsets[i]),
+                    gramSets[gramSetIds[i]]);
+            lemma.setId(ids[i]);
+            dict.addLemma(lemma);
+        }
+    }
+
+    private void readLemmaLinks(MorphDictionaryImpl dict) throws IOException {
+        int linkTypeCount = in.readInt();
+        for (int i = 0; i < linkTypeCount; i++) {
+            short id = in.readShort();
+            dict.addLemmaLinkType(new LemmaLinkType(id, in.readUTF()));
+        }
+        int[] from = readInts();
+        int[] to = readInts();
+        int[] types = readInts();
+        for (int i = 0; i < from.length; i++) {
+            dict.addLemmaLink(from[i], to[i], (short) types[i]);
+        }
+    }
+
+    private void readWordforms(MorphDictionaryImpl dict, Set<BitSet> tagset) throws IOException {
+        char[] labels = readChars();
+        byte[] kidFlags = readBytes();
+        int[] wfCounts = readInts();
+        int[] wfLemmaIds = readInts();
+        int[] wfGramSetIds = readInts();
+        // restore nodes in the pre-order they were written
+        WordformTST wfByString = new WordformTST();
+        int wfIndex = 0;
+        for (int i = 0; i < labels.length; i++) {
+            Node node = new Node(labels[i]);
+            if (wfCounts[i] > 0) {
+                Wordform[] data = new Wordform[wfCounts[i]];
+                for (int j = 0; j < data.length; j++, wfIndex++) {
+                    data[j] = new Wordform(wfLemmaIds[wfIndex], gramSets[wfGramSetIds[wfIndex]]);
+                }
+                node.setData(data);
+            }
+            if (i == 0) {
+                wfByString.setRootNode(node);
+            } else {
+                fillSlot(node);
+            }
+            // the lo kid must be restored first
+            if ((kidFlags[i] & KID_HI) != 0)
+                pushSlot(node, KID_HI);
+            if ((kidFlags[i] & KID_EQ) != 0)
+                pushSlot(node, KID_EQ);
+            if ((kidFlags[i] & KID_LO) != 0)
+                pushSlot(node, KID_LO);
+        }
+        if (slotCount != 0 || wfIndex != wfLemmaIds.length) {
+            throw new IllegalStateException("Inconsistent wordform trie section");
+        }
+        Set<BitSet> wordformGrammems = Sets.newHashSet();
+        for (int gsId : wfGramSetIds) {
+            wordformGrammems.add(gramSets[gsId]);
+        }
+        dict.setWordformIndex(wfByString, wordformGrammems, tagset);
+    }
+
+    private void pushSlot(Node parent, int kid) {
+        if (slotCount == slotParents.length) {
+            Node[] tempParents = slotParents;
+            slotParents = new Node[tempParents.length * 2];
+            System.arraycopy(tempParents, 0, slotParents, 0, slotCount);
+            int[] tempKids = slotKids;
+            slotKids = new int[tempKids.length * 2];
+            System.arraycopy(tempKids, 0, slotKids, 0, slotCount);
+        }
+        slotParents[slotCount] = parent;
+        slotKids[slotCount] = kid;
+        slotCount++;
+    }
+
+    private void fillSlot(Node kidNode) {
+        if (slotCount == 0) {
+            throw new IllegalStateException("Inconsistent wordform trie section");
+        }
+        slotCount--;
+        Node parent = slotParents[slotCount];
+        slotParents[slotCount] = null;
+        switch (slotKids[slotCount]) {
+            case KID_LO:
+                parent.setLoKid(kidNode);
+                break;
+            case KID_EQ:
+                parent.setEqKid(kidNode);
+                break;
+            default:
+                parent.setHiKid(kidNode);
+        }
+    }
+
+    private String readNullableUTF() throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private int[] readInts() throws IOException {
+        int[] result = new int[in.readInt()];
+        int perChunk = CHUNK_SIZE / 4;
+        for (int done = 0; done < result.length; done += perChunk) {
+            int n = Math.min(perChunk, result.length - done);
+            in.readFully(chunk, 0, n * 4);
+            chunkBuffer.clear();
+            chunkBuffer.asIntBuffer().get(result, done, n);
+        }
+        return result;
+    }
+
+    private long[] readLongs() throws IOException {
+        long[] result = new long[in.readInt()];
+        int perChunk = CHUNK_SIZE / 8;
+        for (int done = 0; done < result.length; done += perChunk) {
+            int n = Math.min(perChunk, result.length - done);
+            in.readFully(chunk, 0, n * 8);
+            chunkBuffer.clear();
+            chunkBuffer.asLongBuffer().get(result, done, n);
+        }
+        return result;
+    }
+
+    private char[] readChars() throws IOException {
+        char[] result = new char[in.readInt()];
+        int perChunk = CHUNK_SIZE / 2;
+        for (int done = 0; done < result.length; done += perChunk) {
+            int n = Math.min(perChunk, result.length - done);
+            in.readFully(chunk, 0, n * 2);
+            chunkBuffer.clear();
+            chunkBuffer.asCharBuffer().get(result, done, n);
+        }
+        return result;
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] result = new byte[in.readInt()];
+        in.readFully(result);
+        return result;
+    }
+}
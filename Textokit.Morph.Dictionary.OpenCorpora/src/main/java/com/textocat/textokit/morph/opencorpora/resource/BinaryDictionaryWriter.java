@@ -0,0 +1,331 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.model.Grammeme;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.LemmaLinkType;
+import com.textocat.textokit.morph.model.Wordform;
+import com.textocat.textokit.morph.opencorpora.resource.WordformTST.Node;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static com.textocat.textokit.morph.opencorpora.resource.BinaryDictionaryReader.*;
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Writes a {@link MorphDictionaryImpl} in the format of {@link BinaryDictionaryReader}.
+ * Sections follow each other in the order they are read:
+ * <ol>
+ * <li>header: magic number, format version, dictionary version and revision,</li>
+ * <li>grammeme table,</li>
+ * <li>unique grammem sets as long words, referenced by their index in the following sections,</li>
+ * <li>lemma table: ids, grammem set indexes and strings,</li>
+ * <li>lemma link types and lemma links,</li>
+ * <li>complete tags,</li>
+ * <li>wordform trie nodes in pre-order: split chars, kid flags and wordforms.</li>
+ * </ol>
+ * Every array is prefixed by its length.
+ *
+ * @author Rinat Gareev
+ */
+public class BinaryDictionaryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryDictionaryWriter.class);
+
+    public static void write(MorphDictionaryImpl dict, File outFile) throws IOException {
+        log.info("About to write MorphDictionary in binary format into {}...", outFile);
+        long timeBefore = currentTimeMillis();
+        OutputStream out = new BufferedOutputStream(FileUtils.openOutputStream(outFile), 8192 * 8);
+        try {
+            write(dict, out);
+        } finally {
+            out.close();
+        }
+        log.info("Writing finished in {} ms.\nOutput size: {} bytes",
+                currentTimeMillis() - timeBefore, outFile.length());
+    }
+
+    public static void write(MorphDictionaryImpl dict, OutputStream out) throws IOException {
+        new BinaryDictionaryWriter(dict, new DataOutputStream(out)).write();
+    }
+
+    private final MorphDictionaryImpl dict;
+    private final DataOutputStream out;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+    // unique grammem sets -> their indexes in the table
+    private final Map<BitSet, Integer> gramSetIds = Maps.newHashMap();
+    private final List<BitSet> gramSets = Lists.newArrayList();
+
+    private BinaryDictionaryWriter(MorphDictionaryImpl dict, DataOutputStream out) {
+        this.dict = dict;
+        this.out = out;
+    }
+
+    private void write() throws IOException {
+        // the grammem set table precedes the sections that reference it.
+        // Hash-ordered collections are sorted to make the output reproducible.
+        List<BitSet> tags = Lists.newArrayList(dict.getTagset());
+        Collections.sort(tags, GRAM_SET_COMPARATOR);
+        int[] tagGramSetIds = new int[tags.size()];
+        int ti = 0;
+        for (BitSet tag : tags) {
+            tagGramSetIds[ti++] = getGramSetId(tag);
+        }
+        SortedMap<Integer, Lemma> lemmaMap = new TreeMap<Integer, Lemma>(dict.getLemmaMap());
+        int[] lemmaGramSetIds = new int[lemmaMap.size()];
+        int li = 0;
+        for (Lemma lemma : lemmaMap.values()) {
+            lemmaGramSetIds[li++] = getGramSetId(lemma.getGrammems());
+        }
+        TrieSections trie = new TrieSections(dict.getWfByString().getRootNode());
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeNullableUTF(dict.getVersion());
+        writeNullableUTF(dict.getRevision());
+        writeGramModel(dict.getGramModel());
+        writeGramSets();
+        writeLemmas(lemmaMap, lemmaGramSetIds);
+        writeLemmaLinks();
+        writeInts(tagGramSetIds);
+        // wordforms
+        writeChars(trie.labels);
+        writeBytes(trie.kidFlags);
+        writeInts(trie.wfCounts);
+        writeInts(trie.wfLemmaIds);
+        writeInts(trie.wfGramSetIds);
+        out.flush();
+        log.info("Lemmas: {}, wordforms: {}, trie nodes: {}, unique grammem sets: {}",
+                lemmaMap.size(), trie.wfLemmaIds.length, trie.labels.length, gramSets.size());
+    }
+
+    private void writeGramModel(GramModel gm) throws IOException {
+        List<Grammeme> grammemes = Lists.newArrayList();
+        for (int numId = 0; numId <= gm.getGrammemMaxNumId(); numId++) {
+            Grammeme gr = gm.getGrammem(numId);
+            if (gr != null) {
+                grammemes.add(gr);
+            }
+        }
+        out.writeInt(grammemes.size());
+        for (Grammeme gr : grammemes) {
+            out.writeInt(gr.getNumId());
+            out.writeUTF(gr.getId());
+            writeNullableUTF(gr.getParentId());
+            writeNullableUTF(gr.getAlias());
+            writeNullableUTF(gr.getDescription());
+        }
+    }
+
+    private void writeGramSets() throws IOException {
+        int gramWords = dict.getGramModel().getGrammemMaxNumId() / 64 + 1;
+        long[] allWords = new long[gramSets.size() * gramWords];
+        for (int i = 0; i < gramSets.size(); i++) {
+            long[] words = gramSets.get(i).toLongArray();
+            if (words.length > gramWords) {
+                throw new IllegalStateException(String.format(
+                        "Grammem set %s exceeds the grammatical model", gramSets.get(i)));
+            }
+            System.arraycopy(words, 0, allWords, i * gramWords, words.length);
+        }
+        out.writeInt(gramWords);
+        writeLongs(allWords);
+    }
+
+    private void writeLemmas(SortedMap<Integer, Lemma> lemmaMap, int[] lemmaGramSetIds)
+            throws IOException {
+        int[] ids = new int[lemmaMap.size()];
+        int[] stringOffsets = new int[lemmaMap.size() + 1];
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        for (Lemma lemma : lemmaMap.values()) {
+            ids[i] = lemma.getId();
+            stringOffsets[i] = sb.length();
+            sb.append(lemma.getString());
+            i++;
+        }
+        stringOffsets[i] = sb.length();
+        char[] chars = new char[sb.length()];
+        sb.getChars(0, sb.length(), chars, 0);
+        writeInts(ids);
+        writeInts(lemmaGramSetIds);
+        writeInts(stringOffsets);
+        writeChars(chars);
+    }
+
+    private void writeLemmaLinks() throws IOException {
+        SortedMap<Short, LemmaLinkType> linkTypeMap =
+                new TreeMap<Short, LemmaLinkType>(dict.getLemmaLinkTypeMap());
+        out.writeInt(linkTypeMap.size());
+        for (LemmaLinkType linkType : linkTypeMap.values()) {
+            out.writeShort(linkType.getId());
+            out.writeUTF(linkType.getName());
+        }
+        Table<Integer, Integer, LemmaLinkType> linkTable = dict.getLemmaLinkTable();
+        int[] from = new int[linkTable.size()];
+        int[] to = new int[linkTable.size()];
+        int[] types = new int[linkTable.size()];
+        int i = 0;
+        List<Table.Cell<Integer, Integer, LemmaLinkType>> cells = Lists.newArrayList(linkTable.cellSet());
+        Collections.sort(cells, new Comparator<Table.Cell<Integer, Integer, LemmaLinkType>>() {
+            @Override
+            public int compare(Table.Cell<Integer, Integer, LemmaLinkType> first,
+                               Table.Cell<Integer, Integer, LemmaLinkType> second) {
+                int rowComp = first.getRowKey().compareTo(second.getRowKey());
+                return rowComp != 0 ? rowComp : first.getColumnKey().compareTo(second.getColumnKey());
+            }
+        });
+        for (Table.Cell<Integer, Integer, LemmaLinkType> cell : cells) {
+            from[i] = cell.getRowKey();
+            to[i] = cell.getColumnKey();
+            types[i] = cell.getValue().getId();
+            i++;
+        }
+        writeInts(from);
+        writeInts(to);
+        writeInts(types);
+    }
+
+    private static final Comparator<BitSet> GRAM_SET_COMPARATOR = new Comparator<BitSet>() {
+        @Override
+        public int compare(BitSet first, BitSet second) {
+            int i = first.nextSetBit(0);
+            int j = second.nextSetBit(0);
+            while (i >= 0 && i == j) {
+                i = first.nextSetBit(i + 1);
+                j = second.nextSetBit(j + 1);
+            }
+            // a set that is exhausted earlier goes first as -1 is less than any bit index
+            return Integer.compare(i, j);
+        }
+    };
+
+    private int getGramSetId(BitSet gs) {
+        Integer id = gramSetIds.get(gs);
+        if (id == null) {
+            id = gramSets.size();
+            gramSets.add(gs);
+            gramSetIds.put(gs, id);
+        }
+        return id;
+    }
+
+    private void writeNullableUTF(String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null) {
+            out.writeUTF(str);
+        }
+    }
+
+    private void writeInts(int[] arr) throws IOException {
+        out.writeInt(arr.length);
+        int perChunk = CHUNK_SIZE / 4;
+        for (int done = 0; done < arr.length; done += perChunk) {
+            int n = Math.min(perChunk, arr.length - done);
+            chunkBuffer.clear();
+            chunkBuffer.asIntBuffer().put(arr, done, n);
+            out.write(chunk, 0, n * 4);
+        }
+    }
+
+    private void writeLongs(long[] arr) throws IOException {
+        out.writeInt(arr.length);
+        int perChunk = CHUNK_SIZE / 8;
+        for (int done = 0; done < arr.length; done += perChunk) {
+            int n = Math.min(perChunk, arr.length - done);
+            chunkBuffer.clear();
+            chunkBuffer.asLongBuffer().put(arr, done, n);
+            out.write(chunk, 0, n * 8);
+        }
+    }
+
+    private void writeChars(char[] arr) throws IOException {
+        out.writeInt(arr.length);
+        int perChunk = CHUNK_SIZE / 2;
+        for (int done = 0; done < arr.length; done += perChunk) {
+            int n = Math.min(perChunk, arr.length - done);
+            chunkBuffer.clear();
+            chunkBuffer.asCharBuffer().put(arr, done, n);
+            out.write(chunk, 0, n * 2);
+        }
+    }
+
+    private void writeBytes(byte[] arr) throws IOException {
+        out.writeInt(arr.length);
+        out.write(arr);
+    }
+
+    private class TrieSections {
+        private final char[] labels;
+        private final byte[] kidFlags;
+        private final int[] wfCounts;
+        private final int[] wfLemmaIds;
+        private final int[] wfGramSetIds;
+
+        private TrieSections(Node rootNode) {
+            List<Node> preorder = Lists.newArrayList();
+            int wfCount = 0;
+            Deque<Node> stack = new ArrayDeque<Node>();
+            if (rootNode != null) {
+                stack.addFirst(rootNode);
+            }
+            while (!stack.isEmpty()) {
+                Node node = stack.removeFirst();
+                preorder.add(node);
+                wfCount += Iterators.size(node.iterator());
+                // lo subtree goes first
+                if (node.getHiKid() != null)
+                    stack.addFirst(node.getHiKid());
+                if (node.getEqKid() != null)
+                    stack.addFirst(node.getEqKid());
+                if (node.getLoKid() != null)
+                    stack.addFirst(node.getLoKid());
+            }
+            labels = new char[preorder.size()];
+            kidFlags = new byte[preorder.size()];
+            wfCounts = new int[preorder.size()];
+            wfLemmaIds = new int[wfCount];
+            wfGramSetIds = new int[wfCount];
+            int wfIndex = 0;
+            for (int i = 0; i < preorder.size(); i++) {
+                Node node = preorder.get(i);
+                labels[i] = node.getSplitchar();
+                kidFlags[i] = (byte) ((node.getLoKid() != null ? KID_LO : 0)
+                        | (node.getEqKid() != null ? KID_EQ : 0)
+                        | (node.getHiKid() != null ? KID_HI : 0));
+                for (Wordform wf : node) {
+                    wfLemmaIds[wfIndex] = wf.getLemmaId();
+                    wfGramSetIds[wfIndex] = getGramSetId(wf.getGrammems());
+                    wfIndex++;
+                    wfCounts[i]++;
+                }
+            }
+        }
+    }
+}
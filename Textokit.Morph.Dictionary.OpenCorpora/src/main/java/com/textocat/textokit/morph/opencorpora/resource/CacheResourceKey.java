@@ -16,21 +16,56 @@
 
 package com.textocat.textokit.morph.opencorpora.resource;
 
-import com.textocat.textokit.commons.util.CacheKey;
+import com.google.common.base.Objects;
 
 import java.net.URL;
 
 /**
+ * A key of a {@link com.textocat.textokit.morph.dictionary.resource.MorphDictionary} in
+ * {@link com.textocat.textokit.commons.util.SharedResourceRegistry}.
+ * A wordform predictor is set into a dictionary instance, so it is a part of the key.
+ *
  * @author Rinat Gareev
  */
-class CacheResourceKey implements CacheKey {
-    private URL url;
+class CacheResourceKey {
+    // URL#equals may resolve host names, so compare external forms
+    private final String url;
+    private final String predictorClassName;
 
     public CacheResourceKey(URL url) {
-        this.url = url;
+        this(url, null);
+    }
+
+    public CacheResourceKey(URL url, String predictorClassName) {
+        this.url = url.toExternalForm();
+        this.predictorClassName = predictorClassName;
     }
 
-    public URL getUrl() {
+    public String getUrl() {
         return url;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CacheResourceKey)) {
+            return false;
+        }
+        CacheResourceKey that = (CacheResourceKey) obj;
+        return url.equals(that.url) && Objects.equal(predictorClassName, that.predictorClassName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(url, predictorClassName);
+    }
+
+    @Override
+    public String toString() {
+        return predictorClassName == null
+                ? String.format("MorphDictionary from %s", url)
+                : String.format("MorphDictionary from %s with %s", url, predictorClassName);
+    }
+}
@@ -16,7 +16,8 @@
 
 package com.textocat.textokit.morph.opencorpora.resource;
 
-import com.google.common.base.Objects;
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -26,10 +27,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.Map;
-import java.util.WeakHashMap;
 
 /**
+ * Deserializes {@link MorphDictionary} instances through {@link SharedResourceRegistry},
+ * so a dictionary is read once per URL while any of its tickets is in use.
+ *
  * @author Rinat Gareev
  */
 public class CachedDictionaryDeserializer {
@@ -41,48 +43,43 @@ public class CachedDictionaryDeserializer {
     }
 
     public static class GetDictionaryResult {
-        public final CacheResourceKey cacheKey;
+        /**
+         * The dictionary is retained until this ticket is closed or garbage-collected.
+         */
+        public final Ticket<MorphDictionary> ticket;
         public final MorphDictionary dictionary;
 
-        public GetDictionaryResult(CacheResourceKey cacheKey, MorphDictionary dictionary) {
-            this.cacheKey = cacheKey;
-            this.dictionary = dictionary;
+        public GetDictionaryResult(Ticket<MorphDictionary> ticket) {
+            this.ticket = ticket;
+            this.dictionary = ticket.getResource();
         }
     }
 
     // config fields
     private final Logger log = LoggerFactory.getLogger(getClass());
-    // state fields
-    private final WeakHashMap<CacheResourceKey, MorphDictionary> instanceCache = new WeakHashMap<CacheResourceKey, MorphDictionary>();
 
     private CachedDictionaryDeserializer() {
     }
 
-    public GetDictionaryResult getDictionary(URL url, InputStream in) throws Exception {
-        CacheResourceKey cacheKey = null;
-        MorphDictionary dictionary = null;
-        synchronized (instanceCache) {
-            for (Map.Entry<CacheResourceKey, MorphDictionary> cEntry : instanceCache.entrySet()) {
-                if (Objects.equal(url, cEntry.getKey().getUrl())) {
-                    cacheKey = cEntry.getKey();
-                    dictionary = cEntry.getValue();
-                    IOUtils.closeQuietly(in);
-                    log.info("Reusing MorphDictionary instance deserialized from {}", url);
-                    break;
-                }
-            }
-            if (dictionary == null) {
-                cacheKey = new CacheResourceKey(url);
-                dictionary = DictionaryDeserializer.from(in, String.valueOf(url));
-                log.info("A wordform predictor has not been set in deserialized MorphDictionary");
-                instanceCache.put(cacheKey, dictionary);
-            }
-        }
-        // sanity check
-        if (cacheKey == null || dictionary == null) {
-            throw new IllegalStateException();
+    /**
+     * @param url identifies the dictionary
+     * @param in  dictionary content, it is read only if the dictionary is not loaded yet.
+     *            The stream is closed by this method.
+     */
+    public GetDictionaryResult getDictionary(final URL url, final InputStream in) throws Exception {
+        try {
+            return new GetDictionaryResult(SharedResourceRegistry.getInstance().acquire(
+                    new CacheResourceKey(url), new SharedResourceRegistry.Loader<MorphDictionary>() {
+                        @Override
+                        public MorphDictionary load() throws Exception {
+                            MorphDictionary dictionary = DictionaryDeserializer.from(in, String.valueOf(url));
+                            log.info("A wordform predictor has not been set in deserialized MorphDictionary");
+                            return dictionary;
+                        }
+                    }));
+        } finally {
+            IOUtils.closeQuietly(in);
         }
-        return new GetDictionaryResult(cacheKey, dictionary);
     }
 
     public GetDictionaryResult getDictionary(File file) throws Exception {
@@ -16,6 +16,7 @@
 
 package com.textocat.textokit.morph.opencorpora.resource;
 
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
@@ -45,7 +46,7 @@ public class CachedSerializedDictionaryResource implements MorphDictionaryHolder
 
     // state fields
     @SuppressWarnings("unused")
-    private CacheResourceKey cacheKey;
+    private Ticket<MorphDictionary> dictTicket;
     private MorphDictionary dict;
 
     /**
@@ -61,7 +62,7 @@ public class CachedSerializedDictionaryResource implements MorphDictionaryHolder
         try {
             CachedDictionaryDeserializer deser = CachedDictionaryDeserializer.getInstance();
             GetDictionaryResult deserResult = deser.getDictionary(resUrl, dr.getInputStream());
-            this.cacheKey = deserResult.cacheKey;
+            this.dictTicket = deserResult.ticket.releaseOnGc();
             this.dict = deserResult.dictionary;
         } catch (Exception e) {
             throw new ResourceInitializationException(e);
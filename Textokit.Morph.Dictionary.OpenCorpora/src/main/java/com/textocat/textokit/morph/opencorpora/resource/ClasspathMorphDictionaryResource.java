@@ -17,6 +17,7 @@
 
 package com.textocat.textokit.morph.opencorpora.resource;
 
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
@@ -36,8 +37,7 @@ public class ClasspathMorphDictionaryResource extends ClasspathResourceBase
         implements MorphDictionaryHolder, GramModelHolder {
 
     // state fields
-    @SuppressWarnings({"FieldCanBeLocal", "unused"})
-    private CacheResourceKey cacheKey;
+    private Ticket<MorphDictionary> dictTicket;
     private MorphDictionary dict;
 
     @Override
@@ -54,7 +54,7 @@ public class ClasspathMorphDictionaryResource extends ClasspathResourceBase
             try (InputStream resourceIS = resource.getInputStream()) {
                 CachedDictionaryDeserializer.GetDictionaryResult getDictResult =
                         CachedDictionaryDeserializer.getInstance().getDictionary(resource.getURL(), resourceIS);
-                this.cacheKey = getDictResult.cacheKey;
+                this.dictTicket = getDictResult.ticket;
                 this.dict = getDictResult.dictionary;
             }
         } catch (Exception e) {
@@ -63,6 +63,16 @@ public class ClasspathMorphDictionaryResource extends ClasspathResourceBase
         return true;
     }
 
+    @Override
+    public void destroy() {
+        if (dictTicket != null) {
+            dictTicket.close();
+            dictTicket = null;
+            dict = null;
+        }
+        super.destroy();
+    }
+
     @Override
     public MorphDictionary getDictionary() {
         return dict;
@@ -0,0 +1,48 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.textocat.textokit.commons.cli.FileValueValidator;
+
+import java.io.File;
+
+/**
+ * Converts a serialized dictionary produced by {@link XmlDictionaryParserLauncher}
+ * into the format of {@link CompactMorphDictionary}.
+ *
+ * @author Rinat Gareev
+ */
+public class CompactDictionaryLauncher {
+
+    @Parameter(names = {"-i", "--input-file"}, required = true, validateValueWith = FileValueValidator.class)
+    private File serializedDictFile;
+    @Parameter(names = {"-o", "--output-file"}, required = true)
+    private File outputFile;
+
+    private CompactDictionaryLauncher() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CompactDictionaryLauncher cfg = new CompactDictionaryLauncher();
+        new JCommander(cfg, args);
+
+        MorphDictionaryImpl dict = DictionaryDeserializer.from(cfg.serializedDictFile);
+        CompactDictionaryWriter.write(dict, cfg.outputFile);
+    }
+}
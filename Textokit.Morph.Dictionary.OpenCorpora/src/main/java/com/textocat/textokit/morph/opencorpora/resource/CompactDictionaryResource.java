@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryHolder;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+import static com.textocat.textokit.morph.opencorpora.resource.ConfigurableSerializedDictionaryResource.makePredictor;
+
+/**
+ * {@link MorphDictionaryHolder} that maps a dictionary file written by {@link CompactDictionaryWriter}.
+ * The data resource URL must point to a local file.
+ *
+ * @author Rinat Gareev
+ */
+public class CompactDictionaryResource implements MorphDictionaryHolder,
+        GramModelHolder, SharedResourceObject {
+
+    public static final String PARAM_PREDICTOR_CLASS_NAME = "predictorClassName";
+    private static final Logger log = LoggerFactory.getLogger(CompactDictionaryResource.class);
+
+    // config fields
+    @ConfigurationParameter(name = PARAM_PREDICTOR_CLASS_NAME, mandatory = false)
+    private String wfPredictorClassName;
+    // state fields
+    private CompactMorphDictionary dict;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void load(DataResource dr) throws ResourceInitializationException {
+        ConfigurationParameterInitializer.initialize(this, dr);
+        File dictFile = FileUtils.toFile(dr.getUrl());
+        if (dictFile == null) {
+            throw new ResourceInitializationException(new IllegalArgumentException(String.format(
+                    "Can't map %s as it is not a local file", dr.getUrl())));
+        }
+        try {
+            dict = CompactMorphDictionary.open(dictFile);
+            if (wfPredictorClassName != null) {
+                @SuppressWarnings("unchecked")
+                Class<? extends WordformPredictor> wfPredictorClass = (Class<? extends WordformPredictor>)
+                        Class.forName(wfPredictorClassName);
+                WordformPredictor wfPredictor = makePredictor(wfPredictorClass, dict);
+                dict.setWfPredictor(wfPredictor);
+                log.info("{} was set in mapped MorphDictionary",
+                        wfPredictor.getClass().getSimpleName());
+            } else {
+                log.info("A wordform predictor has not been set in mapped MorphDictionary");
+            }
+        } catch (Exception e) {
+            throw new ResourceInitializationException(e);
+        }
+    }
+
+    @Override
+    public MorphDictionary getDictionary() {
+        return dict;
+    }
+
+    @Override
+    public GramModel getGramModel() {
+        return dict.getGramModel();
+    }
+}
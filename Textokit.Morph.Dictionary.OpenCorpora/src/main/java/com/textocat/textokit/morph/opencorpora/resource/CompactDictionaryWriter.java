@@ -0,0 +1,317 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.LemmaLinkType;
+import com.textocat.textokit.morph.model.Wordform;
+import com.textocat.textokit.morph.opencorpora.resource.WordformTST.Node;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+import static com.textocat.textokit.morph.opencorpora.resource.CompactMorphDictionary.FORMAT_VERSION;
+import static com.textocat.textokit.morph.opencorpora.resource.CompactMorphDictionary.MAGIC;
+import static com.textocat.textokit.morph.opencorpora.resource.CompactMorphDictionary.SECTION_ALIGNMENT;
+import static com.textocat.textokit.morph.opencorpora.resource.CompactWordformTrie.NO_NODE;
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Writes a {@link MorphDictionaryImpl} in the format of {@link CompactMorphDictionary}.
+ * <p>
+ * Trie nodes are numbered in breadth-first order starting from the root. Grammem bitsets
+ * of wordforms, lemmas and complete tags are stored once in a table and referenced by index.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class CompactDictionaryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactDictionaryWriter.class);
+
+    public static void write(MorphDictionaryImpl dict, File outFile) throws IOException {
+        log.info("About to write compact MorphDictionary into {}...", outFile);
+        long timeBefore = currentTimeMillis();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                FileUtils.openOutputStream(outFile), 8192 * 8));
+        try {
+            new CompactDictionaryWriter(dict, out).write();
+        } finally {
+            out.close();
+        }
+        log.info("Compact MorphDictionary has been written in {} ms.\nOutput size: {} bytes",
+                currentTimeMillis() - timeBefore, outFile.length());
+    }
+
+    private final MorphDictionaryImpl dict;
+    private final DataOutputStream out;
+    // unique grammem sets -> their indexes in the table
+    private final Map<BitSet, Integer> gramSetIds = Maps.newHashMap();
+    private final List<BitSet> gramSets = Lists.newArrayList();
+
+    private CompactDictionaryWriter(MorphDictionaryImpl dict, DataOutputStream out) {
+        this.dict = dict;
+        this.out = out;
+    }
+
+    private void write() throws IOException {
+        // collect all sections in memory first because the grammem set table precedes them
+        int[] tagGramSetIds = new int[dict.getTagset().size()];
+        int ti = 0;
+        for (BitSet tag : dict.getTagset()) {
+            tagGramSetIds[ti++] = getGramSetId(tag);
+        }
+        TrieArrays trie = new TrieArrays(dict.getWfByString().getRootNode());
+        LemmaArrays lemmas = new LemmaArrays(dict.getLemmaMap());
+        LinkArrays links = new LinkArrays(dict.getLemmaLinkTable());
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeMeta();
+        // grammem sets
+        int gramWords = dict.getGramModel().getGrammemMaxNumId() / 64 + 1;
+        out.writeInt(gramWords);
+        out.writeInt(gramSets.size());
+        align();
+        for (BitSet gs : gramSets) {
+            long[] words = gs.toLongArray();
+            if (words.length > gramWords) {
+                throw new IllegalStateException(String.format(
+                        "Grammem set %s exceeds the grammatical model", gs));
+            }
+            for (int i = 0; i < gramWords; i++) {
+                out.writeLong(i < words.length ? words[i] : 0);
+            }
+        }
+        // tagset
+        out.writeInt(tagGramSetIds.length);
+        writeInts(tagGramSetIds);
+        // wordform trie
+        out.writeInt(trie.labels.length);
+        writeChars(trie.labels);
+        writeInts(trie.loKids);
+        writeInts(trie.eqKids);
+        writeInts(trie.hiKids);
+        writeInts(trie.wfOffsets);
+        out.writeInt(trie.wfLemmaIds.length);
+        writeInts(trie.wfLemmaIds);
+        writeInts(trie.wfGramSetIds);
+        // lemmas
+        out.writeInt(lemmas.ids.length);
+        writeInts(lemmas.ids);
+        writeInts(lemmas.gramSetIds);
+        writeInts(lemmas.stringOffsets);
+        out.writeInt(lemmas.chars.length);
+        writeChars(lemmas.chars);
+        // lemma links
+        out.writeInt(links.from.length);
+        writeInts(links.from);
+        writeInts(links.to);
+        writeInts(links.types);
+        writeInts(links.inlinkOrder);
+        out.flush();
+        log.info("Trie nodes: {}, wordforms: {}, lemmas: {}, lemma links: {}, unique grammem sets: {}",
+                trie.labels.length, trie.wfLemmaIds.length, lemmas.ids.length,
+                links.from.length, gramSets.size());
+    }
+
+    private void writeMeta() throws IOException {
+        ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(metaBytes);
+        try {
+            oos.writeObject(dict.getVersion());
+            oos.writeObject(dict.getRevision());
+            oos.writeObject(dict.getGramModel());
+            oos.writeObject(Maps.newHashMap(dict.getLemmaLinkTypeMap()));
+        } finally {
+            oos.close();
+        }
+        out.writeInt(metaBytes.size());
+        metaBytes.writeTo(out);
+    }
+
+    private int getGramSetId(BitSet gs) {
+        Integer id = gramSetIds.get(gs);
+        if (id == null) {
+            id = gramSets.size();
+            gramSets.add(gs);
+            gramSetIds.put(gs, id);
+        }
+        return id;
+    }
+
+    private void align() throws IOException {
+        while (out.size() % SECTION_ALIGNMENT != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    private void writeInts(int[] arr) throws IOException {
+        align();
+        for (int v : arr) {
+            out.writeInt(v);
+        }
+    }
+
+    private void writeChars(char[] arr) throws IOException {
+        align();
+        for (char c : arr) {
+            out.writeChar(c);
+        }
+    }
+
+    private class TrieArrays {
+        private final char[] labels;
+        private final int[] loKids;
+        private final int[] eqKids;
+        private final int[] hiKids;
+        private final int[] wfOffsets;
+        private final int[] wfLemmaIds;
+        private final int[] wfGramSetIds;
+
+        private TrieArrays(Node rootNode) {
+            // 1st pass - count nodes and wordforms
+            int nodeCount = 0;
+            int wfCount = 0;
+            Deque<Node> queue = new ArrayDeque<Node>();
+            if (rootNode != null) {
+                queue.addLast(rootNode);
+            }
+            while (!queue.isEmpty()) {
+                Node node = queue.removeFirst();
+                nodeCount++;
+                wfCount += Iterators.size(node.iterator());
+                enqueueKids(queue, node);
+            }
+            labels = new char[nodeCount];
+            loKids = new int[nodeCount];
+            eqKids = new int[nodeCount];
+            hiKids = new int[nodeCount];
+            wfOffsets = new int[nodeCount + 1];
+            wfLemmaIds = new int[wfCount];
+            wfGramSetIds = new int[wfCount];
+            // 2nd pass - the same traversal order, a kid index is assigned when the kid is enqueued
+            if (rootNode != null) {
+                queue.addLast(rootNode);
+            }
+            int nextIndex = 1;
+            int wfIndex = 0;
+            for (int i = 0; !queue.isEmpty(); i++) {
+                Node node = queue.removeFirst();
+                labels[i] = node.getSplitchar();
+                loKids[i] = node.getLoKid() == null ? NO_NODE : nextIndex++;
+                eqKids[i] = node.getEqKid() == null ? NO_NODE : nextIndex++;
+                hiKids[i] = node.getHiKid() == null ? NO_NODE : nextIndex++;
+                wfOffsets[i] = wfIndex;
+                for (Wordform wf : node) {
+                    wfLemmaIds[wfIndex] = wf.getLemmaId();
+                    wfGramSetIds[wfIndex] = getGramSetId(wf.getGrammems());
+                    wfIndex++;
+                }
+                enqueueKids(queue, node);
+            }
+            wfOffsets[nodeCount] = wfIndex;
+        }
+
+        private void enqueueKids(Deque<Node> queue, Node node) {
+            if (node.getLoKid() != null)
+                queue.addLast(node.getLoKid());
+            if (node.getEqKid() != null)
+                queue.addLast(node.getEqKid());
+            if (node.getHiKid() != null)
+                queue.addLast(node.getHiKid());
+        }
+    }
+
+    private class LemmaArrays {
+        private final int[] ids;
+        private final int[] gramSetIds;
+        private final int[] stringOffsets;
+        private final char[] chars;
+
+        private LemmaArrays(Map<Integer, Lemma> lemmaMap) {
+            SortedMap<Integer, Lemma> sortedLemmaMap = new TreeMap<Integer, Lemma>(lemmaMap);
+            ids = new int[sortedLemmaMap.size()];
+            gramSetIds = new int[sortedLemmaMap.size()];
+            stringOffsets = new int[sortedLemmaMap.size() + 1];
+            StringBuilder sb = new StringBuilder();
+            int i = 0;
+            for (Lemma lemma : sortedLemmaMap.values()) {
+                ids[i] = lemma.getId();
+                gramSetIds[i] = getGramSetId(lemma.getGrammems());
+                stringOffsets[i] = sb.length();
+                sb.append(lemma.getString());
+                i++;
+            }
+            stringOffsets[i] = sb.length();
+            chars = new char[sb.length()];
+            sb.getChars(0, sb.length(), chars, 0);
+        }
+    }
+
+    private static class LinkArrays {
+        private final int[] from;
+        private final int[] to;
+        private final int[] types;
+        private final int[] inlinkOrder;
+
+        private LinkArrays(Table<Integer, Integer, LemmaLinkType> linkTable) {
+            int linkCount = linkTable.size();
+            from = new int[linkCount];
+            to = new int[linkCount];
+            types = new int[linkCount];
+            List<Table.Cell<Integer, Integer, LemmaLinkType>> cells = Lists.newArrayList(linkTable.cellSet());
+            Collections.sort(cells, new Comparator<Table.Cell<Integer, Integer, LemmaLinkType>>() {
+                @Override
+                public int compare(Table.Cell<Integer, Integer, LemmaLinkType> first,
+                                   Table.Cell<Integer, Integer, LemmaLinkType> second) {
+                    int rowComp = first.getRowKey().compareTo(second.getRowKey());
+                    return rowComp != 0 ? rowComp : first.getColumnKey().compareTo(second.getColumnKey());
+                }
+            });
+            int i = 0;
+            for (Table.Cell<Integer, Integer, LemmaLinkType> cell : cells) {
+                from[i] = cell.getRowKey();
+                to[i] = cell.getColumnKey();
+                types[i] = cell.getValue().getId();
+                i++;
+            }
+            Integer[] order = new Integer[linkCount];
+            for (i = 0; i < linkCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    return to[first] != to[second] ? Integer.compare(to[first], to[second])
+                            : Integer.compare(from[first], from[second]);
+                }
+            });
+            inlinkOrder = new int[linkCount];
+            for (i = 0; i < linkCount; i++) {
+                inlinkOrder[i] = order[i];
+            }
+        }
+    }
+}
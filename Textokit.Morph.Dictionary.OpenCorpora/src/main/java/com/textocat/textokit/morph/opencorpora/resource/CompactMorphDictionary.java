@@ -0,0 +1,447 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.textocat.textokit.morph.dictionary.DictionaryFormBuffer;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.TagTable;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.LemmaLinkType;
+import com.textocat.textokit.morph.model.Wordform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * {@link MorphDictionary} implementation that reads lemmas, lemma links and the wordform trie
+ * directly from a memory-mapped file written by {@link CompactDictionaryWriter}.
+ * <p>
+ * Only the grammatical model, lemma link types and the (small) table of unique grammem sets
+ * are materialized on the heap. Everything else stays in the mapped pages, so several JVMs
+ * on the same host that open the same file share its pages through the OS page cache.
+ * </p>
+ * <p>
+ * Lemmas added via {@link #addLemma(Lemma)} (e.g., pseudo-lemmas of a {@link WordformPredictor})
+ * are kept on the heap.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class CompactMorphDictionary implements MorphDictionary {
+
+    // "TKCD"
+    static final int MAGIC = 0x544B4344;
+    static final int FORMAT_VERSION = 1;
+    // every array section of the file starts at an offset that is a multiple of this value
+    static final int SECTION_ALIGNMENT = 8;
+
+    private static final Logger log = LoggerFactory.getLogger(CompactMorphDictionary.class);
+
+    public static CompactMorphDictionary open(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException(String.format(
+                    "%s is not existing file", file));
+        }
+        log.info("About to map compact MorphDictionary from {}...", file);
+        long timeBefore = currentTimeMillis();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        CompactMorphDictionary dict;
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException(String.format(
+                        "%s is too large to be mapped: %s bytes", file, channel.size()));
+            }
+            // a mapping stays valid after its channel is closed
+            dict = new CompactMorphDictionary(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.toString());
+        } finally {
+            raf.close();
+        }
+        log.info("Compact MorphDictionary has been mapped in {} ms.\n" +
+                        "Mapped size: {} bytes, lemmas: {}, wordforms: {}, trie nodes: {}",
+                currentTimeMillis() - timeBefore, file.length(), dict.lemmaIds.limit(),
+                dict.wfTrie.getWordformCount(), dict.wfTrie.getNodeCount());
+        return dict;
+    }
+
+    // meta fields
+    private String version;
+    private String revision;
+    //
+    private GramModel gramModel;
+    private Map<Short, LemmaLinkType> lemmaLinkTypeMap;
+    // unique grammem sets of wordforms and lemmas
+    private BitSet[] gramSets;
+    // set of complete tags (lex + wordform) seen in stored wordforms
+    private Set<BitSet> tagset;
+    // ids of grammem sets are equal to their indexes in gramSets
+    private TagTable tagTable;
+    // a buffer to compose complete tags
+    private final ThreadLocal<BitSet> tagBuffer = new ThreadLocal<BitSet>() {
+        @Override
+        protected BitSet initialValue() {
+            return new BitSet();
+        }
+    };
+    // a buffer for dictionary forms of text ranges passed to lookup methods
+    private final ThreadLocal<DictionaryFormBuffer> formBuffer = new ThreadLocal<DictionaryFormBuffer>() {
+        @Override
+        protected DictionaryFormBuffer initialValue() {
+            return new DictionaryFormBuffer();
+        }
+    };
+    private CompactWordformTrie wfTrie;
+    // lemma fields, sorted by lemma id
+    private IntBuffer lemmaIds;
+    private IntBuffer lemmaGramSetIds;
+    private IntBuffer lemmaStringOffsets;
+    private CharBuffer lemmaChars;
+    // lemma links sorted by <from, to>
+    private IntBuffer linkFrom;
+    private IntBuffer linkTo;
+    private IntBuffer linkTypes;
+    // indexes of lemma links sorted by <to, from>
+    private IntBuffer inlinkOrder;
+    // lemmas added after the dictionary has been loaded
+    private final ConcurrentMap<Integer, Lemma> addedLemmaMap = Maps.newConcurrentMap();
+
+    private WordformPredictor wfPredictor;
+
+    private CompactMorphDictionary(ByteBuffer buf, String srcLabel) throws IOException {
+        if (buf.getInt() != MAGIC) {
+            throw new IllegalStateException(String.format(
+                    "%s is not a compact dictionary file", srcLabel));
+        }
+        int formatVersion = buf.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalStateException(String.format(
+                    "%s has unsupported format version %s", srcLabel, formatVersion));
+        }
+        readMeta(buf);
+        // grammem sets
+        int gramWords = buf.getInt();
+        int gramSetCount = buf.getInt();
+        LongBuffer gramSetWords = nextLongs(buf, gramSetCount * gramWords);
+        gramSets = new BitSet[gramSetCount];
+        long[] words = new long[gramWords];
+        for (int i = 0; i < gramSetCount; i++) {
+            gramSetWords.get(words);
+            gramSets[i] = BitSet.valueOf(words);
+        }
+        tagTable = new TagTable(gramModel);
+        for (BitSet gs : gramSets) {
+            tagTable.intern(gs);
+        }
+        // tagset
+        IntBuffer tagGramSetIds = nextInts(buf, buf.getInt());
+        tagset = Sets.newHashSetWithExpectedSize(tagGramSetIds.limit());
+        for (int i = 0; i < tagGramSetIds.limit(); i++) {
+            tagset.add(gramSets[tagGramSetIds.get(i)]);
+        }
+        // wordform trie
+        int nodeCount = buf.getInt();
+        CharBuffer labels = nextChars(buf, nodeCount);
+        IntBuffer loKids = nextInts(buf, nodeCount);
+        IntBuffer eqKids = nextInts(buf, nodeCount);
+        IntBuffer hiKids = nextInts(buf, nodeCount);
+        IntBuffer wfOffsets = nextInts(buf, nodeCount + 1);
+        int wfCount = buf.getInt();
+        IntBuffer wfLemmaIds = nextInts(buf, wfCount);
+        IntBuffer wfGramSetIds = nextInts(buf, wfCount);
+        wfTrie = new CompactWordformTrie(labels, loKids, eqKids, hiKids,
+                wfOffsets, wfLemmaIds, wfGramSetIds, gramSets);
+        // lemmas
+        int lemmaCount = buf.getInt();
+        lemmaIds = nextInts(buf, lemmaCount);
+        lemmaGramSetIds = nextInts(buf, lemmaCount);
+        lemmaStringOffsets = nextInts(buf, lemmaCount + 1);
+        lemmaChars = nextChars(buf, buf.getInt());
+        // lemma links
+        int linkCount = buf.getInt();
+        linkFrom = nextInts(buf, linkCount);
+        linkTo = nextInts(buf, linkCount);
+        linkTypes = nextInts(buf, linkCount);
+        inlinkOrder = nextInts(buf, linkCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readMeta(ByteBuffer buf) throws IOException {
+        byte[] metaBytes = new byte[buf.getInt()];
+        buf.get(metaBytes);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(metaBytes));
+        try {
+            version = (String) ois.readObject();
+            revision = (String) ois.readObject();
+            gramModel = (GramModel) ois.readObject();
+            lemmaLinkTypeMap = (Map<Short, LemmaLinkType>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            ois.close();
+        }
+    }
+
+    public void setWfPredictor(WordformPredictor wfPredictor) {
+        this.wfPredictor = wfPredictor;
+    }
+
+    public CompactWordformTrie getWordformTrie() {
+        return wfTrie;
+    }
+
+    @Override
+    public GramModel getGramModel() {
+        return gramModel;
+    }
+
+    @Override
+    public List<Wordform> getEntries(String str) {
+        return getEntriesOfForm(str);
+    }
+
+    @Override
+    public List<Wordform> getEntries(CharSequence text, int begin, int end) {
+        return getEntriesOfForm(formBuffer.get().normalize(text, begin, end));
+    }
+
+    private List<Wordform> getEntriesOfForm(CharSequence str) {
+        WordformTSTSearchResult result = wfTrie.getLongestPrefixMatch(str);
+        if (result == null)
+            // an empty string
+            return ImmutableList.of();
+        if (result.isMatchExact())
+            return Lists.newArrayList(result);
+        else if (wfPredictor != null) {
+            return ImmutableList.copyOf(wfPredictor.predict(str.toString(), result));
+        } else {
+            // wfPredictor is not set
+            return ImmutableList.of();
+        }
+    }
+
+    @Override
+    public int visitEntries(String str, WordformVisitor visitor) {
+        return visitEntriesOfForm(str, visitor);
+    }
+
+    @Override
+    public int visitEntries(CharSequence text, int begin, int end, WordformVisitor visitor) {
+        return visitEntriesOfForm(formBuffer.get().normalize(text, begin, end), visitor);
+    }
+
+    private int visitEntriesOfForm(CharSequence str, WordformVisitor visitor) {
+        int node = wfTrie.getExactMatchNode(str);
+        if (node != CompactWordformTrie.NO_NODE) {
+            int begin = wfTrie.getWordformBegin(node);
+            int end = wfTrie.getWordformEnd(node);
+            for (int i = begin; i < end; i++) {
+                int lemmaId = wfTrie.getWordformLemmaId(i);
+                int wfTagId = wfTrie.getWordformGramSetId(i);
+                int lemmaIndex = lemmaIndex(lemmaId);
+                BitSet lemmaGrammems = lemmaIndex >= 0
+                        ? gramSets[lemmaGramSetIds.get(lemmaIndex)]
+                        : getLemma(lemmaId).getGrammems();
+                visitor.visit(lemmaId, wfTagId, getFullTagId(gramSets[wfTagId], lemmaGrammems));
+            }
+            return end - begin;
+        }
+        // predicted wordforms
+        List<Wordform> entries = getEntriesOfForm(str);
+        for (Wordform wf : entries) {
+            BitSet wfGrammems = wf.getGrammems();
+            visitor.visit(wf.getLemmaId(), tagTable.intern(wfGrammems),
+                    getFullTagId(wfGrammems, getLemma(wf.getLemmaId()).getGrammems()));
+        }
+        return entries.size();
+    }
+
+    private int getFullTagId(BitSet wfGrammems, BitSet lemmaGrammems) {
+        BitSet tag = tagBuffer.get();
+        tag.clear();
+        tag.or(wfGrammems);
+        tag.or(lemmaGrammems);
+        int id = tagTable.getId(tag);
+        return id >= 0 ? id : tagTable.intern(tag);
+    }
+
+    @Override
+    public TagTable getTagTable() {
+        return tagTable;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getRevision() {
+        return revision;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LemmaLinkType getLemmaLinkType(short id) {
+        return lemmaLinkTypeMap.get(id);
+    }
+
+    @Override
+    public Lemma getLemma(int lemmaId) {
+        int lemmaIndex = lemmaIndex(lemmaId);
+        if (lemmaIndex >= 0) {
+            Lemma result = new Lemma(
+                    lemmaChars.subSequence(lemmaStringOffsets.get(lemmaIndex),
+                            lemmaStringOffsets.get(lemmaIndex + 1)).toString(),
+                    gramSets[lemmaGramSetIds.get(lemmaIndex)]);
+            result.setId(lemmaId);
+            return result;
+        }
+        Lemma result = addedLemmaMap.get(lemmaId);
+        if (result == null) {
+            throw new IllegalStateException(String.format(
+                    "No lemma with id = %s", lemmaId));
+        }
+        return result;
+    }
+
+    @Override
+    public void addLemma(Lemma l) {
+        if (lemmaIndex(l.getId()) >= 0 || addedLemmaMap.putIfAbsent(l.getId(), l) != null) {
+            throw new IllegalStateException(String.format(
+                    "Duplicate lemma id - %s", l.getId()));
+        }
+    }
+
+    @Override
+    public int getLemmaMaxId() {
+        int max = lemmaIds.limit() > 0 ? lemmaIds.get(lemmaIds.limit() - 1) : Integer.MIN_VALUE;
+        for (Integer curId : addedLemmaMap.keySet()) {
+            if (curId > max) {
+                max = curId;
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public Map<Integer, LemmaLinkType> getLemmaOutlinks(int lemmaId) {
+        ImmutableMap.Builder<Integer, LemmaLinkType> rb = ImmutableMap.builder();
+        for (int i = lowerBound(linkFrom, null, lemmaId);
+             i < linkFrom.limit() && linkFrom.get(i) == lemmaId; i++) {
+            rb.put(linkTo.get(i), getLemmaLinkType((short) linkTypes.get(i)));
+        }
+        return rb.build();
+    }
+
+    @Override
+    public Map<Integer, LemmaLinkType> getLemmaInlinks(int lemmaId) {
+        ImmutableMap.Builder<Integer, LemmaLinkType> rb = ImmutableMap.builder();
+        for (int i = lowerBound(linkTo, inlinkOrder, lemmaId);
+             i < inlinkOrder.limit() && linkTo.get(inlinkOrder.get(i)) == lemmaId; i++) {
+            int link = inlinkOrder.get(i);
+            rb.put(linkFrom.get(link), getLemmaLinkType((short) linkTypes.get(link)));
+        }
+        return rb.build();
+    }
+
+    @Override
+    public boolean containsGramSet(BitSet tag) {
+        return tagset.contains(tag);
+    }
+
+    private int lemmaIndex(int lemmaId) {
+        int i = lowerBound(lemmaIds, null, lemmaId);
+        return i < lemmaIds.limit() && lemmaIds.get(i) == lemmaId ? i : -1;
+    }
+
+    /**
+     * @param values sorted buffer or the one accessed through the given order
+     * @param order  if not null then values are accessed as values[order[i]]
+     * @param key    search key
+     * @return the first index i such that (values[i] >= key)
+     */
+    private static int lowerBound(IntBuffer values, IntBuffer order, int key) {
+        int low = 0;
+        int high = values.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int midVal = order == null ? values.get(mid) : values.get(order.get(mid));
+            if (midVal < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static ByteBuffer nextSection(ByteBuffer buf, int byteLength) {
+        int misalignment = buf.position() % SECTION_ALIGNMENT;
+        if (misalignment > 0) {
+            buf.position(buf.position() + SECTION_ALIGNMENT - misalignment);
+        }
+        ByteBuffer section = buf.slice();
+        section.limit(byteLength);
+        buf.position(buf.position() + byteLength);
+        return section;
+    }
+
+    private static IntBuffer nextInts(ByteBuffer buf, int length) {
+        return nextSection(buf, length * 4).asIntBuffer();
+    }
+
+    private static CharBuffer nextChars(ByteBuffer buf, int length) {
+        return nextSection(buf, length * 2).asCharBuffer();
+    }
+
+    private static LongBuffer nextLongs(ByteBuffer buf, int length) {
+        return nextSection(buf, length * 8).asLongBuffer();
+    }
+}
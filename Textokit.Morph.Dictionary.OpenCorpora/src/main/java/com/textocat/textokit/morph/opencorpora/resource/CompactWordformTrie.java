@@ -0,0 +1,256 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.textocat.textokit.morph.model.Wordform;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+
+/**
+ * Read-only counterpart of {@link WordformTST} that keeps the same ternary search tree
+ * of reversed wordform strings in flat primitive buffers:
+ * <ul>
+ * <li>node split chars,</li>
+ * <li>indexes of lo, eq and hi kids ({@link #NO_NODE} if there is no kid),</li>
+ * <li>offsets of node wordform ranges in the wordform buffers,</li>
+ * <li>lemma id and grammem set index of each wordform.</li>
+ * </ul>
+ * The buffers are usually views of a memory-mapped file written by {@link CompactDictionaryWriter}.
+ * Search results are equal to the ones of the source {@link WordformTST} including the iteration order.
+ *
+ * @author Rinat Gareev
+ */
+public class CompactWordformTrie {
+
+    static final int ROOT = 0;
+    static final int NO_NODE = -1;
+
+    private final CharBuffer labels;
+    private final IntBuffer loKids;
+    private final IntBuffer eqKids;
+    private final IntBuffer hiKids;
+    // node i wordforms are in range [wfOffsets[i], wfOffsets[i+1])
+    private final IntBuffer wfOffsets;
+    private final IntBuffer wfLemmaIds;
+    private final IntBuffer wfGramSetIds;
+    private final BitSet[] gramSets;
+    private final int nodeCount;
+
+    CompactWordformTrie(CharBuffer labels, IntBuffer loKids, IntBuffer eqKids, IntBuffer hiKids,
+                        IntBuffer wfOffsets, IntBuffer wfLemmaIds, IntBuffer wfGramSetIds,
+                        BitSet[] gramSets) {
+        this.labels = labels;
+        this.loKids = loKids;
+        this.eqKids = eqKids;
+        this.hiKids = hiKids;
+        this.wfOffsets = wfOffsets;
+        this.wfLemmaIds = wfLemmaIds;
+        this.wfGramSetIds = wfGramSetIds;
+        this.gramSets = gramSets;
+        this.nodeCount = labels.limit();
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getWordformCount() {
+        return wfLemmaIds.limit();
+    }
+
+    public WordformTSTSearchResult getLongestPrefixMatch(CharSequence key) {
+        if (key == null || key.length() == 0)
+            return null;
+        int currentNode = nodeCount > 0 ? ROOT : NO_NODE;
+        int resultNode = NO_NODE;
+        int matchLength = 0;
+        int charIndex = key.length() - 1;
+
+        while (currentNode != NO_NODE) {
+            char keyChar = key.charAt(charIndex);
+            char splitchar = labels.get(currentNode);
+
+            if (keyChar == splitchar) {
+                charIndex--;
+                resultNode = currentNode;
+                if (charIndex < 0) {
+                    matchLength = key.length();
+                    break;
+                }
+                matchLength = key.length() - charIndex - 1;
+                currentNode = eqKids.get(currentNode);
+            } else if (keyChar < splitchar) {
+                currentNode = loKids.get(currentNode);
+            } else {
+                currentNode = hiKids.get(currentNode);
+            }
+        }
+        // if match exact return wordforms of just the result node
+        boolean matchExact = matchLength == key.length() && hasData(resultNode);
+        return new SearchResult(matchExact, resultNode);
+    }
+
+    /**
+     * @param key a wordform string
+     * @return index of the node of the given key if it has wordforms, otherwise {@link #NO_NODE}
+     */
+    int getExactMatchNode(CharSequence key) {
+        if (key == null || key.length() == 0)
+            return NO_NODE;
+        int currentNode = nodeCount > 0 ? ROOT : NO_NODE;
+        int charIndex = key.length() - 1;
+        while (currentNode != NO_NODE) {
+            char keyChar = key.charAt(charIndex);
+            char splitchar = labels.get(currentNode);
+            if (keyChar == splitchar) {
+                charIndex--;
+                if (charIndex < 0)
+                    return hasData(currentNode) ? currentNode : NO_NODE;
+                currentNode = eqKids.get(currentNode);
+            } else if (keyChar < splitchar) {
+                currentNode = loKids.get(currentNode);
+            } else {
+                currentNode = hiKids.get(currentNode);
+            }
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * @return index of the first wordform of the given node
+     */
+    int getWordformBegin(int node) {
+        return wfOffsets.get(node);
+    }
+
+    /**
+     * @return index after the last wordform of the given node
+     */
+    int getWordformEnd(int node) {
+        return wfOffsets.get(node + 1);
+    }
+
+    int getWordformLemmaId(int wfIndex) {
+        return wfLemmaIds.get(wfIndex);
+    }
+
+    int getWordformGramSetId(int wfIndex) {
+        return wfGramSetIds.get(wfIndex);
+    }
+
+    private boolean hasData(int node) {
+        return wfOffsets.get(node) < wfOffsets.get(node + 1);
+    }
+
+    private Wordform getWordform(int wfIndex) {
+        return new Wordform(wfLemmaIds.get(wfIndex), gramSets[wfGramSetIds.get(wfIndex)]);
+    }
+
+    private class SearchResult extends WordformTSTSearchResult {
+        private final int resultNode;
+
+        private SearchResult(boolean matchExact, int resultNode) {
+            super(matchExact);
+            this.resultNode = resultNode;
+        }
+
+        @Override
+        public Iterator<Wordform> iterator() {
+            if (isMatchExact()) {
+                return new NodeIterator(resultNode);
+            } else if (resultNode == NO_NODE) {
+                return Iterators.emptyIterator();
+            } else {
+                return new SubtreeIterator(resultNode);
+            }
+        }
+    }
+
+    private class NodeIterator extends AbstractIterator<Wordform> {
+        private int cur;
+        private final int end;
+
+        private NodeIterator(int node) {
+            cur = wfOffsets.get(node);
+            end = wfOffsets.get(node + 1);
+        }
+
+        @Override
+        protected Wordform computeNext() {
+            if (cur >= end) {
+                return endOfData();
+            }
+            return getWordform(cur++);
+        }
+    }
+
+    /**
+     * Visits nodes in the same order as {@link WordformTST.SubtreeIterator}.
+     */
+    private class SubtreeIterator extends AbstractIterator<Wordform> {
+        private final int rootNode;
+        private int[] nodeStack = new int[16];
+        private int stackSize;
+        private int cur;
+        private int end;
+
+        private SubtreeIterator(int rootNode) {
+            this.rootNode = rootNode;
+            push(rootNode);
+        }
+
+        @Override
+        protected Wordform computeNext() {
+            while (cur >= end) {
+                if (stackSize == 0) {
+                    return endOfData();
+                }
+                goToNextNode();
+            }
+            return getWordform(cur++);
+        }
+
+        private void goToNextNode() {
+            int nextNode = nodeStack[--stackSize];
+            cur = wfOffsets.get(nextNode);
+            end = wfOffsets.get(nextNode + 1);
+            // side nodes of the root node are not in its subtree, see WordformTST.SubtreeIterator
+            if (nextNode != rootNode)
+                push(loKids.get(nextNode));
+            push(eqKids.get(nextNode));
+            if (nextNode != rootNode)
+                push(hiKids.get(nextNode));
+        }
+
+        private void push(int node) {
+            if (node == NO_NODE) {
+                return;
+            }
+            if (stackSize == nodeStack.length) {
+                int[] temp = nodeStack;
+                nodeStack = new int[temp.length * 2];
+                System.arraycopy(temp, 0, nodeStack, 0, temp.length);
+            }
+            nodeStack[stackSize++] = node;
+        }
+    }
+}
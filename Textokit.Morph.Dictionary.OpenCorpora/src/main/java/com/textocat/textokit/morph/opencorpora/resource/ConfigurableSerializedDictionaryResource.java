@@ -17,6 +17,8 @@
 
 package com.textocat.textokit.morph.opencorpora.resource;
 
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
@@ -29,6 +31,7 @@ import org.apache.uima.resource.SharedResourceObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 
 /**
@@ -45,32 +48,48 @@ public class ConfigurableSerializedDictionaryResource implements MorphDictionary
     @ConfigurationParameter(name = PARAM_PREDICTOR_CLASS_NAME, mandatory = false)
     private String wfPredictorClassName;
     // state fields
+    private Ticket<MorphDictionary> dictTicket;
     private MorphDictionary dict;
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void load(DataResource dr) throws ResourceInitializationException {
+    public void load(final DataResource dr) throws ResourceInitializationException {
         ConfigurationParameterInitializer.initialize(this, dr);
         try {
-            dict = DictionaryDeserializer.from(dr.getInputStream(), String.valueOf(dr.getUrl()));
-            if (wfPredictorClassName != null) {
-                @SuppressWarnings("unchecked")
-                Class<? extends WordformPredictor> wfPredictorClass = (Class<? extends WordformPredictor>)
-                        Class.forName(wfPredictorClassName);
-                WordformPredictor wfPredictor = makePredictor(wfPredictorClass);
-                ((MorphDictionaryImpl) dict).setWfPredictor(wfPredictor);
-                log.info("{} was set in deserialized MorphDictionary",
-                        wfPredictor.getClass().getSimpleName());
-            } else {
-                log.info("A wordform predictor has not been set in deserialized MorphDictionary");
-            }
+            dictTicket = SharedResourceRegistry.getInstance().acquire(
+                    new CacheResourceKey(dr.getUrl(), wfPredictorClassName),
+                    new SharedResourceRegistry.Loader<MorphDictionary>() {
+                        @Override
+                        public MorphDictionary load() throws Exception {
+                            return deserialize(dr.getInputStream(), String.valueOf(dr.getUrl()),
+                                    wfPredictorClassName);
+                        }
+                    }).releaseOnGc();
+            dict = dictTicket.getResource();
         } catch (Exception e) {
             throw new ResourceInitializationException(e);
         }
     }
 
+    static MorphDictionaryImpl deserialize(InputStream in, String srcLabel, String wfPredictorClassName)
+            throws Exception {
+        MorphDictionaryImpl result = DictionaryDeserializer.from(in, srcLabel);
+        if (wfPredictorClassName != null) {
+            @SuppressWarnings("unchecked")
+            Class<? extends WordformPredictor> wfPredictorClass = (Class<? extends WordformPredictor>)
+                    Class.forName(wfPredictorClassName);
+            WordformPredictor wfPredictor = makePredictor(wfPredictorClass, result);
+            result.setWfPredictor(wfPredictor);
+            log.info("{} was set in deserialized MorphDictionary",
+                    wfPredictor.getClass().getSimpleName());
+        } else {
+            log.info("A wordform predictor has not been set in deserialized MorphDictionary");
+        }
+        return result;
+    }
+
     @Override
     public MorphDictionary getDictionary() {
         return dict;
@@ -81,7 +100,8 @@ public class ConfigurableSerializedDictionaryResource implements MorphDictionary
         return dict.getGramModel();
     }
 
-    private WordformPredictor makePredictor(Class<? extends WordformPredictor> predictorClass)
+    static WordformPredictor makePredictor(Class<? extends WordformPredictor> predictorClass,
+                                           MorphDictionary dict)
             throws Exception {
         Constructor<? extends WordformPredictor> constr = null;
         // check constructor with the single parameter typed by MorphDictionary
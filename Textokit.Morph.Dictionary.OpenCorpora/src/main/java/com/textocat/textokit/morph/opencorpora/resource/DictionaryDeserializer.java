@@ -26,6 +26,9 @@ import java.io.*;
 import static java.lang.System.currentTimeMillis;
 
 /**
+ * Reads a dictionary either from the Java serialization stream or from the binary format
+ * of {@link BinaryDictionaryWriter}. The format is detected by the leading magic number.
+ *
  * @author Rinat Gareev
  */
 public class DictionaryDeserializer {
@@ -42,9 +45,16 @@ public class DictionaryDeserializer {
     }
 
     public static MorphDictionaryImpl from(InputStream in, String srcLabel) throws Exception {
+        InputStream is = new BufferedInputStream(in, DICTIONARY_READING_BUFFER_SIZE);
+        if (BinaryDictionaryReader.isBinaryDictionary(is)) {
+            try {
+                return BinaryDictionaryReader.read(is, srcLabel);
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+        }
         log.info("About to deserialize MorphDictionary from InputStream of {}...", srcLabel);
         long timeBefore = currentTimeMillis();
-        InputStream is = new BufferedInputStream(in, DICTIONARY_READING_BUFFER_SIZE);
         ObjectInputStream ois = new ObjectInputStream(is);
         MorphDictionaryImpl dict;
         try {
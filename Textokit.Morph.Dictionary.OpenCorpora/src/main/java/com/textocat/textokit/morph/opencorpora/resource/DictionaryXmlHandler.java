@@ -287,6 +287,9 @@ class DictionaryXmlHandler extends DefaultHandler {
 
     private class GrammemsHandler extends NoOpHandler {
         private ImmutableGramModel.Builder gmBuilder;
+        // numerical ids are assigned in the document order to make them independent
+        // of other dictionaries parsed in the same JVM
+        private int gramNumIdCounter;
 
         GrammemsHandler() {
             super(ELEM_GRAMMEMS);
@@ -300,6 +303,7 @@ class DictionaryXmlHandler extends DefaultHandler {
         @Override
         protected void startSelf(Attributes attrs) {
             gmBuilder = ImmutableGramModel.builder();
+            gramNumIdCounter = 1;
         }
 
         @Override
@@ -318,6 +322,11 @@ class DictionaryXmlHandler extends DefaultHandler {
             super(ELEM_LEMMATA);
         }
 
+        @Override
+        protected void endSelf() {
+            lemmataParsed();
+        }
+
         @Override
         protected Map<String, ElementHandler> declareChildren() {
             return toMap(newHashSet(new LemmaHandler()));
@@ -370,8 +379,10 @@ class DictionaryXmlHandler extends DefaultHandler {
             }
             String alias = aliasHandler.getContent();
             String description = descHandler.getContent();
-            Grammeme gram = new Grammeme(id, parentId, alias, description);
-            getParent(GrammemsHandler.class).gmBuilder.addGrammeme(gram);
+            GrammemsHandler grammemsHandler = getParent(GrammemsHandler.class);
+            Grammeme gram = new Grammeme(id, parentId, alias, description,
+                    grammemsHandler.gramNumIdCounter++);
+            grammemsHandler.gmBuilder.addGrammeme(gram);
             id = null;
             parentId = null;
             // child handlers are cleared by super class
@@ -413,18 +424,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 
         @Override
         protected void endSelf() {
-            if (postProcessLemma(builder, wordforms)) {
-                Lemma lemma = builder.build();
-                dict.addLemma(lemma);
-                for (String wfStr : wordforms.keySet()) {
-                    for (Wordform wf : wordforms.get(wfStr)) {
-                        dict.addWordform(wfStr, wf);
-                    }
-                }
-                acceptedLemmaCounter++;
-            } else {
-                rejectedLemmaCounter++;
-            }
+            lemmaParsed(builder, wordforms);
             builder = null;
             wordforms = null;
             lemmasParsed++;
@@ -612,6 +612,59 @@ class DictionaryXmlHandler extends DefaultHandler {
         this.dict = dict;
     }
 
+    /**
+     * Called for each lemma element in the document order.
+     * The default implementation post-processes the lemma and adds it into the dictionary.
+     *
+     * @param lemmaBuilder a parsed lemma
+     * @param wfMap        mutable map of wordform_string => set_of_wordform_objects
+     */
+    void lemmaParsed(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap) {
+        processLemma(lemmaBuilder, wfMap, 0);
+    }
+
+    /**
+     * Invokes lemma post-processors starting from the given one, and adds the lemma
+     * into the dictionary if it is accepted.
+     */
+    void processLemma(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap,
+                      int fromProcessorIndex) {
+        if (postProcessLemma(lemmaBuilder, wfMap, fromProcessorIndex, lemmaPostProcessors.size())) {
+            Lemma lemma = lemmaBuilder.build();
+            dict.addLemma(lemma);
+            for (String wfStr : wfMap.keySet()) {
+                for (Wordform wf : wfMap.get(wfStr)) {
+                    dict.addWordform(wfStr, wf);
+                }
+            }
+            lemmaAccepted();
+        } else {
+            lemmaRejected();
+        }
+    }
+
+    /**
+     * Called at the end of the lemmata element, i.e., before lemma links are parsed.
+     */
+    void lemmataParsed() {
+    }
+
+    void lemmaAccepted() {
+        acceptedLemmaCounter++;
+    }
+
+    void lemmaRejected() {
+        rejectedLemmaCounter++;
+    }
+
+    List<LemmaPostProcessor> getLemmaPostProcessors() {
+        return lemmaPostProcessors;
+    }
+
+    MorphDictionaryImpl getDict() {
+        return dict;
+    }
+
     /**
      * NOTE! Order of LemmaPostProcessor instances may be crucial!
      *
@@ -731,12 +784,15 @@ class DictionaryXmlHandler extends DefaultHandler {
     /**
      * Invoke lemma post-processors
      *
-     * @param lemma
-     * @param wfMap mutable map of wordform_string => set_of_wordform_objects
+     * @param lemmaBuilder
+     * @param wfMap        mutable map of wordform_string => set_of_wordform_objects
+     * @param fromIndex    index of the first post-processor to invoke
+     * @param toIndex      index after the last post-processor to invoke
      * @return true if given lemma must be accepted, false - otherwise.
      */
-    private boolean postProcessLemma(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap) {
-        for (LemmaPostProcessor filter : lemmaPostProcessors) {
+    boolean postProcessLemma(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap,
+                             int fromIndex, int toIndex) {
+        for (LemmaPostProcessor filter : lemmaPostProcessors.subList(fromIndex, toIndex)) {
             if (!filter.process(dict, lemmaBuilder, wfMap)) {
                 return false;
             }
@@ -44,12 +44,15 @@ public class GramModelDeserializer {
         log.info("About to deserialize GramModel from InputStream of {}...", srcLabel);
         long timeBefore = currentTimeMillis();
         InputStream is = new BufferedInputStream(in);
-        ObjectInputStream ois = new ObjectInputStream(is);
         GramModel gm;
         try {
-            gm = (GramModel) ois.readObject();
+            if (BinaryDictionaryReader.isBinaryDictionary(is)) {
+                gm = BinaryDictionaryReader.readGramModel(is);
+            } else {
+                gm = (GramModel) new ObjectInputStream(is).readObject();
+            }
         } finally {
-            IOUtils.closeQuietly(ois);
+            IOUtils.closeQuietly(is);
         }
         log.info("Deserialization of GramModel finished in {} ms",
                 currentTimeMillis() - timeBefore);
@@ -0,0 +1,138 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryHolder;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link MorphDictionaryHolder} that does not block pipeline initialization until a serialized
+ * dictionary is loaded. Its {@link #load(DataResource)} reads only the gram model,
+ * then it returns a {@link LazyMorphDictionary} that is loaded by a daemon thread.
+ * <p>
+ * Readiness and progress can be checked through the facade returned by {@link #getDictionary()},
+ * or for all heavy resources at once through {@link SharedResourceRegistry#getStats()}.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class LazyDictionaryResource implements MorphDictionaryHolder,
+        GramModelHolder, SharedResourceObject {
+
+    public static final String PARAM_PREDICTOR_CLASS_NAME = "predictorClassName";
+    /**
+     * If false, the dictionary is loaded by the first thread that needs it.
+     */
+    public static final String PARAM_WARM_UP = "warmUp";
+
+    private static final ThreadFactory warmUpThreadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("dict-warm-up-%d").setDaemon(true).build();
+
+    // config fields
+    @ConfigurationParameter(name = PARAM_PREDICTOR_CLASS_NAME, mandatory = false)
+    private String wfPredictorClassName;
+    @ConfigurationParameter(name = PARAM_WARM_UP, defaultValue = "true", mandatory = false)
+    private boolean warmUp;
+    // state fields
+    private LazyMorphDictionary dict;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void load(DataResource dr) throws ResourceInitializationException {
+        ConfigurationParameterInitializer.initialize(this, dr);
+        GramModel gramModel;
+        try {
+            gramModel = GramModelDeserializer.from(dr.getInputStream(), String.valueOf(dr.getUrl()));
+        } catch (Exception e) {
+            throw new ResourceInitializationException(e);
+        }
+        dict = new LazyMorphDictionary(gramModel,
+                new CacheResourceKey(dr.getUrl(), wfPredictorClassName),
+                new DataResourceLoader(dr, wfPredictorClassName));
+        if (warmUp) {
+            dict.startWarmUp(warmUpThreadFactory);
+        }
+    }
+
+    @Override
+    public LazyMorphDictionary getDictionary() {
+        return dict;
+    }
+
+    @Override
+    public GramModel getGramModel() {
+        return dict.getGramModel();
+    }
+
+    private static class DataResourceLoader extends SharedResourceRegistry.Loader<MorphDictionary> {
+        private final DataResource dr;
+        private final String wfPredictorClassName;
+        private volatile CountingInputStream counter;
+        private volatile long totalBytes = -1;
+
+        private DataResourceLoader(DataResource dr, String wfPredictorClassName) {
+            this.dr = dr;
+            this.wfPredictorClassName = wfPredictorClassName;
+        }
+
+        @Override
+        public MorphDictionary load() throws Exception {
+            totalBytes = getContentLength(dr.getUrl());
+            counter = new CountingInputStream(dr.getInputStream());
+            return ConfigurableSerializedDictionaryResource.deserialize(
+                    counter, String.valueOf(dr.getUrl()), wfPredictorClassName);
+        }
+
+        @Override
+        public double getProgress() {
+            CountingInputStream counter = this.counter;
+            long totalBytes = this.totalBytes;
+            if (counter == null || totalBytes <= 0) {
+                return -1;
+            }
+            return Math.min(1, (double) counter.getByteCount() / totalBytes);
+        }
+
+        private static long getContentLength(URL url) {
+            if (url == null) {
+                return -1;
+            }
+            try {
+                return url.openConnection().getContentLengthLong();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+    }
+}
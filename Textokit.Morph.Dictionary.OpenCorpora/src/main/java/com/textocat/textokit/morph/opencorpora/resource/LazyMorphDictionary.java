@@ -0,0 +1,252 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.TagTable;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.LemmaLinkType;
+import com.textocat.textokit.morph.model.Wordform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link MorphDictionary} facade that is usable before the dictionary is loaded.
+ * <p>
+ * The gram model is given to the constructor, so {@link #getGramModel()} never blocks.
+ * Other methods wait until the dictionary is loaded by a warm-up thread, or load it
+ * in the calling thread if the warm-up has not started. The dictionary is acquired
+ * through {@link SharedResourceRegistry}, so it is shared with other holders of the same key.
+ * A failed load is reported by {@link #getFailure()} and {@link #awaitReady(long, TimeUnit)}
+ * until a dictionary method or {@link #startWarmUp(ThreadFactory)} is called, which tries again.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public final class LazyMorphDictionary implements MorphDictionary {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyMorphDictionary.class);
+
+    private final GramModel gramModel;
+    private final Object key;
+    private final SharedResourceRegistry.Loader<MorphDictionary> loader;
+    // the result ticket of a completed task retains the dictionary while this facade is alive,
+    // a failed task is kept until a retry replaces it
+    private final AtomicReference<LoadTask> loadTask = new AtomicReference<LoadTask>();
+    private volatile MorphDictionary delegate;
+
+    public LazyMorphDictionary(GramModel gramModel, Object key,
+                               SharedResourceRegistry.Loader<MorphDictionary> loader) {
+        this.gramModel = gramModel;
+        this.key = key;
+        this.loader = loader;
+        this.loadTask.set(new LoadTask());
+    }
+
+    /**
+     * Start loading the dictionary in a new thread. If the previous attempt has failed,
+     * it is retried.
+     */
+    public void startWarmUp(ThreadFactory threadFactory) {
+        threadFactory.newThread(getLoadTask()).start();
+    }
+
+    public boolean isReady() {
+        return delegate != null;
+    }
+
+    /**
+     * @return the error of the last load attempt if it has failed and has not been retried yet,
+     * otherwise null. It allows to tell a failed dictionary from the one being loaded.
+     */
+    public Throwable getFailure() {
+        return loadTask.get().failure;
+    }
+
+    /**
+     * @return the loaded fraction of the dictionary from 0 to 1, or -1 if it is unknown
+     */
+    public double getProgress() {
+        return isReady() ? 1 : loader.getProgress();
+    }
+
+    /**
+     * Wait for the current load attempt. It does not start loading by itself,
+     * and it does not retry a failed attempt.
+     *
+     * @return true if the dictionary is loaded, false if the timeout elapsed
+     * @throws IllegalStateException if the last attempt has failed
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            loadTask.get().get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(String.format("Can't load %s", key), e.getCause());
+        }
+    }
+
+    private MorphDictionary getDelegate() {
+        MorphDictionary result = delegate;
+        if (result != null) {
+            return result;
+        }
+        LoadTask task = getLoadTask();
+        // does nothing if the warm-up thread is already loading
+        task.run();
+        try {
+            return task.get().getResource();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while waiting for %s", key), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(String.format("Can't load %s", key), e.getCause());
+        }
+    }
+
+    // replaces a failed task by a fresh one
+    private LoadTask getLoadTask() {
+        LoadTask task = loadTask.get();
+        if (task.failure != null) {
+            loadTask.compareAndSet(task, new LoadTask());
+            task = loadTask.get();
+        }
+        return task;
+    }
+
+    private class LoadTask extends FutureTask<Ticket<MorphDictionary>> {
+        // set before the task completes
+        private volatile Throwable failure;
+
+        private LoadTask() {
+            super(new Callable<Ticket<MorphDictionary>>() {
+                @Override
+                public Ticket<MorphDictionary> call() throws Exception {
+                    Ticket<MorphDictionary> ticket;
+                    try {
+                        ticket = SharedResourceRegistry.getInstance().acquire(key, loader).releaseOnGc();
+                    } catch (Exception | Error e) {
+                        log.error(String.format("Can't load %s", key), e);
+                        throw e;
+                    }
+                    delegate = ticket.getResource();
+                    return ticket;
+                }
+            });
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            // set before waiters are woken, so a caller that has seen the failure retries
+            failure = t;
+            super.setException(t);
+        }
+    }
+
+    @Override
+    public GramModel getGramModel() {
+        return gramModel;
+    }
+
+    @Override
+    public String getVersion() {
+        return getDelegate().getVersion();
+    }
+
+    @Override
+    public String getRevision() {
+        return getDelegate().getRevision();
+    }
+
+    @Override
+    public List<Wordform> getEntries(String str) {
+        return getDelegate().getEntries(str);
+    }
+
+    @Override
+    public int visitEntries(String str, WordformVisitor visitor) {
+        return getDelegate().visitEntries(str, visitor);
+    }
+
+    @Override
+    public List<Wordform> getEntries(CharSequence text, int begin, int end) {
+        return getDelegate().getEntries(text, begin, end);
+    }
+
+    @Override
+    public int visitEntries(CharSequence text, int begin, int end, WordformVisitor visitor) {
+        return getDelegate().visitEntries(text, begin, end, visitor);
+    }
+
+    @Override
+    public TagTable getTagTable() {
+        return getDelegate().getTagTable();
+    }
+
+    @Override
+    public LemmaLinkType getLemmaLinkType(short id) {
+        return getDelegate().getLemmaLinkType(id);
+    }
+
+    @Override
+    public Lemma getLemma(int lemmaId) {
+        return getDelegate().getLemma(lemmaId);
+    }
+
+    @Override
+    public void addLemma(Lemma lemma) {
+        getDelegate().addLemma(lemma);
+    }
+
+    @Override
+    public int getLemmaMaxId() {
+        return getDelegate().getLemmaMaxId();
+    }
+
+    @Override
+    public Map<Integer, LemmaLinkType> getLemmaOutlinks(int lemmaId) {
+        return getDelegate().getLemmaOutlinks(lemmaId);
+    }
+
+    @Override
+    public Map<Integer, LemmaLinkType> getLemmaInlinks(int lemmaId) {
+        return getDelegate().getLemmaInlinks(lemmaId);
+    }
+
+    @Override
+    public boolean containsGramSet(BitSet tag) {
+        return getDelegate().containsGramSet(tag);
+    }
+}
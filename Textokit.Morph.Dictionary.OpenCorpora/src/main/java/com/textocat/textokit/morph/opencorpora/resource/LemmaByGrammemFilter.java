@@ -29,7 +29,8 @@ import java.util.Set;
 /**
  * @author Rinat Gareev
  */
-public class LemmaByGrammemFilter extends LexemePostProcessorBase {
+public class LemmaByGrammemFilter extends LexemePostProcessorBase
+        implements ThreadSafeLemmaPostProcessor {
 
     private Set<String> grammemsToReject;
 
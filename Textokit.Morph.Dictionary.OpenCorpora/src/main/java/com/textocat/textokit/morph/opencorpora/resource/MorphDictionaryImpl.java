@@ -18,8 +18,11 @@
 package com.textocat.textokit.morph.opencorpora.resource;
 
 import com.google.common.collect.*;
+import com.textocat.textokit.morph.dictionary.DictionaryFormBuffer;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.TagTable;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
 import com.textocat.textokit.morph.model.Lemma;
 import com.textocat.textokit.morph.model.LemmaLinkType;
 import com.textocat.textokit.morph.model.Wordform;
@@ -29,7 +32,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,10 +69,21 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
     private Set<BitSet> tagset = Sets.newHashSet();
 
     private transient WordformPredictor wfPredictor;
+    // ids of wordform grammem sets and complete tags, see indexTags()
+    private transient TagTable tagTable;
 
     // state mark
     private transient boolean complete = false;
 
+    // dictionary forms of text ranges passed to lookup methods,
+    // it is static as transient fields are not restored on deserialization
+    private static final ThreadLocal<DictionaryFormBuffer> formBuffer = new ThreadLocal<DictionaryFormBuffer>() {
+        @Override
+        protected DictionaryFormBuffer initialValue() {
+            return new DictionaryFormBuffer();
+        }
+    };
+
     private transient EventListenerSupport<MorphDictionaryListener> listeners = EventListenerSupport
             .create(MorphDictionaryListener.class);
 
@@ -99,17 +115,65 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 
     @Override
     public List<Wordform> getEntries(String str) {
+        return getEntriesOfForm(str);
+    }
+
+    @Override
+    public List<Wordform> getEntries(CharSequence text, int begin, int end) {
+        return getEntriesOfForm(formBuffer.get().normalize(text, begin, end));
+    }
+
+    private List<Wordform> getEntriesOfForm(CharSequence str) {
         WordformTSTSearchResult result = wfByString.getLongestPrefixMatch(str);
+        if (result == null)
+            // an empty string
+            return ImmutableList.of();
         if (result.isMatchExact())
             return Lists.newArrayList(result);
         else if (wfPredictor != null) {
-            return ImmutableList.copyOf(wfPredictor.predict(str, result));
+            return ImmutableList.copyOf(wfPredictor.predict(str.toString(), result));
         } else {
             // wfPredictor is not set
             return ImmutableList.of();
         }
     }
 
+    @Override
+    public int visitEntries(String str, WordformVisitor visitor) {
+        return visitEntriesOfForm(str, visitor);
+    }
+
+    @Override
+    public int visitEntries(CharSequence text, int begin, int end, WordformVisitor visitor) {
+        return visitEntriesOfForm(formBuffer.get().normalize(text, begin, end), visitor);
+    }
+
+    private int visitEntriesOfForm(CharSequence str, WordformVisitor visitor) {
+        WordformTST.Node node = wfByString.getExactMatchNode(str);
+        if (node != null) {
+            Wordform[] data = node.getData();
+            int[] tagIds = node.getTagIds();
+            for (int i = 0; i < data.length; i++) {
+                visitor.visit(data[i].getLemmaId(), tagIds[2 * i], tagIds[2 * i + 1]);
+            }
+            return data.length;
+        }
+        // predicted wordforms are not indexed in advance
+        List<Wordform> entries = getEntriesOfForm(str);
+        for (Wordform wf : entries) {
+            BitSet tag = wf.getGrammems();
+            int wfTagId = tagTable.intern(tag);
+            tag.or(getLemma(wf.getLemmaId()).getGrammems());
+            visitor.visit(wf.getLemmaId(), wfTagId, tagTable.intern(tag));
+        }
+        return entries.size();
+    }
+
+    @Override
+    public TagTable getTagTable() {
+        return tagTable;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -210,11 +274,19 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
     }
 
     public void addWordform(String text, Wordform wf) {
-        wf = wf.cloneWithGrammems(internWordformGrammems(wf.getGrammems()));
-        wfByString.put(text, wf);
-        // add complete tag
+        // complete tag
         BitSet tag = wf.getGrammems();
         tag.or(getLemma(wf.getLemmaId()).getGrammems());
+        addWordform(text, wf, tag);
+    }
+
+    /**
+     * @param tag the complete tag of the wordform, i.e., the union of its grammems and
+     *            grammems of its lemma
+     */
+    void addWordform(String text, Wordform wf, BitSet tag) {
+        wf = wf.cloneWithGrammems(internWordformGrammems(wf.getGrammems()));
+        wfByString.put(text, wf);
         tagset.add(tag);
         // fire event
         listeners.fire().onWordformAdded(this, text, wf);
@@ -237,9 +309,82 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
         log.info("Unique tag bitset count: {}", tagset.size());
         makeUnmodifiable();
         //		uniqGrammemsMap = null;
+        indexTags();
         complete = true;
     }
 
+    /**
+     * Assigns ids to the grammem sets of all wordforms and their complete tags.
+     * Every trie node keeps the ids of its wordforms so that
+     * {@link #visitEntries(String, WordformVisitor)} needs neither bitset cloning nor lookups.
+     */
+    private void indexTags() {
+        long timeBefore = System.currentTimeMillis();
+        tagTable = new TagTable(gramModel);
+        Deque<WordformTST.Node> nodeStack = new ArrayDeque<WordformTST.Node>();
+        if (wfByString.getRootNode() != null) {
+            nodeStack.addFirst(wfByString.getRootNode());
+        }
+        while (!nodeStack.isEmpty()) {
+            WordformTST.Node node = nodeStack.removeFirst();
+            Wordform[] data = node.getData();
+            if (data != null) {
+                int[] tagIds = new int[2 * data.length];
+                for (int i = 0; i < data.length; i++) {
+                    BitSet tag = data[i].getGrammems();
+                    tagIds[2 * i] = tagTable.intern(tag);
+                    tag.or(getLemma(data[i].getLemmaId()).getGrammems());
+                    tagIds[2 * i + 1] = tagTable.intern(tag);
+                }
+                node.setTagIds(tagIds);
+            }
+            if (node.getLoKid() != null)
+                nodeStack.addFirst(node.getLoKid());
+            if (node.getEqKid() != null)
+                nodeStack.addFirst(node.getEqKid());
+            if (node.getHiKid() != null)
+                nodeStack.addFirst(node.getHiKid());
+        }
+        log.info("Tag ids have been assigned in {} ms. Tag table size: {}",
+                System.currentTimeMillis() - timeBefore, tagTable.size());
+    }
+
+    WordformTST getWfByString() {
+        return wfByString;
+    }
+
+    Map<Integer, Lemma> getLemmaMap() {
+        return lemmaMap;
+    }
+
+    Map<Short, LemmaLinkType> getLemmaLinkTypeMap() {
+        return lemmaLinkTypeMap;
+    }
+
+    Table<Integer, Integer, LemmaLinkType> getLemmaLinkTable() {
+        return lemmaLinkTable;
+    }
+
+    Set<BitSet> getTagset() {
+        return tagset;
+    }
+
+    /**
+     * Sets the wordform index of a dictionary that is read by {@link BinaryDictionaryReader}.
+     *
+     * @param wfByString       restored wordform trie
+     * @param wordformGrammems unique grammem sets of the wordforms in the trie
+     * @param tagset           complete tags of the wordforms in the trie
+     */
+    void setWordformIndex(WordformTST wfByString, Iterable<BitSet> wordformGrammems,
+                          Set<BitSet> tagset) {
+        this.wfByString = wfByString;
+        for (BitSet grammems : wordformGrammems) {
+            internWordformGrammems(grammems);
+        }
+        this.tagset = tagset;
+    }
+
     void setVersion(String version) {
         this.version = version;
     }
@@ -269,6 +414,7 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
     private void readObject(java.io.ObjectInputStream in)
             throws IOException, ClassNotFoundException {
         in.defaultReadObject();
+        indexTags();
         complete = true;
     }
 
@@ -27,7 +27,8 @@ import com.textocat.textokit.morph.model.Wordform;
  *
  * @author Rinat Gareev
  */
-public class OddLemmaFilter extends LexemePostProcessorBase {
+public class OddLemmaFilter extends LexemePostProcessorBase
+        implements ThreadSafeLemmaPostProcessor {
 
     @Override
     public boolean process(MorphDictionary dict, Lemma.Builder lemma,
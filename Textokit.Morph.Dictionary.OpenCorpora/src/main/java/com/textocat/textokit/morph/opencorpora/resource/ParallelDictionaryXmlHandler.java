@@ -0,0 +1,210 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.Wordform;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link DictionaryXmlHandler} that post-processes lemmas in a pool of worker threads.
+ * <p>
+ * Parsed lemmas are sent to workers in batches. A worker invokes the leading
+ * {@link ThreadSafeLemmaPostProcessor}s of the chain, builds a lemma and computes complete tags
+ * of its wordforms. Results are merged into the dictionary by the parsing thread in the document
+ * order, the rest of the post-processor chain is invoked at this point. So the resulting
+ * dictionary (including the shape of its wordform trie) is the same as the one produced
+ * by the sequential handler.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+class ParallelDictionaryXmlHandler extends DictionaryXmlHandler {
+
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final int threadCount;
+    private final int batchSize;
+    private ExecutorService executor;
+    // number of the leading post-processors that are invoked by workers
+    private int threadSafeProcessorCount;
+    private List<ParsedLemma> curBatch;
+    // batches in the document order
+    private final Deque<Future<List<ParsedLemma>>> pendingBatches =
+            new ArrayDeque<Future<List<ParsedLemma>>>();
+
+    ParallelDictionaryXmlHandler(MorphDictionaryImpl dict, int threadCount) {
+        this(dict, threadCount, DEFAULT_BATCH_SIZE);
+    }
+
+    ParallelDictionaryXmlHandler(MorphDictionaryImpl dict, int threadCount, int batchSize) {
+        super(dict);
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount < 1");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1");
+        }
+        this.threadCount = threadCount;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    void lemmaParsed(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap) {
+        if (executor == null) {
+            start();
+        }
+        curBatch.add(new ParsedLemma(lemmaBuilder, wfMap));
+        if (curBatch.size() >= batchSize) {
+            submitBatch();
+        }
+    }
+
+    @Override
+    void lemmataParsed() {
+        if (executor == null) {
+            return;
+        }
+        submitBatch();
+        while (!pendingBatches.isEmpty()) {
+            mergeBatch();
+        }
+        shutdown();
+    }
+
+    /**
+     * Stops worker threads. It is safe to invoke this method several times.
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void start() {
+        List<LemmaPostProcessor> lpps = getLemmaPostProcessors();
+        threadSafeProcessorCount = 0;
+        while (threadSafeProcessorCount < lpps.size()
+                && lpps.get(threadSafeProcessorCount) instanceof ThreadSafeLemmaPostProcessor) {
+            threadSafeProcessorCount++;
+        }
+        executor = Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+                .setNameFormat("dict-xml-worker-%d").setDaemon(true).build());
+        curBatch = Lists.newArrayListWithCapacity(batchSize);
+    }
+
+    private void submitBatch() {
+        if (curBatch.isEmpty()) {
+            return;
+        }
+        final List<ParsedLemma> batch = curBatch;
+        curBatch = Lists.newArrayListWithCapacity(batchSize);
+        // bound the memory occupied by the parsed lemmas
+        while (pendingBatches.size() >= threadCount * 2) {
+            mergeBatch();
+        }
+        pendingBatches.addLast(executor.submit(new Callable<List<ParsedLemma>>() {
+            @Override
+            public List<ParsedLemma> call() {
+                for (ParsedLemma pl : batch) {
+                    pl.preProcess();
+                }
+                return batch;
+            }
+        }));
+    }
+
+    private void mergeBatch() {
+        List<ParsedLemma> batch;
+        try {
+            batch = pendingBatches.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for lemma post-processing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lemma post-processing has failed", e.getCause());
+        }
+        for (ParsedLemma pl : batch) {
+            pl.merge();
+        }
+    }
+
+    private class ParsedLemma {
+        private final Lemma.Builder builder;
+        private final Multimap<String, Wordform> wfMap;
+        private boolean accepted;
+        // fields below are computed only if there are no post-processors to invoke on merge
+        private Lemma lemma;
+        // complete tags of wordforms in the iteration order of wfMap
+        private BitSet[] tags;
+
+        private ParsedLemma(Lemma.Builder builder, Multimap<String, Wordform> wfMap) {
+            this.builder = builder;
+            this.wfMap = wfMap;
+        }
+
+        // invoked by a worker
+        private void preProcess() {
+            accepted = postProcessLemma(builder, wfMap, 0, threadSafeProcessorCount);
+            if (accepted && threadSafeProcessorCount == getLemmaPostProcessors().size()) {
+                lemma = builder.build();
+                tags = new BitSet[wfMap.size()];
+                int i = 0;
+                for (String wfStr : wfMap.keySet()) {
+                    for (Wordform wf : wfMap.get(wfStr)) {
+                        BitSet tag = wf.getGrammems();
+                        tag.or(lemma.getGrammems());
+                        tags[i++] = tag;
+                    }
+                }
+            }
+        }
+
+        // invoked by the parsing thread
+        private void merge() {
+            if (!accepted) {
+                lemmaRejected();
+            } else if (lemma == null) {
+                // there are post-processors that are not thread-safe
+                processLemma(builder, wfMap, threadSafeProcessorCount);
+            } else {
+                MorphDictionaryImpl dict = getDict();
+                dict.addLemma(lemma);
+                int i = 0;
+                for (String wfStr : wfMap.keySet()) {
+                    for (Wordform wf : wfMap.get(wfStr)) {
+                        dict.addWordform(wfStr, wf, tags[i++]);
+                    }
+                }
+                lemmaAccepted();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.textocat.textokit.morph.opencorpora.resource;
+
+/**
+ * Marks a {@link LemmaPostProcessor} that can process different lemmas concurrently.
+ * Its {@link #process(com.textocat.textokit.morph.dictionary.resource.MorphDictionary,
+ * com.textocat.textokit.morph.model.Lemma.Builder, com.google.common.collect.Multimap)}
+ * must not depend on the previous invocations and may only read a grammatical model
+ * from the given dictionary.
+ *
+ * @author Rinat Gareev
+ * @see ParallelDictionaryXmlHandler
+ */
+public interface ThreadSafeLemmaPostProcessor extends LemmaPostProcessor {
+}
@@ -72,7 +72,7 @@ public class WordformTST implements Serializable {
         }
     }
 
-    private getNodeLongestPrefixMatchResult getNodeLongestPrefixMatch(String key) {
+    private getNodeLongestPrefixMatchResult getNodeLongestPrefixMatch(CharSequence key) {
         if (key == null || key.length() == 0)
             return null;
         Node currentNode = rootNode;
@@ -101,7 +101,40 @@ public class WordformTST implements Serializable {
         }
     }
 
-    public WordformTSTSearchResult getLongestPrefixMatch(String key) {
+    /**
+     * @param key a wordform string
+     * @return the node of the given key if it has wordforms, otherwise null
+     */
+    Node getExactMatchNode(CharSequence key) {
+        if (key == null || key.length() == 0)
+            return null;
+        Node currentNode = rootNode;
+        int charIndex = key.length() - 1;
+        while (currentNode != null) {
+            int charComp = compareChars(key.charAt(charIndex), currentNode.splitchar);
+            if (charComp == 0) {
+                charIndex--;
+                if (charIndex < 0)
+                    return currentNode.data != null && currentNode.data.length > 0 ? currentNode : null;
+                currentNode = currentNode.getEqKid();
+            } else if (charComp < 0) {
+                currentNode = currentNode.getLoKid();
+            } else {
+                currentNode = currentNode.getHiKid();
+            }
+        }
+        return null;
+    }
+
+    Node getRootNode() {
+        return rootNode;
+    }
+
+    void setRootNode(Node rootNode) {
+        this.rootNode = rootNode;
+    }
+
+    public WordformTSTSearchResult getLongestPrefixMatch(CharSequence key) {
         getNodeLongestPrefixMatchResult nodeLongestPrefixMatchResult = getNodeLongestPrefixMatch(key);
         if (nodeLongestPrefixMatchResult == null)
             return null;
@@ -122,15 +155,37 @@ public class WordformTST implements Serializable {
         private char splitchar;
 
         private Wordform[] data;
+        // pairs of <wordform tag id, full tag id> for each wordform in data
+        private transient int[] tagIds;
 
         private Node LoKid;
         private Node EqKid;
         private Node HiKid;
 
-        private Node(char splitchar) {
+        Node(char splitchar) {
             this.splitchar = splitchar;
         }
 
+        char getSplitchar() {
+            return splitchar;
+        }
+
+        void setData(Wordform[] data) {
+            this.data = data;
+        }
+
+        Wordform[] getData() {
+            return data;
+        }
+
+        int[] getTagIds() {
+            return tagIds;
+        }
+
+        void setTagIds(int[] tagIds) {
+            this.tagIds = tagIds;
+        }
+
         void addData(Wordform wf) {
             if (data == null) {
                 data = new Wordform[1];
@@ -31,6 +31,13 @@ public class WordformTSTSearchResult implements Iterable<Wordform> {
         this.resultNode = resultNode;
     }
 
+    /**
+     * For subclasses that keep the matched wordforms in a different storage.
+     */
+    protected WordformTSTSearchResult(boolean matchExact) {
+        this(matchExact, null);
+    }
+
     public boolean isMatchExact() {
         return isMatchExact;
     }
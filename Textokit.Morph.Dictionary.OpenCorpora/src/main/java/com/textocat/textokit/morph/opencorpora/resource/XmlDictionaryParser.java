@@ -42,6 +42,7 @@ public class XmlDictionaryParser {
     private MorphDictionaryImpl dict;
     private DictionaryExtension ext;
     private InputStream in;
+    private int threadCount = 1;
 
     public XmlDictionaryParser(MorphDictionaryImpl dict, DictionaryExtension ext, InputStream in) {
         this.dict = dict;
@@ -49,6 +50,18 @@ public class XmlDictionaryParser {
         this.in = in;
     }
 
+    /**
+     * @param threadCount number of threads to post-process lemmas by. If it is greater than 1,
+     *                    lemmas are processed by {@link ParallelDictionaryXmlHandler}.
+     *                    The resulting dictionary does not depend on this value.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount < 1");
+        }
+        this.threadCount = threadCount;
+    }
+
     public void run() throws SAXException, IOException {
         SAXParser xmlParser;
         try {
@@ -59,7 +72,9 @@ public class XmlDictionaryParser {
         }
         XMLReader xmlReader = xmlParser.getXMLReader();
 
-        DictionaryXmlHandler dictHandler = new DictionaryXmlHandler(dict);
+        DictionaryXmlHandler dictHandler = threadCount > 1
+                ? new ParallelDictionaryXmlHandler(dict, threadCount)
+                : new DictionaryXmlHandler(dict);
         if (ext.getLexemePostprocessors() != null) {
             for (LemmaPostProcessor lpp : ext.getLexemePostprocessors()) {
                 dictHandler.addLemmaPostProcessor(lpp);
@@ -73,9 +88,15 @@ public class XmlDictionaryParser {
 
         xmlReader.setContentHandler(dictHandler);
         InputSource xmlSource = new InputSource(in);
-        log.info("About to parse xml dictionary file");
+        log.info("About to parse xml dictionary file using {} thread(s)", threadCount);
         long timeBefore = currentTimeMillis();
-        xmlReader.parse(xmlSource);
+        try {
+            xmlReader.parse(xmlSource);
+        } finally {
+            if (dictHandler instanceof ParallelDictionaryXmlHandler) {
+                ((ParallelDictionaryXmlHandler) dictHandler).shutdown();
+            }
+        }
         log.info("Parsing finished in {} ms", currentTimeMillis() - timeBefore);
     }
 
@@ -42,6 +42,12 @@ public class XmlDictionaryParserLauncher {
     private Class<? extends DictionaryExtension> dictExtensionClass = DefaultDictionaryExtension.class;
     @Parameter(names = {"-o", "--output-file"}, required = true)
     private File outputFile;
+    // write the dictionary by BinaryDictionaryWriter instead of Java serialization
+    @Parameter(names = {"--binary-format"}, required = false)
+    private boolean binaryFormat = false;
+    // number of threads to post-process lemmas by
+    @Parameter(names = {"--threads"}, required = false)
+    private int threadCount = 1;
 
     private XmlDictionaryParserLauncher() {
     }
@@ -54,11 +60,17 @@ public class XmlDictionaryParserLauncher {
         DictionaryExtension ext = cfg.dictExtensionClass.newInstance();
         FileInputStream fis = FileUtils.openInputStream(cfg.dictXmlFile);
         try {
-            new XmlDictionaryParser(dict, ext, fis).run();
+            XmlDictionaryParser parser = new XmlDictionaryParser(dict, ext, fis);
+            parser.setThreadCount(cfg.threadCount);
+            parser.run();
         } finally {
             IOUtils.closeQuietly(fis);
         }
 
+        if (cfg.binaryFormat) {
+            BinaryDictionaryWriter.write(dict, cfg.outputFile);
+            return;
+        }
         log.info("Preparing to serialization...");
         long timeBefore = currentTimeMillis();
         OutputStream fout = new BufferedOutputStream(FileUtils.openOutputStream(cfg.outputFile),
@@ -27,7 +27,8 @@ import org.apache.commons.lang3.StringUtils;
 /**
  * @author Rinat Gareev
  */
-public class YoLemmaPostProcessor extends LexemePostProcessorBase {
+public class YoLemmaPostProcessor extends LexemePostProcessorBase
+        implements ThreadSafeLemmaPostProcessor {
 
     private static final String YO_CHARS = "ёЁ";
     private static final String YO_REPLACEMENTS = "еЕ";
@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.model.Wordform;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.ObjectOutputStream;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryDictionaryReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private MorphDictionaryImpl srcDict;
+
+    @Before
+    public void setUp() throws Exception {
+        FileInputStream fis = FileUtils.openInputStream(
+                new File("test-data/dict.opcorpora.test.xml"));
+        try {
+            srcDict = XmlDictionaryParser.parse(fis);
+        } finally {
+            IOUtils.closeQuietly(fis);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File binFile = tempFolder.newFile("dict.bin");
+        BinaryDictionaryWriter.write(srcDict, binFile);
+        MorphDictionaryImpl dict = DictionaryDeserializer.from(binFile);
+        assertDictionariesEqual(srcDict, dict);
+        // the binary output must be reproducible
+        File binFile2 = tempFolder.newFile("dict2.bin");
+        BinaryDictionaryWriter.write(dict, binFile2);
+        assertTrue(FileUtils.contentEquals(binFile, binFile2));
+    }
+
+    @Test
+    public void testJavaSerializationIsStillSupported() throws Exception {
+        File serFile = tempFolder.newFile("dict.ser");
+        ObjectOutputStream out = new ObjectOutputStream(FileUtils.openOutputStream(serFile));
+        try {
+            out.writeObject(srcDict.getGramModel());
+            out.writeObject(srcDict);
+        } finally {
+            out.close();
+        }
+        assertDictionariesEqual(srcDict, DictionaryDeserializer.from(serFile));
+    }
+
+    @Test
+    public void testReadGramModelOnly() throws Exception {
+        File binFile = tempFolder.newFile("dict.bin");
+        BinaryDictionaryWriter.write(srcDict, binFile);
+        assertGramModelsEqual(srcDict.getGramModel(), GramModelDeserializer.from(binFile));
+        File serFile = tempFolder.newFile("dict.ser");
+        ObjectOutputStream out = new ObjectOutputStream(FileUtils.openOutputStream(serFile));
+        try {
+            out.writeObject(srcDict.getGramModel());
+            out.writeObject(srcDict);
+        } finally {
+            out.close();
+        }
+        assertGramModelsEqual(srcDict.getGramModel(), GramModelDeserializer.from(serFile));
+    }
+
+    private static void assertDictionariesEqual(MorphDictionaryImpl expected, MorphDictionaryImpl actual) {
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getRevision(), actual.getRevision());
+        assertGramModelsEqual(expected.getGramModel(), actual.getGramModel());
+        assertEquals(expected.getLemmaMap(), actual.getLemmaMap());
+        assertEquals(expected.getLemmaLinkTable(), actual.getLemmaLinkTable());
+        assertEquals(expected.getTagset(), actual.getTagset());
+        assertEquals(Lists.newArrayList(new WordformTST.SubtreeIterator(expected.getWfByString().getRootNode())),
+                Lists.newArrayList(new WordformTST.SubtreeIterator(actual.getWfByString().getRootNode())));
+        for (String str : new String[]{"а", "вворотил", "внятно", "водохранилищная"}) {
+            List<Wordform> expectedEntries = expected.getEntries(str);
+            assertFalse(expectedEntries.isEmpty());
+            assertEquals(expectedEntries, actual.getEntries(str));
+            for (Wordform wf : expectedEntries) {
+                BitSet tag = Wordform.getAllGramBits(wf, actual);
+                assertTrue(actual.containsGramSet(tag));
+            }
+        }
+    }
+
+    private static void assertGramModelsEqual(GramModel expectedGm, GramModel actualGm) {
+        assertEquals(expectedGm.getGrammemMaxNumId(), actualGm.getGrammemMaxNumId());
+        for (int numId = 0; numId <= expectedGm.getGrammemMaxNumId(); numId++) {
+            if (expectedGm.getGrammem(numId) == null) {
+                assertNull(actualGm.getGrammem(numId));
+            } else {
+                assertEquals(expectedGm.getGrammem(numId).getId(), actualGm.getGrammem(numId).getId());
+                assertEquals(expectedGm.getGrammem(numId).getParentId(),
+                        actualGm.getGrammem(numId).getParentId());
+            }
+        }
+        assertEquals(expectedGm.getPosBits(), actualGm.getPosBits());
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.TagTable;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.Wordform;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramMask;
+import static org.junit.Assert.*;
+
+public class CompactMorphDictionaryTest {
+
+    private static final File DICT_XML = new File("test-data/dict.opcorpora.test.xml");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private MorphDictionaryImpl srcDict;
+    private CompactMorphDictionary compactDict;
+    private Set<String> testStrings;
+
+    @Before
+    public void setUp() throws Exception {
+        FileInputStream fis = FileUtils.openInputStream(DICT_XML);
+        try {
+            srcDict = XmlDictionaryParser.parse(fis);
+        } finally {
+            IOUtils.closeQuietly(fis);
+        }
+        File compactFile = tempFolder.newFile("dict.compact");
+        CompactDictionaryWriter.write(srcDict, compactFile);
+        compactDict = CompactMorphDictionary.open(compactFile);
+        // known wordforms, their suffixes and unknown words sharing suffixes with them
+        testStrings = Sets.newLinkedHashSet();
+        Matcher wfMatcher = Pattern.compile("<f t=\"([^\"]+)\"")
+                .matcher(FileUtils.readFileToString(DICT_XML, "utf-8"));
+        while (wfMatcher.find()) {
+            String wf = wfMatcher.group(1);
+            testStrings.add(wf);
+            testStrings.add(wf.substring(1) + wf.substring(0, 1));
+            testStrings.add("пере" + wf);
+            for (int i = 1; i < wf.length(); i++) {
+                testStrings.add(wf.substring(i));
+            }
+        }
+        testStrings.add("zzz");
+    }
+
+    @Test
+    public void testGetLongestPrefixMatch() {
+        for (String str : testStrings) {
+            WordformTSTSearchResult expected = srcDict.getWfByString().getLongestPrefixMatch(str);
+            WordformTSTSearchResult actual = compactDict.getWordformTrie().getLongestPrefixMatch(str);
+            assertEquals(str, expected.isMatchExact(), actual.isMatchExact());
+            assertEquals(str, Lists.newArrayList(expected), Lists.newArrayList(actual));
+        }
+        assertNull(compactDict.getWordformTrie().getLongestPrefixMatch(""));
+    }
+
+    @Test
+    public void testGetEntries() {
+        srcDict.setWfPredictor(new DummyWordformPredictor(srcDict));
+        compactDict.setWfPredictor(new DummyWordformPredictor(compactDict));
+        for (String str : testStrings) {
+            List<Wordform> expected = srcDict.getEntries(str);
+            assertEquals(str, expected, compactDict.getEntries(str));
+            for (Wordform wf : expected) {
+                Lemma expectedLemma = srcDict.getLemma(wf.getLemmaId());
+                Lemma actualLemma = compactDict.getLemma(wf.getLemmaId());
+                assertEquals(expectedLemma, actualLemma);
+                assertEquals(expectedLemma.getId(), actualLemma.getId());
+                assertTrue(compactDict.containsGramSet(Wordform.getAllGramBits(wf, compactDict)));
+            }
+        }
+        assertEquals(srcDict.getLemmaMaxId(), compactDict.getLemmaMaxId());
+        assertEquals(3, compactDict.getEntries("село").size());
+        assertTrue(compactDict.getEntries("").isEmpty());
+        assertEquals(4, compactDict.getEntries("мыркающий").size());
+    }
+
+    @Test
+    public void testRangeLookups() {
+        srcDict.setWfPredictor(new DummyWordformPredictor(srcDict));
+        compactDict.setWfPredictor(new DummyWordformPredictor(compactDict));
+        for (String str : testStrings) {
+            List<Wordform> expected = srcDict.getEntries(str);
+            String text = "<" + str + "> " + str.toUpperCase();
+            int end = str.length() + 1;
+            assertEquals(str, expected, srcDict.getEntries(text, 1, end));
+            assertEquals(str, expected, compactDict.getEntries(text, 1, end));
+            assertEquals(str, expected, compactDict.getEntries(text, end + 2, text.length()));
+            assertEquals(str, expected, visitEntries(srcDict, text, 1, end));
+            assertEquals(str, expected, visitEntries(compactDict, text, end + 2, text.length()));
+        }
+        assertEquals(compactDict.getEntries("село"), compactDict.getEntries("Вот СЕЛО\u0301!", 4, 9));
+        assertTrue(compactDict.getEntries("село", 2, 2).isEmpty());
+    }
+
+    @Test
+    public void testVisitEntries() {
+        srcDict.setWfPredictor(new DummyWordformPredictor(srcDict));
+        compactDict.setWfPredictor(new DummyWordformPredictor(compactDict));
+        for (String str : testStrings) {
+            List<Wordform> expected = srcDict.getEntries(str);
+            assertEquals(str, expected, visitEntries(srcDict, str));
+            assertEquals(str, expected, visitEntries(compactDict, str));
+        }
+    }
+
+    private static List<Wordform> visitEntries(MorphDictionary dict, String str) {
+        EntryCollector collector = new EntryCollector(dict);
+        int count = dict.visitEntries(str, collector);
+        assertEquals(collector.result.size(), count);
+        return collector.result;
+    }
+
+    private static List<Wordform> visitEntries(MorphDictionary dict, String text, int begin, int end) {
+        EntryCollector collector = new EntryCollector(dict);
+        int count = dict.visitEntries(text, begin, end, collector);
+        assertEquals(collector.result.size(), count);
+        return collector.result;
+    }
+
+    private static class EntryCollector implements WordformVisitor {
+        private final MorphDictionary dict;
+        private final List<Wordform> result = Lists.newArrayList();
+
+        private EntryCollector(MorphDictionary dict) {
+            this.dict = dict;
+        }
+
+        @Override
+        public void visit(int lemmaId, int wordformTagId, int fullTagId) {
+            TagTable tagTable = dict.getTagTable();
+            Wordform wf = new Wordform(lemmaId, tagTable.getTag(wordformTagId));
+            assertEquals(Wordform.getAllGramBits(wf, dict), tagTable.getTag(fullTagId));
+            assertArrayEquals(toGramMask(dict.getGramModel(), tagTable.getTag(fullTagId)),
+                    tagTable.getMask(fullTagId));
+            result.add(wf);
+        }
+    }
+
+    @Test
+    public void testMeta() {
+        assertEquals(srcDict.getVersion(), compactDict.getVersion());
+        assertEquals(srcDict.getRevision(), compactDict.getRevision());
+        assertEquals(srcDict.getGramModel().getGrammemMaxNumId(),
+                compactDict.getGramModel().getGrammemMaxNumId());
+        assertEquals(srcDict.getLemmaOutlinks(51).keySet(), compactDict.getLemmaOutlinks(51).keySet());
+        assertEquals(srcDict.getLemmaInlinks(52).keySet(), compactDict.getLemmaInlinks(52).keySet());
+        assertEquals(srcDict.getLemmaLinkType((short) 1), compactDict.getLemmaLinkType((short) 1));
+    }
+}
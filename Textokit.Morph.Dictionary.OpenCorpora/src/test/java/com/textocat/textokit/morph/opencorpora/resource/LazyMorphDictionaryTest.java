@@ -0,0 +1,175 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LazyMorphDictionaryTest {
+
+    private MorphDictionaryImpl srcDict;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() throws Exception {
+        FileInputStream fis = FileUtils.openInputStream(
+                new File("test-data/dict.opcorpora.test.xml"));
+        try {
+            srcDict = XmlDictionaryParser.parse(fis);
+        } finally {
+            IOUtils.closeQuietly(fis);
+        }
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final CountDownLatch loadAllowed = new CountDownLatch(1);
+        final LazyMorphDictionary dict = new LazyMorphDictionary(srcDict.getGramModel(), new Object(),
+                new TestLoader() {
+                    @Override
+                    public MorphDictionary load() throws Exception {
+                        loadAllowed.await();
+                        return super.load();
+                    }
+
+                    @Override
+                    public double getProgress() {
+                        return 0.5;
+                    }
+                });
+        assertSame(srcDict.getGramModel(), dict.getGramModel());
+        dict.startWarmUp(Executors.defaultThreadFactory());
+        assertFalse(dict.isReady());
+        assertEquals(0.5, dict.getProgress(), 0);
+        assertFalse(dict.awaitReady(10, TimeUnit.MILLISECONDS));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> lookup = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return dict.getEntries("село").size();
+                }
+            });
+            Thread.sleep(50);
+            assertFalse(lookup.isDone());
+            loadAllowed.countDown();
+            assertEquals(srcDict.getEntries("село").size(), lookup.get().intValue());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(dict.awaitReady(1, TimeUnit.SECONDS));
+        assertTrue(dict.isReady());
+        assertEquals(1, dict.getProgress(), 0);
+        assertEquals(srcDict.getLemmaMaxId(), dict.getLemmaMaxId());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testSynchronousLoading() throws Exception {
+        LazyMorphDictionary dict = new LazyMorphDictionary(srcDict.getGramModel(), new Object(),
+                new TestLoader());
+        assertFalse(dict.isReady());
+        assertEquals(-1, dict.getProgress(), 0);
+        assertEquals(srcDict.getEntries("село"), dict.getEntries("село"));
+        assertTrue(dict.isReady());
+        assertEquals(srcDict.getVersion(), dict.getVersion());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFailedLoading() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        LazyMorphDictionary dict = new LazyMorphDictionary(srcDict.getGramModel(), new Object(),
+                new SharedResourceRegistry.Loader<MorphDictionary>() {
+                    @Override
+                    public MorphDictionary load() throws Exception {
+                        attempts.incrementAndGet();
+                        throw new IOException("Can't read");
+                    }
+                });
+        for (int i = 0; i < 2; i++) {
+            try {
+                dict.getEntries("село");
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertFalse(dict.isReady());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testRetryAfterFailedWarmUp() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        LazyMorphDictionary dict = new LazyMorphDictionary(srcDict.getGramModel(), new Object(),
+                new TestLoader() {
+                    @Override
+                    public MorphDictionary load() throws Exception {
+                        if (attempts.incrementAndGet() == 1) {
+                            throw new IOException("Can't read");
+                        }
+                        return super.load();
+                    }
+                });
+        dict.startWarmUp(Executors.defaultThreadFactory());
+        // the failure is reported until a retry, not a timeout
+        for (int i = 0; i < 2; i++) {
+            try {
+                dict.awaitReady(1, TimeUnit.SECONDS);
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertFalse(dict.isReady());
+        assertTrue(dict.getFailure() instanceof IOException);
+        assertEquals(srcDict.getEntries("село"), dict.getEntries("село"));
+        assertTrue(dict.isReady());
+        assertNull(dict.getFailure());
+        assertTrue(dict.awaitReady(1, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        assertEquals(1, loads.get());
+    }
+
+    private class TestLoader extends SharedResourceRegistry.Loader<MorphDictionary> {
+        @Override
+        public MorphDictionary load() throws Exception {
+            loads.incrementAndGet();
+            return srcDict;
+        }
+    }
+}
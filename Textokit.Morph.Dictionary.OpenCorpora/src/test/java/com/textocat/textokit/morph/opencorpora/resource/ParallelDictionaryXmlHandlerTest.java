@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.morph.opencorpora.resource;
+
+import com.google.common.collect.Multimap;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.model.Wordform;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.assertTrue;
+
+public class ParallelDictionaryXmlHandlerTest {
+
+    private static final File DICT_XML = new File("test-data/dict.opcorpora.test.xml");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testThreadSafeProcessors() throws Exception {
+        File expected = writeBinary(parse(new DictionaryXmlHandler(new MorphDictionaryImpl()),
+                YoLemmaPostProcessor.INSTANCE));
+        File actual = writeBinary(parse(new ParallelDictionaryXmlHandler(new MorphDictionaryImpl(), 3, 2),
+                YoLemmaPostProcessor.INSTANCE));
+        assertTrue(FileUtils.contentEquals(expected, actual));
+    }
+
+    @Test
+    public void testProcessorsThatAreNotThreadSafe() throws Exception {
+        File expected = writeBinary(parse(new DictionaryXmlHandler(new MorphDictionaryImpl()),
+                YoLemmaPostProcessor.INSTANCE, new EverySecondLemmaFilter()));
+        File actual = writeBinary(parse(new ParallelDictionaryXmlHandler(new MorphDictionaryImpl(), 3, 2),
+                YoLemmaPostProcessor.INSTANCE, new EverySecondLemmaFilter()));
+        assertTrue(FileUtils.contentEquals(expected, actual));
+    }
+
+    @Test
+    public void testXmlDictionaryParser() throws Exception {
+        File expected = writeBinary(parse(new DictionaryXmlHandler(new MorphDictionaryImpl()),
+                YoLemmaPostProcessor.INSTANCE));
+        MorphDictionaryImpl dict = new MorphDictionaryImpl();
+        FileInputStream fis = FileUtils.openInputStream(DICT_XML);
+        try {
+            XmlDictionaryParser parser = new XmlDictionaryParser(dict, new DefaultDictionaryExtension(), fis);
+            parser.setThreadCount(4);
+            parser.run();
+        } finally {
+            IOUtils.closeQuietly(fis);
+        }
+        assertTrue(FileUtils.contentEquals(expected, writeBinary(dict)));
+    }
+
+    private static MorphDictionaryImpl parse(DictionaryXmlHandler handler, LemmaPostProcessor... lpps)
+            throws Exception {
+        for (LemmaPostProcessor lpp : lpps) {
+            handler.addLemmaPostProcessor(lpp);
+        }
+        FileInputStream fis = FileUtils.openInputStream(DICT_XML);
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(fis, handler);
+        } finally {
+            IOUtils.closeQuietly(fis);
+        }
+        return handler.getDict();
+    }
+
+    private File writeBinary(MorphDictionaryImpl dict) throws Exception {
+        File outFile = tempFolder.newFile();
+        BinaryDictionaryWriter.write(dict, outFile);
+        return outFile;
+    }
+
+    // depends on the order of lemmas
+    private static class EverySecondLemmaFilter extends LexemePostProcessorBase {
+        private int counter;
+
+        @Override
+        public boolean process(MorphDictionary dict, Lemma.Builder lemmaBuilder,
+                               Multimap<String, Wordform> wfMap) {
+            return counter++ % 2 == 0;
+        }
+    }
+}
@@ -19,8 +19,8 @@
  */
 package com.textocat.textokit.phrrecog.parsing
 
-import com.textocat.textokit.commons.cas.FSUtils._
 import com.textocat.textokit.morph.fs.{Word, Wordform}
+import com.textocat.textokit.postagger.MorphCasUtils.getGrammemeStrings
 import org.apache.uima.fit.util.FSCollectionFactory
 
 import scala.collection.JavaConversions._
@@ -31,11 +31,14 @@ import scala.collection.JavaConversions._
  */
 object WordUtils {
 
+  // Grammemes are read as strings, so wordforms with grammeme bit masks
+  // (see GramBitsAnnotationAdapter) are rejected by getGrammemeStrings.
+
   def checkGrammems(w: Word, pos: String, grms: GrammemeMatcher*): Boolean = {
     require(w != null, "word annotation is null")
     if (w.getWordforms() == null) false
     else FSCollectionFactory.create(w.getWordforms(), classOf[Wordform]).exists { wf =>
-      val gramSet = toSet(wf.getGrammems())
+      val gramSet = getGrammemeStrings(wf)
       // TODO more robust check for Part-of-Speech
       gramSet.contains(pos) && grms.forall {
         case GrammemeRequired(gr) => gramSet.contains(gr)
@@ -48,7 +51,7 @@ object WordUtils {
     require(w != null, "word annotation is null")
     if (w.getWordforms() == null) None
     else FSCollectionFactory.create(w.getWordforms(), classOf[Wordform]).find { wf =>
-      val gramSet = toSet(wf.getGrammems())
+      val gramSet = getGrammemeStrings(wf)
       // TODO more robust check for Part-of-Speech
       gramSet.contains(pos) && grms.forall {
         case GrammemeRequired(gr) => gramSet.contains(gr)
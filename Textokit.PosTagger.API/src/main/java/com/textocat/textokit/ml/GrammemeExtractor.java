@@ -18,10 +18,10 @@ package com.textocat.textokit.ml;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.textocat.textokit.commons.cas.FSUtils;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.fs.Word;
 import com.textocat.textokit.morph.fs.Wordform;
+import com.textocat.textokit.postagger.MorphCasUtils;
 import org.apache.uima.fit.util.FSCollectionFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
@@ -33,8 +33,6 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
-import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
-
 /**
  * @author Rinat Gareev
  */
@@ -69,7 +67,7 @@ public class GrammemeExtractor implements FeatureExtractor1 {
             return ImmutableList.of();
         }
         Wordform wf = wfs.iterator().next();
-        BitSet wfBits = toGramBits(gramModel, FSUtils.toList(wf.getGrammems()));
+        BitSet wfBits = MorphCasUtils.toGramBitSet(gramModel, wf);
         wfBits.and(filterBS);
         List<Feature> result = Lists.newArrayList();
         for (int i = wfBits.nextSetBit(0); i >= 0; i = wfBits.nextSetBit(i + 1)) {
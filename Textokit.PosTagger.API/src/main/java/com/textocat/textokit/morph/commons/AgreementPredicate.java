@@ -25,6 +25,7 @@ import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Map;
@@ -81,6 +82,13 @@ public class AgreementPredicate implements TwoTagPredicate {
     private final GramModel gramModel;
     private final BitSet categoryMask;
     private final Multimap<BitSet, BitSet> agreementMap;
+    // the same as above as masks: distinct keys of agreementMap and their values,
+    // all padded to the length of categoryMaskWords
+    private final long[] categoryMaskWords;
+    private final long[][] maskKeys;
+    private final long[][][] maskValues;
+    // open addressing table over hashes of maskKeys, a slot holds a key index + 1 or 0 if it is empty
+    private final int[] keySlots;
 
     private static final Logger log = LoggerFactory.getLogger(AgreementPredicate.class);
 
@@ -92,9 +100,36 @@ public class AgreementPredicate implements TwoTagPredicate {
             categoryMask.or(e.getKey());
             categoryMask.or(e.getValue());
         }
+        categoryMaskWords = categoryMask.toLongArray();
+        Set<BitSet> keys = this.agreementMap.keySet();
+        maskKeys = new long[keys.size()][];
+        maskValues = new long[keys.size()][][];
+        keySlots = new int[Integer.highestOneBit(Math.max(1, keys.size()) * 4 - 1)];
+        int i = 0;
+        for (BitSet key : keys) {
+            maskKeys[i] = toPaddedMask(key);
+            Collection<BitSet> values = this.agreementMap.get(key);
+            maskValues[i] = new long[values.size()][];
+            int j = 0;
+            for (BitSet value : values) {
+                maskValues[i][j++] = toPaddedMask(value);
+            }
+            int slot = hashInCategories(maskKeys[i]) & (keySlots.length - 1);
+            while (keySlots[slot] != 0) {
+                slot = (slot + 1) & (keySlots.length - 1);
+            }
+            keySlots[slot] = i + 1;
+            i++;
+        }
         // done
     }
 
+    private long[] toPaddedMask(BitSet bits) {
+        long[] words = bits.toLongArray();
+        return words.length == categoryMaskWords.length ? words
+                : Arrays.copyOf(words, categoryMaskWords.length);
+    }
+
     @Override
     public boolean apply(BitSet _first, BitSet _second) {
         BitSet first = (BitSet) _first.clone();
@@ -120,4 +155,71 @@ public class AgreementPredicate implements TwoTagPredicate {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean apply(long[] first, long[] second) {
+        if (isEmptyInCategories(first) || isEmptyInCategories(second)) {
+            return false;
+        }
+        int keyIndex = findKey(first);
+        if (keyIndex < 0) {
+            log.warn("Unknown combination of gramemmes: {}",
+                    gramModel.toGramSet(BitSet.valueOf(first)));
+            return false;
+        }
+        for (long[] value : maskValues[keyIndex]) {
+            if (equalsInCategories(second, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // index of the key equal to (tag & categoryMask), or -1
+    private int findKey(long[] tag) {
+        int slot = hashInCategories(tag) & (keySlots.length - 1);
+        while (keySlots[slot] != 0) {
+            int keyIndex = keySlots[slot] - 1;
+            if (equalsInCategories(tag, maskKeys[keyIndex])) {
+                return keyIndex;
+            }
+            slot = (slot + 1) & (keySlots.length - 1);
+        }
+        return -1;
+    }
+
+    // hash of (tag & categoryMask), zero words do not contribute so it does not depend on padding
+    private int hashInCategories(long[] tag) {
+        int len = Math.min(tag.length, categoryMaskWords.length);
+        long h = 0;
+        for (int i = 0; i < len; i++) {
+            h += (tag[i] & categoryMaskWords[i]) * (0x9E3779B97F4A7C15L + 2 * i);
+        }
+        int result = (int) (h ^ (h >>> 32));
+        return result ^ (result >>> 16);
+    }
+
+    private boolean isEmptyInCategories(long[] tag) {
+        int len = Math.min(tag.length, categoryMaskWords.length);
+        for (int i = 0; i < len; i++) {
+            if ((tag[i] & categoryMaskWords[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // true if (tag & categoryMask) == expected
+    private boolean equalsInCategories(long[] tag, long[] expected) {
+        int len = Math.max(categoryMaskWords.length, expected.length);
+        for (int i = 0; i < len; i++) {
+            long tagWord = i < tag.length && i < categoryMaskWords.length
+                    ? tag[i] & categoryMaskWords[i] : 0;
+            long expectedWord = i < expected.length ? expected[i] : 0;
+            if (tagWord != expectedWord) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -107,6 +107,10 @@ public class GramModelBasedTagMapper implements TagMapper, Initializable {
         return toTag(wfBits);
     }
 
+    public GramModel getGramModel() {
+        return gramModel;
+    }
+
     public String toTag(BitSet wfBits) {
         if (wfBits.isEmpty()) {
             return null;
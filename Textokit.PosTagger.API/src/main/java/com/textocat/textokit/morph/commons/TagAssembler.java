@@ -16,7 +16,6 @@
 
 package com.textocat.textokit.morph.commons;
 
-import com.textocat.textokit.commons.cas.FSUtils;
 import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
 import com.textocat.textokit.morph.fs.Word;
 import com.textocat.textokit.morph.fs.Wordform;
@@ -32,6 +31,8 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import static com.textocat.textokit.postagger.MorphCasUtils.getGrammemeStrings;
+import static com.textocat.textokit.postagger.MorphCasUtils.toGramBitSet;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
 
 /**
@@ -82,7 +83,14 @@ public class TagAssembler extends JCasAnnotator_ImplBase {
                 continue;
             }
             for (Wordform wf : FSCollectionFactory.create(wfs, Wordform.class)) {
-                String tag = tagMapper.toTag(FSUtils.toSet(wf.getGrammems()));
+                String tag;
+                if (wf.getPosBits() != null && tagMapper instanceof GramModelBasedTagMapper) {
+                    GramModelBasedTagMapper gmTagMapper = (GramModelBasedTagMapper) tagMapper;
+                    tag = gmTagMapper.toTag(toGramBitSet(gmTagMapper.getGramModel(), wf));
+                } else {
+                    // fails on a bit mask
+                    tag = tagMapper.toTag(getGrammemeStrings(wf));
+                }
                 wf.setPos(tag);
             }
         }
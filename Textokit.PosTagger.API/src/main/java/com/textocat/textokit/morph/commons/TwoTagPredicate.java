@@ -26,4 +26,11 @@ public interface TwoTagPredicate {
 
     boolean apply(BitSet first, BitSet second);
 
+    /**
+     * The same as {@link #apply(BitSet, BitSet)} for tags given as masks,
+     * e.g., from {@link com.textocat.textokit.morph.dictionary.resource.TagTable}.
+     * Implementations must not modify the given arrays.
+     */
+    boolean apply(long[] first, long[] second);
+
 }
\ No newline at end of file
@@ -47,4 +47,14 @@ public class TwoTagPredicateConjunction implements TwoTagPredicate {
         return true;
     }
 
+    @Override
+    public boolean apply(long[] first, long[] second) {
+        for (TwoTagPredicate inner : operands) {
+            if (!inner.apply(first, second)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
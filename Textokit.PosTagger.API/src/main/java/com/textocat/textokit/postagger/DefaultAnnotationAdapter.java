@@ -17,7 +17,6 @@
 package com.textocat.textokit.postagger;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.textocat.textokit.commons.cas.FSUtils;
 import com.textocat.textokit.morph.dictionary.AnnotationAdapterBase;
 import com.textocat.textokit.morph.fs.Word;
@@ -25,6 +24,7 @@ import com.textocat.textokit.morph.model.Lemma;
 import com.textocat.textokit.morph.model.Wordform;
 import com.textocat.textokit.tokenizer.fstype.Token;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.jcas.tcas.Annotation;
 
 import java.util.BitSet;
@@ -49,7 +49,8 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
         word.setEnd(token.getEnd());
         // TODO check token type
         word.setToken((Token) token);
-        List<com.textocat.textokit.morph.fs.Wordform> casWfList = Lists.newLinkedList();
+        FSArray casWfs = new FSArray(jcas, dictWfs.size());
+        int casWfIndex = 0;
         for (Wordform wf : dictWfs) {
             com.textocat.textokit.morph.fs.Wordform casWf = new com.textocat.textokit.morph.fs.Wordform(jcas);
 
@@ -63,16 +64,15 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
             casWf.setPos(dict.getGramModel().getPos(lemma.getGrammems()));
             // set grammems
             grammems.or(lemma.getGrammems());
-            List<String> gramSet = dict.getGramModel().toGramSet(grammems);
-            casWf.setGrammems(FSUtils.toStringArray(jcas, gramSet));
+            setGrammemes(jcas, casWf, grammems);
 
             // set hosting word
             casWf.setWord(word);
 
-            casWfList.add(casWf);
+            casWfs.set(casWfIndex++, casWf);
         }
         // set wordforms
-        word.setWordforms(FSUtils.toFSArray(jcas, casWfList));
+        word.setWordforms(casWfs);
 
         word.addToIndexes();
     }
@@ -101,8 +101,7 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
         // TODO set 'pos' feature
         // casWf.setPos(...);
 
-        List<String> gramSet = dict.getGramModel().toGramSet(posBits);
-        casWf.setGrammems(FSUtils.toStringArray(jcas, gramSet));
+        setGrammemes(jcas, casWf, posBits);
 
         // set hosting word
         casWf.setWord(word);
@@ -112,4 +111,15 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
 
         word.addToIndexes();
     }
+
+    /**
+     * Sets the 'grammems' feature of the given wordform.
+     *
+     * @param grammemes complete grammemes of the wordform
+     */
+    protected void setGrammemes(JCas jcas, com.textocat.textokit.morph.fs.Wordform casWf,
+                                BitSet grammemes) {
+        List<String> gramSet = dict.getGramModel().toGramSet(grammemes);
+        casWf.setGrammems(FSUtils.toStringArray(jcas, gramSet));
+    }
 }
\ No newline at end of file
@@ -22,7 +22,6 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import com.textocat.textokit.commons.cas.FSUtils;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryHolder;
@@ -46,7 +45,6 @@ import java.util.List;
 import java.util.Set;
 
 import static com.textocat.textokit.morph.dictionary.WordUtils.normalizeToDictionaryForm;
-import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
 import static com.textocat.textokit.morph.model.Wordform.allGramBitsFunction;
 
 /**
@@ -108,7 +106,7 @@ public class DictionaryComplianceChecker extends JCasAnnotator_ImplBase {
                 continue;
             }
             // convert to BitSet
-            BitSet docBits = toGramBits(gramModel, FSUtils.toSet(docWf.getGrammems()));
+            BitSet docBits = MorphCasUtils.toGramBitSet(gramModel, docWf);
             posTrimmer.trimInPlace(docBits);
             List<BitSet> _dictBitSets = Lists.transform(dictWfs, allGramBitsFunction(dict));
             Set<BitSet> dictBitSets = posTrimmer.trimAndMerge(_dictBitSets);
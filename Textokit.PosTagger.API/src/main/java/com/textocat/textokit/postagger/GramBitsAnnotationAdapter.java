@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.postagger;
+
+import com.textocat.textokit.morph.fs.Wordform;
+import org.apache.uima.jcas.JCas;
+
+import java.util.BitSet;
+
+/**
+ * A {@link DefaultAnnotationAdapter} that stores grammemes of a wordform as a bit mask in the
+ * 'posBits' feature instead of a string array in the 'grammems' feature. The latter is left
+ * unset. A mask takes a few longs per wordform, so the CAS and its serialized forms are much
+ * smaller for an ambiguous text.
+ * <p>
+ * The mask is interpreted through the {@link com.textocat.textokit.morph.dictionary.resource.GramModel}
+ * of the dictionary, see {@link MorphCasUtils#toGramBitSet}, {@link MorphCasUtils#getGrammemes}
+ * and {@link MorphCasUtils#hasGrammeme}. Consumers that read the 'grammems' feature directly
+ * do not see grammemes of wordforms made by this adapter.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class GramBitsAnnotationAdapter extends DefaultAnnotationAdapter {
+
+    @Override
+    protected void setGrammemes(JCas jcas, Wordform casWf, BitSet grammemes) {
+        MorphCasUtils.setGramBits(jcas, casWf, grammemes);
+    }
+}
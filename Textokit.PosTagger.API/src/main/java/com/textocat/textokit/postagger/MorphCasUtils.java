@@ -20,6 +20,7 @@ package com.textocat.textokit.postagger;
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.textocat.textokit.commons.cas.AnnotationUtils;
@@ -30,6 +31,7 @@ import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils;
 import com.textocat.textokit.morph.fs.SimplyWord;
 import com.textocat.textokit.morph.fs.Word;
 import com.textocat.textokit.morph.fs.Wordform;
+import com.textocat.textokit.morph.model.Grammeme;
 import com.textocat.textokit.tokenizer.TokenUtils;
 import com.textocat.textokit.tokenizer.fstype.Token;
 import org.apache.uima.cas.CASException;
@@ -37,6 +39,8 @@ import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.LongArray;
+import org.apache.uima.jcas.cas.StringArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,8 +63,13 @@ public class MorphCasUtils {
         addGrammemes(jCas, wf, ImmutableList.of(newGram));
     }
 
+    /**
+     * Adds grammemes to the 'grammems' feature of the given wordform.
+     *
+     * @throws IllegalStateException if grammemes of the wordform are encoded as a bit mask
+     */
     public static void addGrammemes(JCas jCas, Wordform wf, Iterable<String> newGrams) {
-        LinkedHashSet<String> wfGrams = Sets.newLinkedHashSet(FSUtils.toSet(wf.getGrammems()));
+        LinkedHashSet<String> wfGrams = Sets.newLinkedHashSet(getGrammemeStrings(wf));
         boolean changed = false;
         for (String newGram : newGrams) {
             changed |= wfGrams.add(newGram);
@@ -113,12 +122,31 @@ public class MorphCasUtils {
         return wf;
     }
 
+    /**
+     * @return grammemes of the first wordform of the given word from the 'grammems' feature,
+     * or null if there is no any wordform
+     * @throws IllegalStateException if grammemes of the wordform are encoded as a bit mask,
+     *                               use {@link #getGrammemes(GramModel, Word)} then
+     */
     public static Set<String> getGrammemes(Word word) {
         Wordform wf = getOnlyWordform(word);
         if (wf == null) {
             return null;
         } else {
-            return FSUtils.toSet(wf.getGrammems());
+            return getGrammemeStrings(wf);
+        }
+    }
+
+    /**
+     * @return grammemes of the first wordform of the given word in either of the encodings,
+     * or null if there is no any wordform
+     */
+    public static Set<String> getGrammemes(GramModel gm, Word word) {
+        Wordform wf = getOnlyWordform(word);
+        if (wf == null) {
+            return null;
+        } else {
+            return getGrammemes(gm, wf);
         }
     }
 
@@ -158,10 +186,87 @@ public class MorphCasUtils {
         return result;
     }
 
+    /**
+     * @return grammemes of the given wordform. The bit mask in the 'posBits' feature is read if
+     * it is set, otherwise grammeme strings in the 'grammems' feature are mapped through the
+     * gram model.
+     */
     public static BitSet toGramBitSet(GramModel gm, com.textocat.textokit.morph.fs.Wordform casWf) {
+        LongArray gramBits = casWf.getPosBits();
+        if (gramBits != null) {
+            return BitSet.valueOf(gramBits.toArray());
+        }
         return MorphDictionaryUtils.toGramBits(gm, FSUtils.toList(casWf.getGrammems()));
     }
 
+    /**
+     * Stores grammemes of the given wordform as a bit mask in the 'posBits' feature, i.e., bit
+     * <i>i</i> is set for the grammeme with numeric id <i>i</i> in a {@link GramModel}.
+     * The 'grammems' feature is left as is.
+     */
+    public static void setGramBits(JCas jCas, Wordform wf, BitSet grammemes) {
+        long[] words = grammemes.toLongArray();
+        LongArray gramBits = new LongArray(jCas, words.length);
+        gramBits.copyFromArray(words, 0, 0, words.length);
+        wf.setPosBits(gramBits);
+    }
+
+    /**
+     * @return grammeme ids of the given wordform in either of the encodings, see
+     * {@link #toGramBitSet(GramModel, Wordform)}
+     */
+    public static Set<String> getGrammemes(GramModel gm, Wordform wf) {
+        LongArray gramBits = wf.getPosBits();
+        if (gramBits != null) {
+            return ImmutableSet.copyOf(gm.toGramSet(BitSet.valueOf(gramBits.toArray())));
+        }
+        return FSUtils.toSet(wf.getGrammems());
+    }
+
+    /**
+     * @return grammemes of the given wordform from the 'grammems' feature
+     * @throws IllegalStateException if grammemes of the wordform are encoded as a bit mask
+     *                               (see {@link GramBitsAnnotationAdapter}), as the mask can not be
+     *                               decoded without a {@link GramModel}
+     */
+    public static Set<String> getGrammemeStrings(Wordform wf) {
+        if (wf.getPosBits() != null) {
+            Word word = wf.getWord();
+            throw new IllegalStateException(String.format(
+                    "Grammemes of a wordform of Word %s in %s are encoded as a bit mask, " +
+                            "they can be read only with a GramModel",
+                    word == null ? null : toPrettyString(word), getDocumentUri(wf.getCAS())));
+        }
+        return FSUtils.toSet(wf.getGrammems());
+    }
+
+    /**
+     * Checks a grammeme of the given wordform in either of the encodings without decoding
+     * the rest of them.
+     */
+    public static boolean hasGrammeme(GramModel gm, Wordform wf, String gram) {
+        LongArray gramBits = wf.getPosBits();
+        if (gramBits != null) {
+            Grammeme grammeme = gm.getGrammem(gram);
+            if (grammeme == null) {
+                return false;
+            }
+            int numId = grammeme.getNumId();
+            int wordIndex = numId >>> 6;
+            return wordIndex < gramBits.size() && (gramBits.get(wordIndex) & (1L << numId)) != 0;
+        }
+        StringArray grams = wf.getGrammems();
+        if (grams == null) {
+            return false;
+        }
+        for (int i = 0; i < grams.size(); i++) {
+            if (gram.equals(grams.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static com.textocat.textokit.morph.fs.Wordform addCasWordform(JCas jCas, Token tokenAnno) {
         Word word = new Word(jCas);
         word.setBegin(tokenAnno.getBegin());
@@ -237,6 +342,12 @@ public class MorphCasUtils {
         }
     };
 
+    /**
+     * Make a SimplyWord annotation for each given word from its first wordform.
+     *
+     * @throws IllegalStateException if grammemes of a wordform are encoded as a bit mask,
+     *                               as SimplyWord keeps grammeme strings
+     */
     public static void makeSimplyWords(JCas jCas, Iterable<Word> aWords) {
         for (Word srcWord : aWords) {
             SimplyWord resWord = new SimplyWord(jCas, srcWord.getBegin(), srcWord.getEnd());
@@ -244,6 +355,8 @@ public class MorphCasUtils {
             FSArray wfs = srcWord.getWordforms();
             if (wfs != null && wfs.size() > 0) {
                 Wordform wf = (Wordform) wfs.get(0);
+                // fail on a bit mask instead of leaving the grammemes unset
+                getGrammemeStrings(wf);
                 resWord.setPosTag(wf.getPos());
                 resWord.setGrammems(wf.getGrammems());
                 resWord.setLemma(wf.getLemma());
@@ -23,6 +23,7 @@ import com.textocat.textokit.commons.cas.FSUtils;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.fs.Wordform;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.LongArray;
 import org.apache.uima.jcas.cas.StringArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +42,7 @@ public class PosTrimmer {
     private Set<String> targetPosCategories;
     // derived
     private final BitSet targetBits; // DO NOT MODIFY!
+    private final long[] targetWords;
     private Set<String> targetTags;
 
     public PosTrimmer(GramModel gramModel, String... targetPosCategories) {
@@ -59,13 +61,28 @@ public class PosTrimmer {
             }
             targetBits.or(catBS);
         }
+        targetWords = targetBits.toLongArray();
         //
         targetTags = ImmutableSet.copyOf(gramModel.toGramSet(targetBits));
         log.info("PosTrimmer will retain following gram tags:\n{}", targetTags);
     }
 
     public void trim(JCas jCas, Wordform wf) {
+        LongArray gramBitsFS = wf.getPosBits();
+        if (gramBitsFS != null) {
+            // a bit mask is trimmed in place, see MorphCasUtils#setGramBits
+            for (int i = 0; i < gramBitsFS.size(); i++) {
+                long word = gramBitsFS.get(i);
+                long trimmed = i < targetWords.length ? word & targetWords[i] : 0;
+                if (trimmed != word) {
+                    gramBitsFS.set(i, trimmed);
+                }
+            }
+        }
         StringArray grammemsFS = wf.getGrammems();
+        if (grammemsFS == null && gramBitsFS != null) {
+            return;
+        }
         Set<String> grammems = Sets.newLinkedHashSet(FSUtils.toSet(grammemsFS));
         if (grammems.retainAll(targetTags)) {
             wf.setGrammems(FSUtils.toStringArray(jCas, grammems));
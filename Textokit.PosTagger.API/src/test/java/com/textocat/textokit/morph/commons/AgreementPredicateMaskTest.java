@@ -0,0 +1,93 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.morph.commons;
+
+import com.google.common.collect.ImmutableSet;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.model.Grammeme;
+import com.textocat.textokit.morph.opencorpora.resource.ImmutableGramModel;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramMask;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the mask-based {@link AgreementPredicate#apply(long[], long[])} against the BitSet-based one
+ * on a small gram model that does not need a dictionary in the classpath.
+ *
+ * @author Rinat Gareev
+ */
+public class AgreementPredicateMaskTest {
+
+    private final GramModel gm = ImmutableGramModel.builder()
+            .addGrammeme(new Grammeme("POST", null, null, null, 0))
+            .addGrammeme(new Grammeme("NOUN", "POST", null, null, 1))
+            .addGrammeme(new Grammeme("ADJF", "POST", null, null, 2))
+            .addGrammeme(new Grammeme("CAse", null, null, null, 3))
+            .addGrammeme(new Grammeme("nomn", "CAse", null, null, 4))
+            .addGrammeme(new Grammeme("gent", "CAse", null, null, 5))
+            .addGrammeme(new Grammeme("gen1", "gent", null, null, 6))
+            .addGrammeme(new Grammeme("NMbr", null, null, null, 7))
+            .addGrammeme(new Grammeme("sing", "NMbr", null, null, 8))
+            .addGrammeme(new Grammeme("plur", "NMbr", null, null, 9))
+            // grammemes in the second word of a mask
+            .addGrammeme(new Grammeme("loc2", "CAse", null, null, 70))
+            .addGrammeme(new Grammeme("Fixd", null, null, null, 71))
+            .build();
+
+    @Test
+    public void testMaskAgreementIsConsistent() {
+        AgreementPredicate pred = new AgreementPredicate.Builder()
+                .agree("nomn")
+                .agree("gent", "gen1")
+                .agree("loc2")
+                .agree(ImmutableSet.of("gent", "sing"), ImmutableSet.of("gen1", "plur"))
+                .build(gm);
+        int[][] tags = {{}, {1}, {1, 4}, {2, 4}, {1, 5}, {2, 6}, {1, 70}, {2, 70, 71}, {1, 71},
+                {1, 5, 8}, {2, 6, 9}, {2, 6, 8}, {1, 4, 71}};
+        for (int[] first : tags) {
+            for (int[] second : tags) {
+                BitSet firstBits = bits(first);
+                BitSet secondBits = bits(second);
+                boolean expected = pred.apply(firstBits, secondBits);
+                String msg = firstBits + " / " + secondBits;
+                assertEquals(msg, expected,
+                        pred.apply(toGramMask(gm, firstBits), toGramMask(gm, secondBits)));
+                // masks of different lengths
+                assertEquals(msg, expected,
+                        pred.apply(firstBits.toLongArray(), toGramMask(gm, secondBits)));
+                assertEquals(msg, expected,
+                        pred.apply(toGramMask(gm, firstBits), secondBits.toLongArray()));
+            }
+        }
+        assertEquals(true, pred.apply(bits(1, 70), bits(2, 70, 71)));
+        assertEquals(true, pred.apply(bits(1, 5), bits(2, 6)));
+        assertEquals(true, pred.apply(bits(1, 5, 8), bits(2, 6, 9)));
+        assertEquals(false, pred.apply(bits(1, 4), bits(2, 70)));
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet result = new BitSet();
+        for (int id : ids) {
+            result.set(id);
+        }
+        return result;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.BitSet;
 
 import static com.textocat.textokit.morph.commons.GramModelBasedTagMapper.parseTag;
 import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
+import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramMask;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -92,6 +93,21 @@ public class AgreementPredicateTest {
         assertEquals(false, pred.apply(bits("NOUN&plur&masc"), bits("ADJF&sing&neut")));
     }
 
+    @Test
+    public void testMaskAgreementIsConsistent() {
+        String[] tags = {"", "VERB", "NOUN&gent", "ADJF&gen1", "NOUN&gen2", "ADJF&nomn&plur",
+                "NOUN&acc2&sing", "NOUN&loct&sing&GNdr", "ADJF&loc1&plur&masc", "ADJF&sing&femn"};
+        for (TwoTagPredicate pred : AgreementPredicates.numberGenderCaseCombinations(gm).values()) {
+            for (String first : tags) {
+                for (String second : tags) {
+                    assertEquals(first + " / " + second,
+                            pred.apply(bits(first), bits(second)),
+                            pred.apply(toGramMask(gm, bits(first)), toGramMask(gm, bits(second))));
+                }
+            }
+        }
+    }
+
     private BitSet bits(String tag) {
         return toGramBits(gm, parseTag(tag));
     }
@@ -0,0 +1,200 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.textocat.textokit.morph.commons.GramModelBasedTagMapper;
+import com.textocat.textokit.morph.commons.TagAssembler;
+import com.textocat.textokit.morph.dictionary.AnnotationAdapter;
+import com.textocat.textokit.morph.dictionary.MorphologyAnnotator;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.GramModelHolder;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryHolder;
+import com.textocat.textokit.morph.fs.Word;
+import com.textocat.textokit.morph.fs.Wordform;
+import com.textocat.textokit.morph.model.Grammeme;
+import com.textocat.textokit.morph.model.Lemma;
+import com.textocat.textokit.morph.opencorpora.resource.ImmutableGramModel;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import org.apache.uima.fit.component.Resource_ImplBase;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.FSCollectionFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.createExternalResourceDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GramBitsAnnotationAdapterTest {
+
+    private static GramModel gm;
+    private static MorphDictionary dict;
+
+    private TypeSystemDescription tsd;
+
+    @Before
+    public void setUp() {
+        gm = ImmutableGramModel.builder()
+                .addGrammeme(new Grammeme("POST", null, null, null, 0))
+                .addGrammeme(new Grammeme("NOUN", "POST", null, null, 1))
+                .addGrammeme(new Grammeme("VERB", "POST", null, null, 2))
+                .addGrammeme(new Grammeme("CAse", null, null, null, 3))
+                .addGrammeme(new Grammeme("nomn", "CAse", null, null, 4))
+                .addGrammeme(new Grammeme("gent", "CAse", null, null, 5))
+                // a grammeme in the second word of a mask
+                .addGrammeme(new Grammeme("Fixd", null, null, null, 70))
+                .build();
+        dict = mock(MorphDictionary.class);
+        when(dict.getGramModel()).thenReturn(gm);
+        when(dict.getLemma(1)).thenReturn(
+                Lemma.builder(gm, 1).setString("мама").addGrammeme("NOUN").build());
+        when(dict.getLemma(2)).thenReturn(
+                Lemma.builder(gm, 2).setString("мыть").addGrammeme("VERB").build());
+        // adapters modify returned entries, so they are made on each call
+        when(dict.getEntries(any(CharSequence.class), anyInt(), anyInt())).thenAnswer(
+                new Answer<List<com.textocat.textokit.morph.model.Wordform>>() {
+                    @Override
+                    public List<com.textocat.textokit.morph.model.Wordform> answer(InvocationOnMock inv) {
+                        Object[] args = inv.getArguments();
+                        String token = ((CharSequence) args[0]).subSequence(
+                                (Integer) args[1], (Integer) args[2]).toString();
+                        switch (token) {
+                            case "мамы":
+                                return ImmutableList.of(
+                                        com.textocat.textokit.morph.model.Wordform.builder(gm, 1)
+                                                .addGrammeme("gent").build(),
+                                        com.textocat.textokit.morph.model.Wordform.builder(gm, 1)
+                                                .addGrammeme("nomn").addGrammeme("Fixd").build());
+                            case "мыла":
+                                return ImmutableList.of(
+                                        com.textocat.textokit.morph.model.Wordform.builder(gm, 2).build());
+                            default:
+                                return ImmutableList.of();
+                        }
+                    }
+                });
+        tsd = createTypeSystemDescription(
+                TokenizerAPI.TYPESYSTEM_TOKENIZER, PosTaggerAPI.TYPESYSTEM_POSTAGGER);
+    }
+
+    @Test
+    public void testSameTagsAsDefaultAdapter() throws Exception {
+        JCas bitsCas = annotate(GramBitsAnnotationAdapter.class);
+        JCas stringsCas = annotate(DefaultAnnotationAdapter.class);
+        List<Word> bitsWords = Lists.newArrayList(JCasUtil.select(bitsCas, Word.class));
+        List<Word> stringsWords = Lists.newArrayList(JCasUtil.select(stringsCas, Word.class));
+        assertEquals(2, bitsWords.size());
+        assertEquals(stringsWords.size(), bitsWords.size());
+        for (int i = 0; i < bitsWords.size(); i++) {
+            List<Wordform> bitsWfs = wordforms(bitsWords.get(i));
+            List<Wordform> stringsWfs = wordforms(stringsWords.get(i));
+            assertEquals(stringsWfs.size(), bitsWfs.size());
+            for (int j = 0; j < bitsWfs.size(); j++) {
+                Wordform bitsWf = bitsWfs.get(j);
+                Wordform stringsWf = stringsWfs.get(j);
+                assertNull(bitsWf.getGrammems());
+                assertNotNull(bitsWf.getPosBits());
+                assertEquals(MorphCasUtils.getGrammemeStrings(stringsWf),
+                        MorphCasUtils.getGrammemes(gm, bitsWf));
+                // tags made by TagAssembler
+                assertNotNull(bitsWf.getPos());
+                assertEquals(stringsWf.getPos(), bitsWf.getPos());
+            }
+        }
+        Word mamy = bitsWords.get(0);
+        assertEquals(ImmutableSet.of("NOUN", "gent"), MorphCasUtils.getGrammemes(gm, mamy));
+        assertTrue(MorphCasUtils.hasGrammeme(gm, wordforms(mamy).get(1), "Fixd"));
+    }
+
+    @Test
+    public void testStringReadersFailOnBitMasks() throws Exception {
+        JCas jCas = annotate(GramBitsAnnotationAdapter.class);
+        Word word = JCasUtil.selectByIndex(jCas, Word.class, 0);
+        try {
+            MorphCasUtils.getGrammemes(word);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            MorphCasUtils.addGrammeme(jCas, MorphCasUtils.requireOnlyWordform(
+                    JCasUtil.selectByIndex(jCas, Word.class, 1)), "nomn");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            MorphCasUtils.makeSimplyWords(jCas);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private JCas annotate(Class<? extends AnnotationAdapter> adapterClass) throws Exception {
+        JCas jCas = JCasFactory.createJCas(tsd);
+        jCas.setDocumentText("мамы мыла");
+        SimplePipeline.runPipeline(jCas,
+                InitialTokenizer.createDescription(),
+                createEngineDescription(MorphologyAnnotator.class, tsd,
+                        MorphologyAnnotator.PARAM_ANNOTATION_ADAPTER_CLASS, adapterClass.getName(),
+                        MorphologyAnnotator.RESOURCE_KEY_DICTIONARY,
+                        createExternalResourceDescription(TestDictionaryHolder.class)),
+                createEngineDescription(TagAssembler.class,
+                        TagAssembler.PARAM_TAG_MAPPER_CLASS, GramModelBasedTagMapper.class.getName(),
+                        GramModelBasedTagMapper.RESOURCE_GRAM_MODEL,
+                        createExternalResourceDescription(TestGramModelHolder.class)));
+        return jCas;
+    }
+
+    private static List<Wordform> wordforms(Word word) {
+        return Lists.newArrayList(FSCollectionFactory.create(word.getWordforms(), Wordform.class));
+    }
+
+    public static class TestDictionaryHolder extends Resource_ImplBase implements MorphDictionaryHolder {
+        @Override
+        public MorphDictionary getDictionary() {
+            return dict;
+        }
+    }
+
+    public static class TestGramModelHolder extends Resource_ImplBase implements GramModelHolder {
+        @Override
+        public GramModel getGramModel() {
+            return gm;
+        }
+    }
+}
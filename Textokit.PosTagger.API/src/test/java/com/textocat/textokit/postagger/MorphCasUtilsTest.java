@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.postagger;
+
+import com.google.common.collect.ImmutableSet;
+import com.textocat.textokit.commons.cas.FSUtils;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.fs.Wordform;
+import com.textocat.textokit.morph.model.Grammeme;
+import com.textocat.textokit.morph.opencorpora.resource.ImmutableGramModel;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class MorphCasUtilsTest {
+
+    private GramModel gm;
+    private JCas jCas;
+
+    @Before
+    public void setUp() throws Exception {
+        gm = ImmutableGramModel.builder()
+                .addGrammeme(new Grammeme("POST", null, null, null, 0))
+                .addGrammeme(new Grammeme("NOUN", "POST", null, null, 1))
+                .addGrammeme(new Grammeme("VERB", "POST", null, null, 2))
+                .addGrammeme(new Grammeme("CAse", null, null, null, 3))
+                .addGrammeme(new Grammeme("nomn", "CAse", null, null, 4))
+                .addGrammeme(new Grammeme("gent", "CAse", null, null, 5))
+                // a grammeme in the second word of a mask
+                .addGrammeme(new Grammeme("Fixd", null, null, null, 70))
+                .build();
+        jCas = JCasFactory.createJCas(createTypeSystemDescription(PosTaggerAPI.TYPESYSTEM_POSTAGGER));
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet result = new BitSet();
+        for (int id : ids) {
+            result.set(id);
+        }
+        return result;
+    }
+
+    @Test
+    public void testGramBits() {
+        Wordform wf = new Wordform(jCas);
+        MorphCasUtils.setGramBits(jCas, wf, bits(1, 5, 70));
+        assertNull(wf.getGrammems());
+        assertEquals(bits(1, 5, 70), MorphCasUtils.toGramBitSet(gm, wf));
+        assertEquals(ImmutableSet.of("NOUN", "gent", "Fixd"), MorphCasUtils.getGrammemes(gm, wf));
+        assertTrue(MorphCasUtils.hasGrammeme(gm, wf, "gent"));
+        assertTrue(MorphCasUtils.hasGrammeme(gm, wf, "Fixd"));
+        assertFalse(MorphCasUtils.hasGrammeme(gm, wf, "nomn"));
+        assertFalse(MorphCasUtils.hasGrammeme(gm, wf, "unknown"));
+        MorphCasUtils.setGramBits(jCas, wf, bits(2));
+        assertFalse(MorphCasUtils.hasGrammeme(gm, wf, "Fixd"));
+    }
+
+    @Test
+    public void testGrammemeStrings() {
+        Wordform wf = new Wordform(jCas);
+        wf.setGrammems(FSUtils.toStringArray(jCas, ImmutableSet.of("NOUN", "gent")));
+        assertEquals(bits(1, 5), MorphCasUtils.toGramBitSet(gm, wf));
+        assertEquals(ImmutableSet.of("NOUN", "gent"), MorphCasUtils.getGrammemes(gm, wf));
+        assertTrue(MorphCasUtils.hasGrammeme(gm, wf, "gent"));
+        assertFalse(MorphCasUtils.hasGrammeme(gm, wf, "nomn"));
+        assertFalse(MorphCasUtils.hasGrammeme(gm, new Wordform(jCas), "nomn"));
+    }
+
+    @Test
+    public void testPosTrimmer() {
+        PosTrimmer trimmer = new PosTrimmer(gm, "POST", "CAse");
+        Wordform bitsWf = new Wordform(jCas);
+        MorphCasUtils.setGramBits(jCas, bitsWf, bits(1, 5, 70));
+        trimmer.trim(jCas, bitsWf);
+        assertEquals(bits(1, 5), MorphCasUtils.toGramBitSet(gm, bitsWf));
+        assertNull(bitsWf.getGrammems());
+        Wordform stringsWf = new Wordform(jCas);
+        stringsWf.setGrammems(FSUtils.toStringArray(jCas, ImmutableSet.of("NOUN", "gent", "Fixd")));
+        trimmer.trim(jCas, stringsWf);
+        assertEquals(ImmutableSet.of("NOUN", "gent"), FSUtils.toSet(stringsWf.getGrammems()));
+    }
+}
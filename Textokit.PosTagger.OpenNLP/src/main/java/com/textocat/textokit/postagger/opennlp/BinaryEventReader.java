@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Lists;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.util.ObjectStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Reads training events written by {@link BinaryEventWriter}. Equal strings of the read events
+ * share a single instance.
+ *
+ * @author Rinat Gareev
+ */
+public class BinaryEventReader implements ObjectStream<Event> {
+
+    private final File file;
+    private DataInputStream in;
+    private List<String> strings;
+
+    public BinaryEventReader(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    private void open() throws IOException {
+        in = new DataInputStream(new BufferedInputStream(FileUtils.openInputStream(file)));
+        strings = Lists.newArrayList();
+        boolean opened = false;
+        try {
+            if (in.readInt() != BinaryEventWriter.MAGIC) {
+                throw new IllegalStateException(String.format(
+                        "%s is not an event file", file));
+            }
+            int formatVersion = in.readInt();
+            if (formatVersion != BinaryEventWriter.FORMAT_VERSION) {
+                throw new IllegalStateException(String.format(
+                        "Unsupported event file format version %s in %s", formatVersion, file));
+            }
+            opened = true;
+        } finally {
+            if (!opened) {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    @Override
+    public Event read() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        String outcome = readString(readVarInt(first));
+        String[] context = new String[readVarInt(in.readUnsignedByte())];
+        for (int i = 0; i < context.length; i++) {
+            context[i] = readString(readVarInt(in.readUnsignedByte()));
+        }
+        return new Event(outcome, context);
+    }
+
+    private String readString(int ref) throws IOException {
+        if (ref == 0) {
+            String str = in.readUTF();
+            strings.add(str);
+            return str;
+        }
+        if (ref > strings.size()) {
+            throw new IllegalStateException(String.format(
+                    "Invalid string reference %s in %s", ref, file));
+        }
+        return strings.get(ref - 1);
+    }
+
+    private int readVarInt(int firstByte) throws IOException {
+        int result = firstByte & 0x7F;
+        int shift = 7;
+        int b = firstByte;
+        while ((b & 0x80) != 0) {
+            b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        close();
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
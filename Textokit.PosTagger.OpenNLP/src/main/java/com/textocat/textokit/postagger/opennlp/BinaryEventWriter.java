@@ -0,0 +1,125 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Maps;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.util.ObjectStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Writes training events in a compact binary form that can be read back by
+ * {@link BinaryEventReader}. Outcome and context strings are written once, on their first
+ * occurrence, and referenced by variable-length integer ids afterwards.
+ *
+ * @author Rinat Gareev
+ */
+public class BinaryEventWriter implements Closeable {
+
+    // "TKEV"
+    static final int MAGIC = 0x544B4556;
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Drain the given stream into the file. The stream is not closed.
+     * Events are written into a temporary file in the same directory that replaces the target
+     * file only when all of them are written. So the target file either does not exist
+     * or is complete, even if the writing is interrupted.
+     *
+     * @return the number of written events
+     */
+    public static long write(ObjectStream<Event> events, File outFile) throws IOException {
+        File outDir = outFile.getAbsoluteFile().getParentFile();
+        FileUtils.forceMkdir(outDir);
+        File tempFile = File.createTempFile(outFile.getName(), ".tmp", outDir);
+        try {
+            BinaryEventWriter writer = new BinaryEventWriter(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                Event ev;
+                while ((ev = events.read()) != null) {
+                    writer.write(ev);
+                }
+                // close before the move to make sure that everything is flushed
+                writer.close();
+            } finally {
+                IOUtils.closeQuietly(writer);
+            }
+            Files.move(tempFile.toPath(), outFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return writer.getEventCount();
+        } finally {
+            // does nothing if the file has been moved
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIds = Maps.newHashMap();
+    private long eventCount;
+
+    public BinaryEventWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(FORMAT_VERSION);
+    }
+
+    public void write(Event ev) throws IOException {
+        writeString(ev.getOutcome());
+        String[] context = ev.getContext();
+        writeVarInt(context.length);
+        for (String ctx : context) {
+            writeString(ctx);
+        }
+        eventCount++;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    // 0 introduces a new string, n > 0 refers to the string with id n-1
+    private void writeString(String str) throws IOException {
+        Integer id = stringIds.get(str);
+        if (id == null) {
+            stringIds.put(str, stringIds.size());
+            writeVarInt(0);
+            out.writeUTF(str);
+        } else {
+            writeVarInt(id + 1);
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -18,11 +18,12 @@
 package com.textocat.textokit.postagger.opennlp;
 
 import com.textocat.textokit.commons.util.ManifestUtils;
+import com.textocat.textokit.commons.util.SharedResourceRegistry;
+import com.textocat.textokit.commons.util.SharedResourceRegistry.Ticket;
 import com.textocat.textokit.resource.ClasspathResourceBase;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,7 @@ public class ClasspathPOSModelHolder extends ClasspathResourceBase implements Op
                 langCode, modelVariant);
     }
 
+    private Ticket<POSModel> modelTicket;
     private POSModel model;
 
     @Override
@@ -47,14 +49,34 @@ public class ClasspathPOSModelHolder extends ClasspathResourceBase implements Op
         if (!super.initialize(aSpecifier, aAdditionalParams)) {
             return false;
         }
-        try (InputStream is = resource.getInputStream()) {
-            model = new POSModel(is);
-        } catch (IOException e) {
+        try {
+            modelTicket = SharedResourceRegistry.getInstance().acquire(
+                    "POSModel from " + resource.getURL().toExternalForm(),
+                    new SharedResourceRegistry.Loader<POSModel>() {
+                        @Override
+                        public POSModel load() throws Exception {
+                            try (InputStream is = resource.getInputStream()) {
+                                return new POSModel(is);
+                            }
+                        }
+                    });
+        } catch (Exception e) {
             throw new ResourceInitializationException(e);
         }
+        model = modelTicket.getResource();
         return true;
     }
 
+    @Override
+    public void destroy() {
+        if (modelTicket != null) {
+            modelTicket.close();
+            modelTicket = null;
+            model = null;
+        }
+        super.destroy();
+    }
+
     @Override
     protected String locateDefaultResourceClassPath() {
         List<Manifest> candMans = ManifestUtils.searchByAttributeKey(ME_VARIANT);
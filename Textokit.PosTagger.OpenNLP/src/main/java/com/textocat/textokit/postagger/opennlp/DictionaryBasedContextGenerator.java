@@ -26,14 +26,16 @@ import com.textocat.textokit.morph.commons.*;
 import com.textocat.textokit.morph.dictionary.WordUtils;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
 import com.textocat.textokit.morph.model.Grammeme;
-import com.textocat.textokit.morph.model.Wordform;
 import com.textocat.textokit.tokenizer.fstype.Token;
 import com.textocat.textokit.tokenizer.fstype.W;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
+import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramMask;
 
 /**
  * @author Rinat Gareev
@@ -50,6 +52,10 @@ public class DictionaryBasedContextGenerator {
     private final BitSet targetCategoriesMask;
     // named predicates as feature extractors
     private Map<String, TwoTagPredicate> namedPredicates;
+    // caches: dictionary tag id -> token tag, restricted tag bits -> token tag, PoS-tag -> its mask
+    private volatile TokenTag[] tokenTagCache = new TokenTag[0];
+    private final Map<BitSet, TokenTag> tokenTags = Maps.newHashMap();
+    private final ConcurrentMap<String, long[]> prevTagMasks = Maps.newConcurrentMap();
 
     public DictionaryBasedContextGenerator(Iterable<String> targetGramCategories,
                                            MorphDictionary morphDict) {
@@ -78,51 +84,177 @@ public class DictionaryBasedContextGenerator {
     }
 
     public List<String> extract(Token focusToken, String prevTag) {
+        return extract(lookup(focusToken), prevTag);
+    }
+
+    /**
+     * @param focusToken a token
+     * @return the part of the token features that does not depend on a previous tag.
+     * The result is immutable and can be passed to {@link #extract(TokenEntries, String)}
+     * many times, e.g., for each beam search hypothesis. The extraction from the result
+     * does not access the CAS.
+     */
+    public TokenEntries lookup(Token focusToken) {
         if (!(focusToken instanceof W)) {
-            return ImmutableList.of();
+            return TokenEntries.NOT_WORD;
+        }
+        // look up the token range directly in the document text
+        String text = focusToken.getCAS().getDocumentText();
+        int begin = focusToken.getBegin();
+        int end = focusToken.getEnd();
+        if (!WordUtils.isRussianWord(text, begin, end)) {
+            return TokenEntries.NOT_RUSSIAN;
         }
-        String form = focusToken.getCoveredText();
-        if (!WordUtils.isRussianWord(form)) {
-            return ImmutableList.of("DL=NotRussian");
+        final List<TokenTag> tokenPossibleTags = Lists.newArrayListWithExpectedSize(4);
+        int entryCount = morphDict.visitEntries(text, begin, end, new WordformVisitor() {
+            @Override
+            public void visit(int lemmaId, int wordformTagId, int fullTagId) {
+                TokenTag tokenTag = getTokenTag(fullTagId);
+                // equal token tags are the same instance
+                if (!tokenPossibleTags.contains(tokenTag)) {
+                    tokenPossibleTags.add(tokenTag);
+                }
+            }
+        });
+        if (tokenPossibleTags.isEmpty()) {
+            return TokenEntries.UNKNOWN;
         }
-        form = WordUtils.normalizeToDictionaryForm(form);
-        List<Wordform> dictWfs = morphDict.getEntries(form);
-        if (dictWfs == null || dictWfs.isEmpty()) {
-            return ImmutableList.of("DL=Unknown");
+        if (tokenPossibleTags.size() > 1) {
+            // Trained models saw the features in the iteration order of a hash set of restricted tags
+            // sized by the number of dictionary entries, keep it.
+            // TokenTag hashes as its bits, so the set orders TokenTags the same way.
+            Set<TokenTag> featureOrder = Sets.newHashSetWithExpectedSize(entryCount);
+            featureOrder.addAll(tokenPossibleTags);
+            tokenPossibleTags.clear();
+            tokenPossibleTags.addAll(featureOrder);
         }
-        List<BitSet> dictWfBitSets = Lists.transform(dictWfs,
-                Wordform.allGramBitsFunction(morphDict));
-        //
-        Set<BitSet> tokenPossibleTags = Sets.newHashSetWithExpectedSize(dictWfBitSets.size());
-        for (BitSet dictWfBits : dictWfBitSets) {
-            BitSet tokenPossibleBits = (BitSet) dictWfBits.clone();
-            tokenPossibleBits.and(targetCategoriesMask);
-            tokenPossibleTags.add(tokenPossibleBits);
-        }
-        List<String> resultList = Lists.newArrayListWithExpectedSize(tokenPossibleTags.size());
-        for (BitSet tokenPossibleBits : tokenPossibleTags) {
+        return TokenEntries.of(tokenPossibleTags);
+    }
+
+    public List<String> extract(TokenEntries entries, String prevTag) {
+        if (entries.tags == null) {
+            return entries.features;
+        }
+        if (prevTag == null || PunctuationUtils.isPunctuationTag(prevTag)) {
+            return entries.features;
+        }
+        List<String> resultList = Lists.newArrayListWithExpectedSize(
+                entries.features.size() + namedPredicates.size());
+        resultList.addAll(entries.features);
+        // add the name of a predicate if it yields true for any pair <prevTag, dictTag>, dictTag in tokenPossibleTags
+        long[] prevTagMask = getPrevTagMask(prevTag);
+        for (Map.Entry<String, TwoTagPredicate> predEntry : namedPredicates.entrySet()) {
+            for (TokenTag dictTag : entries.tags) {
+                if (predEntry.getValue().apply(prevTagMask, dictTag.mask)) {
+                    resultList.add(predEntry.getKey());
+                    break;
+                }
+            }
+        }
+        return resultList;
+    }
+
+    private long[] getPrevTagMask(String prevTag) {
+        // GramModelBasedTagMapper ignores a token text, so it is not passed and masks are cached by a tag
+        long[] result = prevTagMasks.get(prevTag);
+        if (result == null) {
+            result = toGramMask(gramModel, toGramBits(gramModel,
+                    tagMapper.parseTag(prevTag, null)));
+            prevTagMasks.put(prevTag, result);
+        }
+        return result;
+    }
+
+    private TokenTag getTokenTag(int dictTagId) {
+        TokenTag[] cache = tokenTagCache;
+        if (dictTagId < cache.length && cache[dictTagId] != null) {
+            return cache[dictTagId];
+        }
+        return computeTokenTag(dictTagId);
+    }
+
+    private synchronized TokenTag computeTokenTag(int dictTagId) {
+        TokenTag[] cache = tokenTagCache;
+        if (dictTagId < cache.length && cache[dictTagId] != null) {
+            return cache[dictTagId];
+        }
+        BitSet tokenPossibleBits = morphDict.getTagTable().getTag(dictTagId);
+        tokenPossibleBits.and(targetCategoriesMask);
+        TokenTag result = tokenTags.get(tokenPossibleBits);
+        if (result == null) {
             String featValue;
             if (tokenPossibleBits.isEmpty()) {
                 featValue = "NULL";
             } else {
                 featValue = gramJoiner.join(gramModel.toGramSet(tokenPossibleBits));
             }
-            resultList.add("DL=" + featValue);
-        }
-        if (prevTag != null && !PunctuationUtils.isPunctuationTag(prevTag)) {
-            // add the name of a predicate if it yields true for any pair <prevTag, dictTag>, dictTag in tokenPossibleTags
-            BitSet prevTagBits = toGramBits(gramModel,
-                    tagMapper.parseTag(prevTag, focusToken.getCoveredText()));
-            for (Map.Entry<String, TwoTagPredicate> predEntry : namedPredicates.entrySet()) {
-                for (BitSet dictTag : tokenPossibleTags) {
-                    if (predEntry.getValue().apply(prevTagBits, dictTag)) {
-                        resultList.add(predEntry.getKey());
-                        break;
-                    }
-                }
+            result = new TokenTag("DL=" + featValue, tokenPossibleBits,
+                    toGramMask(gramModel, tokenPossibleBits));
+            tokenTags.put(tokenPossibleBits, result);
+        }
+        if (dictTagId >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(dictTagId + 1, cache.length * 2));
+        }
+        // TokenTag is immutable so it can be read from the array without synchronization
+        cache[dictTagId] = result;
+        tokenTagCache = cache;
+        return result;
+    }
+
+    /**
+     * A dictionary tag restricted by the target categories.
+     */
+    private static class TokenTag {
+        private final String feature;
+        private final BitSet bits;
+        private final long[] mask;
+
+        private TokenTag(String feature, BitSet bits, long[] mask) {
+            this.feature = feature;
+            this.bits = bits;
+            this.mask = mask;
+        }
+
+        @Override
+        public int hashCode() {
+            return bits.hashCode();
+        }
+
+        // equal token tags are the same instance
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj;
+        }
+    }
+
+    /**
+     * Dictionary entries of a token restricted by the target categories.
+     */
+    public static class TokenEntries {
+        private static final TokenEntries NOT_WORD = new TokenEntries(ImmutableList.<String>of());
+        private static final TokenEntries NOT_RUSSIAN = new TokenEntries(
+                ImmutableList.of("DL=NotRussian"));
+        private static final TokenEntries UNKNOWN = new TokenEntries(ImmutableList.of("DL=Unknown"));
+
+        private final List<TokenTag> tags;
+        private final List<String> features;
+
+        private TokenEntries(List<String> features) {
+            this(null, features);
+        }
+
+        private TokenEntries(List<TokenTag> tags, List<String> features) {
+            this.tags = tags;
+            this.features = features;
+        }
+
+        private static TokenEntries of(List<TokenTag> tags) {
+            ImmutableList.Builder<String> featuresBuilder = ImmutableList.builder();
+            for (TokenTag tokenTag : tags) {
+                featuresBuilder.add(tokenTag.feature);
             }
+            return new TokenEntries(ImmutableList.copyOf(tags), featuresBuilder.build());
         }
-        return resultList;
     }
 
     private static final Joiner gramJoiner = Joiner.on('_');
@@ -21,7 +21,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.textocat.textokit.commons.util.BitUtils;
 import com.textocat.textokit.morph.commons.*;
-import com.textocat.textokit.morph.dictionary.WordUtils;
 import com.textocat.textokit.morph.dictionary.resource.GramModel;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionaryHolder;
@@ -52,18 +51,22 @@ public class DictionaryGrammemeLevelTokenSequenceValidator
     @ExternalResource(key = RESOURCE_MORPH_DICT, mandatory = true)
     private MorphDictionaryHolder morphDictionaryHolder;
     //
-    private MorphDictionary morphDictionary;
-    private GramModel gramModel;
+    MorphDictionary morphDictionary;
+    GramModel gramModel;
     //
-    private List<BitSet> skipMasks;
-    private TwoTagPredicate agreementPredicate;
-    private int adjfId;
-    private int nounId;
+    List<BitSet> skipMasks;
+    TwoTagPredicate agreementPredicate;
+    int adjfId;
+    int nounId;
 
     @Override
     public void initialize(UimaContext ctx) throws ResourceInitializationException {
         ExternalResourceInitializer.initialize(this, ctx);
-        morphDictionary = morphDictionaryHolder.getDictionary();
+        init(morphDictionaryHolder.getDictionary());
+    }
+
+    void init(MorphDictionary morphDictionary) {
+        this.morphDictionary = morphDictionary;
         gramModel = morphDictionary.getGramModel();
         // TODO this is application-specific tunings. Refactor them out
         skipMasks = Lists.newLinkedList();
@@ -109,9 +112,8 @@ public class DictionaryGrammemeLevelTokenSequenceValidator
         }
         outcome = TagUtils.postProcessExternalTag(outcome);
         // dictionary look-up
-        String tokenStr = curToken.getCoveredText();
-        tokenStr = WordUtils.normalizeToDictionaryForm(tokenStr);
-        List<Wordform> dictEntries = morphDictionary.getEntries(tokenStr);
+        List<Wordform> dictEntries = morphDictionary.getEntries(
+                curToken.getCAS().getDocumentText(), curToken.getBegin(), curToken.getEnd());
         if (dictEntries == null || dictEntries.isEmpty()) {
             return !TagUtils.isClosedClassTag(outcome);
         }
@@ -0,0 +1,231 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.textocat.textokit.commons.util.BitUtils;
+import com.textocat.textokit.morph.commons.GramModelBasedTagMapper;
+import com.textocat.textokit.morph.commons.PunctuationUtils;
+import com.textocat.textokit.morph.commons.TagUtils;
+import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
+import com.textocat.textokit.morph.dictionary.resource.TagTable;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
+import com.textocat.textokit.tokenizer.fstype.*;
+import opennlp.tools.ml.model.MaxentModel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
+import static com.textocat.textokit.morph.dictionary.resource.MorphDictionaryUtils.toGramMask;
+
+/**
+ * The same validation as {@link DictionaryGrammemeLevelTokenSequenceValidator} on precomputed
+ * grammeme masks. Outcomes of a model are parsed into masks once, and dictionary tag masks
+ * of tokens are looked up once per sentence, so checks of a beam search step
+ * are bitwise operations without allocation.
+ * <p>
+ * Instances are thread-safe. The per-sentence cache is thread-confined and identifies a sentence
+ * by its token array, so a caller must not change the content of an array between calls.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class DictionaryGrammemeMaskTokenSequenceValidator
+        extends DictionaryGrammemeLevelTokenSequenceValidator
+        implements OutcomeAwareSequenceValidator<Token> {
+
+    private static final long[][] NO_ENTRIES = new long[0][];
+
+    // derived
+    private int adjfWord;
+    private long adjfBit;
+    private final ConcurrentMap<String, OutcomeMask> outcomeMasks = Maps.newConcurrentMap();
+    // state
+    private final ThreadLocal<SentenceEntries> sentenceEntries = new ThreadLocal<SentenceEntries>() {
+        @Override
+        protected SentenceEntries initialValue() {
+            return new SentenceEntries();
+        }
+    };
+
+    @Override
+    void init(MorphDictionary morphDictionary) {
+        super.init(morphDictionary);
+        adjfWord = adjfId / 64;
+        adjfBit = 1L << adjfId;
+    }
+
+    @Override
+    public void initOutcomes(MaxentModel model) {
+        for (int i = 0; i < model.getNumOutcomes(); i++) {
+            String outcome = model.getOutcome(i);
+            outcomeMasks.put(outcome, compile(outcome));
+        }
+    }
+
+    @Override
+    public boolean validSequence(int i, Token[] inputSequence, String[] outcomesSequence,
+                                 String outcome) {
+        Token curToken = inputSequence[i];
+        OutcomeMask om = getOutcomeMask(outcome);
+        // the same as PunctuationTokenSequenceValidator.checkForPunctuationTag
+        if (curToken instanceof W || curToken instanceof NUM) {
+            if (om.punctuation) {
+                return false;
+            }
+        } else if (curToken instanceof PM || curToken instanceof SPECIAL) {
+            return om.punctuation;
+        }
+        if (om.punctuation) {
+            return true;
+        }
+        long[][] entryMasks = getEntryMasks(i, inputSequence);
+        if (entryMasks.length == 0) {
+            return !om.closedClass;
+        }
+        if (om.nullTag) {
+            return false;
+        }
+        if (om.mask == null) {
+            // the tag can not be represented by the grammatical model
+            return super.validSequence(i, inputSequence, outcomesSequence, outcome);
+        }
+        if (om.skip) {
+            return true;
+        }
+        for (long[] de : entryMasks) {
+            if (contains(de, om.mask)) {
+                return true;
+            }
+            // check nominalization
+            if (om.noun && (de[adjfWord] & adjfBit) != 0
+                    && agreementPredicate.apply(om.mask, de)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private OutcomeMask getOutcomeMask(String outcome) {
+        if (outcome == null) {
+            return compile(null);
+        }
+        OutcomeMask result = outcomeMasks.get(outcome);
+        if (result == null) {
+            result = compile(outcome);
+            outcomeMasks.putIfAbsent(outcome, result);
+        }
+        return result;
+    }
+
+    private OutcomeMask compile(String outcome) {
+        OutcomeMask result = new OutcomeMask();
+        result.punctuation = PunctuationUtils.isPunctuationTag(outcome);
+        String tag = TagUtils.postProcessExternalTag(outcome);
+        result.closedClass = TagUtils.isClosedClassTag(tag);
+        result.nullTag = tag == null;
+        if (result.punctuation || result.nullTag) {
+            return result;
+        }
+        BitSet candidateBS;
+        try {
+            candidateBS = toGramBits(gramModel, GramModelBasedTagMapper.parseTag(tag));
+        } catch (RuntimeException e) {
+            // leave the mask null to fall back to the non-compiled validation
+            return result;
+        }
+        for (BitSet sm : skipMasks) {
+            if (BitUtils.contains(candidateBS, sm)) {
+                result.skip = true;
+            }
+        }
+        result.noun = candidateBS.get(nounId);
+        result.mask = toGramMask(gramModel, candidateBS);
+        return result;
+    }
+
+    private long[][] getEntryMasks(int i, Token[] inputSequence) {
+        SentenceEntries entries = sentenceEntries.get();
+        if (entries.sequence != inputSequence) {
+            entries.reset(inputSequence);
+        }
+        long[][] result = entries.tokenMasks[i];
+        if (result == null) {
+            result = lookupEntryMasks(inputSequence[i]);
+            entries.tokenMasks[i] = result;
+        }
+        return result;
+    }
+
+    private long[][] lookupEntryMasks(Token token) {
+        final TagTable tagTable = morphDictionary.getTagTable();
+        final List<long[]> result = Lists.newArrayListWithExpectedSize(4);
+        WordformVisitor maskCollector = new WordformVisitor() {
+            @Override
+            public void visit(int lemmaId, int wordformTagId, int fullTagId) {
+                // masks of a table are shared instances
+                long[] mask = tagTable.getMask(fullTagId);
+                if (!result.contains(mask)) {
+                    result.add(mask);
+                }
+            }
+        };
+        // look up the token range directly in the document text
+        morphDictionary.visitEntries(token.getCAS().getDocumentText(), token.getBegin(), token.getEnd(),
+                maskCollector);
+        return result.isEmpty() ? NO_ENTRIES : result.toArray(new long[result.size()][]);
+    }
+
+    // true if all bits of the second are set in the first
+    private static boolean contains(long[] first, long[] second) {
+        for (int i = 0; i < second.length; i++) {
+            if ((second[i] & ~first[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class OutcomeMask {
+        private boolean punctuation;
+        private boolean closedClass;
+        private boolean nullTag;
+        // null if the tag is null or contains unknown grammemes
+        private long[] mask;
+        private boolean skip;
+        private boolean noun;
+    }
+
+    private static class SentenceEntries {
+        private Token[] sequence;
+        private long[][][] tokenMasks = new long[64][][];
+
+        private void reset(Token[] sequence) {
+            this.sequence = sequence;
+            if (tokenMasks.length < sequence.length) {
+                tokenMasks = new long[Math.max(sequence.length, tokenMasks.length * 2)][][];
+            } else {
+                Arrays.fill(tokenMasks, null);
+            }
+        }
+    }
+}
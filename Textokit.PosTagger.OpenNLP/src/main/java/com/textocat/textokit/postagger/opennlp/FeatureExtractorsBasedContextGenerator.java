@@ -23,6 +23,7 @@ import com.textocat.textokit.cleartk.DefaultFeatureToStringEncoderChain;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
 import com.textocat.textokit.tokenizer.fstype.Token;
 import opennlp.tools.util.BeamSearchContextGenerator;
+import org.apache.uima.cas.CASException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.cleartk.ml.Feature;
@@ -31,6 +32,7 @@ import org.cleartk.ml.encoder.features.FeatureEncoderChain;
 import org.cleartk.ml.feature.extractor.CleartkExtractor;
 import org.cleartk.ml.feature.extractor.FeatureExtractor1;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -72,6 +74,37 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
         return morphDict;
     }
 
+    /**
+     * Compute the part of token contexts that does not depend on prior decisions. The result
+     * can be passed as the second element of 'additionalContext' arg of
+     * {@link #getContext(int, Token[], String[], Object[])} to avoid re-extracting features
+     * of the same token for each beam search hypothesis. Note that the method accesses the CAS
+     * while {@code getContext} with precomputed contexts does not, so the latter can be invoked
+     * outside of the annotator thread. A sequence validator may still read tokens though.
+     *
+     * @param sequence tokens of a sentence
+     * @param sent     the sentence
+     * @return precomputed contexts for each token of the sequence
+     */
+    public PrecomputedContexts precompute(Token[] sequence, Annotation sent) {
+        JCas jCas;
+        try {
+            jCas = sent.getCAS().getJCas();
+        } catch (CASException e) {
+            throw new RuntimeException(e);
+        }
+        PrecomputedContexts result = new PrecomputedContexts(sequence);
+        for (int i = 0; i < sequence.length; i++) {
+            Set<String> contexts = extractTokenContexts(jCas, sequence[i], sent, 0);
+            result.features[i] = contexts.toArray(new String[contexts.size()]);
+            result.featureSets[i] = contexts;
+            if (dictContextGen != null) {
+                result.dictEntries[i] = dictContextGen.lookup(sequence[i]);
+            }
+        }
+        return result;
+    }
+
     @Override
     public String[] getContext(int index, Token[] sequence, String[] priorDecisions,
                                Object[] additionalContext) {
@@ -81,12 +114,63 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
         if (!(additionalContext[0] instanceof Annotation)) {
             throw sentenceExpected();
         }
+        if (additionalContext.length > 1 && additionalContext[1] instanceof PrecomputedContexts) {
+            PrecomputedContexts precomputed = (PrecomputedContexts) additionalContext[1];
+            if (precomputed.sequence != sequence) {
+                throw new IllegalArgumentException(
+                        "Precomputed contexts are given for a different sequence");
+            }
+            return getContext(index, priorDecisions, precomputed);
+        }
         Annotation sent = (Annotation) additionalContext[0];
-        // TODO cache features that does not dependent on prev tags
         Token curToken = sequence[index];
-        List<Feature> features = Lists.newLinkedList();
+        JCas jCas;
+        try {
+            jCas = curToken.getCAS().getJCas();
+        } catch (CASException e) {
+            throw new RuntimeException(e);
+        }
+        Set<String> contexts = extractTokenContexts(jCas, curToken, sent, prevTagsInHistory);
+        ContextGeneratorUtils.addPreviousTags(index, priorDecisions, prevTagsInHistory, contexts);
+        if (dictContextGen != null) {
+            String prevTag = ContextGeneratorUtils.getPreviousTag(index, priorDecisions);
+            contexts.addAll(dictContextGen.extract(curToken, prevTag));
+        }
+        return contexts.toArray(new String[contexts.size()]);
+    }
+
+    private String[] getContext(int index, String[] priorDecisions,
+                                PrecomputedContexts precomputed) {
+        String[] tokenFeatures = precomputed.features[index];
+        Set<String> tokenFeatureSet = precomputed.featureSets[index];
+        List<String> dynContexts = Lists.newArrayListWithExpectedSize(prevTagsInHistory + 8);
+        ContextGeneratorUtils.addPreviousTags(index, priorDecisions, prevTagsInHistory, dynContexts);
+        if (dictContextGen != null) {
+            String prevTag = ContextGeneratorUtils.getPreviousTag(index, priorDecisions);
+            dynContexts.addAll(dictContextGen.extract(precomputed.dictEntries[index], prevTag));
+        }
+        // the same order and de-duplication as with LinkedHashSet in the non-cached path
+        String[] result = Arrays.copyOf(tokenFeatures, tokenFeatures.length + dynContexts.size());
+        int size = tokenFeatures.length;
+        dynLoop:
+        for (String ctx : dynContexts) {
+            if (tokenFeatureSet.contains(ctx)) {
+                continue;
+            }
+            for (int i = tokenFeatures.length; i < size; i++) {
+                if (result[i].equals(ctx)) {
+                    continue dynLoop;
+                }
+            }
+            result[size++] = ctx;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private Set<String> extractTokenContexts(JCas jCas, Token curToken, Annotation sent,
+                                             int reserve) {
+        List<Feature> features = Lists.newArrayList();
         try {
-            JCas jCas = curToken.getCAS().getJCas();
             for (FeatureExtractor1 fe : featureExtractors) {
                 if (fe instanceof CleartkExtractor) {
                     features.addAll(((CleartkExtractor) fe).extractBetween(jCas, curToken, sent));
@@ -98,8 +182,7 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
             throw new RuntimeException(e);
         }
         // encode
-        Set<String> contexts = Sets.newLinkedHashSetWithExpectedSize(
-                features.size() + prevTagsInHistory);
+        Set<String> contexts = Sets.newLinkedHashSetWithExpectedSize(features.size() + reserve);
         // TODO move to utils
         for (Feature f : features) {
             try {
@@ -108,16 +191,30 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
                 throw new RuntimeException(e);
             }
         }
-        ContextGeneratorUtils.addPreviousTags(index, priorDecisions, prevTagsInHistory, contexts);
-        if (dictContextGen != null) {
-            String prevTag = ContextGeneratorUtils.getPreviousTag(index, priorDecisions);
-            contexts.addAll(dictContextGen.extract(curToken, prevTag));
-        }
-        return contexts.toArray(new String[contexts.size()]);
+        return contexts;
     }
 
     private RuntimeException sentenceExpected() {
         return new IllegalArgumentException(
                 "Sentence annotation is expected to be provided in 'additionalContext' arg");
     }
+
+    /**
+     * Hypothesis-independent parts of token contexts of a sentence.
+     * Instances are immutable after {@link #precompute(Token[], Annotation)} returns.
+     */
+    public static class PrecomputedContexts {
+        private final Token[] sequence;
+        private final String[][] features;
+        private final Set<String>[] featureSets;
+        private final DictionaryBasedContextGenerator.TokenEntries[] dictEntries;
+
+        @SuppressWarnings("unchecked")
+        private PrecomputedContexts(Token[] sequence) {
+            this.sequence = sequence;
+            this.features = new String[sequence.length][];
+            this.featureSets = new Set[sequence.length];
+            this.dictEntries = new DictionaryBasedContextGenerator.TokenEntries[sequence.length];
+        }
+    }
 }
@@ -17,6 +17,8 @@
 
 package com.textocat.textokit.postagger.opennlp;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.textocat.textokit.commons.cas.FSUtils;
 import com.textocat.textokit.morph.fs.Word;
 import com.textocat.textokit.morph.fs.Wordform;
@@ -46,6 +48,7 @@ import org.apache.uima.resource.ResourceInitializationException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.*;
 
 import static com.textocat.textokit.commons.cas.AnnotationUtils.toPrettyString;
 import static com.textocat.textokit.commons.util.DocumentUtils.getDocumentUri;
@@ -58,9 +61,24 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
 
     public static final String PARAM_BEAM_SIZE = "beamSize";
     public static final String PARAM_SEQUENCE_VALIDATOR_CLASS = "sequenceValidatorClass";
+    /**
+     * If true (the default) then the hypothesis-independent part of token contexts is computed
+     * once per sentence instead of being recomputed for each beam search hypothesis.
+     * This requires the model context generator to be {@link FeatureExtractorsBasedContextGenerator}.
+     */
+    public static final String PARAM_CACHE_CONTEXTS = "cacheContexts";
+    /**
+     * The number of threads to tag sentences of a document. If it is greater than 1 then
+     * beam searches of different sentences are run in parallel, each thread has its own beam search
+     * instance. Token contexts are precomputed in the annotator thread, so
+     * {@value #PARAM_CACHE_CONTEXTS} must be enabled, and the sequence validator must be thread-safe.
+     * Workers still read the CAS through tokens (e.g., the default validator looks up token texts
+     * in the dictionary), so the CAS is not modified until beam searches of all sentences are completed.
+     */
+    public static final String PARAM_THREADS = "threads";
     public static final String RESOURCE_POS_MODEL = "posModel";
     public static final String DEFAULT_SEQUENCE_VALIDATOR_CLASS =
-            "com.textocat.textokit.postagger.opennlp.DictionaryGrammemeLevelTokenSequenceValidator";
+            "com.textocat.textokit.postagger.opennlp.DictionaryGrammemeMaskTokenSequenceValidator";
 
     /**
      * Create a resource description with the specified parameter values. The
@@ -92,10 +110,20 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
     @ConfigurationParameter(name = PARAM_SEQUENCE_VALIDATOR_CLASS, mandatory = false,
             defaultValue = DEFAULT_SEQUENCE_VALIDATOR_CLASS)
     private String sequenceValidatorClassName;
+    @ConfigurationParameter(name = PARAM_CACHE_CONTEXTS, defaultValue = "true", mandatory = false)
+    private boolean cacheContexts;
+    @ConfigurationParameter(name = PARAM_THREADS, defaultValue = "1", mandatory = false)
+    private int threads;
     // state
     private POSModel modelAggregate;
     private SequenceValidator<Token> sequenceValidator;
+    private BeamSearchContextGenerator<Token> contextGen;
+    // is null if contexts are not cached
+    private FeatureExtractorsBasedContextGenerator cachingContextGen;
     private BeamSearch<Token> beam;
+    // parallel mode state
+    private ExecutorService executor;
+    private ThreadLocal<BeamSearch<Token>> threadBeams;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -107,38 +135,123 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
         if (sequenceValidatorClassName != null) {
             sequenceValidator = InitializableFactory.create(ctx, sequenceValidatorClassName,
                     SequenceValidator.class);
+            if (sequenceValidator instanceof OutcomeAwareSequenceValidator) {
+                ((OutcomeAwareSequenceValidator<Token>) sequenceValidator).initOutcomes(
+                        modelAggregate.getPosModel());
+            }
         }
         //
         POSTaggerFactory factory = modelAggregate.getFactory();
+        contextGen = factory.getContextGenerator();
+        if (cacheContexts && contextGen instanceof FeatureExtractorsBasedContextGenerator) {
+            cachingContextGen = (FeatureExtractorsBasedContextGenerator) contextGen;
+        }
+        beam = newBeam();
+        if (threads > 1) {
+            if (cachingContextGen == null) {
+                throw new ResourceInitializationException(new IllegalArgumentException(
+                        String.format("%s > 1 requires %s", PARAM_THREADS, PARAM_CACHE_CONTEXTS)));
+            }
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setNameFormat("pos-tagger-worker-%d").setDaemon(true).build());
+            threadBeams = new ThreadLocal<BeamSearch<Token>>() {
+                @Override
+                protected BeamSearch<Token> initialValue() {
+                    return newBeam();
+                }
+            };
+        }
+    }
+
+    private BeamSearch<Token> newBeam() {
         MaxentModel posModel = modelAggregate.getPosModel();
-        BeamSearchContextGenerator<Token> contextGen = factory.getContextGenerator();
-        beam = new BeamSearch<>(beamSize, contextGen, posModel, sequenceValidator, 0);
+        return new BeamSearch<>(beamSize, contextGen, posModel, sequenceValidator, 0);
     }
 
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
+        if (executor != null) {
+            processInParallel(jCas);
+            return;
+        }
         for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
-            process(jCas, sent);
+            Token[] tokenArr = selectTokens(jCas, sent);
+            Sequence bestOutSeq = beam.bestSequence(tokenArr, getAdditionalContext(tokenArr, sent));
+            addWords(jCas, sent, tokenArr, bestOutSeq);
         }
     }
 
-    private void process(JCas jCas, Sentence sent) throws AnalysisEngineProcessException {
+    private void processInParallel(JCas jCas) throws AnalysisEngineProcessException {
+        // workers read the CAS through tokens (token texts and offsets),
+        // so it must not be modified until all of them are done
+        List<Sentence> sentences = Lists.newArrayList();
+        List<Token[]> tokenArrs = Lists.newArrayList();
+        List<Future<Sequence>> results = Lists.newArrayList();
+        try {
+            for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+                final Token[] tokenArr = selectTokens(jCas, sent);
+                final Object[] additionalContext = getAdditionalContext(tokenArr, sent);
+                sentences.add(sent);
+                tokenArrs.add(tokenArr);
+                results.add(executor.submit(new Callable<Sequence>() {
+                    @Override
+                    public Sequence call() {
+                        return threadBeams.get().bestSequence(tokenArr, additionalContext);
+                    }
+                }));
+            }
+            List<Sequence> bestOutSeqs = Lists.newArrayListWithCapacity(results.size());
+            for (Future<Sequence> r : results) {
+                bestOutSeqs.add(r.get());
+            }
+            for (int i = 0; i < bestOutSeqs.size(); i++) {
+                addWords(jCas, sentences.get(i), tokenArrs.get(i), bestOutSeqs.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisEngineProcessException(e);
+        } catch (ExecutionException e) {
+            throw new AnalysisEngineProcessException(e.getCause());
+        } finally {
+            for (Future<Sequence> r : results) {
+                r.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        super.destroy();
+    }
+
+    private Token[] selectTokens(JCas jCas, Sentence sent) {
         Collection<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
-        Token[] tokenArr = tokens.toArray(new Token[tokens.size()]);
-        Sequence bestOutSeq = beam.bestSequence(tokenArr, new Object[]{sent});
+        return tokens.toArray(new Token[tokens.size()]);
+    }
+
+    private Object[] getAdditionalContext(Token[] tokenArr, Sentence sent) {
+        if (cachingContextGen == null) {
+            return new Object[]{sent};
+        }
+        return new Object[]{sent, cachingContextGen.precompute(tokenArr, sent)};
+    }
+
+    private void addWords(JCas jCas, Sentence sent, Token[] tokens, Sequence bestOutSeq) {
         if (bestOutSeq == null) {
             getLogger().warn(String.format("Can't infer best sequence for sentence in %s:\n%s",
                     getDocumentUri(jCas), toPrettyString(sent)));
             return;
         }
         List<String> out = bestOutSeq.getOutcomes();
-        if (out.size() != tokens.size()) {
+        if (out.size() != tokens.length) {
             throw new IllegalStateException("InputSeq.size != OutputSeq.size");
         }
-        Iterator<Token> tokenIter = tokens.iterator();
         Iterator<String> outIter = out.iterator();
-        while (tokenIter.hasNext()) {
-            Token token = tokenIter.next();
+        for (Token token : tokens) {
             String tag = postProcessExternalTag(outIter.next());
             if (isWordTag(token, tag)) {
                 Word word = new Word(jCas, token.getBegin(), token.getEnd());
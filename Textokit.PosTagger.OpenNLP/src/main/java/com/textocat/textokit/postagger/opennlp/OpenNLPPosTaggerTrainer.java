@@ -26,6 +26,8 @@ import opennlp.tools.ml.model.MaxentModel;
 import opennlp.tools.util.BeamSearchContextGenerator;
 import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.TrainingParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -37,12 +39,16 @@ import java.util.Map;
  */
 public class OpenNLPPosTaggerTrainer {
 
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     // config fields
     private String languageCode;
     private File modelOutFile;
     private TrainingParameters trainParams;
     // derived
     private ObjectStream<Sentence> sentenceStream;
+    private ObjectStream<Event> eventStream;
+    private File eventsFile;
     private POSTaggerFactory taggerFactory;
 
     public String getLanguageCode() {
@@ -85,6 +91,35 @@ public class OpenNLPPosTaggerTrainer {
         this.sentenceStream = sentenceStream;
     }
 
+    public ObjectStream<Event> getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * @param eventStream a stream of training events, e.g., {@link ParallelPOSEventStream}.
+     *                    If set, the sentence stream is not used.
+     */
+    public void setEventStream(ObjectStream<Event> eventStream) {
+        this.eventStream = eventStream;
+    }
+
+    public File getEventsFile() {
+        return eventsFile;
+    }
+
+    /**
+     * @param eventsFile a file to keep the generated training events in. If the file exists,
+     *                   events are read from it and feature extraction is skipped completely.
+     *                   Otherwise the generated events are written into it before training.
+     *                   The file appears only when all events are written, so it is not
+     *                   reused after an interrupted run.
+     *                   Note that the file content is not validated against the tagger factory
+     *                   configuration.
+     */
+    public void setEventsFile(File eventsFile) {
+        this.eventsFile = eventsFile;
+    }
+
     public void train() throws IOException {
         if (languageCode == null) {
             throw new IllegalStateException("languageCode is not provided");
@@ -95,7 +130,8 @@ public class OpenNLPPosTaggerTrainer {
         if (trainParams == null) {
             throw new IllegalStateException("training parameters are not set");
         }
-        if (sentenceStream == null) {
+        boolean reuseEvents = eventsFile != null && eventsFile.isFile();
+        if (sentenceStream == null && eventStream == null && !reuseEvents) {
             throw new IllegalStateException("sentence stream is not configured");
         }
         if (taggerFactory == null) {
@@ -105,11 +141,25 @@ public class OpenNLPPosTaggerTrainer {
         BeamSearchContextGenerator<Token> contextGenerator = taggerFactory.getContextGenerator();
 
         MaxentModel posModel;
+        BinaryEventReader eventsReader = null;
         try {
             if (TrainerFactory.TrainerType.EVENT_MODEL_TRAINER.equals(
                     TrainerFactory.getTrainerType(trainParams.getSettings()))) {
 
-                ObjectStream<Event> es = new POSTokenEventStream<>(sentenceStream, contextGenerator);
+                ObjectStream<Event> es;
+                if (reuseEvents) {
+                    log.info("Reading training events from {}", eventsFile);
+                    es = eventsReader = new BinaryEventReader(eventsFile);
+                } else {
+                    es = eventStream != null ? eventStream
+                            : new POSTokenEventStream<>(sentenceStream, contextGenerator);
+                    if (eventsFile != null) {
+                        long eventCount = BinaryEventWriter.write(es, eventsFile);
+                        log.info("{} training events have been written into {}",
+                                eventCount, eventsFile);
+                        es = eventsReader = new BinaryEventReader(eventsFile);
+                    }
+                }
                 EventTrainer trainer = TrainerFactory.getEventTrainer(trainParams.getSettings(), manifestInfoEntries);
                 posModel = trainer.train(es);
             } else {
@@ -118,7 +168,15 @@ public class OpenNLPPosTaggerTrainer {
                 // posModel = TrainUtil.train(ss, trainParams.getSettings(), manifestInfoEntries);
             }
         } finally {
-            sentenceStream.close();
+            if (eventsReader != null) {
+                eventsReader.close();
+            }
+            if (eventStream != null) {
+                eventStream.close();
+            }
+            if (sentenceStream != null) {
+                sentenceStream.close();
+            }
         }
         POSModel modelAggregate = new POSModel(languageCode,
                 posModel, manifestInfoEntries, taggerFactory);
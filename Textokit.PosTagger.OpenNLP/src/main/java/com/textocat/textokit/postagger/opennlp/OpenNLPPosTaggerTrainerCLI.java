@@ -20,6 +20,7 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.textocat.textokit.commons.cpe.AnnotationIteratorOverCollection;
 import com.textocat.textokit.commons.cpe.XmiCollectionReader;
+import com.textocat.textokit.commons.util.CachedResourceTuple;
 import com.textocat.textokit.commons.util.Slf4jLoggerImpl;
 import com.textocat.textokit.morph.commons.GramModelBasedTagMapper;
 import com.textocat.textokit.morph.commons.TagAssembler;
@@ -76,6 +77,8 @@ public class OpenNLPPosTaggerTrainerCLI {
             }
             trainer.setTrainingParameters(trainParams);
         }
+        // keeps the dictionary in the cache until the training is finished
+        CachedResourceTuple<MorphDictionary> dictTuple = getMorphDictionaryAPI().getCachedInstance();
         // feature extractors
         {
             FileInputStream fis = FileUtils.openInputStream(cli.extractorParams);
@@ -85,11 +88,15 @@ public class OpenNLPPosTaggerTrainerCLI {
             } finally {
                 IOUtils.closeQuietly(fis);
             }
-            MorphDictionary morphDict = getMorphDictionaryAPI().getCachedInstance().getResource();
+            MorphDictionary morphDict = dictTuple.getResource();
             trainer.setTaggerFactory(new POSTaggerFactory(DefaultFeatureExtractors.from(props, morphDict)));
         }
-        // input sentence stream
-        {
+        trainer.setEventsFile(cli.eventsFile);
+        // input sentence stream, not needed when events are read from the file
+        if (cli.eventsFile == null || !cli.eventsFile.isFile()) {
+            if (cli.trainingXmiDir == null) {
+                throw new IllegalStateException("Corpus dir is not specified");
+            }
             ExternalResourceDescription morphDictDesc = getMorphDictionaryAPI()
                     .getResourceDescriptionForCachedInstance();
             TypeSystemDescription tsd = createTypeSystemDescription(
@@ -109,13 +116,20 @@ public class OpenNLPPosTaggerTrainerCLI {
                     GramModelBasedTagMapper.RESOURCE_GRAM_MODEL, morphDictDesc);
             AnalysisEngineDescription aeDesc = createEngineDescription(
                     posTrimmerDesc, tagAssemblerDesc);
-            Iterator<Sentence> sentIter = AnnotationIteratorOverCollection.createIterator(
-                    Sentence.class, colReaderDesc, aeDesc);
-            SpanStreamOverCollection<Sentence> sentStream = new SpanStreamOverCollection<Sentence>(
-                    sentIter);
-            trainer.setSentenceStream(sentStream);
+            if (cli.threads > 1) {
+                trainer.setEventStream(new ParallelPOSEventStream<>(
+                        colReaderDesc, aeDesc, Sentence.class,
+                        trainer.getTaggerFactory().getContextGenerator(), cli.threads));
+            } else {
+                Iterator<Sentence> sentIter = AnnotationIteratorOverCollection.createIterator(
+                        Sentence.class, colReaderDesc, aeDesc);
+                SpanStreamOverCollection<Sentence> sentStream = new SpanStreamOverCollection<Sentence>(
+                        sentIter);
+                trainer.setSentenceStream(sentStream);
+            }
         }
         trainer.train();
+        dictTuple.close();
     }
 
     @Parameter(names = "-l")
@@ -129,8 +143,13 @@ public class OpenNLPPosTaggerTrainerCLI {
     // input PoS-stream config fields
     @Parameter(names = "--gram-categories", required = true)
     private List<String> gramCategories;
-    @Parameter(names = {"-c", "--corpus-dir"}, required = true)
+    @Parameter(names = {"-c", "--corpus-dir"})
     private File trainingXmiDir;
+    @Parameter(names = "--threads")
+    private int threads = 1;
+    // if the file exists, the corpus is not read
+    @Parameter(names = "--events-file")
+    private File eventsFile;
 
     private OpenNLPPosTaggerTrainerCLI() {
     }
@@ -0,0 +1,34 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger.opennlp;
+
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.SequenceValidator;
+
+/**
+ * A sequence validator that can prepare its state for the outcomes of a model in advance.
+ * {@link OpenNLPPosTagger} invokes {@link #initOutcomes(MaxentModel)} after the model is loaded.
+ *
+ * @param <T> a type of sequence elements
+ * @author Rinat Gareev
+ */
+public interface OutcomeAwareSequenceValidator<T> extends SequenceValidator<T> {
+
+    void initOutcomes(MaxentModel model);
+
+}
@@ -72,43 +72,80 @@ public class POSTokenEventStream<ST extends Annotation> extends AbstractEventStr
         List<Token> tokens = new ArrayList<>(JCasUtil.selectCovered(
                 jCas, Token.class, spanAnno));
         Map<Token, Word> token2WordIndex = MorphCasUtils.getToken2WordIndex(jCas, spanAnno);
-        List<String> tags = Lists.newArrayListWithExpectedSize(tokens.size());
+        return generateEvents(spanAnno, tokens.toArray(new Token[tokens.size()]),
+                getTags(jCas, tokens, token2WordIndex),
+                contextGen);
+    }
+
+    /**
+     * Generate events for all spans of the given type in a document. Unlike invoking
+     * {@link #generateEvents(Annotation, BeamSearchContextGenerator)} for each span this
+     * builds the token and word indices once per document.
+     *
+     * @param jCas      a document
+     * @param spanClass a type of spans, e.g., sentences
+     * @param cg        a context generator
+     * @return events in the order of spans and their tokens
+     */
+    public static <ST extends Annotation> List<Event> generateDocumentEvents(
+            JCas jCas, Class<ST> spanClass, BeamSearchContextGenerator<Token> cg) {
+        Map<ST, Collection<Token>> span2Tokens = JCasUtil.indexCovered(jCas, spanClass, Token.class);
+        Map<Token, Word> token2WordIndex = MorphCasUtils.getToken2WordIndex(jCas);
+        List<Event> result = Lists.newArrayList();
+        for (ST span : JCasUtil.select(jCas, spanClass)) {
+            Collection<Token> tokens = span2Tokens.get(span);
+            if (tokens == null || tokens.isEmpty()) {
+                continue;
+            }
+            Event[] spanEvents = generateEvents(span, tokens.toArray(new Token[tokens.size()]),
+                    getTags(jCas, tokens, token2WordIndex), cg);
+            Collections.addAll(result, spanEvents);
+        }
+        return result;
+    }
+
+    private static String[] getTags(JCas jCas, Collection<Token> tokens,
+                                    Map<Token, Word> token2WordIndex) {
+        String[] tags = new String[tokens.size()];
+        int i = 0;
         for (Token tok : tokens) {
             Word word = token2WordIndex.get(tok);
-            String tokStr = tok.getCoveredText();
             if (word == null) {
                 if (tok instanceof NUM || tok instanceof W) {
                     throw new IllegalStateException(String.format(
                             "Token %s in %s does not have corresponding Word annotation",
                             toPrettyString(tok), getDocumentUri(jCas)));
                 }
-                String tag = PunctuationUtils.getPunctuationTag(tokStr);
-                tags.add(tag);
+                tags[i++] = PunctuationUtils.getPunctuationTag(tok.getCoveredText());
             } else {
                 Wordform wf = MorphCasUtils.requireOnlyWordform(word);
-                String tag = wf.getPos();
-                tags.add(String.valueOf(tag));
+                tags[i++] = String.valueOf(wf.getPos());
             }
         }
-        return generateEvents(spanAnno, tokens.toArray(new Token[tokens.size()]),
-                tags.toArray(new String[tags.size()]),
-                contextGen);
+        return tags;
     }
 
     public static Event[] generateEvents(Annotation spanAnno,
                                          Token[] spanTokens, String[] tags,
                                          BeamSearchContextGenerator<Token> cg) {
         Event[] events = new Event[spanTokens.length];
+        Object[] additionalContext;
+        if (cg instanceof FeatureExtractorsBasedContextGenerator) {
+            // extract hypothesis-independent features of each token only once
+            additionalContext = new Object[]{spanAnno,
+                    ((FeatureExtractorsBasedContextGenerator) cg).precompute(spanTokens, spanAnno)};
+        } else {
+            additionalContext = new Object[]{spanAnno};
+        }
 
         for (int i = 0; i < spanTokens.length; i++) {
 
             // it is safe to pass the tags as previous tags because
             // the context generator does not look for non predicted tags
-            String[] context = cg.getContext(i, spanTokens, tags,
-                    new Object[]{spanAnno});
+            String[] context = cg.getContext(i, spanTokens, tags, additionalContext);
 
             events[i] = new Event(tags[i], context);
         }
         return events;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.textocat.textokit.tokenizer.fstype.Token;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.util.BeamSearchContextGenerator;
+import opennlp.tools.util.ObjectStream;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.util.CasPool;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
+
+/**
+ * Generates training events of a collection using several threads.
+ * <p>
+ * Documents are read and pre-processed on the thread that reads this stream. Each document
+ * is then passed in its own CAS to a worker thread that extracts events of all its spans.
+ * The number of documents in progress is bounded by a CAS pool, and events are returned in
+ * the order of documents so the result is the same as with {@link POSTokenEventStream}.
+ * Outcome and context strings of events are interned into a dictionary shared by workers.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+public class ParallelPOSEventStream<ST extends Annotation> implements ObjectStream<Event> {
+
+    private final Class<ST> spanClass;
+    private final BeamSearchContextGenerator<Token> cg;
+    private final CollectionReader colReader;
+    private final AnalysisEngine ae;
+    private final CasPool casPool;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Interner<String> interner = Interners.newStrongInterner();
+    // state
+    private final ArrayDeque<Future<List<Event>>> pending = new ArrayDeque<>();
+    private Iterator<Event> curDocEvents;
+
+    /**
+     * @param colReaderDesc a collection reader
+     * @param aeDesc        an analysis engine to pre-process documents, may be null
+     * @param spanClass     a type of spans, e.g., sentences
+     * @param cg            a thread-safe context generator
+     * @param threads       number of worker threads
+     */
+    public ParallelPOSEventStream(CollectionReaderDescription colReaderDesc,
+                                  AnalysisEngineDescription aeDesc,
+                                  Class<ST> spanClass,
+                                  BeamSearchContextGenerator<Token> cg,
+                                  int threads) throws UIMAException {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Illegal threads number: %s", threads));
+        }
+        if (aeDesc == null) {
+            aeDesc = createEngineDescription(NoOpAnnotator.class);
+        }
+        this.spanClass = spanClass;
+        this.cg = cg;
+        this.colReader = createReader(colReaderDesc);
+        this.ae = createEngine(aeDesc);
+        // keep the workers busy while the next documents are being read
+        this.maxPending = threads * 2;
+        this.casPool = new CasPool(maxPending,
+                Arrays.<ProcessingResourceMetaData>asList(
+                        colReader.getProcessingResourceMetaData(),
+                        ae.getProcessingResourceMetaData()),
+                null, ae.getResourceManager());
+        CAS cas = casPool.getCas(0);
+        try {
+            colReader.typeSystemInit(cas.getTypeSystem());
+        } finally {
+            casPool.releaseCas(cas);
+        }
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("pos-event-worker-%d").setDaemon(true).build());
+    }
+
+    @Override
+    public Event read() throws IOException {
+        while (curDocEvents == null || !curDocEvents.hasNext()) {
+            submitDocuments();
+            if (pending.isEmpty()) {
+                return null;
+            }
+            curDocEvents = await(pending.poll()).iterator();
+        }
+        return curDocEvents.next();
+    }
+
+    private void submitDocuments() throws IOException {
+        try {
+            while (pending.size() < maxPending && colReader.hasNext()) {
+                // a CAS is released before its result is consumed,
+                // so the pool always has a free one here
+                final CAS cas = casPool.getCas(0);
+                boolean submitted = false;
+                try {
+                    colReader.getNext(cas);
+                    ae.process(cas);
+                    pending.add(executor.submit(new Callable<List<Event>>() {
+                        @Override
+                        public List<Event> call() throws Exception {
+                            try {
+                                return intern(POSTokenEventStream.generateDocumentEvents(
+                                        cas.getJCas(), spanClass, cg));
+                            } finally {
+                                casPool.releaseCas(cas);
+                            }
+                        }
+                    }));
+                    submitted = true;
+                } finally {
+                    if (!submitted) {
+                        casPool.releaseCas(cas);
+                    }
+                }
+            }
+        } catch (UIMAException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private List<Event> intern(List<Event> events) {
+        for (int i = 0; i < events.size(); i++) {
+            Event ev = events.get(i);
+            String[] context = ev.getContext();
+            for (int c = 0; c < context.length; c++) {
+                context[c] = interner.intern(context[c]);
+            }
+            events.set(i, new Event(interner.intern(ev.getOutcome()), context));
+        }
+        return events;
+    }
+
+    private List<Event> await(Future<List<Event>> docEvents) throws IOException {
+        try {
+            return docEvents.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void reset() throws IOException, UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        colReader.close();
+        colReader.destroy();
+        ae.destroy();
+    }
+}
@@ -18,6 +18,7 @@
 package com.textocat.textokit.postagger.opennlp;
 
 import com.google.common.collect.ImmutableList;
+import com.textocat.textokit.commons.util.CachedResourceTuple;
 import com.textocat.textokit.morph.dictionary.MorphDictionaryAPIFactory;
 import com.textocat.textokit.morph.dictionary.resource.MorphDictionary;
 import com.textocat.textokit.postagger.PosTaggerAPI;
@@ -33,6 +34,7 @@ import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.util.CasCreationUtils;
 import org.hamcrest.Matcher;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -48,11 +50,20 @@ import static org.junit.Assert.assertThat;
  */
 public class DictionaryBasedContextGeneratorTest {
 
+    private static CachedResourceTuple<MorphDictionary> dictTuple;
     private static MorphDictionary dict;
 
     @BeforeClass
     public static void loadDictionary() throws Exception {
-        dict = MorphDictionaryAPIFactory.getMorphDictionaryAPI().getCachedInstance().getResource();
+        dictTuple = MorphDictionaryAPIFactory.getMorphDictionaryAPI().getCachedInstance();
+        dict = dictTuple.getResource();
+    }
+
+    @AfterClass
+    public static void releaseDictionary() {
+        if (dictTuple != null) {
+            dictTuple.close();
+        }
     }
 
     final DictionaryBasedContextGenerator gen;
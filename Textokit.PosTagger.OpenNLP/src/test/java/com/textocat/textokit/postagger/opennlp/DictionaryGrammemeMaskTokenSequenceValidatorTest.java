@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.textocat.textokit.morph.dictionary.WordUtils;
+import com.textocat.textokit.morph.dictionary.resource.GramModel;
+import com.textocat.textokit.morph.dictionary.resource.WordformVisitor;
+import com.textocat.textokit.morph.model.Grammeme;
+import com.textocat.textokit.morph.opencorpora.resource.*;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.fstype.Token;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.*;
+
+import static com.textocat.textokit.morph.commons.GramModelBasedTagMapper.targetGramJoiner;
+import static com.textocat.textokit.morph.model.MorphConstants.*;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Rinat Gareev
+ */
+public class DictionaryGrammemeMaskTokenSequenceValidatorTest {
+
+    private static final File DICT_XML = new File("test-data/dict.postagger.test.xml");
+    private static final String TEXT = "А водохранилищная естествоиспытателя село, сел телотрохи - " +
+            "Маточкин и неизвестного Tales 12 «водохранилищного» ... ";
+
+    private MorphDictionaryImpl dict;
+    private Token[] tokens;
+
+    @Before
+    public void setUp() throws Exception {
+        InputStream in = FileUtils.openInputStream(DICT_XML);
+        try {
+            dict = XmlDictionaryParser.parse(in, new DictionaryExtensionBase() {
+                @Override
+                public List<GramModelPostProcessor> getGramModelPostProcessors() {
+                    return Arrays.<GramModelPostProcessor>asList(new GramModelPostProcessor() {
+                        @Override
+                        public void postprocess(ImmutableGramModel.Builder gmBuilder) {
+                            gmBuilder.addGrammeme(new Grammeme("RNC_INIT", POST, "RNC_INIT", null));
+                        }
+                    });
+                }
+            });
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        JCas jCas = JCasFactory.createJCas(
+                createTypeSystemDescription(TokenizerAPI.TYPESYSTEM_TOKENIZER));
+        jCas.setDocumentText(TEXT);
+        createEngine(InitialTokenizer.createDescription()).process(jCas);
+        Collection<Token> tokenCol = JCasUtil.select(jCas, Token.class);
+        tokens = tokenCol.toArray(new Token[tokenCol.size()]);
+    }
+
+    @Test
+    public void testSameAsNonCompiled() {
+        DictionaryGrammemeLevelTokenSequenceValidator expectedValidator =
+                new DictionaryGrammemeLevelTokenSequenceValidator();
+        expectedValidator.init(dict);
+        DictionaryGrammemeMaskTokenSequenceValidator validator =
+                new DictionaryGrammemeMaskTokenSequenceValidator();
+        validator.init(dict);
+        List<String> outcomes = Lists.newArrayList(generateOutcomes());
+        // a half of outcomes is known in advance, others are compiled on demand
+        List<String> modelOutcomes = outcomes.subList(0, outcomes.size() / 2);
+        validator.initOutcomes(new GISModel(new Context[0], new String[0],
+                modelOutcomes.toArray(new String[modelOutcomes.size()]), 1, 0));
+        Set<Object> results = Sets.newHashSet();
+        // check twice to use the sentence cache
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (int i = 0; i < tokens.length; i++) {
+                for (String outcome : outcomes) {
+                    String msg = tokens[i].getCoveredText() + " / " + outcome;
+                    Object expected = validate(expectedValidator, tokens, i, outcome);
+                    assertEquals(msg, expected, validate(validator, tokens, i, outcome));
+                    results.add(expected);
+                }
+            }
+        }
+        assertEquals(Sets.<Object>newHashSet(true, false, IllegalStateException.class), results);
+        // another sentence
+        Token[] reversed = tokens.clone();
+        Collections.reverse(Arrays.asList(reversed));
+        for (int i = 0; i < reversed.length; i++) {
+            for (String outcome : outcomes) {
+                assertEquals(validate(expectedValidator, reversed, i, outcome),
+                        validate(validator, reversed, i, outcome));
+            }
+        }
+    }
+
+    private static Object validate(DictionaryGrammemeLevelTokenSequenceValidator validator,
+                                   Token[] sequence, int i, String outcome) {
+        try {
+            return validator.validSequence(i, sequence, null, outcome);
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private Set<String> generateOutcomes() {
+        final GramModel gm = dict.getGramModel();
+        final Set<String> result = Sets.newLinkedHashSet(Arrays.asList(
+                "null", ",", "--", "\"", CONJ, PRCL, NPRO, PREP, NOUN, ADJF, VERB,
+                NOUN + "&XXX", NOUN + "&" + Abbr, ADJF + "&RNC_INIT", ADVB + "&" + Prnt));
+        for (Token token : tokens) {
+            String form = WordUtils.normalizeToDictionaryForm(token.getCoveredText());
+            dict.visitEntries(form, new WordformVisitor() {
+                @Override
+                public void visit(int lemmaId, int wordformTagId, int fullTagId) {
+                    List<String> grams = Lists.newArrayList(
+                            gm.toGramSet(dict.getTagTable().getTag(fullTagId)));
+                    result.add(targetGramJoiner.join(grams));
+                    result.add(targetGramJoiner.join(grams.subList(0, Math.min(2, grams.size()))));
+                    if (grams.remove(ADJF)) {
+                        // nominalization
+                        grams.add(0, NOUN);
+                        result.add(targetGramJoiner.join(grams));
+                    }
+                }
+            });
+        }
+        return result;
+    }
+}
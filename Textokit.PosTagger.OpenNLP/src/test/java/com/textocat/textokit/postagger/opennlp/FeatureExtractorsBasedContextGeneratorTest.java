@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.ImmutableList;
+import com.textocat.textokit.postagger.PosTaggerAPI;
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.fstype.Sentence;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.fstype.Token;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Rinat Gareev
+ */
+public class FeatureExtractorsBasedContextGeneratorTest {
+
+    private static final String TEXT = "Мама мыла раму, а папа - машину. " +
+            "В 1999 г. было продано 12 т. яблок!\nНу и ну... Tales of Legendia — компьютерная игра.";
+    private static final List<String> TAGS = ImmutableList.of(
+            "NOUN&femn&sing&nomn", "VERB&femn&sing", "NOUN&femn&sing&accs", ",", "CONJ", "-", "");
+
+    private JCas jCas;
+    private FeatureExtractorsBasedContextGenerator contextGen;
+
+    @Before
+    public void setUp() throws Exception {
+        AnalysisEngine segmenter = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(),
+                PostTokenizer.createDescription(),
+                SentenceSplitter.createDescription()));
+        jCas = JCasFactory.createJCas(createTypeSystemDescription(
+                PosTaggerAPI.TYPESYSTEM_POSTAGGER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES));
+        jCas.setDocumentText(TEXT);
+        segmenter.process(jCas);
+        contextGen = new DefaultFeatureExtractors(2, 2, 1, Arrays.asList("POST"), null);
+    }
+
+    @Test
+    public void testPrecomputedContexts() {
+        Random rand = new Random(13);
+        for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+            Collection<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
+            Token[] tokenArr = tokens.toArray(new Token[tokens.size()]);
+            Object[] precomputed = {sent, contextGen.precompute(tokenArr, sent)};
+            for (int i = 0; i < tokenArr.length; i++) {
+                for (int attempt = 0; attempt < 5; attempt++) {
+                    String[] priorDecisions = new String[i];
+                    for (int t = 0; t < i; t++) {
+                        priorDecisions[t] = TAGS.get(rand.nextInt(TAGS.size()));
+                    }
+                    assertArrayEquals(
+                            contextGen.getContext(i, tokenArr, priorDecisions, new Object[]{sent}),
+                            contextGen.getContext(i, tokenArr, priorDecisions, precomputed));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrecomputedForAnotherSequence() {
+        Sentence sent = JCasUtil.select(jCas, Sentence.class).iterator().next();
+        Collection<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
+        Token[] tokenArr = tokens.toArray(new Token[tokens.size()]);
+        Object[] precomputed = {sent, contextGen.precompute(tokenArr, sent)};
+        contextGen.getContext(0, tokenArr.clone(), null, precomputed);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.textocat.textokit.commons.cpe.LinesCollectionReader;
+import com.textocat.textokit.morph.fs.Word;
+import com.textocat.textokit.postagger.MorphCasUtils;
+import com.textocat.textokit.postagger.PosTaggerAPI;
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.fstype.Sentence;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.TrainingParameters;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.CollectionReaderFactory.createReaderDescription;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.createExternalResourceDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class OpenNLPPosTaggerTest {
+
+    private static final List<String> LINES = Arrays.asList(
+            "Мама мыла раму, а папа - машину.",
+            "В 1999 г. было продано 12 т. яблок! Ну и ну...",
+            "Tales of Legendia — компьютерная игра.",
+            "Раз, два, три.");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private TypeSystemDescription tsd;
+    private AnalysisEngineDescription preprocessingDesc;
+    private File modelFile;
+
+    @Before
+    public void setUp() throws Exception {
+        File inputFile = tempFolder.newFile("corpus.txt");
+        FileUtils.writeLines(inputFile, "utf-8", LINES);
+        tsd = createTypeSystemDescription(
+                PosTaggerAPI.TYPESYSTEM_POSTAGGER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES);
+        preprocessingDesc = createEngineDescription(
+                InitialTokenizer.createDescription(),
+                PostTokenizer.createDescription(),
+                SentenceSplitter.createDescription());
+        CollectionReaderDescription colReaderDesc = createReaderDescription(
+                LinesCollectionReader.class, tsd, "inputFile", inputFile);
+        // train a small model on fake tags
+        DefaultFeatureExtractors contextGen = new DefaultFeatureExtractors(
+                2, 2, 1, Arrays.asList("POST"), null);
+        ObjectStream<Event> es = new ParallelPOSEventStream<>(colReaderDesc,
+                createEngineDescription(preprocessingDesc,
+                        createEngineDescription(ParallelPOSEventStreamTest.DummyTagger.class)),
+                Sentence.class, contextGen, 1);
+        TrainingParameters trainParams = new TrainingParameters();
+        trainParams.put(TrainingParameters.ALGORITHM_PARAM, "MAXENT");
+        trainParams.put(TrainingParameters.ITERATIONS_PARAM, "20");
+        trainParams.put(TrainingParameters.CUTOFF_PARAM, "0");
+        modelFile = new File(tempFolder.getRoot(), "pos.model");
+        OpenNLPPosTaggerTrainer trainer = new OpenNLPPosTaggerTrainer();
+        trainer.setLanguageCode("ru");
+        trainer.setModelOutFile(modelFile);
+        trainer.setTrainingParameters(trainParams);
+        trainer.setTaggerFactory(new POSTaggerFactory(contextGen));
+        trainer.setEventStream(es);
+        trainer.train();
+    }
+
+    @Test
+    public void testParallelTaggingGivesTheSameTags() throws Exception {
+        List<String> expected = tag(1);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, tag(3));
+    }
+
+    private List<String> tag(int threads) throws Exception {
+        List<String> lines = Lists.newArrayList();
+        for (int i = 0; i < 25; i++) {
+            lines.addAll(LINES);
+        }
+        JCas jCas = JCasFactory.createJCas(tsd);
+        jCas.setDocumentText(Joiner.on('\n').join(lines));
+        AnalysisEngine tagger = createEngine(OpenNLPPosTagger.class,
+                OpenNLPPosTagger.PARAM_SEQUENCE_VALIDATOR_CLASS,
+                PunctuationTokenSequenceValidator.class.getName(),
+                OpenNLPPosTagger.PARAM_THREADS, threads,
+                OpenNLPPosTagger.RESOURCE_POS_MODEL,
+                createExternalResourceDescription(DefaultPOSModelHolder.class, modelFile));
+        try {
+            SimplePipeline.runPipeline(jCas, createEngine(preprocessingDesc), tagger);
+        } finally {
+            tagger.destroy();
+        }
+        List<String> result = Lists.newArrayList();
+        for (Word w : JCasUtil.select(jCas, Word.class)) {
+            result.add(w.getCoveredText() + "/" + MorphCasUtils.requireOnlyWordform(w).getPos());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Lists;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.ObjectStreamUtils;
+import opennlp.tools.util.TrainingParameters;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OpenNLPPosTaggerTrainerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private List<Event> events;
+    private File eventsFile;
+
+    @Before
+    public void setUp() {
+        events = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            events.add(new Event("NOUN", new String[]{"w=мама", "t-1=null"}));
+            events.add(new Event("VERB", new String[]{"w=мыла", "t-1=NOUN"}));
+        }
+        eventsFile = new File(tempFolder.getRoot(), "events/events.bin");
+    }
+
+    @Test
+    public void testEventsFileIsNotReusedAfterInterruptedWrite() throws Exception {
+        try {
+            newTrainer(new FailingEventStream(events, 7), "model1.bin").train();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(eventsFile.exists());
+        assertEquals(Arrays.asList(), Arrays.asList(eventsFile.getParentFile().list()));
+        // the next run generates the events again
+        newTrainer(ObjectStreamUtils.createObjectStream(events), "model2.bin").train();
+        assertTrue(new File(tempFolder.getRoot(), "model2.bin").isFile());
+        assertEvents(events, eventsFile);
+        // and the complete file is reused
+        newTrainer(new FailingEventStream(events, 0), "model3.bin").train();
+        assertEquals(Arrays.asList("events.bin"),
+                Arrays.asList(eventsFile.getParentFile().list()));
+    }
+
+    @Test
+    public void testInterruptedWriteKeepsExistingFile() throws Exception {
+        List<Event> firstEvents = events.subList(0, 4);
+        BinaryEventWriter.write(ObjectStreamUtils.createObjectStream(firstEvents), eventsFile);
+        try {
+            BinaryEventWriter.write(new FailingEventStream(events, 7), eventsFile);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEvents(firstEvents, eventsFile);
+        assertEquals(Arrays.asList("events.bin"),
+                Arrays.asList(eventsFile.getParentFile().list()));
+    }
+
+    private OpenNLPPosTaggerTrainer newTrainer(ObjectStream<Event> es, String modelFileName) {
+        TrainingParameters trainParams = new TrainingParameters();
+        trainParams.put(TrainingParameters.ALGORITHM_PARAM, "MAXENT");
+        trainParams.put(TrainingParameters.ITERATIONS_PARAM, "5");
+        trainParams.put(TrainingParameters.CUTOFF_PARAM, "0");
+        OpenNLPPosTaggerTrainer trainer = new OpenNLPPosTaggerTrainer();
+        trainer.setLanguageCode("ru");
+        trainer.setModelOutFile(new File(tempFolder.getRoot(), modelFileName));
+        trainer.setTrainingParameters(trainParams);
+        trainer.setTaggerFactory(new POSTaggerFactory(new DefaultFeatureExtractors(
+                1, 1, 1, Arrays.asList("POST"), null)));
+        trainer.setEventStream(es);
+        trainer.setEventsFile(eventsFile);
+        return trainer;
+    }
+
+    private static void assertEvents(List<Event> expected, File file) throws IOException {
+        BinaryEventReader reader = new BinaryEventReader(file);
+        try {
+            for (Event exp : expected) {
+                Event ev = reader.read();
+                assertEquals(exp.getOutcome(), ev.getOutcome());
+                assertArrayEquals(exp.getContext(), ev.getContext());
+            }
+            assertNull(reader.read());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Fails after the given number of events.
+     */
+    private static class FailingEventStream implements ObjectStream<Event> {
+        private final List<Event> events;
+        private final int failAfter;
+        private int pos;
+
+        private FailingEventStream(List<Event> events, int failAfter) {
+            this.events = events;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public Event read() throws IOException {
+            if (pos == failAfter) {
+                throw new IOException("Interrupted");
+            }
+            return pos < events.size() ? events.get(pos++) : null;
+        }
+
+        @Override
+        public void reset() {
+            pos = 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
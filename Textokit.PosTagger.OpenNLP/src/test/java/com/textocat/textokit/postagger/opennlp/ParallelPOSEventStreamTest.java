@@ -0,0 +1,187 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.textocat.textokit.postagger.opennlp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.textocat.textokit.commons.cpe.AnnotationIteratorOverCollection;
+import com.textocat.textokit.commons.cpe.LinesCollectionReader;
+import com.textocat.textokit.postagger.MorphCasUtils;
+import com.textocat.textokit.postagger.PosTaggerAPI;
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.fstype.Sentence;
+import com.textocat.textokit.segmentation.heur.SentenceSplitter;
+import com.textocat.textokit.tokenizer.fstype.NUM;
+import com.textocat.textokit.tokenizer.fstype.Token;
+import com.textocat.textokit.tokenizer.fstype.W;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.util.BeamSearchContextGenerator;
+import opennlp.tools.util.ObjectStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.CollectionReaderFactory.createReaderDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class ParallelPOSEventStreamTest {
+
+    private static final List<String> LINES = Arrays.asList(
+            "Мама мыла раму, а папа - машину.",
+            "В 1999 г. было продано 12 т. яблок! Ну и ну...",
+            "Tales of Legendia — компьютерная игра.",
+            "Раз, два, три.");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private CollectionReaderDescription colReaderDesc;
+    private AnalysisEngineDescription aeDesc;
+    private BeamSearchContextGenerator<Token> contextGen;
+
+    @Before
+    public void setUp() throws Exception {
+        List<String> lines = Lists.newArrayList();
+        for (int i = 0; i < 7; i++) {
+            lines.addAll(LINES);
+        }
+        File inputFile = tempFolder.newFile("corpus.txt");
+        FileUtils.writeLines(inputFile, "utf-8", lines);
+        TypeSystemDescription tsd = createTypeSystemDescription(
+                PosTaggerAPI.TYPESYSTEM_POSTAGGER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES);
+        colReaderDesc = createReaderDescription(LinesCollectionReader.class, tsd,
+                "inputFile", inputFile);
+        aeDesc = createEngineDescription(
+                InitialTokenizer.createDescription(),
+                PostTokenizer.createDescription(),
+                SentenceSplitter.createDescription(),
+                createEngineDescription(DummyTagger.class));
+        contextGen = new DefaultFeatureExtractors(2, 2, 1, Arrays.asList("POST"), null);
+    }
+
+    @Test
+    public void testSameEventsAsSerialStream() throws Exception {
+        List<String> expected = readSerial();
+        assertFalse(expected.isEmpty());
+        for (int threads : new int[]{1, 3}) {
+            ObjectStream<Event> es = new ParallelPOSEventStream<>(
+                    colReaderDesc, aeDesc, Sentence.class, contextGen, threads);
+            try {
+                assertEquals(expected, toStrings(es));
+            } finally {
+                es.close();
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryEventFile() throws Exception {
+        List<String> expected = readSerial();
+        File eventsFile = new File(tempFolder.getRoot(), "events.bin");
+        ObjectStream<Event> es = new ParallelPOSEventStream<>(
+                colReaderDesc, aeDesc, Sentence.class, contextGen, 2);
+        try {
+            assertEquals(expected.size(), BinaryEventWriter.write(es, eventsFile));
+        } finally {
+            es.close();
+        }
+        BinaryEventReader reader = new BinaryEventReader(eventsFile);
+        try {
+            assertEquals(expected, toStrings(reader));
+            // the same events after reset, and equal strings are shared among them
+            reader.reset();
+            Map<String, String> instances = Maps.newHashMap();
+            for (int i = 0; i < expected.size(); i++) {
+                Event ev = reader.read();
+                assertEquals(expected.get(i), toString(ev));
+                String outcome = ev.getOutcome();
+                if (instances.containsKey(outcome)) {
+                    assertSame(instances.get(outcome), outcome);
+                } else {
+                    instances.put(outcome, outcome);
+                }
+            }
+            assertNull(reader.read());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<String> readSerial() throws Exception {
+        ObjectStream<Event> es = new POSTokenEventStream<>(
+                new SpanStreamOverCollection<>(AnnotationIteratorOverCollection.createIterator(
+                        Sentence.class, colReaderDesc, aeDesc)),
+                contextGen);
+        try {
+            return toStrings(es);
+        } finally {
+            es.close();
+        }
+    }
+
+    private static List<String> toStrings(ObjectStream<Event> es) throws IOException {
+        List<String> result = Lists.newArrayList();
+        Event ev;
+        while ((ev = es.read()) != null) {
+            result.add(toString(ev));
+        }
+        return result;
+    }
+
+    private static String toString(Event ev) {
+        return ev.getOutcome() + " " + Arrays.toString(ev.getContext());
+    }
+
+    /**
+     * Assigns a fake PoS-tag to each word token.
+     */
+    public static class DummyTagger extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas jCas) {
+            for (Token token : Lists.newArrayList(JCasUtil.select(jCas, Token.class))) {
+                if (token instanceof NUM) {
+                    MorphCasUtils.addCasWordform(jCas, token).setPos("NUMR");
+                } else if (token instanceof W) {
+                    String text = token.getCoveredText();
+                    MorphCasUtils.addCasWordform(jCas, token).setPos(
+                            Character.isUpperCase(text.charAt(0)) ? "NOUN" : "VERB");
+                }
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.textocat.textokit.segmentation.heur;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.textocat.textokit.commons.cas.AnnotationOffsetComparator;
 import com.textocat.textokit.segmentation.SentenceSplitterAPI;
@@ -28,12 +29,14 @@ import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 
+import java.util.List;
 import java.util.NavigableSet;
 
 import static com.textocat.textokit.commons.cas.AnnotationUtils.isBefore;
@@ -50,11 +53,135 @@ public class SentenceSplitter extends JCasAnnotator_ImplBase {
         return createEngineDescription(SentenceSplitter.class, tsDesc);
     }
 
+    /**
+     * If true (the default), the token index is walked once keeping the previous and the next
+     * visible tokens of boundary candidates. Otherwise, candidates are collected into a sorted set
+     * and their neighbours are looked up by index iterator moves. Both produce the same sentences.
+     */
+    public static final String PARAM_ONE_PASS = "onePass";
+
     private static final Class[] sentenceEndTokenTypes = new Class[]{
             PERIOD.class, EXCLAMATION.class, QUESTION.class, BREAK.class};
 
+    @ConfigurationParameter(name = PARAM_ONE_PASS, mandatory = false)
+    private boolean onePass = true;
+
+    // per-CAS state of the one-pass mode
+    // boundary candidates that wait for the next visible token
+    private final List<TokenBase> pendingCandidates = Lists.newArrayList();
+    // previous visible tokens of pending candidates
+    private final List<Token> pendingPrevTokens = Lists.newArrayList();
+    private Token lastSentenceStart;
+
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
+        if (onePass) {
+            try {
+                processInOnePass(jCas);
+            } finally {
+                pendingCandidates.clear();
+                pendingPrevTokens.clear();
+                lastSentenceStart = null;
+            }
+        } else {
+            processWithCandidateSet(jCas);
+        }
+    }
+
+    private void processInOnePass(JCas jCas) {
+        String txt = jCas.getDocumentText();
+        Token lastVisToken = null;
+        for (TokenBase tokenBase : jCas.getAnnotationIndex(TokenBase.class)) {
+            if (tokenBase instanceof Token) {
+                Token token = (Token) tokenBase;
+                if (lastVisToken == null) {
+                    // the first sentence start
+                    lastSentenceStart = token;
+                }
+                if (!resolvePendingCandidates(jCas, txt, token)) {
+                    return;
+                }
+                if (isSentenceEndType(token)) {
+                    addPendingCandidate(token, lastVisToken);
+                }
+                lastVisToken = token;
+            } else if (tokenBase instanceof BREAK) {
+                addPendingCandidate(tokenBase, lastVisToken);
+            }
+        }
+        if (lastVisToken == null) {
+            // no visible tokens
+            return;
+        }
+        if (resolvePendingCandidates(jCas, txt, null)) {
+            makeSentence(jCas, lastSentenceStart, lastVisToken);
+        }
+    }
+
+    private static boolean isSentenceEndType(Token token) {
+        return token instanceof PERIOD || token instanceof EXCLAMATION || token instanceof QUESTION;
+    }
+
+    private void addPendingCandidate(TokenBase candidate, Token prevVisToken) {
+        pendingCandidates.add(candidate);
+        pendingPrevTokens.add(prevVisToken);
+    }
+
+    /**
+     * Makes sentences ended by the pending candidates.
+     *
+     * @param nextVisToken the next visible token of the pending candidates, null if they are
+     *                     after the last visible token
+     * @return false if there are no more tokens to start a sentence with
+     */
+    private boolean resolvePendingCandidates(JCas jCas, String txt, Token nextVisToken) {
+        try {
+            for (int i = 0; i < pendingCandidates.size(); i++) {
+                TokenBase boundaryCand = pendingCandidates.get(i);
+                if (isBefore(boundaryCand, lastSentenceStart)) {
+                    continue;
+                }
+                Token prevVisToken = pendingPrevTokens.get(i);
+                if (isBoundary(txt, boundaryCand, prevVisToken, nextVisToken)) {
+                    Token sentEnd;
+                    if (boundaryCand instanceof Token) {
+                        sentEnd = (Token) boundaryCand;
+                    } else {
+                        sentEnd = prevVisToken;
+                    }
+                    makeSentence(jCas, lastSentenceStart, sentEnd);
+                    // the next visible token after sentEnd
+                    lastSentenceStart = nextVisToken;
+                    if (lastSentenceStart == null) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            pendingCandidates.clear();
+            pendingPrevTokens.clear();
+        }
+    }
+
+    private boolean isBoundary(String txt, TokenBase boundaryCand, Token prevVisToken, Token nextVisToken) {
+        boolean isBoundary = nextVisToken == null;
+        if (!isBoundary && boundaryCand instanceof Token) {
+            // i.e. candidate is a visible token
+            // here nextVisToken is never null
+            isBoundary = isBreakBetween(txt, boundaryCand, nextVisToken) ||
+                    (distanceBetween(boundaryCand, nextVisToken) > 0
+                            && !isAbbreviation(prevVisToken)
+                            && !isSW(nextVisToken));
+        }
+        if (!isBoundary && boundaryCand instanceof WhiteSpace) {
+            // candidate is a break
+            isBoundary = !isSW(nextVisToken);
+        }
+        return isBoundary;
+    }
+
+    private void processWithCandidateSet(JCas jCas) {
         AnnotationIndex<Token> visibleTokenIdx = jCas.getAnnotationIndex(Token.class);
         if (visibleTokenIdx.size() == 0) {
             return;
@@ -76,20 +203,7 @@ public class SentenceSplitter extends JCasAnnotator_ImplBase {
             }
             Token nextVisToken = getNext(visibleIter, boundaryCand);
             Token prevVisToken = getPrevious(visibleIter, boundaryCand);
-            boolean isBoundary = nextVisToken == null;
-            if (!isBoundary && boundaryCand instanceof Token) {
-                // i.e. candidate is a visible token
-                // here nextVisToken is never null
-                isBoundary = isBreakBetween(txt, boundaryCand, nextVisToken) ||
-                        (distanceBetween(boundaryCand, nextVisToken) > 0
-                                && !isAbbreviation(prevVisToken)
-                                && !isSW(nextVisToken));
-            }
-            if (!isBoundary && boundaryCand instanceof WhiteSpace) {
-                // candidate is a break
-                isBoundary = !isSW(nextVisToken);
-            }
-            if (isBoundary) {
+            if (isBoundary(txt, boundaryCand, prevVisToken, nextVisToken)) {
                 Token sentEnd;
                 if (boundaryCand instanceof Token) {
                     sentEnd = (Token) boundaryCand;
@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.segmentation.heur;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.segmentation.SentenceSplitterAPI;
+import com.textocat.textokit.segmentation.fstype.Sentence;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import com.textocat.textokit.tokenizer.simple.InitialTokenizer;
+import com.textocat.textokit.tokenizer.simple.PostTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.assertEquals;
+
+public class SentenceSplitterTest {
+
+    private static final File CORPUS_FILE = new File("test-data/sentence-splitter-corpus.txt");
+    // sentences of the corpus, one per line, line breaks inside sentences are escaped
+    private static final File EXPECTED_SENTENCES_FILE =
+            new File("test-data/sentence-splitter-corpus.sentences.txt");
+
+    private AnalysisEngine onePassSplitter;
+    private AnalysisEngine candidateSetSplitter;
+
+    @Before
+    public void setUp() throws Exception {
+        onePassSplitter = createSplitter(true);
+        candidateSetSplitter = createSplitter(false);
+    }
+
+    private static AnalysisEngine createSplitter(boolean onePass) throws Exception {
+        return createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(),
+                PostTokenizer.createDescription(),
+                createEngineDescription(SentenceSplitter.class,
+                        SentenceSplitterAPI.getTypeSystemDescription(),
+                        SentenceSplitter.PARAM_ONE_PASS, onePass)));
+    }
+
+    @Test
+    public void testRegressionCorpus() throws Exception {
+        String text = FileUtils.readFileToString(CORPUS_FILE, "utf-8");
+        List<String> expected = FileUtils.readLines(EXPECTED_SENTENCES_FILE, "utf-8");
+        assertEquals(expected, split(candidateSetSplitter, text));
+        assertEquals(expected, split(onePassSplitter, text));
+    }
+
+    @Test
+    public void testEdgeCases() throws Exception {
+        for (String text : new String[]{"", "\n\n", "Одно", "Одно.", ". . .", "\nДва.\n\nТри\n\n",
+                "Четыре! пять? Шесть", "\n.\n"}) {
+            assertEquals(text, split(candidateSetSplitter, text), split(onePassSplitter, text));
+        }
+    }
+
+    @Test
+    public void testRandomText() throws Exception {
+        Random rnd = new Random(42);
+        String[] words = {"Мама", "мыла", "раму", "А", "г", "12", ".", ".", "!", "?", ",", " ", " ", "\n"};
+        for (int t = 0; t < 20; t++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                sb.append(words[rnd.nextInt(words.length)]);
+                if (rnd.nextBoolean()) {
+                    sb.append(' ');
+                }
+            }
+            String text = sb.toString();
+            assertEquals(split(candidateSetSplitter, text), split(onePassSplitter, text));
+        }
+    }
+
+    private static List<String> split(AnalysisEngine ae, String text) throws Exception {
+        JCas jCas = JCasFactory.createJCas(createTypeSystemDescription(
+                TokenizerAPI.TYPESYSTEM_TOKENIZER, SentenceSplitterAPI.TYPESYSTEM_SENTENCES));
+        jCas.setDocumentText(text);
+        ae.process(jCas);
+        List<String> result = Lists.newArrayList();
+        for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+            assertEquals(sent.getBegin(), sent.getFirstToken().getBegin());
+            assertEquals(sent.getEnd(), sent.getLastToken().getEnd());
+            result.add(sent.getCoveredText().replace("\n", "\\n"));
+        }
+        return result;
+    }
+}
@@ -31,6 +31,14 @@ private[pattern] trait GrammemeExtractor {
   protected val gramIds: Set[String]
 
   protected def extractGrammeme(wf: Wordform): String = {
+    // a grammeme bit mask can not be decoded without a gram model
+    if (wf.getPosBits != null)
+      throw new IllegalStateException(
+        "Grammemes of wordform %s are encoded as a bit mask, only grammeme strings are supported"
+          .format(wf.getWord match {
+          case null => null
+          case w => w.getCoveredText
+        }))
     wf.getGrammems match {
       case null => null
       case triggerGramsFsArr =>
@@ -21,7 +21,10 @@ import com.textocat.textokit.tokenizer.fstype.*;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.UimaContext;
 import org.apache.uima.cas.*;
+import org.apache.uima.cas.impl.LowLevelCAS;
+import org.apache.uima.cas.impl.LowLevelTypeSystem;
 import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.fit.component.CasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -43,6 +46,19 @@ import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTyp
  */
 public class InitialTokenizer extends CasAnnotator_ImplBase {
 
+    /**
+     * If true (the default), characters are classified by a precomputed table and tokens
+     * are created through the low-level CAS API. Otherwise, the original implementation
+     * that classifies characters by {@link State} methods is used. Both produce the same output.
+     */
+    public static final String PARAM_USE_STATE_TABLE = "useStateTable";
+    /**
+     * If true, tokens of each span are merged by the heuristics of {@link PostTokenizer}
+     * before they are added to the CAS, so the PostTokenizer is not needed in a pipeline.
+     * Requires {@link #PARAM_USE_STATE_TABLE}. The default is false.
+     */
+    public static final String PARAM_MERGE_TOKENS = "mergeTokens";
+
     public static AnalysisEngineDescription createDescription()
             throws ResourceInitializationException {
         TypeSystemDescription tsDesc = createTypeSystemDescription(TYPESYSTEM_TOKENIZER);
@@ -51,15 +67,62 @@ public class InitialTokenizer extends CasAnnotator_ImplBase {
 
     @ConfigurationParameter(name = PARAM_SPAN_TYPE, mandatory = false)
     private String spanTypeName = DEFAULT_SPAN_TYPE;
+    @ConfigurationParameter(name = PARAM_USE_STATE_TABLE, mandatory = false)
+    private boolean useStateTable = true;
+    @ConfigurationParameter(name = PARAM_MERGE_TOKENS, mandatory = false)
+    private boolean mergeTokens = false;
 
     // derived
     private Type spanType;
+    // char => index of a state in 'states' that starts with it
+    private byte[] startStateTable;
+    // char => bit mask of indexes of states that contain it
+    private byte[] containStateTable;
+    // token types of the table-driven path in the order of TT_* constants
+    private Type[] tokenTypes;
+    private Feature sofaFeature;
+    private Feature beginFeature;
+    private Feature endFeature;
+    private int[] tokenTypeCodes;
+    private int sofaFeatCode;
+    private int beginFeatCode;
+    private int endFeatCode;
+    // tokens of the current span
+    private int[] tokenBuffer = new int[3 * 1024];
+    private int tokenBufferSize;
+    private TokenMerger merger;
+
+    @Override
+    public void initialize(UimaContext ctx) throws ResourceInitializationException {
+        super.initialize(ctx);
+        if (mergeTokens && !useStateTable) {
+            throw new ResourceInitializationException(new IllegalArgumentException(String.format(
+                    "%s requires %s", PARAM_MERGE_TOKENS, PARAM_USE_STATE_TABLE)));
+        }
+        if (useStateTable) {
+            buildStateTables();
+        }
+    }
 
     @Override
     public void typeSystemInit(TypeSystem typeSystem) throws AnalysisEngineProcessException {
         super.typeSystemInit(typeSystem);
         spanType = typeSystem.getType(spanTypeName);
         annotationTypeExist(spanTypeName, spanType);
+        tokenTypes = new Type[TOKEN_TYPE_CLASSES.length];
+        for (int i = 0; i < tokenTypes.length; i++) {
+            String typeName = TOKEN_TYPE_CLASSES[i].getName();
+            tokenTypes[i] = typeSystem.getType(typeName);
+            annotationTypeExist(typeName, tokenTypes[i]);
+        }
+        sofaFeature = typeSystem.getFeatureByFullName(CAS.FEATURE_FULL_NAME_SOFA);
+        beginFeature = typeSystem.getFeatureByFullName(CAS.FEATURE_FULL_NAME_BEGIN);
+        endFeature = typeSystem.getFeatureByFullName(CAS.FEATURE_FULL_NAME_END);
+        // low-level codes are resolved on the first CAS of this type system
+        tokenTypeCodes = null;
+        if (mergeTokens) {
+            merger = new TokenMerger(typeSystem);
+        }
     }
 
     @Override
@@ -72,6 +135,28 @@ public class InitialTokenizer extends CasAnnotator_ImplBase {
         }
         AnnotationIndex<Annotation> spanIndex = cas.getAnnotationIndex(spanType);
         FSIterator<Annotation> spanIterator = spanIndex.iterator();
+        if (useStateTable) {
+            LowLevelCAS llCas = _cas.getLowLevelCAS();
+            if (tokenTypeCodes == null) {
+                initTypeCodes(llCas.ll_getTypeSystem());
+            }
+            String text = cas.getDocumentText();
+            int sofaRef = llCas.ll_getFSRef(_cas.getSofa());
+            if (mergeTokens) {
+                merger.setText(text);
+            }
+            while (spanIterator.hasNext()) {
+                Annotation span = spanIterator.next();
+                tokenizeSpan(text, span.getBegin(), span.getEnd());
+                if (mergeTokens) {
+                    flushMergedTokens(llCas, sofaRef);
+                } else {
+                    flushTokens(llCas, sofaRef, 0, tokenBufferSize);
+                }
+                tokenBufferSize = 0;
+            }
+            return;
+        }
         Annotation span = null;
         while (spanIterator.hasNext()) {
             span = spanIterator.next();
@@ -79,6 +164,167 @@ public class InitialTokenizer extends CasAnnotator_ImplBase {
         }
     }
 
+    private void buildStateTables() {
+        if (states.size() > Byte.SIZE) {
+            throw new IllegalStateException("Too many states for the state tables");
+        }
+        startStateTable = new byte[Character.MAX_VALUE + 1];
+        containStateTable = new byte[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char ch = (char) c;
+            startStateTable[c] = (byte) states.indexOf(getStateStartingWith(ch));
+            int containMask = 0;
+            for (int s = 0; s < states.size(); s++) {
+                if (states.get(s).contain(ch)) {
+                    containMask |= 1 << s;
+                }
+            }
+            containStateTable[c] = (byte) containMask;
+        }
+    }
+
+    private void initTypeCodes(LowLevelTypeSystem llts) {
+        int[] codes = new int[tokenTypes.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = llts.ll_getCodeForType(tokenTypes[i]);
+        }
+        sofaFeatCode = llts.ll_getCodeForFeature(sofaFeature);
+        beginFeatCode = llts.ll_getCodeForFeature(beginFeature);
+        endFeatCode = llts.ll_getCodeForFeature(endFeature);
+        tokenTypeCodes = codes;
+    }
+
+    /**
+     * Table-driven equivalent of {@link #tokenizeSpan(JCas, Annotation)}.
+     * It walks the document text in place and collects tokens into the buffer.
+     */
+    private void tokenizeSpan(String text, int spanBegin, int spanEnd) {
+        // -1 stands for START
+        int state = -1;
+        int lastStateStart = spanBegin;
+        for (int i = spanBegin; i < spanEnd; i++) {
+            char curCh = text.charAt(i);
+            if (state < 0 || (containStateTable[curCh] & (1 << state)) == 0) {
+                if (state >= 0) {
+                    addToken(text, state, lastStateStart, i);
+                }
+                lastStateStart = i;
+                state = startStateTable[curCh];
+            }
+        }
+        if (state >= 0) {
+            addToken(text, state, lastStateStart, spanEnd);
+        }
+    }
+
+    private void addToken(String text, int stateIndex, int begin, int end) {
+        int tokenType;
+        State state = states.get(stateIndex);
+        if (state == WORD) {
+            checkOffsets(begin, end);
+            int capLetters = 0;
+            for (int i = begin; i < end; i++) {
+                if (Character.isUpperCase(text.charAt(i))) {
+                    capLetters++;
+                } else {
+                    break;
+                }
+            }
+            if (capLetters == 0) {
+                tokenType = TT_SW;
+            } else if (capLetters == end - begin && capLetters > 1) {
+                tokenType = TT_CAP;
+            } else {
+                tokenType = TT_CW;
+            }
+        } else if (state == NUM) {
+            tokenType = TT_NUM;
+        } else if (state == BREAK) {
+            tokenType = TT_BREAK;
+        } else if (state == SPACE) {
+            tokenType = TT_SPACE;
+        } else if (state == PUNCTUATION) {
+            switch (text.charAt(begin)) {
+                case ',':
+                    tokenType = TT_COMMA;
+                    break;
+                case '.':
+                    tokenType = TT_PERIOD;
+                    break;
+                case ':':
+                    tokenType = TT_COLON;
+                    break;
+                case ';':
+                    tokenType = TT_SEMICOLON;
+                    break;
+                case '?':
+                    tokenType = TT_QUESTION;
+                    break;
+                case '!':
+                    tokenType = TT_EXCLAMATION;
+                    break;
+                default:
+                    tokenType = TT_PM;
+            }
+        } else {
+            tokenType = TT_SPECIAL;
+        }
+        if (tokenBufferSize + 3 > tokenBuffer.length) {
+            int[] temp = tokenBuffer;
+            tokenBuffer = new int[temp.length * 2];
+            System.arraycopy(temp, 0, tokenBuffer, 0, tokenBufferSize);
+        }
+        tokenBuffer[tokenBufferSize++] = tokenType;
+        tokenBuffer[tokenBufferSize++] = begin;
+        tokenBuffer[tokenBufferSize++] = end;
+    }
+
+    // creates and indexes the buffered tokens in [from, to) without JCas cover objects
+    private void flushTokens(LowLevelCAS llCas, int sofaRef, int from, int to) {
+        for (int i = from; i < to; i += 3) {
+            createToken(llCas, sofaRef, tokenTypeCodes[tokenBuffer[i]],
+                    tokenBuffer[i + 1], tokenBuffer[i + 2]);
+        }
+    }
+
+    // merges the buffered tokens of each whitespace-delimited group
+    private void flushMergedTokens(LowLevelCAS llCas, int sofaRef) {
+        int groupStart = 0;
+        for (int i = 0; i < tokenBufferSize; i += 3) {
+            int tokenType = tokenBuffer[i];
+            if (tokenType == TT_SPACE || tokenType == TT_BREAK) {
+                flushGroup(llCas, sofaRef, groupStart, i);
+                flushTokens(llCas, sofaRef, i, i + 3);
+                groupStart = i + 3;
+            } else {
+                merger.add(tokenTypes[tokenType], tokenBuffer[i + 1], tokenBuffer[i + 2]);
+            }
+        }
+        flushGroup(llCas, sofaRef, groupStart, tokenBufferSize);
+    }
+
+    private void flushGroup(LowLevelCAS llCas, int sofaRef, int from, int to) {
+        if (merger.merge()) {
+            int mergedFrom = from + merger.getMergedFrom() * 3;
+            int mergedTo = from + merger.getMergedTo() * 3;
+            flushTokens(llCas, sofaRef, from, mergedFrom);
+            createToken(llCas, sofaRef, llCas.ll_getTypeSystem().ll_getCodeForType(merger.getMergedType()),
+                    merger.getMergedBegin(), merger.getMergedEnd());
+            flushTokens(llCas, sofaRef, mergedTo, to);
+        } else {
+            flushTokens(llCas, sofaRef, from, to);
+        }
+        merger.clear();
+    }
+
+    private void createToken(LowLevelCAS llCas, int sofaRef, int typeCode, int begin, int end) {
+        int fsRef = llCas.ll_createFS(typeCode);
+        llCas.ll_setRefValue(fsRef, sofaFeatCode, sofaRef);
+        llCas.ll_setIntValue(fsRef, beginFeatCode, begin);
+        llCas.ll_setIntValue(fsRef, endFeatCode, end);
+        llCas.ll_getIndexRepository().ll_addFS(fsRef);
+    }
+
     private void tokenizeSpan(JCas cas, Annotation span) {
         String str = span.getCoveredText();
         int spanBegin = span.getBegin();
@@ -326,6 +572,27 @@ public class InitialTokenizer extends CasAnnotator_ImplBase {
             WORD, NUM, BREAK, SPACE, PUNCTUATION, SPECIAL
     );
 
+    // token types of the table-driven path
+    private static final int TT_SW = 0;
+    private static final int TT_CAP = 1;
+    private static final int TT_CW = 2;
+    private static final int TT_NUM = 3;
+    private static final int TT_BREAK = 4;
+    private static final int TT_SPACE = 5;
+    private static final int TT_COMMA = 6;
+    private static final int TT_PERIOD = 7;
+    private static final int TT_COLON = 8;
+    private static final int TT_SEMICOLON = 9;
+    private static final int TT_QUESTION = 10;
+    private static final int TT_EXCLAMATION = 11;
+    private static final int TT_PM = 12;
+    private static final int TT_SPECIAL = 13;
+    private static final Class<?>[] TOKEN_TYPE_CLASSES = {
+            SW.class, CAP.class, CW.class, NUM.class, BREAK.class, SPACE.class,
+            COMMA.class, PERIOD.class, COLON.class, SEMICOLON.class, QUESTION.class,
+            EXCLAMATION.class, PM.class, SPECIAL.class
+    };
+
     private static void checkOffsets(int begin, int end) {
         if (end <= begin) {
             throw new IllegalStateException(String.format(
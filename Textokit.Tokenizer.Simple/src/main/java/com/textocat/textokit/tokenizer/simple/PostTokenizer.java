@@ -15,12 +15,14 @@
  */
 package com.textocat.textokit.tokenizer.simple;
 
-import com.google.common.collect.*;
-import com.textocat.textokit.tokenizer.fstype.*;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.textocat.textokit.tokenizer.fstype.TokenBase;
+import com.textocat.textokit.tokenizer.fstype.WhiteSpace;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
-import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
@@ -28,10 +30,19 @@ import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
 
-import java.util.*;
+import java.util.List;
+import java.util.Set;
 
 /**
+ * Merges tokens produced by {@link InitialTokenizer} using heuristics of {@link TokenMerger}.
+ * <p>
+ * The token index is scanned in a single pass. Merged tokens can't be removed from the index
+ * during the scan, so they are unindexed at the end. See
+ * {@link InitialTokenizer#PARAM_MERGE_TOKENS} to avoid this.
+ * </p>
+ *
  * @author Rinat Gareev
  */
 public class PostTokenizer extends JCasAnnotator_ImplBase {
@@ -41,10 +52,13 @@ public class PostTokenizer extends JCasAnnotator_ImplBase {
         return AnalysisEngineFactory.createEngineDescription(PostTokenizer.class);
     }
 
+    private TokenMerger merger;
+    private TypeSystem mergerTypeSystem;
     // per-CAS state
-    private Map<AnnotationFS, Collection<? extends AnnotationFS>> mergedMap;
-    private Type wordType;
-    private Type numType;
+    // tokens of the current group that does not contain whitespace
+    private final List<Annotation> groupTokens = Lists.newArrayList();
+    private final List<AnnotationFS> mergedTokens = Lists.newArrayList();
+    private final List<AnnotationFS> unindexedTokens = Lists.newArrayList();
 
     /**
      * {@inheritDoc}
@@ -52,154 +66,52 @@ public class PostTokenizer extends JCasAnnotator_ImplBase {
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
         CAS cas = jCas.getCas();
-        mergedMap = Maps.newHashMap();
-        wordType = jCas.getCasType(W.type);
-        numType = jCas.getCasType(NUM.type);
+        if (merger == null || mergerTypeSystem != cas.getTypeSystem()) {
+            merger = new TokenMerger(cas.getTypeSystem());
+            mergerTypeSystem = cas.getTypeSystem();
+        }
+        merger.setText(jCas.getDocumentText());
         try {
             AnnotationIndex<Annotation> tokenBases = jCas.getAnnotationIndex(TokenBase.typeIndexID);
-            // sequence of tokens that does not contain whitespace
-            List<Token> curTokenSeq = Lists.newLinkedList();
             for (Annotation tokenBase : tokenBases) {
                 if (tokenBase instanceof WhiteSpace) {
-                    handle(cas, ImmutableList.copyOf(curTokenSeq));
-                    curTokenSeq.clear();
+                    handleGroup(cas);
                 } else {
                     // it's Token
-                    curTokenSeq.add((Token) tokenBase);
+                    groupTokens.add(tokenBase);
+                    merger.add(tokenBase.getType(), tokenBase.getBegin(), tokenBase.getEnd());
                 }
             }
-            // handle last seq
-            handle(cas, ImmutableList.copyOf(curTokenSeq));
-            curTokenSeq.clear();
+            // handle last group
+            handleGroup(cas);
             // index/unindex
-            Set<String> mergedTokenStrings = Sets.newHashSet();
-            for (Map.Entry<AnnotationFS, Collection<? extends AnnotationFS>> entry : mergedMap
-                    .entrySet()) {
-                jCas.addFsToIndexes(entry.getKey());
-                mergedTokenStrings.add(entry.getKey().getCoveredText());
-                for (AnnotationFS anno : entry.getValue()) {
-                    jCas.removeFsFromIndexes(anno);
-                }
-            }
-            getLogger().debug("Merged tokens: " + mergedTokenStrings);
-        } finally {
-            mergedMap.clear();
-        }
-    }
-
-    private boolean handle(CAS cas, List<Token> tokens) {
-        if (tokens.size() <= 1) {
-            return false;
-        } else if (tokens.size() == 2) {
-            // check abbreviation dictionary
-            if (isWord(tokens.get(0)) && isDot(tokens.get(1))
-                    && isAbbreviation(getCoveredText(tokens))) {
-                makeAnnotation(cas, tokens.get(0).getType(), tokens);
-                return true;
-            }
-            if (!hasPMOrSpecial(tokens)) {
-                makeAnnotation(cas,
-                        isWord(tokens.get(0)) ? tokens.get(0).getType() : wordType,
-                        tokens);
-            }
-        } else if (tokens.size() == 3) {
-            Token t0 = tokens.get(0);
-            Token t1 = tokens.get(1);
-            Token t2 = tokens.get(2);
-            if (isPossibleInnerPM(t1) && hasWord(t0, t2)) {
-                makeAnnotation(cas, isWord(t0) ? t0.getType() : wordType, tokens);
-                return true;
-            }
-            // TODO may be RANGE is better as target type, e.g. "12-14"
-            if (isNumInternalPM(t1) && isNum(t0) && isNum(t2)) {
-                makeAnnotation(cas, numType, tokens);
+            for (AnnotationFS anno : mergedTokens) {
+                cas.addFsToIndexes(anno);
             }
-        } else {
-            // tokens size >= 4
-            LinkedList<Token> cleaned = Lists.newLinkedList(tokens);
-            while (!cleaned.isEmpty() && isPMOrSpecial(cleaned.getFirst())) {
-                cleaned.removeFirst();
+            for (AnnotationFS anno : unindexedTokens) {
+                cas.removeFsFromIndexes(anno);
             }
-            while (!cleaned.isEmpty() && isPMOrSpecial(cleaned.getLast())) {
-                cleaned.removeLast();
-            }
-            // to avoid infinite recursion
-            if (tokens.size() != cleaned.size()) {
-                return handle(cas, cleaned);
-            }
-        }
-        return false;
-    }
-
-    private static final Set<String> abbreviations = ImmutableSet.of("г.");
-
-    // TODO use external dictionary
-    private boolean isAbbreviation(String str) {
-        return abbreviations.contains(str);
-    }
-
-    private static final Set<String> POSSIBLE_INNER_PM = ImmutableSet.of("'", "-", "`");
-
-    private boolean isPossibleInnerPM(Token tkn) {
-        return POSSIBLE_INNER_PM.contains(tkn.getCoveredText());
-    }
-
-    private boolean isPMOrSpecial(Token tkn) {
-        return tkn instanceof PM || tkn instanceof SPECIAL;
-    }
-
-    private boolean hasWord(Token... tkns) {
-        for (Token tkn : tkns) {
-            if (isWord(tkn)) {
-                return true;
+            if (getLogger().isLoggable(Level.FINE)) {
+                Set<String> mergedTokenStrings = Sets.newHashSet();
+                for (AnnotationFS anno : mergedTokens) {
+                    mergedTokenStrings.add(anno.getCoveredText());
+                }
+                getLogger().debug("Merged tokens: " + mergedTokenStrings);
             }
+        } finally {
+            groupTokens.clear();
+            mergedTokens.clear();
+            unindexedTokens.clear();
         }
-        return false;
     }
 
-    private boolean hasPMOrSpecial(Iterable<Token> tkns) {
-        for (Token tkn : tkns) {
-            if (isPMOrSpecial(tkn)) {
-                return true;
-            }
+    private void handleGroup(CAS cas) {
+        if (merger.merge()) {
+            mergedTokens.add(cas.createAnnotation(merger.getMergedType(),
+                    merger.getMergedBegin(), merger.getMergedEnd()));
+            unindexedTokens.addAll(groupTokens.subList(merger.getMergedFrom(), merger.getMergedTo()));
         }
-        return false;
-    }
-
-    @SuppressWarnings("unused")
-    private boolean isHyphen(Token tkn) {
-        return "-".equals(tkn.getCoveredText());
-    }
-
-    private boolean isDot(Token tkn) {
-        return ".".equals(tkn.getCoveredText());
-    }
-
-    private static final Set<String> NUM_INTERNAL_PM = ImmutableSet.of(",", ".", "-");
-
-    private boolean isNumInternalPM(Token tkn) {
-        return NUM_INTERNAL_PM.contains((tkn.getCoveredText()));
-    }
-
-    private boolean isWord(Token tkn) {
-        return tkn instanceof W;
-    }
-
-    private boolean isNum(Token tkn) {
-        return tkn instanceof NUM;
-    }
-
-    private String getCoveredText(Iterable<? extends AnnotationFS> iter) {
-        StringBuilder sb = new StringBuilder();
-        for (AnnotationFS anno : iter) {
-            sb.append(anno.getCoveredText());
-        }
-        return sb.toString();
-    }
-
-    private void makeAnnotation(CAS cas, Type targetType, List<? extends AnnotationFS> rangeAnnos) {
-        int begin = rangeAnnos.get(0).getBegin();
-        int end = rangeAnnos.get(rangeAnnos.size() - 1).getEnd();
-        mergedMap.put(cas.createAnnotation(targetType, begin, end), rangeAnnos);
+        merger.clear();
+        groupTokens.clear();
     }
-}
\ No newline at end of file
+}
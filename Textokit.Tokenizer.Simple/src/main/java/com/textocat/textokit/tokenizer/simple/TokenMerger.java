@@ -0,0 +1,235 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.tokenizer.simple;
+
+import com.google.common.collect.ImmutableSet;
+import com.textocat.textokit.tokenizer.fstype.NUM;
+import com.textocat.textokit.tokenizer.fstype.PM;
+import com.textocat.textokit.tokenizer.fstype.SPECIAL;
+import com.textocat.textokit.tokenizer.fstype.W;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+
+import java.util.Set;
+
+/**
+ * Heuristics of {@link PostTokenizer} that decide whether tokens of a group, i.e.,
+ * a sequence of tokens without whitespace between them, must be merged into a single token.
+ * <p>
+ * Tokens are added one by one, only offsets and types are kept. Token texts are compared
+ * with the document text in place.
+ * </p>
+ *
+ * @author Rinat Gareev
+ */
+class TokenMerger {
+
+    private static final Set<String> ABBREVIATIONS = ImmutableSet.of("г.");
+    private static final String POSSIBLE_INNER_PM = "'-`";
+    private static final String NUM_INTERNAL_PM = ",.-";
+
+    private final TypeSystem ts;
+    private final Type wordType;
+    private final Type numType;
+    private final Type pmType;
+    private final Type specialType;
+    private String text;
+    // tokens of the current group
+    private Type[] types = new Type[16];
+    private int[] begins = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+    // result of the last merge
+    private Type mergedType;
+    private int mergedFrom;
+    private int mergedTo;
+
+    TokenMerger(TypeSystem ts) {
+        this.ts = ts;
+        wordType = getType(ts, W.class);
+        numType = getType(ts, NUM.class);
+        pmType = getType(ts, PM.class);
+        specialType = getType(ts, SPECIAL.class);
+    }
+
+    private static Type getType(TypeSystem ts, Class<?> typeClass) {
+        Type result = ts.getType(typeClass.getName());
+        if (result == null) {
+            throw new IllegalStateException(String.format(
+                    "Type %s is not found in the type system", typeClass.getName()));
+        }
+        return result;
+    }
+
+    void setText(String text) {
+        this.text = text;
+        size = 0;
+    }
+
+    void add(Type type, int begin, int end) {
+        if (size == types.length) {
+            Type[] tempTypes = types;
+            types = new Type[size * 2];
+            System.arraycopy(tempTypes, 0, types, 0, size);
+            int[] tempBegins = begins;
+            begins = new int[size * 2];
+            System.arraycopy(tempBegins, 0, begins, 0, size);
+            int[] tempEnds = ends;
+            ends = new int[size * 2];
+            System.arraycopy(tempEnds, 0, ends, 0, size);
+        }
+        types[size] = type;
+        begins[size] = begin;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * @return number of tokens in the current group
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Ends the current group.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return true if tokens of the current group in the range
+     * [{@link #getMergedFrom()}, {@link #getMergedTo()}) must be replaced by a single
+     * token of {@link #getMergedType()}.
+     */
+    boolean merge() {
+        return merge(0, size);
+    }
+
+    Type getMergedType() {
+        return mergedType;
+    }
+
+    int getMergedFrom() {
+        return mergedFrom;
+    }
+
+    int getMergedTo() {
+        return mergedTo;
+    }
+
+    int getMergedBegin() {
+        return begins[mergedFrom];
+    }
+
+    int getMergedEnd() {
+        return ends[mergedTo - 1];
+    }
+
+    private boolean merge(int from, int to) {
+        int n = to - from;
+        if (n <= 1) {
+            return false;
+        } else if (n == 2) {
+            // check abbreviation dictionary
+            if (isWord(from) && textEquals(from + 1, to, ".") && isAbbreviation(from, to)) {
+                return setMerged(types[from], from, to);
+            }
+            if (!isPMOrSpecial(from) && !isPMOrSpecial(from + 1)) {
+                return setMerged(isWord(from) ? types[from] : wordType, from, to);
+            }
+        } else if (n == 3) {
+            int t0 = from;
+            int t1 = from + 1;
+            int t2 = from + 2;
+            if (isOneOf(t1, POSSIBLE_INNER_PM) && (isWord(t0) || isWord(t2))) {
+                return setMerged(isWord(t0) ? types[t0] : wordType, from, to);
+            }
+            // TODO may be RANGE is better as target type, e.g. "12-14"
+            if (isOneOf(t1, NUM_INTERNAL_PM) && isNum(t0) && isNum(t2)) {
+                return setMerged(numType, from, to);
+            }
+        } else {
+            // tokens size >= 4
+            int cleanedFrom = from;
+            int cleanedTo = to;
+            while (cleanedFrom < cleanedTo && isPMOrSpecial(cleanedFrom)) {
+                cleanedFrom++;
+            }
+            while (cleanedFrom < cleanedTo && isPMOrSpecial(cleanedTo - 1)) {
+                cleanedTo--;
+            }
+            // to avoid infinite recursion
+            if (cleanedTo - cleanedFrom != n) {
+                return merge(cleanedFrom, cleanedTo);
+            }
+        }
+        return false;
+    }
+
+    private boolean setMerged(Type type, int from, int to) {
+        mergedType = type;
+        mergedFrom = from;
+        mergedTo = to;
+        return true;
+    }
+
+    // TODO use external dictionary
+    private boolean isAbbreviation(int from, int to) {
+        for (String abbr : ABBREVIATIONS) {
+            if (textEquals(from, to, abbr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the concatenation of texts of the given tokens is equal to str
+     */
+    private boolean textEquals(int from, int to, String str) {
+        int strOffset = 0;
+        for (int i = from; i < to; i++) {
+            int len = ends[i] - begins[i];
+            if (strOffset + len > str.length()
+                    || !text.regionMatches(begins[i], str, strOffset, len)) {
+                return false;
+            }
+            strOffset += len;
+        }
+        return strOffset == str.length();
+    }
+
+    // true if the token text is a single character from the given string
+    private boolean isOneOf(int i, String chars) {
+        return ends[i] - begins[i] == 1 && chars.indexOf(text.charAt(begins[i])) >= 0;
+    }
+
+    private boolean isWord(int i) {
+        return ts.subsumes(wordType, types[i]);
+    }
+
+    private boolean isNum(int i) {
+        return ts.subsumes(numType, types[i]);
+    }
+
+    private boolean isPMOrSpecial(int i) {
+        return ts.subsumes(pmType, types[i]) || ts.subsumes(specialType, types[i]);
+    }
+}
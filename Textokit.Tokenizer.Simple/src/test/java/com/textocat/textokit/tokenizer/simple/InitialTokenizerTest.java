@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.tokenizer.simple;
+
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.textocat.textokit.tokenizer.simple.TokenizerTestUtils.tokenize;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InitialTokenizerTest {
+
+    private AnalysisEngine tableTokenizer;
+    private AnalysisEngine stateTokenizer;
+
+    @Before
+    public void setUp() throws Exception {
+        tableTokenizer = createEngine(InitialTokenizer.createDescription());
+        stateTokenizer = createEngine(InitialTokenizer.class, TokenizerAPI.getTypeSystemDescription(),
+                InitialTokenizer.PARAM_USE_STATE_TABLE, false);
+    }
+
+    @Test
+    public void testSampleText() throws Exception {
+        List<String> tokens = assertSameTokens(
+                "Мама мыла РАМУ в 2015-м году,\r\n\r\nа ООО «Рога и Копыта» — нет!? Ⅻ век; x² ½:\t¶ 😀");
+        assertTrue(tokens.contains("CAP:РАМУ"));
+        assertTrue(tokens.contains("CW:Мама"));
+        assertTrue(tokens.contains("BREAK:\r\n\r\n"));
+        assertTrue(tokens.contains("QUESTION:?"));
+    }
+
+    @Test
+    public void testRandomText() throws Exception {
+        Random rnd = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            // mostly ASCII and Cyrillic, but every char of BMP may appear
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    sb.append((char) (' ' + rnd.nextInt(95)));
+                    break;
+                case 1:
+                    sb.append((char) ('А' + rnd.nextInt(64)));
+                    break;
+                case 2:
+                    sb.append(" \n\r\t .,!?".charAt(rnd.nextInt(9)));
+                    break;
+                default:
+                    sb.append((char) rnd.nextInt(Character.MAX_VALUE + 1));
+            }
+        }
+        assertSameTokens(sb.toString());
+    }
+
+    @Test
+    public void testEmptyText() throws Exception {
+        assertEquals(0, assertSameTokens("").size());
+    }
+
+    private List<String> assertSameTokens(String text) throws Exception {
+        List<String> expected = tokenize(stateTokenizer, text);
+        List<String> actual = tokenize(tableTokenizer, text);
+        assertEquals(expected, actual);
+        return actual;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.tokenizer.simple;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.textocat.textokit.tokenizer.simple.TokenizerTestUtils.tokenize;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PostTokenizerTest {
+
+    // the reference is the implementation that preceded TokenMerger
+    private AnalysisEngine legacyTokenizer;
+    private AnalysisEngine tokenizer;
+    private AnalysisEngine mergingTokenizer;
+
+    @Before
+    public void setUp() throws Exception {
+        legacyTokenizer = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), LegacyPostTokenizer.createDescription()));
+        tokenizer = createEngine(createEngineDescription(
+                InitialTokenizer.createDescription(), PostTokenizer.createDescription()));
+        mergingTokenizer = createEngine(InitialTokenizer.class, TokenizerAPI.getTypeSystemDescription(),
+                InitialTokenizer.PARAM_MERGE_TOKENS, true);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        List<String> tokens = assertSameTokens(
+                "В 1995 г. д'Артаньян (rock-n). 12-14 3,5 abc123 1995-м а-б-в , !");
+        assertTrue(tokens.contains("SW:г."));
+        assertTrue(tokens.contains("SW:д'Артаньян"));
+        assertTrue(tokens.contains("SW:rock-n"));
+        assertTrue(tokens.contains("NUM:12-14"));
+        assertTrue(tokens.contains("NUM:3,5"));
+        assertTrue(tokens.contains("SW:abc123"));
+        assertTrue(tokens.contains("W:1995-м"));
+        // groups of 5 tokens are not merged
+        assertTrue(tokens.contains("SW:а"));
+        assertTrue(tokens.contains("COMMA:,"));
+    }
+
+    @Test
+    public void testExpectedTokens() throws Exception {
+        List<String> expected = ImmutableList.of("CW:В", "NUM:1995", "SW:г.", "SW:д'Артаньян",
+                "NUM:12-14", "NUM:3,5", "PM:(", "SW:rock-n", "PM:)", "COMMA:,",
+                "SW:а", "PM:-", "SW:б", "PM:-", "SW:в", "W:1995-м");
+        String text = "В 1995 г. д'Артаньян 12-14 3,5 (rock-n), а-б-в 1995-м";
+        assertEquals(expected, withoutSpacesAndOffsets(assertSameTokens(text)));
+    }
+
+    @Test
+    public void testRandomText() throws Exception {
+        Random rnd = new Random(42);
+        String alphabet = "аБгZ19.,-'`!() \n";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+        }
+        assertSameTokens(sb.toString());
+    }
+
+    @Test(expected = Exception.class)
+    public void testMergeRequiresStateTable() throws Exception {
+        createEngine(InitialTokenizer.class, TokenizerAPI.getTypeSystemDescription(),
+                InitialTokenizer.PARAM_MERGE_TOKENS, true,
+                InitialTokenizer.PARAM_USE_STATE_TABLE, false);
+    }
+
+    private List<String> assertSameTokens(String text) throws Exception {
+        List<String> expected = tokenize(legacyTokenizer, text);
+        assertEquals(expected, tokenize(tokenizer, text));
+        List<String> actual = tokenize(mergingTokenizer, text);
+        assertEquals(expected, actual);
+        return actual;
+    }
+
+    private static List<String> withoutSpacesAndOffsets(List<String> tokens) {
+        List<String> result = Lists.newArrayList();
+        // tokens are followed by their offsets
+        for (int i = 0; i < tokens.size(); i += 2) {
+            if (!tokens.get(i).startsWith("SPACE:")) {
+                result.add(tokens.get(i));
+            }
+        }
+        return result;
+    }
+}
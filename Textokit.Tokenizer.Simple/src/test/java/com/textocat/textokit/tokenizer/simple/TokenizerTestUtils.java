@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2015 Textocat
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.textocat.textokit.tokenizer.simple;
+
+import com.google.common.collect.Lists;
+import com.textocat.textokit.tokenizer.TokenizerAPI;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+import java.util.List;
+
+class TokenizerTestUtils {
+
+    private TokenizerTestUtils() {
+    }
+
+    /**
+     * @return the type short name with the covered text, then the offsets, of each non-UIMA
+     * annotation in the index order
+     */
+    static List<String> tokenize(AnalysisEngine ae, String text) throws Exception {
+        JCas jCas = JCasFactory.createJCas(TokenizerAPI.getTypeSystemDescription());
+        jCas.setDocumentText(text);
+        ae.process(jCas);
+        List<String> result = Lists.newArrayList();
+        for (Annotation anno : jCas.getAnnotationIndex()) {
+            if (anno.getType().getName().startsWith("uima.")) {
+                continue;
+            }
+            result.add(anno.getType().getShortName() + ":" + anno.getCoveredText());
+            result.add(anno.getBegin() + "-" + anno.getEnd());
+        }
+        return result;
+    }
+}